@@ -1,11 +1,14 @@
 package com.trader;
 
 import com.trader.config.MatchEngineConfig;
+import com.trader.config.SymbolScale;
+import com.trader.core.Command;
 import com.trader.core.MatchHandler;
 import com.trader.core.OrderRouter;
 import com.trader.core.Scheduler;
-import com.trader.core.def.ActivateStatus;
+import com.trader.core.def.CancelResult;
 import com.trader.core.def.Cmd;
+import com.trader.core.def.MatchingState;
 import com.trader.core.entity.Order;
 import com.trader.core.exception.MatchExceptionHandler;
 import com.trader.core.exception.TradeException;
@@ -16,15 +19,30 @@ import com.trader.core.matcher.limit.LimitOrderMatcher;
 import com.trader.core.matcher.market.InMemoryMarketMatchHandler;
 import com.trader.core.matcher.market.MarketOrderMatcher;
 import com.trader.core.support.OrderManager;
+import com.trader.core.support.journal.CommandJournal;
+import com.trader.core.support.journal.SnapshotStore;
+import com.trader.core.support.processor.CancelCommand;
+import com.trader.core.support.processor.PriceChangeCommand;
 import com.trader.core.support.router.GenericOrderRouter;
 import com.trader.core.support.scheduler.GenericScheduler;
+import com.trader.core.support.scheduler.ResizeCommand;
+import com.trader.market.MarketEventHandler;
 import com.trader.market.MarketManager;
 import com.trader.utils.disruptor.AbstractDisruptorConsumer;
 import com.trader.utils.disruptor.DisruptorQueue;
 import com.trader.utils.disruptor.DisruptorQueueFactory;
 import lombok.Getter;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * TODO:
@@ -36,9 +54,39 @@ import java.util.Objects;
 public class MatchEngine {
 
     /**
-     * 标志撮合引擎是否正在进行撮合
+     * 恢复撮合时放入入口队列的指令
      */
-    private volatile boolean isMatching = false;
+    private static final Command RESUME = () -> Cmd.RESUME;
+
+    /**
+     * 撮合引擎入口的状态, 暂停时入口线程不会自旋, 指令暂存到溢出缓冲区
+     */
+    private volatile MatchingState state = MatchingState.PAUSED;
+
+    /**
+     * 暂停期间暂存的指令, 只由入口线程访问
+     */
+    private final ArrayDeque<Command> pausedCommands = new ArrayDeque<>();
+
+    /**
+     * 暂存指令的最大个数, 超过后入口线程阻塞等待恢复 (下单队列随之被填满, 生产者阻塞)
+     */
+    private int maxPausedCommands;
+
+    /**
+     * 入口线程等待恢复的监视器
+     */
+    private final Object resumeMonitor = new Object();
+
+    /**
+     * 是否正在回放指令日志, 回放期间由回放的成交产生的价格变动不会再次提交
+     */
+    private volatile boolean replaying;
+
+    /**
+     * 等待入口线程执行的回放请求, 回放与其它指令一样只在入口线程中访问调度器
+     */
+    private CompletableFuture<Long> replayRequest;
 
     /**
      * 是否开启日志
@@ -71,7 +119,47 @@ public class MatchEngine {
     /**
      * 下单队列
      */
-    private DisruptorQueue<Order> addOrderQueue;
+    private DisruptorQueue<Command> addOrderQueue;
+
+    /**
+     * 是否开启定点数撮合
+     */
+    private boolean fixedPointArithmetic;
+
+    /**
+     * 交易对精度 (定点数撮合)
+     */
+    private Map<String, SymbolScale> symbolScales;
+
+    /**
+     * 指令日志, 没有配置日志目录时为 {@code null}
+     */
+    private CommandJournal journal;
+
+    /**
+     * 账本快照存储, 没有配置快照目录时为 {@code null}
+     */
+    private SnapshotStore snapshotStore;
+
+    /**
+     * 快照时间间隔 (毫秒), 0 表示不按照时间快照
+     */
+    private long snapshotIntervalMillis;
+
+    /**
+     * 快照指令间隔, 0 表示不按照指令个数快照
+     */
+    private int snapshotCommandCount;
+
+    /**
+     * 上一次快照的时间
+     */
+    private long lastSnapshotTime;
+
+    /**
+     * 上一次快照之后的指令个数
+     */
+    private int numOfCommandsSinceSnapshot;
 
     public static MatchEngine newEngine(MatchEngineConfig config) {
         // 异常处理器
@@ -114,37 +202,192 @@ public class MatchEngine {
                 matchExceptionHandler,
                 config.getNumberOfCores(),
                 config.getSizeOfCoreCmdBuffer());
+        scheduler.setRebalanceIntervalMillis(config.getRebalanceIntervalMillis());
+        scheduler.setRebalanceThreshold(config.getRebalanceThreshold());
+        scheduler.setProcessorWaitStrategy(config.getProcessorWaitStrategy());
+        scheduler.setSynchronousStopActivation(config.isSynchronousStopActivation());
+        scheduler.setSymbolPlacement(config.getSymbolPlacement());
         config.setScheduler(scheduler);
-        return new MatchEngine(market, scheduler, matchExceptionHandler, config.getSizeOfOrderQueue());
+        MatchEngine engine = new MatchEngine(market, scheduler, matchExceptionHandler, config);
+
+        // 订单结束后回收, 必须在其它处理器之后执行
+        handlers.regHandler(engine.orderMgr.getEvictionHandler());
+        return engine;
     }
 
     public MatchEngine(MarketManager market,
                        Scheduler scheduler,
                        MatchExceptionHandler matchExceptionHandler,
                        int sizeOfOrderQueue) {
+        this(market, scheduler, matchExceptionHandler, defaultConfig(sizeOfOrderQueue));
+    }
+
+    public MatchEngine(MarketManager market,
+                       Scheduler scheduler,
+                       MatchExceptionHandler matchExceptionHandler,
+                       MatchEngineConfig config) {
+        int sizeOfOrderQueue = config.getSizeOfOrderQueue();
+        this.maxPausedCommands = config.getMaxPausedCommands();
+        this.fixedPointArithmetic = config.isFixedPointArithmetic();
+        this.symbolScales = config.getSymbolScales() == null ? new HashMap<>() : config.getSymbolScales();
         this.orderMgr = new OrderManager();
+        this.orderMgr.setEvictionGraceMillis(config.getOrderRetentionMillis());
         this.scheduler = Objects.requireNonNull(scheduler);
         this.marketMgr = Objects.requireNonNull(market);
         this.matchExceptionHandler = Objects.requireNonNull(matchExceptionHandler);
 
+        // 打开指令日志
+        if (config.getJournalDir() != null) {
+            try {
+                this.journal = CommandJournal.open(config.getJournalDir(), config.getJournalSegmentSize());
+            } catch (IOException e) {
+                throw new IllegalStateException("无法打开指令日志: " + config.getJournalDir(), e);
+            }
+        }
+
+        // 账本快照需要记录指令日志的位置
+        if (config.getSnapshotDir() != null) {
+            if (journal == null) {
+                throw new IllegalStateException("账本快照需要开启指令日志");
+            }
+            try {
+                this.snapshotStore = new SnapshotStore(config.getSnapshotDir());
+            } catch (IOException e) {
+                throw new IllegalStateException("无法打开快照目录: " + config.getSnapshotDir(), e);
+            }
+            this.snapshotIntervalMillis = config.getSnapshotIntervalMillis();
+            this.snapshotCommandCount = config.getSnapshotCommandCount();
+            this.lastSnapshotTime = System.currentTimeMillis();
+        }
+
         // 创建下单队列
         this.addOrderQueue = DisruptorQueueFactory.createQueue(sizeOfOrderQueue, r -> {
             final Thread tr = new Thread(r);
             tr.setName("MatchEngine:AddOrderQueue");
             return tr;
-        }, new AbstractDisruptorConsumer<Order>() {
+        }, new AbstractDisruptorConsumer<Command>() {
+            @Override
+            public void process(Command event) {
+                replayIfRequested();
+                if (state == MatchingState.PAUSED && pause(event)) {
+                    return;
+                }
+                // 先处理暂停期间暂存的指令, 保证指令顺序
+                while (!pausedCommands.isEmpty()) {
+                    dispatch(pausedCommands.poll());
+                }
+                if (event != RESUME) {
+                    dispatch(event);
+                }
+            }
+
             @Override
-            public void process(Order event) {
-                while (!isMatching) {
+            protected void onEndOfBatch() {
+                // 同一批指令按照处理器分组后批量发送
+                scheduler.flush();
+            }
+        }, matchExceptionHandler.toDisruptorHandler(), config.getIngressWaitStrategy());
+
+        // 市价变动与下单指令一样经过入口队列排序并写入指令日志, 回放时止盈止损订单在相同的位置被触发
+        market.addHandler(new MarketEventHandler() {
+            @Override
+            public void onMarketPriceChange(PriceChangeCommand cmd) {
+                submitPriceChange(cmd);
+            }
+        });
+    }
+
+    /**
+     * 市价变动, 在行情推送线程中调用
+     *
+     * @param cmd
+     *         市价变动指令
+     */
+    private void submitPriceChange(PriceChangeCommand cmd) {
+        if (state == MatchingState.CLOSED) {
+            return;
+        }
+        // 回放的成交产生的价格变动已经记录在指令日志中
+        if (replaying && !cmd.isThird()) {
+            return;
+        }
+        this.addOrderQueue.add(cmd);
+    }
+
+    /**
+     * 暂停期间到达的指令, 暂存到溢出缓冲区, 缓冲区满后阻塞等待恢复, 只能由入口线程调用
+     *
+     * @param event
+     *         指令
+     *
+     * @return 指令已经被暂存则返回 true, 撮合已经恢复则返回 false
+     */
+    private boolean pause(Command event) {
+        while (state == MatchingState.PAUSED) {
+            if (pausedCommands.size() < maxPausedCommands) {
+                if (event != RESUME) {
+                    pausedCommands.offer(event);
+                }
+                return true;
+            }
+            // 阻塞之前把已经提交的指令发送给处理器
+            scheduler.flush();
+            synchronized (resumeMonitor) {
+                while (state == MatchingState.PAUSED && replayRequest == null) {
                     try {
-                        Thread.sleep(0);
+                        resumeMonitor.wait();
                     } catch (InterruptedException e) {
-                        e.printStackTrace();
+                        Thread.currentThread().interrupt();
+                        return false;
                     }
                 }
-                scheduler.submit(event);
             }
-        }, matchExceptionHandler.toDisruptorHandler());
+            // 阻塞期间收到的回放请求在这里执行, 然后继续等待恢复
+            replayIfRequested();
+        }
+        return false;
+    }
+
+    /**
+     * 处理一条指令, 只能由入口线程调用
+     *
+     * @param event
+     *         指令
+     */
+    private void dispatch(Command event) {
+        if (event.getCmd() == Cmd.RESIZE) {
+            scheduler.resize(((ResizeCommand) event).getNumOfProcessors());
+            return;
+        }
+        // 指令按照入口队列的顺序写入日志
+        if (event instanceof CancelCommand) {
+            CancelCommand cancel = (CancelCommand) event;
+            if (journal != null) {
+                journal.append(Cmd.CANCEL_ORDER, cancel.getOrder());
+            }
+            scheduler.submit(cancel);
+        } else if (event.getCmd() == Cmd.PRICE_CHANGE) {
+            PriceChangeCommand priceChange = (PriceChangeCommand) event;
+            if (journal != null) {
+                journal.append(priceChange);
+            }
+            scheduler.submit(priceChange);
+        } else {
+            Order order = (Order) event;
+            if (journal != null) {
+                journal.append(order);
+            }
+            scheduler.submit(order);
+        }
+        if (snapshotStore != null) {
+            checkSnapshot();
+        }
+    }
+
+    private static MatchEngineConfig defaultConfig(int sizeOfOrderQueue) {
+        MatchEngineConfig config = new MatchEngineConfig();
+        config.setSizeOfOrderQueue(sizeOfOrderQueue);
+        return config;
     }
 
     /**
@@ -154,47 +397,315 @@ public class MatchEngine {
      *         订单
      */
     public void addOrder(Order order) {
-        this.addOrderQueue.add(order);
-        this.orderMgr.addOrder(order);
+        if (fixedPointArithmetic && order.isAddCmd()) {
+            toFixedPoint(order);
+        }
+        checkOpen();
+        // 先登记再入队, 否则订单可能在登记之前就已经结束并被回收
+        if (order.isAddCmd()) {
+            this.orderMgr.addOrder(order);
+        }
+        try {
+            this.addOrderQueue.add(order);
+        } catch (RuntimeException e) {
+            // 入队失败的订单不会被撮合, 撤销登记
+            if (order.isAddCmd()) {
+                this.orderMgr.removeOrder(order);
+            }
+            throw e;
+        }
+    }
+
+    private void checkOpen() {
+        if (state == MatchingState.CLOSED) {
+            throw new TradeException("撮合引擎已经关闭");
+        }
+    }
+
+    /**
+     * 批量添加订单, 整批订单在下单队列中占用一段连续的位置并一次发布
+     * 任意一个订单校验失败则整批订单都不会被添加
+     *
+     * @param orders
+     *         订单列表
+     */
+    public void addOrders(Collection<Order> orders) {
+        List<Order> batch = new ArrayList<>(orders);
+        if (fixedPointArithmetic) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.get(i).isAddCmd()) {
+                    toFixedPoint(batch.get(i));
+                }
+            }
+        }
+        checkOpen();
+        // 先登记再入队
+        this.orderMgr.addOrders(batch);
+        try {
+            this.addOrderQueue.addAll(batch);
+        } catch (RuntimeException e) {
+            for (Order order : batch) {
+                if (order.isAddCmd()) {
+                    this.orderMgr.removeOrder(order);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 批量取消订单, 整批撤单指令在下单队列中占用一段连续的位置并一次发布
+     *
+     * @param orderIds
+     *         订单ID列表
+     *
+     * @return 与订单ID顺序一致的撤单结果
+     */
+    public List<CompletableFuture<CancelResult>> cancelOrders(Collection<String> orderIds) {
+        List<CompletableFuture<CancelResult>> results = new ArrayList<>(orderIds.size());
+        List<CancelCommand> batch = new ArrayList<>(orderIds.size());
+        for (String orderId : orderIds) {
+            if (orderId == null || orderId.isEmpty()) {
+                throw new TradeException("非法订单ID");
+            }
+        }
+        for (String orderId : orderIds) {
+            Order order = this.orderMgr.getOrder(orderId);
+            if (order == null) {
+                results.add(CompletableFuture.completedFuture(CancelResult.UNKNOWN));
+                continue;
+            }
+            CancelCommand cmd = new CancelCommand(order);
+            batch.add(cmd);
+            results.add(cmd.getResult());
+        }
+        if (!batch.isEmpty()) {
+            checkOpen();
+            this.addOrderQueue.addAll(batch);
+        }
+        return results;
+    }
+
+    /**
+     * 调整处理器个数, 指令经过下单队列排序后由入口线程执行, 只有所属处理器发生变化的交易对会被迁移
+     *
+     * @param numOfProcessors
+     *         处理器个数
+     */
+    public void resizeProcessors(int numOfProcessors) {
+        if (numOfProcessors < 1) {
+            throw new TradeException("处理器个数必须大于0");
+        }
+        // 不支持时直接拒绝, 否则异常会在入口线程中抛出
+        if (!scheduler.supportsResize()) {
+            throw new TradeException("调度器不支持调整处理器个数");
+        }
+        this.addOrderQueue.add(new ResizeCommand(numOfProcessors));
+    }
+
+    /**
+     * 订单转换为定点数, 精度不符合交易对精度的订单将被拒绝
+     *
+     * @param order
+     *         订单
+     */
+    private void toFixedPoint(Order order) {
+        SymbolScale scale = symbolScales.getOrDefault(order.getSymbol(), SymbolScale.DEFAULT);
+        scale.check(order);
+        try {
+            order.enableFixedPoint();
+        } catch (ArithmeticException e) {
+            throw new TradeException("订单无法转换为定点数: " + e.getMessage());
+        }
     }
 
     /**
      * 取消一个订单
+     * 撤单指令与下单指令一样经过入口队列排序, 由订单所属的处理器判断订单状态并完成撤单, 调用方线程不会加锁也不会修改订单
      *
      * @param orderId
      *         订单ID
+     *
+     * @return 撤单结果, 非异步的回调会在处理器线程中执行
      */
-    public void cancelOrder(String orderId) {
+    public CompletableFuture<CancelResult> cancelOrder(String orderId) {
         if (orderId == null || orderId.isEmpty()) {
             throw new TradeException("非法订单ID");
         }
         Order order = this.orderMgr.getOrder(orderId);
+        if (order == null) {
+            return CompletableFuture.completedFuture(CancelResult.UNKNOWN);
+        }
+        checkOpen();
+        CancelCommand cmd = new CancelCommand(order);
+        this.addOrderQueue.add(cmd);
+        return cmd.getResult();
+    }
 
-        if (order != null) {
-            synchronized (order.getId()) {
-                if (order.isMatching()) {
-                    throw new TradeException("订单已经匹配到订单, 正在结算中, 请勿撤单");
-                }
-                if (order.isCanceled()) {
-                    return;
-                }
+    /**
+     * 达到快照间隔后对所有账本进行快照, 只能在入口线程中调用
+     */
+    private void checkSnapshot() {
+        numOfCommandsSinceSnapshot++;
+        long now = System.currentTimeMillis();
+        if ((snapshotCommandCount > 0 && numOfCommandsSinceSnapshot >= snapshotCommandCount) ||
+                (snapshotIntervalMillis > 0 && now - lastSnapshotTime >= snapshotIntervalMillis)) {
+            scheduler.snapshot(snapshotStore, journal.sequence());
+            numOfCommandsSinceSnapshot = 0;
+            lastSnapshotTime = now;
+        }
+    }
 
-                if (order.isFinished()) {
-                    return;
-                }
+    /**
+     * 回放指令日志, 重建所有的账本
+     * 如果存在账本快照, 则先加载最新的快照, 然后只回放快照之后的指令.
+     * 必须在开启撮合之前调用, 回放的指令直接提交给调度器, 不会再次写入日志.
+     * 止盈止损订单由日志中的市价变动指令在原来的位置触发 (同步激活由成交触发, 使用相同的配置回放即可),
+     * 回放的成交产生的价格变动不会再次提交. 回放结束时所有的指令都已经处理完毕.
+     * 回放在入口线程中执行, 调用线程等待回放结束; 回放期间到达的指令暂存, 在回放之后按照原来的顺序处理.
+     * 注意: 回放时事件处理器会再次收到订单事件
+     *
+     * @return 最后一条回放的指令序号
+     */
+    public long replay() {
+        if (journal == null) {
+            return 0;
+        }
+        CompletableFuture<Long> request = new CompletableFuture<>();
+        synchronized (resumeMonitor) {
+            if (state != MatchingState.PAUSED) {
+                throw new TradeException("请在开启撮合之前回放指令日志");
+            }
+            if (replayRequest != null) {
+                throw new TradeException("指令日志正在回放");
+            }
+            replayRequest = request;
+            // 唤醒因为暂存缓冲区已满而等待恢复的入口线程
+            resumeMonitor.notifyAll();
+        }
+        // 入口线程可能正在等待新的指令; 队列已满时入口线程一定会处理到下一条指令, 不需要唤醒 (也不能阻塞)
+        addOrderQueue.offer(RESUME);
+        try {
+            return request.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 执行等待中的回放请求, 只能由入口线程调用
+     */
+    private void replayIfRequested() {
+        CompletableFuture<Long> request;
+        synchronized (resumeMonitor) {
+            request = replayRequest;
+            if (request == null) {
+                return;
+            }
+        }
+        long last = 0;
+        RuntimeException error = null;
+        try {
+            last = doReplay();
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        synchronized (resumeMonitor) {
+            replayRequest = null;
+        }
+        if (error != null) {
+            request.completeExceptionally(error);
+        } else {
+            request.complete(last);
+        }
+    }
 
-                if (order.isStopOrder()) {
-                    order.setActivated(ActivateStatus.ACTIVATED);
+    private long doReplay() {
+        try {
+            long from = 0;
+            if (snapshotStore != null) {
+                SnapshotStore.Snapshot snapshot = snapshotStore.loadLatest();
+                if (snapshot != null) {
+                    restore(snapshot);
+                    from = snapshot.getSequence();
                 }
+            }
+            replaying = true;
+            long last = journal.replay(from, this::replayCommand);
+            scheduler.awaitIdle();
+            // 回放的成交产生的价格变动可能还在合并窗口中, 推送 (并且被丢弃) 之后才能结束回放, 否则会再次写入指令日志
+            marketMgr.flush();
+            return last;
+        } catch (IOException e) {
+            throw new IllegalStateException("指令日志回放失败", e);
+        } finally {
+            replaying = false;
+        }
+    }
 
-                // 设置订单取消标记位
-                order.markCanceled();
+    /**
+     * 加载账本快照
+     *
+     * @param snapshot
+     *         快照
+     */
+    private void restore(SnapshotStore.Snapshot snapshot) {
+        for (SnapshotStore.BookState book : snapshot.getBooks()) {
+            for (Order order : book.getOrders()) {
+                restoreOrder(order);
+            }
+            for (Order order : book.getStopOrders()) {
+                restoreOrder(order);
+            }
+            scheduler.restore(book);
+        }
+    }
+
+    private void restoreOrder(Order order) {
+        if (fixedPointArithmetic) {
+            toFixedPoint(order);
+        }
+        this.orderMgr.addOrder(order);
+    }
 
-                // 添加进队列等待取消
-                order.setCmd(Cmd.CANCEL_ORDER);
-                this.addOrder(order);
+    /**
+     * 回放一条指令
+     *
+     * @param command
+     *         指令
+     */
+    private void replayCommand(Command command) {
+        if (command.getCmd() == Cmd.PRICE_CHANGE) {
+            scheduler.submit((PriceChangeCommand) command);
+            return;
+        }
+        Order cmd = (Order) command;
+        if (cmd.isAddCmd()) {
+            if (fixedPointArithmetic) {
+                toFixedPoint(cmd);
             }
+            this.orderMgr.addOrder(cmd);
+            scheduler.submit(cmd);
+            return;
         }
+
+        // 撤单由处理器按照指令顺序判断订单状态, 不需要等待
+        Order order = this.orderMgr.getOrder(cmd.getId());
+        if (order != null && cmd.isCancelCmd()) {
+            scheduler.submit(new CancelCommand(order));
+        }
+    }
+
+    /**
+     * 获取指令日志
+     *
+     * @return 指令日志, 没有配置日志目录时为 {@code null}
+     */
+    public CommandJournal getJournal() {
+        return this.journal;
     }
 
     /**
@@ -203,21 +714,43 @@ public class MatchEngine {
      * @return 是否正在撮合
      */
     public boolean isMatching() {
-        return this.isMatching;
+        return this.state == MatchingState.RUNNING;
     }
 
     /**
-     * 停止撮合
+     * 暂停撮合, 之后到达的指令暂存到溢出缓冲区, 缓冲区满后生产者阻塞
      */
     public void disableMatching() {
-        this.isMatching = false;
+        synchronized (resumeMonitor) {
+            if (state == MatchingState.RUNNING) {
+                state = MatchingState.PAUSED;
+            }
+        }
     }
 
     /**
-     * 开启撮合
+     * 开启撮合, 立即唤醒入口线程处理暂存的指令
      */
     public void enableMatching() {
-        this.isMatching = true;
+        resume(MatchingState.RUNNING);
+    }
+
+    /**
+     * 切换到非暂停状态并唤醒入口线程
+     *
+     * @param target
+     *         目标状态
+     */
+    private void resume(MatchingState target) {
+        synchronized (resumeMonitor) {
+            if (state == target || state == MatchingState.CLOSED) {
+                return;
+            }
+            state = target;
+            resumeMonitor.notifyAll();
+        }
+        // 入口线程可能正在等待新的指令, 放入一条恢复指令让其处理暂存的指令
+        addOrderQueue.add(RESUME);
     }
 
     /**
@@ -247,17 +780,27 @@ public class MatchEngine {
      * 撮合引擎销毁
      */
     public void shutdown() {
-        // 首先先停止入单
-        disableMatching();
+        // 首先先停止入单, 已经入队以及暂存的指令会被处理完
+        resume(MatchingState.CLOSED);
 
         // 等待剩余订单被处理
         addOrderQueue.shutdown();
         System.out.println("[MatchEngine]: add order queue shutdown finished!");
 
+        // 关闭指令日志
+        if (journal != null) {
+            journal.close();
+        }
+
         // 停止调度器
         scheduler.shutdownAndWait();
         System.out.println("[MatchEngine]: scheduler shutdown finished!");
 
+        // 等待快照写入完成
+        if (snapshotStore != null) {
+            snapshotStore.shutdownAndWait();
+        }
+
         // 停止消息推送
         marketMgr.shutdownAndWait();
         System.out.println("[MatchEngine]: market manager shutdown finished!");
@@ -5,9 +5,15 @@ import com.trader.core.Matcher;
 import com.trader.core.OrderRouter;
 import com.trader.core.Scheduler;
 import com.trader.core.exception.MatchExceptionHandler;
+import com.trader.core.support.journal.CommandJournal;
 import com.trader.market.publish.MarketPublishClient;
+import com.trader.market.publish.msg.WireFormat;
+import com.trader.utils.disruptor.QueueWaitStrategy;
 import lombok.Data;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * @author yjt
  * @since 2020/10/28 上午9:04
@@ -77,7 +83,9 @@ public class MatchEngineConfig {
     private int sizeOfPublishDataRingBuffer = 1 << 16;
 
     /**
-     * 推荐数据合并周期, 单位为毫秒
+     * 推送数据合并窗口, 单位为毫秒
+     * 一个交易对距离上一次推送超过该窗口时立即推送, 否则窗口内的变动合并成一条在窗口结束时推送,
+     * 为 0 时不按时间合并 (推送线程忙碌期间积压的数据依旧会被合并)
      */
     private long publishDataCompressCycle = 0;
 
@@ -112,4 +120,107 @@ public class MatchEngineConfig {
      * websocket 配置客户端端口
      */
     private int websocketConfigClientPort = 8087;
+
+    /**
+     * 是否开启定点数撮合, 开启后订单在下单入口处转换为定点数 (long), 撮合过程不再使用 BigDecimal 运算,
+     * 舍入规则与 BigDecimal 撮合完全一致. 订单的价格和数量精度不能超过交易对精度 {@link #symbolScales}
+     */
+    private boolean fixedPointArithmetic = false;
+
+    /**
+     * 交易对精度 (定点数撮合), key 为交易对 {@link com.trader.utils.SymbolUtils#makeSymbol(String, String)}
+     * 未配置的交易对使用 {@link SymbolScale#DEFAULT}
+     */
+    private Map<String, SymbolScale> symbolScales = new HashMap<>();
+
+    private String journalDir;
+
+    private int journalSegmentSize = CommandJournal.DEFAULT_SEGMENT_SIZE;
+
+    private String snapshotDir;
+
+    private long snapshotIntervalMillis = 60_000;
+
+    private int snapshotCommandCount = 1_000_000;
+
+    /**
+     * 是否推送增量盘口, 开启后盘口变动只推送发生变化的档位, 全量盘口只在连接建立或者下游请求时推送
+     * 下游需要支持 {@link com.trader.market.publish.msg.MessageType#DEPTH_DELTA}
+     */
+    private boolean publishDepthDelta = false;
+
+    /**
+     * 推送行情使用的二进制格式版本 {@link com.trader.market.publish.msg.WireFormat}, 默认为
+     * {@link com.trader.market.publish.msg.WireFormat#LEGACY} (数值为 double), 与未升级的下游兼容.
+     * 设置为 {@link com.trader.market.publish.msg.WireFormat#DECIMAL} 后数值无损传输, 但是消息类型字节的高位会发生变化,
+     * 旧版本的下游会把这些消息当作未知类型丢弃, 所以必须在所有下游都升级之后再开启
+     */
+    private int marketWireVersion = WireFormat.DEFAULT;
+
+    /**
+     * 暂停撮合期间入口线程最多暂存的指令个数, 暂存满后入口线程阻塞等待恢复撮合
+     * 暂存的指令不会占用下单队列, 所以暂停期间生产者不会因为下单队列满而阻塞
+     */
+    private int maxPausedCommands = 1 << 20;
+
+    /**
+     * 固定放置的交易对: 交易对 -> 处理器序号 [0, numberOfCores)
+     * 未指定的交易对按照一致性哈希分配处理器, 相同的处理器个数下分配结果总是相同的 (重启以及回放)
+     */
+    private Map<String, Integer> symbolPlacement;
+
+    /**
+     * 处理器负载均衡周期, 单位为毫秒, 小于等于0则不进行负载均衡
+     * 每个周期调度器会统计每个处理器的繁忙比例, 并将最忙的处理器中的一个交易对迁移到最空闲的处理器
+     */
+    private long rebalanceIntervalMillis = 0;
+
+    /**
+     * 触发交易对迁移的最小负载差, 即最忙的处理器与最空闲的处理器繁忙比例 (0 ~ 1) 之差
+     */
+    private double rebalanceThreshold = 0.3;
+
+    /**
+     * 订单结束 (完全成交或者撤销) 后在订单管理器中保留的时间, 单位为毫秒
+     * 保留期内的撤单请求依旧能够查询到订单, 保留期过后订单被回收, 为0则立即回收
+     */
+    private long orderRetentionMillis = 60_000;
+
+    /**
+     * 下单队列 (入口线程) 的等待策略
+     * 忙等 / 让步策略的延迟更低, 但是消费者线程会一直占用一个核心, 只建议用在延迟敏感的队列上
+     * {@link QueueWaitStrategy}
+     */
+    private QueueWaitStrategy ingressWaitStrategy = QueueWaitStrategy.BLOCKING;
+
+    /**
+     * 每个核心的命令缓冲队列 (撮合线程) 的等待策略
+     */
+    private QueueWaitStrategy processorWaitStrategy = QueueWaitStrategy.BLOCKING;
+
+    /**
+     * 撮合结果队列的等待策略
+     */
+    private QueueWaitStrategy tradeWaitStrategy = QueueWaitStrategy.BLOCKING;
+
+    /**
+     * 盘口变动队列 (多核心) 的等待策略
+     * 已经不再使用: 撮合线程直接写入支持多个生产者的合并缓冲区, 不再有盘口变动队列
+     */
+    @Deprecated
+    private QueueWaitStrategy depthWaitStrategy = QueueWaitStrategy.BLOCKING;
+
+    /**
+     * 价格变动队列 (多核心) 的等待策略
+     * 已经不再使用: 价格变动直接写入支持多个生产者的合并缓冲区, 不再有价格变动队列
+     */
+    @Deprecated
+    private QueueWaitStrategy priceWaitStrategy = QueueWaitStrategy.BLOCKING;
+
+    /**
+     * 是否同步激活止盈止损订单
+     * 默认只有市价变动事件 (经过推送数据合并线程) 才会触发止盈止损订单, 开启后每一笔成交都会立即使用成交价检查该账本的止盈止损订单,
+     * 被触发的订单在同一个处理周期内激活并撮合
+     */
+    private boolean synchronousStopActivation = false;
 }
@@ -0,0 +1,72 @@
+package com.trader.config;
+
+import com.trader.core.entity.Order;
+import com.trader.core.exception.TradeException;
+import com.trader.utils.FixedPointUtils;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 交易对精度 (定点数撮合模式)
+ * 价格和数量的小数位数不能超过 {@link FixedPointUtils#SCALE}
+ *
+ * @author yjt
+ * @since 2020/11/3 下午2:40
+ */
+@Data
+public class SymbolScale {
+
+    /**
+     * 默认精度
+     */
+    public static final SymbolScale DEFAULT = new SymbolScale(FixedPointUtils.SCALE, FixedPointUtils.SCALE);
+
+    /**
+     * 价格精度 (小数位数)
+     */
+    private final int priceScale;
+
+    /**
+     * 数量精度 (小数位数)
+     */
+    private final int quantityScale;
+
+    public SymbolScale(int priceScale, int quantityScale) {
+        if (priceScale < 0 || priceScale > FixedPointUtils.SCALE) {
+            throw new IllegalArgumentException("非法价格精度: " + priceScale);
+        }
+        if (quantityScale < 0 || quantityScale > FixedPointUtils.SCALE) {
+            throw new IllegalArgumentException("非法数量精度: " + quantityScale);
+        }
+        this.priceScale = priceScale;
+        this.quantityScale = quantityScale;
+    }
+
+    /**
+     * 校验订单的价格和数量精度
+     *
+     * @param order
+     *         订单
+     *
+     * @throws TradeException
+     *         如果精度不符合
+     */
+    public void check(Order order) {
+        checkScale("price", order.getPrice(), priceScale);
+        checkScale("triggerPrice", order.getTriggerPrice(), priceScale);
+        checkScale("quantity", order.getQuantity(), quantityScale);
+        checkScale("leavesQuantity", order.getLeavesQuantity(), quantityScale);
+        checkScale("totalAmount", order.getTotalAmount(), FixedPointUtils.SCALE);
+        checkScale("leavesAmount", order.getLeavesAmount(), FixedPointUtils.SCALE);
+    }
+
+    private static void checkScale(String name, BigDecimal v, int scale) {
+        if (v == null || v.signum() == 0) {
+            return;
+        }
+        if (v.stripTrailingZeros().scale() > scale || !FixedPointUtils.isExact(v)) {
+            throw new TradeException(String.format("非法订单精度: %s = %s, 最大精度: %d", name, v.toPlainString(), scale));
+        }
+    }
+}
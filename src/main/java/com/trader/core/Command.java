@@ -0,0 +1,22 @@
+package com.trader.core;
+
+import com.trader.core.def.Cmd;
+
+/**
+ * 处理器指令
+ * <p>
+ * 处理器的输入队列中除了订单 ({@link com.trader.core.entity.Order}) 之外,
+ * 还可能存在其他需要在处理器线程中按顺序执行的指令, 例如账本快照
+ *
+ * @author yjt
+ * @since 2020/11/9 上午10:05
+ */
+public interface Command {
+
+    /**
+     * 获取指令类型
+     *
+     * @return 指令类型
+     */
+    Cmd getCmd();
+}
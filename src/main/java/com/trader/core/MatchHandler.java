@@ -37,6 +37,20 @@ public interface MatchHandler {
     default void onAddOrder(Order newOrder) throws Exception {
     }
 
+    /**
+     * 添加订单事件, 上下文由处理器直接传入
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param newOrder
+     *         订单
+     *
+     * @throws Exception
+     */
+    default void onAddOrder(MatchingContext ctx, Order newOrder) throws Exception {
+        onAddOrder(newOrder);
+    }
+
     /**
      * 激活止盈止损订单事件
      *
@@ -48,6 +62,20 @@ public interface MatchHandler {
     default void onActiveStopOrder(Order stopOrder) throws Exception {
     }
 
+    /**
+     * 激活止盈止损订单事件, 上下文由处理器直接传入
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param stopOrder
+     *         止盈止损订单
+     *
+     * @throws Exception
+     */
+    default void onActiveStopOrder(MatchingContext ctx, Order stopOrder) throws Exception {
+        onActiveStopOrder(stopOrder);
+    }
+
 
     /**
      * 订单移除事件
@@ -65,6 +93,18 @@ public interface MatchHandler {
 
     }
 
+    /**
+     * 订单移除事件, 上下文由处理器直接传入
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param removed
+     *         已经被移除的事件
+     */
+    default void onOrderCancel(MatchingContext ctx, Order removed) {
+        onOrderCancel(removed);
+    }
+
 
     /**
      * 撮合订单事件
@@ -83,7 +123,36 @@ public interface MatchHandler {
     }
 
     /**
-     * 获取上下文
+     * 撮合订单事件, 上下文由处理器直接传入
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param order
+     *         订单
+     * @param opponentOrder
+     *         对手订单
+     * @param ts
+     *         撮合结果
+     *
+     * @throws Exception
+     *         如果发生异常
+     */
+    default void onExecuteOrder(MatchingContext ctx, Order order, Order opponentOrder, TradeResult ts) throws Exception {
+        onExecuteOrder(order, opponentOrder, ts);
+    }
+
+    /**
+     * 处理器处理完一批指令 (处理器队列暂时为空) 后调用
+     * 撮合过程中通过 {@link MatchingContext#deferDepth(com.trader.core.entity.OrderBook)} 延迟的副作用应该在这里一次性执行
+     *
+     * @param ctx
+     *         撮合上下文
+     */
+    default void onEndOfBatch(MatchingContext ctx) {
+    }
+
+    /**
+     * 获取上下文, 只用于兼容, 事件处理中应该使用处理器传入的上下文
      *
      * @return 上下文对象
      */
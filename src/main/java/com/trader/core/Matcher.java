@@ -2,6 +2,7 @@ package com.trader.core;
 
 import com.trader.core.context.MatchingContext;
 import com.trader.core.context.ThreadLocalMatchingContext;
+import com.trader.core.def.OrderType;
 import com.trader.core.entity.Order;
 import com.trader.core.matcher.TradeResult;
 import com.trader.utils.ThreadLocalUtils;
@@ -27,6 +28,38 @@ public interface Matcher {
      */
     boolean isSupport(Order order, Order opponentOrder);
 
+    /**
+     * 判断是否支持目标订单的匹配, 上下文由处理器直接传入
+     * 默认实现忽略上下文, 需要使用上下文的匹配器应该覆盖该方法
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param order
+     *         当前订单
+     * @param opponentOrder
+     *         对手订单
+     *
+     * @return 是否支持匹配
+     */
+    default boolean isSupport(MatchingContext ctx, Order order, Order opponentOrder) {
+        return isSupport(order, opponentOrder);
+    }
+
+    /**
+     * 判断是否支持该订单类型组合, 用于构建匹配器分派表 {@link com.trader.core.matcher.MatcherManager}
+     * 返回 false 表示该类型组合一定不会被当前匹配器处理, 默认支持所有组合
+     *
+     * @param type
+     *         当前订单类型
+     * @param opponentType
+     *         对手订单类型
+     *
+     * @return 是否支持
+     */
+    default boolean isSupport(OrderType type, OrderType opponentType) {
+        return true;
+    }
+
     /**
      * 进行撮合交易
      *
@@ -39,6 +72,22 @@ public interface Matcher {
      */
     TradeResult doTrade(Order order, Order opponentOrder);
 
+    /**
+     * 进行撮合交易, 上下文由处理器直接传入
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param order
+     *         当前订单
+     * @param opponentOrder
+     *         对手订单
+     *
+     * @return 交易结果
+     */
+    default TradeResult doTrade(MatchingContext ctx, Order order, Order opponentOrder) {
+        return doTrade(order, opponentOrder);
+    }
+
     /**
      * 目标订单是否已经结束
      *
@@ -52,7 +101,7 @@ public interface Matcher {
     }
 
     /**
-     * 获取上下文
+     * 获取上下文, 只用于兼容, 撮合过程中应该使用处理器传入的上下文
      *
      * @return 上下文对象
      */
@@ -1,6 +1,5 @@
 package com.trader.core;
 
-import com.trader.core.entity.Order;
 import com.trader.market.publish.msg.PriceChangeMessage;
 
 /**
@@ -10,18 +9,25 @@ import com.trader.market.publish.msg.PriceChangeMessage;
 public interface Processor {
 
     /**
-     * 执行订单
+     * 执行指令
      *
-     * @param order
-     *         订单
+     * @param command
+     *         指令 (订单或者其他需要在处理器线程中执行的指令)
      */
-    void exec(Order order);
+    void exec(Command command);
 
     /**
      * 市价价格变动
      */
     void execPriceChange(PriceChangeMessage msg);
 
+    /**
+     * 处理器是否空闲, 也就是已经提交的指令全部处理完毕
+     *
+     * @return 是否空闲
+     */
+    boolean isIdle();
+
     /**
      * 获取处理器名称
      *
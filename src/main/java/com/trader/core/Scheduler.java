@@ -1,6 +1,9 @@
 package com.trader.core;
 
 import com.trader.core.entity.Order;
+import com.trader.core.support.journal.SnapshotStore;
+import com.trader.core.support.processor.CancelCommand;
+import com.trader.core.support.processor.PriceChangeCommand;
 
 /**
  * 负责调度 {@link Processor}
@@ -17,6 +20,70 @@ public interface Scheduler {
      */
     void submit(Order order);
 
+    /**
+     * 提交撤单指令, 由订单所属的处理器完成撤单, 必须与 {@link #submit(Order)} 在同一个线程中调用
+     *
+     * @param cmd 撤单指令
+     */
+    void submit(CancelCommand cmd);
+
+    /**
+     * 提交市价变动指令, 由交易对所属的处理器触发止盈止损订单, 必须与 {@link #submit(Order)} 在同一个线程中调用
+     *
+     * @param cmd 市价变动指令
+     */
+    void submit(PriceChangeCommand cmd);
+
+    /**
+     * 将已经提交但是还在缓冲中的指令发送给处理器, 必须与 {@link #submit(Order)} 在同一个线程中调用
+     * 调度器可以将同一个处理器的指令合并后批量发送, 入口线程在每批指令结束后需要调用该方法
+     */
+    default void flush() {
+    }
+
+    /**
+     * 是否支持调整处理器个数 {@link #resize(int)}
+     *
+     * @return 是否支持
+     */
+    default boolean supportsResize() {
+        return false;
+    }
+
+    /**
+     * 调整处理器个数, 必须与 {@link #submit(Order)} 在同一个线程中调用
+     * 只有 {@link #supportsResize()} 返回 true 的调度器才会被调用
+     *
+     * @param numOfProcessors 处理器个数
+     */
+    default void resize(int numOfProcessors) {
+        throw new UnsupportedOperationException("resize");
+    }
+
+    /**
+     * 等待所有已经提交的订单处理完毕
+     */
+    void awaitIdle();
+
+    /**
+     * 对所有处理器的账本进行快照, 必须与 {@link #submit(Order)} 在同一个线程中调用,
+     * 这样每个处理器处理到快照指令时, 之前提交的指令都已经处理完毕
+     *
+     * @param store
+     *         快照存储
+     * @param sequence
+     *         当前的指令日志序号
+     */
+    void snapshot(SnapshotStore store, long sequence);
+
+    /**
+     * 将快照中的账本恢复到对应的处理器中, 只能在开始撮合之前调用
+     *
+     * @param book
+     *         账本快照
+     */
+    void restore(SnapshotStore.BookState book);
+
     /**
      * 调度器销毁
      */
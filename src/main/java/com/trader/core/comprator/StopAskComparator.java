@@ -21,7 +21,9 @@ public class StopAskComparator implements Comparator<Order> {
 
     static {
         DEFAULT = Comparator.comparing(Order::getTriggerPrice)
-                            .thenComparing(Order::getCreateDateTime);
+                            .thenComparing(Order::getCreateDateTime)
+                            // 触发价和时间相同的情况下按照订单ID区分, 保证订单不会被去重并且可以直接按照订单删除
+                            .thenComparing(Order::getId);
     }
 
     @Override
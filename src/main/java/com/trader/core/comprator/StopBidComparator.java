@@ -19,7 +19,9 @@ public class StopBidComparator implements Comparator<Order> {
 
     static {
         DEFAULT = Comparator.comparing(Order::getTriggerPrice).reversed()
-                            .thenComparing(Order::getCreateDateTime);
+                            .thenComparing(Order::getCreateDateTime)
+                            // 触发价和时间相同的情况下按照订单ID区分, 保证订单不会被去重并且可以直接按照订单删除
+                            .thenComparing(Order::getId);
     }
 
     @Override
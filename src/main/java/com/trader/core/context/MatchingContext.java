@@ -3,6 +3,11 @@ package com.trader.core.context;
 import com.trader.core.Matcher;
 import com.trader.core.entity.OrderBook;
 import com.trader.market.MarketManager;
+import com.trader.market.publish.msg.PriceChangeMessage;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * @author yjt
@@ -43,6 +48,25 @@ public interface MatchingContext {
      */
     <T> T getAttribute(String key);
 
+    /**
+     * 获取当前撮合使用的市场价 (由匹配器在判断是否支持撮合时写入)
+     *
+     * @return 市场价
+     */
+    default BigDecimal getMarketPrice() {
+        return getAttribute(ThreadLocalMatchingContext.NAME_OF_MARKET_PRICE);
+    }
+
+    /**
+     * 设置当前撮合使用的市场价
+     *
+     * @param marketPrice
+     *         市场价
+     */
+    default void setMarketPrice(BigDecimal marketPrice) {
+        setAttribute(ThreadLocalMatchingContext.NAME_OF_MARKET_PRICE, marketPrice);
+    }
+
     /**
      * 设置附加参数值
      *
@@ -52,4 +76,46 @@ public interface MatchingContext {
      *         value
      */
     void setAttribute(String key, Object value);
+
+    /**
+     * 延迟推送账本的盘口, 一批指令处理结束后每个账本只推送一次
+     *
+     * @param book
+     *         盘口发生变化的账本
+     *
+     * @return 是否已经延迟, 返回 false 则需要立即推送
+     */
+    default boolean deferDepth(OrderBook book) {
+        return false;
+    }
+
+    /**
+     * 延迟推送价格变动, 一批指令处理结束后每个交易对只推送最后一次价格
+     *
+     * @param msg
+     *         价格变动消息
+     *
+     * @return 是否已经延迟, 返回 false 则需要立即推送
+     */
+    default boolean deferPriceChange(PriceChangeMessage msg) {
+        return false;
+    }
+
+    /**
+     * 获取当前批次中盘口发生变化的账本
+     *
+     * @return 账本 (按照第一次变化的顺序)
+     */
+    default Collection<OrderBook> getDeferredDepthBooks() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 获取当前批次中延迟的价格变动
+     *
+     * @return 每个交易对最后一次价格变动
+     */
+    default Collection<PriceChangeMessage> getDeferredPriceChanges() {
+        return Collections.emptyList();
+    }
 }
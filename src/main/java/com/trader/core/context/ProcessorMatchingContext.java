@@ -0,0 +1,182 @@
+package com.trader.core.context;
+
+import com.trader.core.Matcher;
+import com.trader.core.entity.OrderBook;
+import com.trader.market.MarketManager;
+import com.trader.market.publish.msg.PriceChangeMessage;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 处理器持有的撮合上下文
+ * <p>
+ * 每一个处理器线程持有一个该对象, 撮合过程中只修改字段, 并且直接作为参数传递给
+ * {@link Matcher} 以及 {@link com.trader.core.MatchHandler}, 不需要每次都读写本地线程缓存.
+ * 处理器线程启动后会将该对象注册到本地线程缓存中 (只注册一次), 所以通过 ctx() 获取上下文的旧代码依旧可以使用
+ * <p>
+ * 盘口以及价格推送会延迟到一批指令处理结束 (处理器队列暂时为空) 后再执行, 见 {@link #clearDeferred()}
+ *
+ * @author yjt
+ * @since 2020/11/5 上午10:20
+ */
+public class ProcessorMatchingContext implements MatchingContext {
+
+    /**
+     * 市场管理器
+     */
+    private final MarketManager marketMgr;
+
+    /**
+     * 当前的账本
+     */
+    private OrderBook orderBook;
+
+    /**
+     * 当前的匹配器
+     */
+    private Matcher matcher;
+
+    /**
+     * 当前撮合使用的市场价
+     */
+    private BigDecimal marketPrice;
+
+    /**
+     * 附加参数, 只有用到的时候才创建
+     */
+    private Map<String, Object> attributes;
+
+    /**
+     * 当前批次中盘口发生变化的账本
+     */
+    private final List<OrderBook> depthBooks = new ArrayList<>();
+
+    /**
+     * 用于账本去重
+     */
+    private final Map<OrderBook, Boolean> depthBookSet = new IdentityHashMap<>();
+
+    /**
+     * 当前批次中每个交易对最后一次价格变动
+     */
+    private final Map<String, PriceChangeMessage> priceChanges = new LinkedHashMap<>();
+
+    public ProcessorMatchingContext(MarketManager marketMgr) {
+        this.marketMgr = marketMgr;
+    }
+
+    @Override
+    public MarketManager getMarketMgr() {
+        return marketMgr;
+    }
+
+    @Override
+    public OrderBook getOrderBook() {
+        return orderBook;
+    }
+
+    /**
+     * 设置当前的账本
+     *
+     * @param orderBook
+     *         账本
+     */
+    public void setOrderBook(OrderBook orderBook) {
+        this.orderBook = orderBook;
+    }
+
+    @Override
+    public Matcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * 设置当前的匹配器
+     *
+     * @param matcher
+     *         匹配器
+     */
+    public void setMatcher(Matcher matcher) {
+        this.matcher = matcher;
+    }
+
+    @Override
+    public BigDecimal getMarketPrice() {
+        return marketPrice;
+    }
+
+    @Override
+    public void setMarketPrice(BigDecimal marketPrice) {
+        this.marketPrice = marketPrice;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String key) {
+        if (attributes == null) {
+            return null;
+        }
+        return (T) attributes.get(key);
+    }
+
+    @Override
+    public void setAttribute(String key, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>(16);
+        }
+        attributes.put(key, value);
+    }
+
+    @Override
+    public boolean deferDepth(OrderBook book) {
+        if (depthBookSet.put(book, Boolean.TRUE) == null) {
+            depthBooks.add(book);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean deferPriceChange(PriceChangeMessage msg) {
+        priceChanges.put(msg.getSymbol(), msg);
+        return true;
+    }
+
+    @Override
+    public Collection<OrderBook> getDeferredDepthBooks() {
+        return depthBooks;
+    }
+
+    @Override
+    public Collection<PriceChangeMessage> getDeferredPriceChanges() {
+        return priceChanges.values();
+    }
+
+    /**
+     * 一批指令处理结束, 延迟的副作用执行完毕后清理
+     */
+    public void clearDeferred() {
+        if (!depthBooks.isEmpty()) {
+            depthBooks.clear();
+            depthBookSet.clear();
+        }
+        if (!priceChanges.isEmpty()) {
+            priceChanges.clear();
+        }
+    }
+
+    /**
+     * 一个订单处理结束后清理当前状态
+     */
+    public void reset() {
+        this.orderBook = null;
+        this.matcher = null;
+        this.marketPrice = null;
+    }
+}
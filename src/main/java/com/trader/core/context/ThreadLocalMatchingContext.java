@@ -41,6 +41,11 @@ public class ThreadLocalMatchingContext implements MatchingContext {
      */
     public static final String NAME_OF_MATCHER = "match.trade.matcher";
 
+    /**
+     * 当前市场价在本地线程缓存中的名称
+     */
+    public static final String NAME_OF_MARKET_PRICE = "match.trade.market.price";
+
     /**
      * 获取当前市场价
      *
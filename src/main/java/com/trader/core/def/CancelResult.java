@@ -0,0 +1,22 @@
+package com.trader.core.def;
+
+/**
+ * 撤单结果, 由订单所属的处理器决定
+ *
+ * @author yjt
+ * @since 2020/11/12 下午4:20
+ */
+public enum CancelResult {
+    /**
+     * 撤单成功 (或者订单之前已经被撤销)
+     */
+    CANCELED,
+    /**
+     * 订单已经完全成交, 无法撤销
+     */
+    ALREADY_FILLED,
+    /**
+     * 订单不存在 (未知订单或者已经被回收)
+     */
+    UNKNOWN
+}
@@ -23,5 +23,30 @@ public enum Cmd {
     /**
      * 激活订单命令
      */
-    ACTIVE_ORDER
+    ACTIVE_ORDER,
+
+    /**
+     * 账本快照命令
+     */
+    SNAPSHOT,
+
+    /**
+     * 交易对迁移命令
+     */
+    MIGRATE,
+
+    /**
+     * 市价变动命令
+     */
+    PRICE_CHANGE,
+
+    /**
+     * 调整处理器个数命令
+     */
+    RESIZE,
+
+    /**
+     * 恢复撮合命令, 唤醒入口线程处理暂停期间暂存的指令
+     */
+    RESUME
 }
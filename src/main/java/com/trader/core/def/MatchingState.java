@@ -0,0 +1,22 @@
+package com.trader.core.def;
+
+/**
+ * 撮合引擎入口的状态
+ *
+ * @author yjt
+ * @since 2020/11/13 下午3:30
+ */
+public enum MatchingState {
+    /**
+     * 暂停撮合, 入口线程将指令暂存到溢出缓冲区, 缓冲区满后阻塞等待恢复
+     */
+    PAUSED,
+    /**
+     * 正在撮合
+     */
+    RUNNING,
+    /**
+     * 已经关闭, 不再接收新的指令, 已经入队以及暂存的指令会被处理完
+     */
+    CLOSED
+}
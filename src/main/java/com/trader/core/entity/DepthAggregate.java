@@ -0,0 +1,114 @@
+package com.trader.core.entity;
+
+import com.trader.utils.FixedPointUtils;
+
+import java.math.BigDecimal;
+
+/**
+ * 盘口聚合数据 (已成交量 / 剩余量 / 总量)
+ * <p>
+ * 使用定点数 (精度为 {@link FixedPointUtils#SCALE}) 累加, 成交时更新聚合数据不需要创建对象.
+ * 无法用定点数表示的数值 (精度超过 8 位或者超出 long 的范围, 只会出现在非定点数撮合中) 以及累加溢出的部分
+ * 记录在 BigDecimal 中, 正常情况下为 null, 读取时两部分相加
+ *
+ * @author yjt
+ * @since 2020/11/17 上午10:00
+ */
+abstract class DepthAggregate {
+
+    /**
+     * 表示数值无法用定点数表示, 参考 {@link #toFixedOrNone(BigDecimal)}
+     */
+    static final long NONE = Long.MIN_VALUE;
+
+    private long executed;
+    private long leaves;
+    private long total;
+
+    private BigDecimal executedOverflow;
+    private BigDecimal leavesOverflow;
+    private BigDecimal totalOverflow;
+
+    /**
+     * 累加定点数
+     */
+    final void apply(long deltaExecuted, long deltaLeaves, long deltaTotal) {
+        try {
+            executed = Math.addExact(executed, deltaExecuted);
+        } catch (ArithmeticException e) {
+            executedOverflow = add(executedOverflow, FixedPointUtils.toDecimal(deltaExecuted));
+        }
+        try {
+            leaves = Math.addExact(leaves, deltaLeaves);
+        } catch (ArithmeticException e) {
+            leavesOverflow = add(leavesOverflow, FixedPointUtils.toDecimal(deltaLeaves));
+        }
+        try {
+            total = Math.addExact(total, deltaTotal);
+        } catch (ArithmeticException e) {
+            totalOverflow = add(totalOverflow, FixedPointUtils.toDecimal(deltaTotal));
+        }
+    }
+
+    /**
+     * 累加无法用定点数表示的数值, 参数可以为 null
+     */
+    final void applyOverflow(BigDecimal deltaExecuted, BigDecimal deltaLeaves, BigDecimal deltaTotal) {
+        executedOverflow = add(executedOverflow, deltaExecuted);
+        leavesOverflow = add(leavesOverflow, deltaLeaves);
+        totalOverflow = add(totalOverflow, deltaTotal);
+    }
+
+    public BigDecimal getExecuted() {
+        return toDecimal(executed, executedOverflow);
+    }
+
+    public BigDecimal getLeaves() {
+        return toDecimal(leaves, leavesOverflow);
+    }
+
+    public BigDecimal getTotal() {
+        return toDecimal(total, totalOverflow);
+    }
+
+    /**
+     * BigDecimal 转换为定点数, 不会丢失精度
+     *
+     * @param v
+     *         数值
+     *
+     * @return 定点数, 无法无损转换时返回 {@link #NONE}
+     */
+    static long toFixedOrNone(BigDecimal v) {
+        if (v.signum() == 0) {
+            return 0;
+        }
+        if (v.scale() > FixedPointUtils.SCALE && !FixedPointUtils.isExact(v)) {
+            return NONE;
+        }
+        try {
+            return FixedPointUtils.toFixed(v);
+        } catch (ArithmeticException e) {
+            return NONE;
+        }
+    }
+
+    static BigDecimal subtract(BigDecimal a, BigDecimal b) {
+        if (b == null) {
+            return a;
+        }
+        return a == null ? b.negate() : a.subtract(b);
+    }
+
+    private static BigDecimal add(BigDecimal a, BigDecimal b) {
+        if (b == null || b.signum() == 0) {
+            return a;
+        }
+        return a == null ? b : a.add(b);
+    }
+
+    private static BigDecimal toDecimal(long fixed, BigDecimal overflow) {
+        BigDecimal v = FixedPointUtils.toDecimal(fixed);
+        return overflow == null ? v : v.add(overflow);
+    }
+}
@@ -0,0 +1,134 @@
+package com.trader.core.entity;
+
+import com.trader.market.def.DepthLevel;
+import com.trader.market.entity.MarketDepthInfo;
+import com.trader.utils.MarketDepthUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * 多粒度深度阶梯
+ * <p>
+ * 为买盘或卖盘的每一种深度粒度 ({@link DepthLevel}) 维护一份合并后的档位数据,
+ * 价格档位创建时计算好它在每一种粒度下所属的合并档位, 之后档位数据的变化直接累加到合并档位中,
+ * 推送深度时只需要按顺序读取前 n 个合并档位, 不需要再进行分组, 排序以及字符串处理
+ *
+ * @author yjt
+ * @since 2020/11/4 下午2:15
+ */
+public class DepthLadder {
+
+    private static final DepthLevel[] STEPS = DepthLevel.values();
+
+    /**
+     * 每一种粒度: 合并价格 -> 合并档位
+     */
+    private final List<TreeMap<BigDecimal, Bucket>> ladders;
+
+    DepthLadder(Comparator<BigDecimal> priceOrder) {
+        // 合并价格与 MarketDepthUtils#fastRender 的分组规则一致 (BigDecimal#equals),
+        // 例如 2 与 2.0 属于不同的合并档位, 所以价格相同的情况下再按照精度区分
+        Comparator<BigDecimal> trxOrder = priceOrder.thenComparingInt(BigDecimal::scale);
+        this.ladders = new ArrayList<>(STEPS.length);
+        for (int i = 0; i < STEPS.length; i++) {
+            this.ladders.add(new TreeMap<>(trxOrder));
+        }
+    }
+
+    /**
+     * 价格档位加入阶梯
+     *
+     * @param price
+     *         档位价格
+     *
+     * @return 该档位在每一种粒度下所属的合并档位
+     */
+    Bucket[] attach(BigDecimal price) {
+        Bucket[] buckets = new Bucket[STEPS.length];
+        for (int i = 0; i < STEPS.length; i++) {
+            BigDecimal trx = MarketDepthUtils.calcTrx(price, STEPS[i]);
+            Bucket bucket = ladders.get(i).get(trx);
+            if (bucket == null) {
+                bucket = new Bucket(trx);
+                ladders.get(i).put(trx, bucket);
+            }
+            bucket.numOfLevels++;
+            buckets[i] = bucket;
+        }
+        return buckets;
+    }
+
+    /**
+     * 价格档位移出阶梯, 没有任何档位的合并档位将被移除
+     *
+     * @param buckets
+     *         该档位所属的合并档位
+     */
+    void detach(Bucket[] buckets) {
+        for (int i = 0; i < buckets.length; i++) {
+            Bucket bucket = buckets[i];
+            if (--bucket.numOfLevels == 0) {
+                ladders.get(i).remove(bucket.price);
+            }
+        }
+    }
+
+    /**
+     * 读取指定粒度的深度
+     *
+     * @param depth
+     *         深度粒度
+     * @param limit
+     *         总条数
+     *
+     * @return 深度数据 (价格优先)
+     */
+    public List<MarketDepthInfo> render(DepthLevel depth, int limit) {
+        TreeMap<BigDecimal, Bucket> ladder = ladders.get(depth.ordinal());
+        List<MarketDepthInfo> result = new ArrayList<>(Math.min(limit, ladder.size()));
+        for (Bucket bucket : ladder.values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            BigDecimal leaves = bucket.getLeaves();
+            if (!MarketDepthUtils.isVisible(leaves, bucket.price)) {
+                continue;
+            }
+            MarketDepthInfo info = new MarketDepthInfo();
+            info.setPrice(bucket.price);
+            info.setExecuted(bucket.getExecuted());
+            info.setLeaves(leaves);
+            info.setTotal(bucket.getTotal());
+            result.add(info);
+        }
+        return result;
+    }
+
+    /**
+     * 获取指定粒度的合并档位个数
+     *
+     * @param depth
+     *         深度粒度
+     *
+     * @return 合并档位个数
+     */
+    public int numOfBuckets(DepthLevel depth) {
+        return ladders.get(depth.ordinal()).size();
+    }
+
+    /**
+     * 合并档位
+     */
+    static final class Bucket extends DepthAggregate {
+        final BigDecimal price;
+        int numOfLevels;
+
+        Bucket(BigDecimal price) {
+            this.price = price;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.trader.core.entity;
 
+import com.trader.core.Command;
 import com.trader.core.def.*;
+import com.trader.utils.FixedPointUtils;
 import com.trader.utils.SymbolUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -18,7 +21,7 @@ import java.util.Objects;
  */
 @Getter
 @Setter
-public class Order {
+public class Order implements Command {
 
     /**
      * 指令
@@ -158,6 +161,75 @@ public class Order {
      */
     private long version;
 
+    /**
+     * 订单在买卖盘档位中的节点, 仅由撮合线程维护
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    PriceLevel.Node node;
+
+    /**
+     * 最高买入价或最低卖出价的缓存, 参考 {@link #getBoundPrice()}
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private BigDecimal boundPrice;
+
+    /**
+     * 是否使用定点数撮合, 参考 {@link #enableFixedPoint()}
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean fixedPoint = false;
+
+    /**
+     * 定点数: 最高买入价或最低卖出价 (非市价单), 参考 {@link #getBoundPrice()}
+     */
+    @Setter(AccessLevel.NONE)
+    private long fixedBoundPrice;
+
+    /**
+     * 定点数: 已经执行的数量
+     */
+    @Setter(AccessLevel.NONE)
+    private long fixedExecutedQuantity;
+
+    /**
+     * 定点数: 剩余数量
+     */
+    @Setter(AccessLevel.NONE)
+    private long fixedLeavesQuantity;
+
+    /**
+     * 定点数: 已经执行的金额
+     */
+    @Setter(AccessLevel.NONE)
+    private long fixedExecutedAmount;
+
+    /**
+     * 定点数: 剩余执行的金额
+     */
+    @Setter(AccessLevel.NONE)
+    private long fixedLeavesAmount;
+
+    /**
+     * 定点数: 剩余金额参与除法时的精度, 与 BigDecimal 剩余金额的精度保持一致
+     * 参考 {@link FixedPointUtils#divideScale(BigDecimal)}
+     */
+    @Setter(AccessLevel.NONE)
+    private int fixedAmountScale = FixedPointUtils.SCALE;
+
+    /**
+     * 定点数中尚未同步到 BigDecimal 的字段
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int fixedDirty;
+
+    private static final int DIRTY_EXECUTED_QUANTITY = 1;
+    private static final int DIRTY_LEAVES_QUANTITY = 1 << 1;
+    private static final int DIRTY_EXECUTED_AMOUNT = 1 << 2;
+    private static final int DIRTY_LEAVES_AMOUNT = 1 << 3;
+
 
     public boolean isBuy() {
         return OrderSide.BUY.equals(side);
@@ -207,17 +279,43 @@ public class Order {
             throw new IllegalArgumentException("订单为市价单,不存在上届下限的价格");
         }
 
+        // 价格, 上下界以及方向在撮合过程中不会改变, 所以只需要计算一次
+        if (boundPrice != null) {
+            return boundPrice;
+        }
+
         //
         // 买入订单是上界
         // 卖出订单是下限
         //
         if (this.isBuy()) {
-            return price.add(price.multiply(this.priceUpperBound))
-                        .setScale(8, RoundingMode.DOWN);
+            boundPrice = price.add(price.multiply(this.priceUpperBound))
+                              .setScale(8, RoundingMode.DOWN);
         } else {
-            return price.subtract(price.multiply(this.priceLowerBound))
-                        .setScale(8, RoundingMode.DOWN);
+            boundPrice = price.subtract(price.multiply(this.priceLowerBound))
+                              .setScale(8, RoundingMode.DOWN);
         }
+        return boundPrice;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+        this.boundPrice = null;
+    }
+
+    public void setPriceUpperBound(BigDecimal priceUpperBound) {
+        this.priceUpperBound = priceUpperBound;
+        this.boundPrice = null;
+    }
+
+    public void setPriceLowerBound(BigDecimal priceLowerBound) {
+        this.priceLowerBound = priceLowerBound;
+        this.boundPrice = null;
+    }
+
+    public void setSide(OrderSide side) {
+        this.side = side;
+        this.boundPrice = null;
     }
 
     /**
@@ -239,25 +337,151 @@ public class Order {
     }
 
     public BigDecimal decLeavesQuality(BigDecimal q) {
+        if (fixedPoint) {
+            decFixedLeavesQuantity(FixedPointUtils.toFixed(q));
+            return getLeavesQuantity();
+        }
         this.leavesQuantity = leavesQuantity.subtract(q);
         return this.leavesQuantity;
     }
 
     public BigDecimal incExecutedQuality(BigDecimal q) {
+        if (fixedPoint) {
+            incFixedExecutedQuantity(FixedPointUtils.toFixed(q));
+            return getExecutedQuantity();
+        }
         this.executedQuantity = executedQuantity.add(q);
         return this.executedQuantity;
     }
 
     public BigDecimal decLeavesAmount(BigDecimal q) {
+        if (fixedPoint) {
+            decFixedLeavesAmount(FixedPointUtils.toFixed(q));
+            return getLeavesAmount();
+        }
         this.leavesAmount = leavesAmount.subtract(q);
         return this.leavesAmount;
     }
 
     public BigDecimal incExecutedAmount(BigDecimal q) {
+        if (fixedPoint) {
+            incFixedExecutedAmount(FixedPointUtils.toFixed(q));
+            return getExecutedAmount();
+        }
         this.executedAmount = executedAmount.add(q);
         return this.executedAmount;
     }
 
+    /**
+     * 开启定点数撮合, 由撮合引擎在下单入口处调用, 订单的价格和数量必须能够无损转换为定点数
+     * 开启后撮合过程只修改定点数字段, BigDecimal 字段在读取时才会进行转换
+     *
+     * @throws ArithmeticException
+     *         如果订单数据无法无损转换为定点数
+     */
+    public void enableFixedPoint() {
+        if (fixedPoint) {
+            return;
+        }
+        if (!isMarketOrder()) {
+            this.fixedBoundPrice = FixedPointUtils.toFixed(getBoundPrice());
+        }
+        this.fixedExecutedQuantity = FixedPointUtils.toFixed(executedQuantity);
+        this.fixedLeavesQuantity = FixedPointUtils.toFixed(leavesQuantity);
+        this.fixedExecutedAmount = FixedPointUtils.toFixed(executedAmount);
+        this.fixedLeavesAmount = FixedPointUtils.toFixed(leavesAmount);
+        this.fixedAmountScale = FixedPointUtils.divideScale(leavesAmount);
+        this.fixedDirty = 0;
+        this.fixedPoint = true;
+    }
+
+    public void decFixedLeavesQuantity(long q) {
+        this.fixedLeavesQuantity -= q;
+        this.fixedDirty |= DIRTY_LEAVES_QUANTITY;
+    }
+
+    public void incFixedExecutedQuantity(long q) {
+        this.fixedExecutedQuantity += q;
+        this.fixedDirty |= DIRTY_EXECUTED_QUANTITY;
+    }
+
+    public void decFixedLeavesAmount(long q) {
+        this.fixedLeavesAmount -= q;
+        // 成交金额的精度均为 8 位, 与 BigDecimal 相减后精度变为 8 位
+        this.fixedAmountScale = FixedPointUtils.SCALE;
+        this.fixedDirty |= DIRTY_LEAVES_AMOUNT;
+    }
+
+    public void incFixedExecutedAmount(long q) {
+        this.fixedExecutedAmount += q;
+        this.fixedDirty |= DIRTY_EXECUTED_AMOUNT;
+    }
+
+    public BigDecimal getExecutedQuantity() {
+        if ((fixedDirty & DIRTY_EXECUTED_QUANTITY) != 0) {
+            this.executedQuantity = FixedPointUtils.toDecimal(fixedExecutedQuantity);
+            this.fixedDirty &= ~DIRTY_EXECUTED_QUANTITY;
+        }
+        return executedQuantity;
+    }
+
+    public BigDecimal getLeavesQuantity() {
+        if ((fixedDirty & DIRTY_LEAVES_QUANTITY) != 0) {
+            this.leavesQuantity = FixedPointUtils.toDecimal(fixedLeavesQuantity);
+            this.fixedDirty &= ~DIRTY_LEAVES_QUANTITY;
+        }
+        return leavesQuantity;
+    }
+
+    public BigDecimal getExecutedAmount() {
+        if ((fixedDirty & DIRTY_EXECUTED_AMOUNT) != 0) {
+            this.executedAmount = FixedPointUtils.toDecimal(fixedExecutedAmount);
+            this.fixedDirty &= ~DIRTY_EXECUTED_AMOUNT;
+        }
+        return executedAmount;
+    }
+
+    public BigDecimal getLeavesAmount() {
+        if ((fixedDirty & DIRTY_LEAVES_AMOUNT) != 0) {
+            this.leavesAmount = FixedPointUtils.toDecimal(fixedLeavesAmount);
+            this.fixedDirty &= ~DIRTY_LEAVES_AMOUNT;
+        }
+        return leavesAmount;
+    }
+
+    public void setExecutedQuantity(BigDecimal executedQuantity) {
+        this.executedQuantity = executedQuantity;
+        if (fixedPoint) {
+            this.fixedExecutedQuantity = FixedPointUtils.toFixed(executedQuantity);
+            this.fixedDirty &= ~DIRTY_EXECUTED_QUANTITY;
+        }
+    }
+
+    public void setLeavesQuantity(BigDecimal leavesQuantity) {
+        this.leavesQuantity = leavesQuantity;
+        if (fixedPoint) {
+            this.fixedLeavesQuantity = FixedPointUtils.toFixed(leavesQuantity);
+            this.fixedDirty &= ~DIRTY_LEAVES_QUANTITY;
+        }
+    }
+
+    public void setExecutedAmount(BigDecimal executedAmount) {
+        this.executedAmount = executedAmount;
+        if (fixedPoint) {
+            this.fixedExecutedAmount = FixedPointUtils.toFixed(executedAmount);
+            this.fixedDirty &= ~DIRTY_EXECUTED_AMOUNT;
+        }
+    }
+
+    public void setLeavesAmount(BigDecimal leavesAmount) {
+        this.leavesAmount = leavesAmount;
+        if (fixedPoint) {
+            this.fixedLeavesAmount = FixedPointUtils.toFixed(leavesAmount);
+            this.fixedAmountScale = FixedPointUtils.divideScale(leavesAmount);
+            this.fixedDirty &= ~DIRTY_LEAVES_AMOUNT;
+        }
+    }
+
     public boolean isAddCmd() {
         return Cmd.ADD_ORDER.equals(this.cmd);
     }
@@ -286,6 +510,11 @@ public class Order {
         this.finished = true;
     }
 
+    /**
+     * 标记订单已经取消
+     * 注意: 该方法可能由撮合线程以外的线程调用, 所以不会刷新档位数据,
+     * 档位数据会在订单移出买卖盘时扣除
+     */
     public void markCanceled() {
         this.canceled = true;
     }
@@ -350,6 +579,7 @@ public class Order {
 
 
         order.side = side;
+        order.boundPrice = boundPrice;
         order.type = type;
         order.timeInForce = timeInForce;
         order.version = version;
@@ -358,6 +588,15 @@ public class Order {
         order.finished = finished;
         order.canceled = canceled;
         order.matching = matching;
+
+        order.fixedPoint = fixedPoint;
+        order.fixedBoundPrice = fixedBoundPrice;
+        order.fixedExecutedQuantity = fixedExecutedQuantity;
+        order.fixedLeavesQuantity = fixedLeavesQuantity;
+        order.fixedExecutedAmount = fixedExecutedAmount;
+        order.fixedLeavesAmount = fixedLeavesAmount;
+        order.fixedAmountScale = fixedAmountScale;
+        order.fixedDirty = fixedDirty;
         return order;
     }
 
@@ -390,6 +629,7 @@ public class Order {
         this.differencePriceStrategy = o.differencePriceStrategy;
 
         this.side = o.side;
+        this.boundPrice = o.boundPrice;
         this.type = o.type;
         this.timeInForce = o.timeInForce;
         this.version = o.version;
@@ -398,6 +638,75 @@ public class Order {
         this.finished = o.finished;
         this.canceled = o.canceled;
         this.matching = o.matching;
+
+        this.fixedPoint = o.fixedPoint;
+        this.fixedBoundPrice = o.fixedBoundPrice;
+        this.fixedExecutedQuantity = o.fixedExecutedQuantity;
+        this.fixedLeavesQuantity = o.fixedLeavesQuantity;
+        this.fixedExecutedAmount = o.fixedExecutedAmount;
+        this.fixedLeavesAmount = o.fixedLeavesAmount;
+        this.fixedAmountScale = o.fixedAmountScale;
+        this.fixedDirty = o.fixedDirty;
+    }
+
+    /**
+     * 记录撮合过程中会发生变化的字段, 参考 {@link OrderUndoLog}
+     *
+     * @param entry
+     *         记录槽位
+     */
+    void saveTo(OrderUndoLog.Entry entry) {
+        entry.target = this;
+        entry.executedQuantity = this.executedQuantity;
+        entry.leavesQuantity = this.leavesQuantity;
+        entry.executedAmount = this.executedAmount;
+        entry.leavesAmount = this.leavesAmount;
+        entry.fixedExecutedQuantity = this.fixedExecutedQuantity;
+        entry.fixedLeavesQuantity = this.fixedLeavesQuantity;
+        entry.fixedExecutedAmount = this.fixedExecutedAmount;
+        entry.fixedLeavesAmount = this.fixedLeavesAmount;
+        entry.fixedAmountScale = this.fixedAmountScale;
+        entry.fixedDirty = this.fixedDirty;
+        entry.activated = this.activated;
+        entry.finished = this.finished;
+        entry.canceled = this.canceled;
+        entry.matching = this.matching;
+        entry.version = this.version;
+    }
+
+    /**
+     * 从记录中恢复撮合过程中发生变化的字段, 参考 {@link OrderUndoLog}
+     *
+     * @param entry
+     *         记录槽位
+     */
+    void restoreFrom(OrderUndoLog.Entry entry) {
+        this.executedQuantity = entry.executedQuantity;
+        this.leavesQuantity = entry.leavesQuantity;
+        this.executedAmount = entry.executedAmount;
+        this.leavesAmount = entry.leavesAmount;
+        this.fixedExecutedQuantity = entry.fixedExecutedQuantity;
+        this.fixedLeavesQuantity = entry.fixedLeavesQuantity;
+        this.fixedExecutedAmount = entry.fixedExecutedAmount;
+        this.fixedLeavesAmount = entry.fixedLeavesAmount;
+        this.fixedAmountScale = entry.fixedAmountScale;
+        this.fixedDirty = entry.fixedDirty;
+        this.activated = entry.activated;
+        this.finished = entry.finished;
+        this.canceled = entry.canceled;
+        this.matching = entry.matching;
+        this.version = entry.version;
+    }
+
+    /**
+     * 订单数据发生变化后刷新所在档位的聚合数据, 只能由撮合线程调用
+     * 修改成交数据以及状态的方法 (例如 {@link #decLeavesQuality(BigDecimal)}, {@link #markFinished()}) 不会刷新档位,
+     * 一次成交会修改多个字段, 撮合线程在这一次成交处理完毕后调用一次即可
+     */
+    public void refreshDepth() {
+        if (this.node != null) {
+            this.node.refresh();
+        }
     }
 
     @Override
@@ -415,11 +724,11 @@ public class Order {
                 ", priceLowerBound=" + priceLowerBound +
                 ", triggerPrice=" + triggerPrice +
                 ", quantity=" + quantity +
-                ", executedQuantity=" + executedQuantity +
-                ", leavesQuantity=" + leavesQuantity +
+                ", executedQuantity=" + getExecutedQuantity() +
+                ", leavesQuantity=" + getLeavesQuantity() +
                 ", totalAmount=" + totalAmount +
-                ", executedAmount=" + executedAmount +
-                ", leavesAmount=" + leavesAmount +
+                ", executedAmount=" + getExecutedAmount() +
+                ", leavesAmount=" + getLeavesAmount() +
                 ", timeInForce=" + timeInForce +
                 ", createDateTime=" + createDateTime +
                 ", activated=" + activated +
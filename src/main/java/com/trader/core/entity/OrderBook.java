@@ -1,23 +1,15 @@
 package com.trader.core.entity;
 
-import com.trader.core.comprator.AskComparator;
-import com.trader.core.comprator.BidComparator;
-import com.trader.core.comprator.StopAskComparator;
-import com.trader.core.comprator.StopBidComparator;
-import com.trader.core.def.OrderType;
+import com.trader.core.def.OrderSide;
 import com.trader.market.def.DepthLevel;
 import com.trader.market.entity.MarketDepthChart;
 import com.trader.market.entity.MarketDepthChartSeries;
-import com.trader.market.entity.MarketDepthInfo;
-import com.trader.utils.MarketDepthUtils;
 import lombok.Data;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
 import java.util.Objects;
-import java.util.TreeSet;
 
 
 /**
@@ -38,24 +30,24 @@ public class OrderBook {
     private String symbolId;
 
     /**
-     * 买入订单
+     * 买入订单 (按价格档位聚合)
      */
-    private TreeSet<Order> bidOrders = new TreeSet<>(BidComparator.getInstance());
+    private OrderBookSide bidOrders = new OrderBookSide(OrderSide.BUY);
 
     /**
-     * 卖出订单
+     * 卖出订单 (按价格档位聚合)
      */
-    private TreeSet<Order> askOrders = new TreeSet<>(AskComparator.getInstance());
+    private OrderBookSide askOrders = new OrderBookSide(OrderSide.SELL);
 
     /**
-     * 止盈止损 (买入)
+     * 止盈止损 (买入), 按照触发价索引
      */
-    private TreeSet<Order> buyStopOrders = new TreeSet<>(StopBidComparator.getInstance());
+    private StopOrderIndex buyStopOrders = new StopOrderIndex(OrderSide.BUY);
 
     /**
-     * 止盈止损 (卖出)
+     * 止盈止损 (卖出), 按照触发价索引
      */
-    private TreeSet<Order> sellStopOrders = new TreeSet<>(StopAskComparator.getInstance());
+    private StopOrderIndex sellStopOrders = new StopOrderIndex(OrderSide.SELL);
 
     /**
      * 最后一条成交价
@@ -124,19 +116,17 @@ public class OrderBook {
     }
 
     /**
-     * 从账本移除一个订单
+     * 从账本移除一个订单, 通过订单ID索引定位, 时间复杂度与盘口深度无关
      *
      * @param o
      *         需要移除的订单
      */
     public void removeOrder(Order o) {
-        TreeSet<Order> orders = null;
         if (o.isBuy()) {
-            orders = bidOrders;
+            bidOrders.remove(o.getId());
         } else {
-            orders = askOrders;
+            askOrders.remove(o.getId());
         }
-        orders.removeIf(v -> v.getId().equals(o.getId()));
     }
 
     /**
@@ -147,19 +137,49 @@ public class OrderBook {
      */
     public void removeWaitActiveStopOrder(Order stopOrder) {
         if (stopOrder.isStopOrder()) {
-            TreeSet<Order> orders = null;
-
             if (stopOrder.isBuy()) {
-                orders = buyStopOrders;
+                buyStopOrders.remove(stopOrder);
             } else {
-                orders = sellStopOrders;
+                sellStopOrders.remove(stopOrder);
             }
-            orders.removeIf(v -> v.getId().equals(stopOrder.getId()));
         }
     }
 
+    /**
+     * 截取并移除所有被最新价穿越的待激活止盈止损订单
+     *
+     * @param price
+     *         最新价
+     * @param out
+     *         被触发的订单, 买入在前, 卖出在后, 各自按照激活优先级排序
+     *
+     * @return 被触发的订单数量
+     */
+    public int triggerStopOrders(BigDecimal price, Collection<Order> out) {
+        return buyStopOrders.trigger(price, out) + sellStopOrders.trigger(price, out);
+    }
+
+    /**
+     * 获取买一档位
+     *
+     * @return 买一档位 or null
+     */
+    public PriceLevel bestBid() {
+        return bidOrders.bestLevel();
+    }
+
+    /**
+     * 获取卖一档位
+     *
+     * @return 卖一档位 or null
+     */
+    public PriceLevel bestAsk() {
+        return askOrders.bestLevel();
+    }
+
     /**
      * 快照买卖盘 （全部深度）
+     * 直接读取买卖盘维护的多粒度深度阶梯 {@link DepthLadder}, 每一种粒度只需要读取前 limit 个合并档位
      *
      * @param limit
      *         大小
@@ -172,67 +192,15 @@ public class OrderBook {
         series.setSymbol(this.symbolId);
         series.setSeries(new ArrayList<>(levels.length));
 
-        // 买盘
-        List<MarketDepthInfo> bids = new ArrayList<>(bidOrders.size());
-
-        // 卖盘
-        List<MarketDepthInfo> asks = new ArrayList<>(askOrders.size());
-
-        // 获取买卖盘
-        for (Order bid : this.bidOrders) {
-            // 忽略市价订单
-            if (bid.isFinished() || bid.isCanceled() ||
-                    OrderType.MARKET.equals(bid.getType()) ||
-                    bid.getLeavesAmount().compareTo(BigDecimal.ZERO) == 0) {
-                continue;
-            }
-            MarketDepthInfo dep = new MarketDepthInfo();
-            // 已经成交量
-            dep.setExecuted(bid.getExecutedQuantity());
-
-            // 总量 = 总金额 / 单价
-            dep.setTotal(bid.getTotalAmount().divide(bid.getPrice(), RoundingMode.DOWN));
-
-            // 单价
-            dep.setPrice(bid.getPrice());
-
-            // 剩余量 = 剩余金额 / 单价
-            dep.setLeaves(bid.getLeavesAmount().divide(bid.getPrice(), RoundingMode.DOWN));
-            bids.add(dep);
-        }
-
-        for (Order ask : this.askOrders) {
-            // 忽略市价订单
-            if (ask.isFinished() || ask.isCanceled() ||
-                    OrderType.MARKET.equals(ask.getType()) ||
-                    ask.getLeavesQuantity().compareTo(BigDecimal.ZERO) == 0) {
-                continue;
-            }
-
-            MarketDepthInfo dep = new MarketDepthInfo();
-
-            // 成交量
-            dep.setExecuted(ask.getExecutedQuantity());
-
-            // 总数量
-            dep.setTotal(ask.getQuantity());
-
-            // 单价
-            dep.setPrice(ask.getPrice());
-
-            // 剩余量
-            dep.setLeaves(ask.getLeavesQuantity());
-            asks.add(dep);
-        }
         for (DepthLevel depth : levels) {
             MarketDepthChart chart = new MarketDepthChart();
             chart.setDepth(depth);
 
             // 卖单升序
-            chart.setAsks(MarketDepthUtils.fastRender(asks, depth, limit, MarketDepthInfo::compareTo));
+            chart.setAsks(askOrders.ladder().render(depth, limit));
 
             // 买单降序
-            chart.setBids(MarketDepthUtils.fastRender(bids, depth, limit, MarketDepthInfo::reverseCompare));
+            chart.setBids(bidOrders.ladder().render(depth, limit));
             series.getSeries().add(chart);
         }
         return series;
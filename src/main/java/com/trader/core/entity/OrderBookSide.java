@@ -0,0 +1,311 @@
+package com.trader.core.entity;
+
+import com.trader.core.def.OrderSide;
+
+import java.math.BigDecimal;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 买卖盘的一侧 (买盘或卖盘), 由价格档位组成
+ * <p>
+ * 遍历顺序与 {@link com.trader.core.comprator.BidComparator} / {@link com.trader.core.comprator.AskComparator} 一致:
+ * + 市价单优先
+ * + 价格优先 (买盘价格高的优先, 卖盘价格低的优先)
+ * + 同等价格下时间优先
+ *
+ * @author yjt
+ * @since 2020/11/2 上午9:40
+ */
+public class OrderBookSide extends AbstractCollection<Order> {
+
+    /**
+     * 买盘或卖盘
+     */
+    private final OrderSide side;
+
+    /**
+     * 档位价格排序规则
+     */
+    private final Comparator<BigDecimal> priceOrder;
+
+    /**
+     * 价格 -> 档位
+     */
+    private final TreeMap<BigDecimal, PriceLevel> levels;
+
+    /**
+     * 市价单档位, 市价单优先于所有限价档位
+     */
+    private final PriceLevel marketLevel = new PriceLevel(BigDecimal.ZERO);
+
+    /**
+     * 订单ID -> 档位节点, 用于 O(1) 撤单
+     */
+    private final Map<String, PriceLevel.Node> index = new HashMap<>(64);
+
+    /**
+     * 多粒度深度阶梯
+     */
+    private final DepthLadder ladder;
+
+    /**
+     * 最优档位 (不包含市价单)
+     */
+    private PriceLevel bestLevel;
+
+    /**
+     * 订单总数
+     */
+    private int size;
+
+    public OrderBookSide(OrderSide side) {
+        this.side = Objects.requireNonNull(side);
+        // 买盘价格高的优先, 卖盘价格低的优先
+        if (OrderSide.BUY.equals(side)) {
+            this.priceOrder = Comparator.reverseOrder();
+        } else {
+            this.priceOrder = Comparator.naturalOrder();
+        }
+        this.levels = new TreeMap<>(priceOrder);
+        this.ladder = new DepthLadder(priceOrder);
+    }
+
+    /**
+     * 添加订单
+     *
+     * @param order
+     *         订单
+     *
+     * @return 如果订单 (或相同ID的订单) 已经在盘口中则返回 false
+     */
+    @Override
+    public boolean add(Order order) {
+        Objects.requireNonNull(order, "order is null");
+        if (order.node != null || index.containsKey(order.getId())) {
+            return false;
+        }
+
+        PriceLevel level;
+        if (order.isMarketOrder()) {
+            level = marketLevel;
+        } else {
+            level = levels.get(order.getPrice());
+            if (level == null) {
+                level = new PriceLevel(order.getPrice());
+                level.buckets = ladder.attach(order.getPrice());
+                levels.put(order.getPrice(), level);
+                if (bestLevel == null || priceOrder.compare(order.getPrice(), bestLevel.getPrice()) < 0) {
+                    bestLevel = level;
+                }
+            }
+        }
+        index.put(order.getId(), level.add(order));
+        size++;
+        return true;
+    }
+
+    /**
+     * 根据订单ID移除一个订单
+     *
+     * @param o
+     *         订单
+     *
+     * @return 是否移除成功
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Order)) {
+            return false;
+        }
+        return remove(((Order) o).getId()) != null;
+    }
+
+    /**
+     * 根据订单ID移除一个订单
+     *
+     * @param orderId
+     *         订单ID
+     *
+     * @return 被移除的订单 or null
+     */
+    public Order remove(String orderId) {
+        PriceLevel.Node node = index.get(orderId);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.order;
+    }
+
+    /**
+     * 根据订单ID查询订单
+     *
+     * @param orderId
+     *         订单ID
+     *
+     * @return 订单 or null
+     */
+    public Order get(String orderId) {
+        PriceLevel.Node node = index.get(orderId);
+        return node == null ? null : node.order;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Order && index.containsKey(((Order) o).getId());
+    }
+
+    /**
+     * 从盘口中移除一个节点, 如果档位为空则同时移除档位
+     *
+     * @param node
+     *         节点
+     */
+    void unlink(PriceLevel.Node node) {
+        PriceLevel level = node.level;
+        level.unlink(node);
+        index.remove(node.order.getId());
+        size--;
+
+        if (level.isEmpty() && level != marketLevel) {
+            levels.remove(level.getPrice());
+            ladder.detach(level.buckets);
+            if (level == bestLevel) {
+                Map.Entry<BigDecimal, PriceLevel> first = levels.firstEntry();
+                bestLevel = first == null ? null : first.getValue();
+            }
+        }
+    }
+
+    /**
+     * 获取最优档位 (买一或卖一), 不包含市价单
+     *
+     * @return 最优档位 or null
+     */
+    public PriceLevel bestLevel() {
+        return bestLevel;
+    }
+
+    /**
+     * 获取最优订单, 包含市价单
+     *
+     * @return 最优订单 or null
+     */
+    public Order bestOrder() {
+        if (!marketLevel.isEmpty()) {
+            return marketLevel.peek();
+        }
+        return bestLevel == null ? null : bestLevel.peek();
+    }
+
+    /**
+     * 获取价格档位, 按照价格优先排序
+     *
+     * @return 档位集合 (只读)
+     */
+    public Collection<PriceLevel> levels() {
+        return Collections.unmodifiableCollection(levels.values());
+    }
+
+    /**
+     * 获取多粒度深度阶梯
+     *
+     * @return 深度阶梯
+     */
+    public DepthLadder ladder() {
+        return ladder;
+    }
+
+    /**
+     * 获取档位个数
+     *
+     * @return 档位个数
+     */
+    public int numOfLevels() {
+        return levels.size();
+    }
+
+    public OrderSide getSide() {
+        return side;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按照撮合优先级遍历订单, 支持在遍历过程中移除订单
+     *
+     * @return 迭代器
+     */
+    @Override
+    public Iterator<Order> iterator() {
+        return new SideIterator();
+    }
+
+    /**
+     * 档位迭代器
+     * 档位之间通过 {@link TreeMap#higherEntry} 进行跳转, 所以在遍历期间移除档位是安全的
+     */
+    private final class SideIterator implements Iterator<Order> {
+        private PriceLevel current;
+        private PriceLevel.Node next;
+        private PriceLevel.Node lastReturned;
+
+        SideIterator() {
+            this.current = marketLevel;
+            this.next = marketLevel.head;
+        }
+
+        private void advance() {
+            while (next == null && current != null) {
+                Map.Entry<BigDecimal, PriceLevel> entry = current == marketLevel
+                        ? levels.firstEntry()
+                        : levels.higherEntry(current.getPrice());
+                current = entry == null ? null : entry.getValue();
+                next = current == null ? null : current.head;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            advance();
+            return next != null;
+        }
+
+        @Override
+        public Order next() {
+            advance();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = next.next;
+            return lastReturned.order;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null || lastReturned.order.node != lastReturned) {
+                throw new IllegalStateException();
+            }
+            unlink(lastReturned);
+            lastReturned = null;
+        }
+    }
+}
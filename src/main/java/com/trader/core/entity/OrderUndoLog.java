@@ -0,0 +1,86 @@
+package com.trader.core.entity;
+
+import com.trader.core.def.ActivateStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * 撮合事务的撤销日志
+ * <p>
+ * 每一次成交前记录当前订单以及对手订单中会被事件处理器修改的字段 (剩余 / 已成交的数量和金额, 状态标记),
+ * 当事件处理器发生异常时, 通过该日志将两个订单恢复到成交前的状态.
+ * 每个处理器线程持有一个该对象, 记录槽位是预先分配的, 成交时不会创建新的对象.
+ * 注意: 该对象不是线程安全的
+ *
+ * @author yjt
+ * @since 2020/11/5 下午3:10
+ */
+public class OrderUndoLog {
+
+    /**
+     * 当前订单的记录
+     */
+    private final Entry order = new Entry();
+
+    /**
+     * 对手订单的记录
+     */
+    private final Entry opponentOrder = new Entry();
+
+    /**
+     * 开始一次撮合事务, 记录两个订单成交前的状态
+     *
+     * @param order
+     *         当前订单
+     * @param opponentOrder
+     *         对手订单
+     */
+    public void begin(Order order, Order opponentOrder) {
+        order.saveTo(this.order);
+        opponentOrder.saveTo(this.opponentOrder);
+    }
+
+    /**
+     * 回滚本次撮合事务, 两个订单恢复到 {@link #begin(Order, Order)} 时的状态
+     */
+    public void rollback() {
+        rollback(order);
+        rollback(opponentOrder);
+    }
+
+    /**
+     * 结束本次撮合事务, 释放订单引用
+     */
+    public void end() {
+        order.target = null;
+        opponentOrder.target = null;
+    }
+
+    private static void rollback(Entry entry) {
+        if (entry.target != null) {
+            entry.target.restoreFrom(entry);
+        }
+    }
+
+    /**
+     * 订单的记录槽位
+     */
+    static final class Entry {
+        Order target;
+        BigDecimal executedQuantity;
+        BigDecimal leavesQuantity;
+        BigDecimal executedAmount;
+        BigDecimal leavesAmount;
+        long fixedExecutedQuantity;
+        long fixedLeavesQuantity;
+        long fixedExecutedAmount;
+        long fixedLeavesAmount;
+        int fixedAmountScale;
+        int fixedDirty;
+        ActivateStatus activated;
+        boolean finished;
+        boolean canceled;
+        boolean matching;
+        long version;
+    }
+}
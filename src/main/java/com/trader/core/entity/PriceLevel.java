@@ -0,0 +1,306 @@
+package com.trader.core.entity;
+
+import com.trader.core.def.OrderType;
+import com.trader.utils.FixedPointUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 价格档位
+ * <p>
+ * 同一个价格下的所有订单, 按照下单时间先后排列 (FIFO), 并且维护该档位的聚合数据
+ * (已成交量 / 剩余量 / 总量, 参考 {@link DepthAggregate}), 获取档位的挂单量不需要遍历档位中的订单
+ * <p>
+ * 订单字段的修改不会自动刷新档位, 撮合线程在一次成交结束后调用 {@link Order#refreshDepth()}
+ *
+ * @author yjt
+ * @since 2020/11/2 上午9:40
+ */
+public class PriceLevel extends DepthAggregate {
+
+    /**
+     * 档位价格
+     */
+    private final BigDecimal price;
+
+    /**
+     * 队头 (最早的订单)
+     */
+    Node head;
+
+    /**
+     * 队尾 (最新的订单)
+     */
+    Node tail;
+
+    /**
+     * 档位中的订单数量
+     */
+    private int size;
+
+    /**
+     * 该档位在每一种深度粒度下所属的合并档位 (市价单档位为 null)
+     * 参考 {@link DepthLadder}
+     */
+    DepthLadder.Bucket[] buckets;
+
+    PriceLevel(BigDecimal price) {
+        this.price = price;
+    }
+
+    /**
+     * 将订单加入到档位中
+     * 同一档位内按照下单时间排序, 绝大部分情况下新订单的时间都是最晚的, 所以从队尾开始查找
+     *
+     * @param order
+     *         订单
+     *
+     * @return 订单在档位中的节点
+     */
+    Node add(Order order) {
+        Node node = new Node(this, order);
+        Node prev = tail;
+        while (prev != null && isBefore(order, prev.order)) {
+            prev = prev.prev;
+        }
+
+        if (prev == null) {
+            // 插入到队头
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            } else {
+                tail = node;
+            }
+            head = node;
+        } else {
+            node.prev = prev;
+            node.next = prev.next;
+            if (prev.next != null) {
+                prev.next.prev = node;
+            } else {
+                tail = node;
+            }
+            prev.next = node;
+        }
+        size++;
+        order.node = node;
+        node.refresh();
+        return node;
+    }
+
+    /**
+     * 从档位中移除一个节点
+     *
+     * @param node
+     *         节点
+     */
+    void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+
+        // 扣除该订单在档位中的聚合数据
+        node.clear();
+
+        node.prev = null;
+        node.next = null;
+        node.order.node = null;
+        size--;
+    }
+
+    /**
+     * 更新档位的聚合数据 (定点数), 并且同步到所属的合并档位
+     *
+     * @param deltaExecuted
+     *         已成交量变化
+     * @param deltaLeaves
+     *         剩余量变化
+     * @param deltaTotal
+     *         总量变化
+     */
+    private void update(long deltaExecuted, long deltaLeaves, long deltaTotal) {
+        if (deltaExecuted == 0 && deltaLeaves == 0 && deltaTotal == 0) {
+            return;
+        }
+        apply(deltaExecuted, deltaLeaves, deltaTotal);
+        if (buckets != null) {
+            for (DepthLadder.Bucket bucket : buckets) {
+                bucket.apply(deltaExecuted, deltaLeaves, deltaTotal);
+            }
+        }
+    }
+
+    /**
+     * 更新档位中无法用定点数表示的聚合数据, 并且同步到所属的合并档位
+     */
+    private void updateOverflow(BigDecimal deltaExecuted, BigDecimal deltaLeaves, BigDecimal deltaTotal) {
+        applyOverflow(deltaExecuted, deltaLeaves, deltaTotal);
+        if (buckets != null) {
+            for (DepthLadder.Bucket bucket : buckets) {
+                bucket.applyOverflow(deltaExecuted, deltaLeaves, deltaTotal);
+            }
+        }
+    }
+
+    /**
+     * 判断订单 o1 是否应该排在订单 o2 的前面 (时间优先)
+     * 时间相同的情况下保留默认顺序
+     */
+    private static boolean isBefore(Order o1, Order o2) {
+        if (o1.getCreateDateTime() == null || o2.getCreateDateTime() == null) {
+            return false;
+        }
+        return o1.getCreateDateTime().before(o2.getCreateDateTime());
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 获取档位中最早的订单
+     *
+     * @return 订单 or null
+     */
+    public Order peek() {
+        return head == null ? null : head.order;
+    }
+
+    /**
+     * 档位节点, 记录订单以及该订单对档位聚合数据的贡献值
+     */
+    static final class Node {
+        final PriceLevel level;
+        final Order order;
+        Node prev;
+        Node next;
+
+        /**
+         * 该订单当前计入档位的数据 (定点数)
+         */
+        long executed;
+        long leaves;
+        long total;
+
+        /**
+         * 该订单当前计入档位的无法用定点数表示的数据, 正常情况下为 null
+         */
+        BigDecimal executedOverflow;
+        BigDecimal leavesOverflow;
+        BigDecimal totalOverflow;
+
+        /**
+         * 定点数撮合: 订单价格以及总量 (不变), 订单加入档位时计算一次, 无法用定点数表示时为 {@link DepthAggregate#NONE}
+         */
+        private final long fixedPrice;
+        private final long fixedTotal;
+
+        Node(PriceLevel level, Order order) {
+            this.level = level;
+            this.order = order;
+            long price = NONE, total = NONE;
+            if (order.isFixedPoint() && !OrderType.MARKET.equals(order.getType())) {
+                price = toFixedOrNone(order.getPrice());
+                total = toFixedOrNone(order.isBuy() ?
+                        order.getTotalAmount().divide(order.getPrice(), RoundingMode.DOWN) :
+                        order.getQuantity());
+            }
+            this.fixedPrice = price == 0 ? NONE : price;
+            this.fixedTotal = total;
+        }
+
+        /**
+         * 订单数据发生变化后, 重新计算该订单对档位的贡献值, 并且将差值更新到档位
+         * 计算规则与盘口快照保持一致:
+         * + 已结束, 已取消, 市价单以及剩余量为0的订单不计入盘口
+         * + 买单: 总量 = 总金额 / 单价, 剩余量 = 剩余金额 / 单价
+         * + 卖单: 总量 = 数量, 剩余量 = 剩余数量
+         * 定点数撮合的订单直接读取定点数字段, 不会创建 BigDecimal
+         */
+        void refresh() {
+            if (!isVisible(order)) {
+                clear();
+                return;
+            }
+            if (order.isFixedPoint() && fixedPrice != NONE && fixedTotal != NONE) {
+                long newLeaves = order.isBuy() ?
+                        FixedPointUtils.divDown(order.getFixedLeavesAmount(), fixedPrice, order.getFixedAmountScale()) :
+                        order.getFixedLeavesQuantity();
+                update(order.getFixedExecutedQuantity(), newLeaves, fixedTotal, null, null, null);
+                return;
+            }
+
+            BigDecimal newExecuted = order.getExecutedQuantity();
+            BigDecimal newLeaves;
+            BigDecimal newTotal;
+            if (order.isBuy()) {
+                newTotal = order.getTotalAmount().divide(order.getPrice(), RoundingMode.DOWN);
+                newLeaves = order.getLeavesAmount().divide(order.getPrice(), RoundingMode.DOWN);
+            } else {
+                newTotal = order.getQuantity();
+                newLeaves = order.getLeavesQuantity();
+            }
+            long e = toFixedOrNone(newExecuted);
+            long l = toFixedOrNone(newLeaves);
+            long t = toFixedOrNone(newTotal);
+            update(e == NONE ? 0 : e, l == NONE ? 0 : l, t == NONE ? 0 : t,
+                   e == NONE ? newExecuted : null, l == NONE ? newLeaves : null, t == NONE ? newTotal : null);
+        }
+
+        /**
+         * 从档位中扣除该订单的全部贡献值
+         */
+        void clear() {
+            update(0, 0, 0, null, null, null);
+        }
+
+        private void update(long newExecuted, long newLeaves, long newTotal,
+                            BigDecimal newExecutedOverflow, BigDecimal newLeavesOverflow, BigDecimal newTotalOverflow) {
+            level.update(newExecuted - executed, newLeaves - leaves, newTotal - total);
+            executed = newExecuted;
+            leaves = newLeaves;
+            total = newTotal;
+
+            if (executedOverflow != null || leavesOverflow != null || totalOverflow != null ||
+                    newExecutedOverflow != null || newLeavesOverflow != null || newTotalOverflow != null) {
+                level.updateOverflow(subtract(newExecutedOverflow, executedOverflow),
+                                     subtract(newLeavesOverflow, leavesOverflow),
+                                     subtract(newTotalOverflow, totalOverflow));
+                executedOverflow = newExecutedOverflow;
+                leavesOverflow = newLeavesOverflow;
+                totalOverflow = newTotalOverflow;
+            }
+        }
+
+        private static boolean isVisible(Order order) {
+            if (order.isFinished() || order.isCanceled() || OrderType.MARKET.equals(order.getType())) {
+                return false;
+            }
+            if (order.isFixedPoint()) {
+                return (order.isBuy() ? order.getFixedLeavesAmount() : order.getFixedLeavesQuantity()) != 0;
+            }
+            if (order.isBuy()) {
+                return order.getLeavesAmount().compareTo(BigDecimal.ZERO) != 0;
+            }
+            return order.getLeavesQuantity().compareTo(BigDecimal.ZERO) != 0;
+        }
+    }
+}
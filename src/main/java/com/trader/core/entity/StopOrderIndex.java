@@ -0,0 +1,177 @@
+package com.trader.core.entity;
+
+import com.trader.core.def.OrderSide;
+
+import java.math.BigDecimal;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 待激活的止盈止损订单, 按照触发价索引
+ * <p>
+ * 触发规则与原来的实现一致:
+ * + 买入: 触发价大于等于最新价时激活, 触发价高的优先
+ * + 卖出: 触发价小于等于最新价时激活, 触发价低的优先
+ * + 同一个触发价下按照添加顺序 (时间优先)
+ * <p>
+ * 按照激活优先级排序后, 被穿越的触发价档位总是排在最前面, 所以一次价格变动只需要一次范围截取 {@link #trigger(BigDecimal, Collection)},
+ * 不需要扫描已经激活的订单. 只能由账本所属的处理器线程访问
+ *
+ * @author yjt
+ * @since 2020/11/11 上午10:15
+ */
+public class StopOrderIndex extends AbstractCollection<Order> {
+
+    /**
+     * 买入或卖出
+     */
+    private final OrderSide side;
+
+    /**
+     * 触发价 -> 订单ID -> 订单
+     */
+    private final TreeMap<BigDecimal, LinkedHashMap<String, Order>> levels;
+
+    /**
+     * 订单总数
+     */
+    private int size;
+
+    public StopOrderIndex(OrderSide side) {
+        this.side = Objects.requireNonNull(side);
+        // 买入触发价高的优先, 卖出触发价低的优先
+        Comparator<BigDecimal> triggerOrder = OrderSide.BUY.equals(side) ?
+                Comparator.reverseOrder() : Comparator.naturalOrder();
+        this.levels = new TreeMap<>(triggerOrder);
+    }
+
+    /**
+     * 添加订单
+     *
+     * @param order
+     *         止盈止损订单
+     *
+     * @return 如果相同ID的订单已经存在则返回 false
+     */
+    @Override
+    public boolean add(Order order) {
+        Objects.requireNonNull(order, "order is null");
+        LinkedHashMap<String, Order> level = levels.computeIfAbsent(order.getTriggerPrice(),
+                k -> new LinkedHashMap<>(4));
+        if (level.putIfAbsent(order.getId(), order) != null) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * 移除订单
+     *
+     * @param o
+     *         订单
+     *
+     * @return 是否移除成功
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Order)) {
+            return false;
+        }
+        Order order = (Order) o;
+        LinkedHashMap<String, Order> level = levels.get(order.getTriggerPrice());
+        if (level == null || level.remove(order.getId()) == null) {
+            return false;
+        }
+        if (level.isEmpty()) {
+            levels.remove(order.getTriggerPrice());
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * 截取并移除所有被最新价穿越的订单
+     *
+     * @param price
+     *         最新价
+     * @param out
+     *         被触发的订单 (按照激活优先级)
+     *
+     * @return 被触发的订单数量
+     */
+    public int trigger(BigDecimal price, Collection<Order> out) {
+        if (size == 0 || price == null) {
+            return 0;
+        }
+        // 买入: 触发价 >= price, 卖出: 触发价 <= price, 在各自的排序下都是 headMap
+        NavigableMap<BigDecimal, LinkedHashMap<String, Order>> crossed = levels.headMap(price, true);
+        if (crossed.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        for (LinkedHashMap<String, Order> level : crossed.values()) {
+            out.addAll(level.values());
+            count += level.size();
+        }
+        crossed.clear();
+        size -= count;
+        return count;
+    }
+
+    public OrderSide getSide() {
+        return side;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        levels.clear();
+        size = 0;
+    }
+
+    /**
+     * 按照激活优先级遍历, 不支持遍历时移除
+     *
+     * @return 迭代器
+     */
+    @Override
+    public Iterator<Order> iterator() {
+        return new Iterator<Order>() {
+            private final Iterator<LinkedHashMap<String, Order>> levelIt = levels.values().iterator();
+            private Iterator<Order> it;
+
+            @Override
+            public boolean hasNext() {
+                while ((it == null || !it.hasNext()) && levelIt.hasNext()) {
+                    it = levelIt.next().values().iterator();
+                }
+                return it != null && it.hasNext();
+            }
+
+            @Override
+            public Order next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return it.next();
+            }
+        };
+    }
+}
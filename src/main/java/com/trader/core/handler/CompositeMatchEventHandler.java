@@ -1,6 +1,7 @@
 package com.trader.core.handler;
 
 import com.trader.core.MatchHandler;
+import com.trader.core.context.MatchingContext;
 import com.trader.core.entity.Order;
 import com.trader.core.matcher.TradeResult;
 
@@ -32,6 +33,13 @@ public class CompositeMatchEventHandler extends MatchEventHandlerRegistry implem
         }
     }
 
+    @Override
+    public void onAddOrder(MatchingContext ctx, Order newOrder) throws Exception {
+        for (MatchHandler h : super.handlers()) {
+            h.onAddOrder(ctx, newOrder);
+        }
+    }
+
     /**
      * 激活止盈止损订单事件
      *
@@ -48,6 +56,13 @@ public class CompositeMatchEventHandler extends MatchEventHandlerRegistry implem
         }
     }
 
+    @Override
+    public void onActiveStopOrder(MatchingContext ctx, Order stopOrder) throws Exception {
+        for (MatchHandler h : super.handlers()) {
+            h.onActiveStopOrder(ctx, stopOrder);
+        }
+    }
+
     /**
      * 订单移除事件
      * 警告: 当发生异常不会导致订单回滚, 为什么这么做呢,我来解释下
@@ -67,6 +82,13 @@ public class CompositeMatchEventHandler extends MatchEventHandlerRegistry implem
         }
     }
 
+    @Override
+    public void onOrderCancel(MatchingContext ctx, Order removed) {
+        for (MatchHandler h : super.handlers()) {
+            h.onOrderCancel(ctx, removed);
+        }
+    }
+
     /**
      * 撮合订单事件
      *
@@ -86,4 +108,18 @@ public class CompositeMatchEventHandler extends MatchEventHandlerRegistry implem
             h.onExecuteOrder(order, opponentOrder, ts);
         }
     }
+
+    @Override
+    public void onExecuteOrder(MatchingContext ctx, Order order, Order opponentOrder, TradeResult ts) throws Exception {
+        for (MatchHandler h : super.handlers()) {
+            h.onExecuteOrder(ctx, order, opponentOrder, ts);
+        }
+    }
+
+    @Override
+    public void onEndOfBatch(MatchingContext ctx) {
+        for (MatchHandler h : super.handlers()) {
+            h.onEndOfBatch(ctx);
+        }
+    }
 }
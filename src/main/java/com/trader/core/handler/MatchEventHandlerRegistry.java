@@ -1,6 +1,7 @@
 package com.trader.core.handler;
 
 import com.trader.core.MatchHandler;
+import com.trader.core.context.MatchingContext;
 import com.trader.core.entity.Order;
 
 import java.util.ArrayList;
@@ -61,9 +62,23 @@ public class MatchEventHandlerRegistry {
      *         已经移除的订单
      */
     protected void executeOrderCancel(Order order) {
-        this.executeHandler((h) -> {
-            h.onOrderCancel(order);
-        });
+        for (int i = 0; i < this.handlers.size(); i++) {
+            this.handlers.get(i).onOrderCancel(order);
+        }
+    }
+
+    /**
+     * 执行订单取消移除事件
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param order
+     *         已经移除的订单
+     */
+    protected void executeOrderCancel(MatchingContext ctx, Order order) {
+        for (int i = 0; i < this.handlers.size(); i++) {
+            this.handlers.get(i).onOrderCancel(ctx, order);
+        }
     }
 
 }
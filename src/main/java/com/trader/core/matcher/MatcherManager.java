@@ -1,6 +1,8 @@
 package com.trader.core.matcher;
 
 import com.trader.core.Matcher;
+import com.trader.core.context.MatchingContext;
+import com.trader.core.def.OrderType;
 import com.trader.core.entity.Order;
 
 import java.util.ArrayList;
@@ -13,19 +15,42 @@ import java.util.Objects;
  */
 public class MatcherManager {
 
+    private static final OrderType[] TYPES = OrderType.values();
+
+    private static final Matcher[] EMPTY = new Matcher[0];
+
     /**
      * 撮合匹配器
      */
     private List<Matcher> matchers = new ArrayList<>(16);
 
+    /**
+     * 匹配器分派表: [当前订单类型][对手订单类型] -> 候选匹配器 (按照添加顺序)
+     * 订单方向不需要参与分派, 对手订单必然是相反方向
+     */
+    private volatile Matcher[][][] dispatchTable = buildDispatchTable(matchers);
+
     /**
      * 添加一个匹配器
      *
      * @param matcher
      *         匹配器
      */
-    public void addMatcher(Matcher matcher) {
+    public synchronized void addMatcher(Matcher matcher) {
         this.matchers.add(Objects.requireNonNull(matcher));
+        this.dispatchTable = buildDispatchTable(this.matchers);
+    }
+
+    /**
+     * 获取当前订单的分派表, 每一个订单在撮合开始之前只需要获取一次
+     *
+     * @param order
+     *         当前订单
+     *
+     * @return 对手订单类型 -> 候选匹配器
+     */
+    public Matcher[][] dispatch(Order order) {
+        return this.dispatchTable[order.getType().ordinal()];
     }
 
     /**
@@ -39,9 +64,54 @@ public class MatcherManager {
      * @return 匹配器
      */
     public Matcher lookupMatcher(Order order, Order opponentOrder) {
-        return this.matchers.stream()
-                            .filter(matcher -> matcher.isSupport(order, opponentOrder))
-                            .findFirst()
-                            .orElse(null);
+        Matcher[] candidates = dispatch(order)[opponentOrder.getType().ordinal()];
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i].isSupport(order, opponentOrder)) {
+                return candidates[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据分派表搜索合适的匹配器, 如果没有找到合适的匹配器那么则返回 {@code null}
+     *
+     * @param ctx
+     *         撮合上下文, 直接传递给匹配器
+     * @param dispatch
+     *         当前订单的分派表 {@link #dispatch(Order)}
+     * @param order
+     *         订单
+     * @param opponentOrder
+     *         对手订单
+     *
+     * @return 匹配器
+     */
+    public Matcher lookupMatcher(MatchingContext ctx, Matcher[][] dispatch, Order order, Order opponentOrder) {
+        Matcher[] candidates = dispatch[opponentOrder.getType().ordinal()];
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i].isSupport(ctx, order, opponentOrder)) {
+                return candidates[i];
+            }
+        }
+        return null;
+    }
+
+    private static Matcher[][][] buildDispatchTable(List<Matcher> matchers) {
+        Matcher[][][] table = new Matcher[TYPES.length][TYPES.length][];
+        for (OrderType type : TYPES) {
+            for (OrderType opponentType : TYPES) {
+                List<Matcher> candidates = new ArrayList<>(matchers.size());
+                for (Matcher matcher : matchers) {
+                    if (matcher.isSupport(type, opponentType)) {
+                        candidates.add(matcher);
+                    }
+                }
+                table[type.ordinal()][opponentType.ordinal()] = candidates.isEmpty()
+                        ? EMPTY
+                        : candidates.toArray(EMPTY);
+            }
+        }
+        return table;
     }
 }
@@ -1,5 +1,6 @@
 package com.trader.core.matcher;
 
+import com.trader.utils.FixedPointUtils;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -56,4 +57,121 @@ public class TradeResult {
      * 平台吃到的差价
      */
     private BigDecimal platformDiffPrice = BigDecimal.ZERO;
+
+    /**
+     * 是否为定点数撮合结果, 定点数撮合结果的 BigDecimal 字段在读取时才会进行转换
+     */
+    private boolean fixedPoint;
+
+    /**
+     * 定点数: 最终的成交价
+     */
+    private long fixedExecutePrice;
+
+    /**
+     * 定点数: 成交量
+     */
+    private long fixedQuantity;
+
+    /**
+     * 定点数: 当前订单成交金额
+     */
+    private long fixedExecuteAmount;
+
+    /**
+     * 定点数: 对手订单最终的成交价
+     */
+    private long fixedOpponentExecutePrice;
+
+    /**
+     * 定点数: 对手订单成交金额
+     */
+    private long fixedOpponentExecuteAmount;
+
+    /**
+     * 定点数: 差价
+     */
+    private long fixedDiffPrice;
+
+    /**
+     * 定点数: 对手订单差价
+     */
+    private long fixedOpponentDiffPrice;
+
+    /**
+     * 定点数: 平台吃到的差价
+     */
+    private long fixedPlatformDiffPrice;
+
+    /**
+     * 创建一个定点数撮合结果
+     *
+     * @return 撮合结果
+     */
+    public static TradeResult newFixedPoint() {
+        TradeResult ts = new TradeResult();
+        ts.fixedPoint = true;
+        ts.opponentExecutePrice = null;
+        ts.opponentExecuteAmount = null;
+        ts.diffPrice = null;
+        ts.opponentDiffPrice = null;
+        ts.platformDiffPrice = null;
+        return ts;
+    }
+
+    public BigDecimal getExecutePrice() {
+        if (executePrice == null && fixedPoint) {
+            executePrice = FixedPointUtils.toDecimal(fixedExecutePrice);
+        }
+        return executePrice;
+    }
+
+    public BigDecimal getQuantity() {
+        if (quantity == null && fixedPoint) {
+            quantity = FixedPointUtils.toDecimal(fixedQuantity);
+        }
+        return quantity;
+    }
+
+    public BigDecimal getExecuteAmount() {
+        if (executeAmount == null && fixedPoint) {
+            executeAmount = FixedPointUtils.toDecimal(fixedExecuteAmount);
+        }
+        return executeAmount;
+    }
+
+    public BigDecimal getOpponentExecutePrice() {
+        if (opponentExecutePrice == null && fixedPoint) {
+            opponentExecutePrice = FixedPointUtils.toDecimal(fixedOpponentExecutePrice);
+        }
+        return opponentExecutePrice;
+    }
+
+    public BigDecimal getOpponentExecuteAmount() {
+        if (opponentExecuteAmount == null && fixedPoint) {
+            opponentExecuteAmount = FixedPointUtils.toDecimal(fixedOpponentExecuteAmount);
+        }
+        return opponentExecuteAmount;
+    }
+
+    public BigDecimal getDiffPrice() {
+        if (diffPrice == null && fixedPoint) {
+            diffPrice = FixedPointUtils.toDecimal(fixedDiffPrice);
+        }
+        return diffPrice;
+    }
+
+    public BigDecimal getOpponentDiffPrice() {
+        if (opponentDiffPrice == null && fixedPoint) {
+            opponentDiffPrice = FixedPointUtils.toDecimal(fixedOpponentDiffPrice);
+        }
+        return opponentDiffPrice;
+    }
+
+    public BigDecimal getPlatformDiffPrice() {
+        if (platformDiffPrice == null && fixedPoint) {
+            platformDiffPrice = FixedPointUtils.toDecimal(fixedPlatformDiffPrice);
+        }
+        return platformDiffPrice;
+    }
 }
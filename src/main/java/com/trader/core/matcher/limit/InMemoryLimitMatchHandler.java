@@ -57,6 +57,30 @@ public class InMemoryLimitMatchHandler implements MatchHandler {
         }
     }
 
+    /**
+     * 更新订单 (定点数)
+     *
+     * @param order
+     *         订单
+     * @param executeQuantity
+     *         成交数量
+     * @param amount
+     *         成交金额
+     */
+    public static void updateOrder(Order order,
+                                   long executeQuantity,
+                                   long amount) {
+        if (order.isBuy()) {
+            order.decFixedLeavesAmount(amount);
+            order.incFixedExecutedAmount(amount);
+            order.incFixedExecutedQuantity(executeQuantity);
+        } else {
+            order.incFixedExecutedQuantity(executeQuantity);
+            order.decFixedLeavesQuantity(executeQuantity);
+            order.incFixedExecutedAmount(amount);
+        }
+    }
+
     /**
      * 处理限价和止盈止损单
      * 根据撮合结果,更新订单数据
@@ -96,6 +120,15 @@ public class InMemoryLimitMatchHandler implements MatchHandler {
     @Override
     public void onExecuteOrder(Order order,
                                Order opponentOrder, TradeResult ts) throws Exception {
+        if (ts.isFixedPoint()) {
+            if (order.isLimitOrder() || order.isStopOrder()) {
+                InMemoryLimitMatchHandler.updateOrder(order, ts.getFixedQuantity(), ts.getFixedExecuteAmount());
+            }
+            if (opponentOrder.isLimitOrder() || opponentOrder.isStopOrder()) {
+                InMemoryLimitMatchHandler.updateOrder(opponentOrder, ts.getFixedQuantity(), ts.getFixedOpponentExecuteAmount());
+            }
+            return;
+        }
         InMemoryLimitMatchHandler.executeOrder(order, ts, ts.getExecuteAmount());
         InMemoryLimitMatchHandler.executeOrder(opponentOrder, ts, ts.getOpponentExecuteAmount());
     }
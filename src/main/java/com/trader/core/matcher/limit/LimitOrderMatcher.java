@@ -1,6 +1,7 @@
 package com.trader.core.matcher.limit;
 
 import com.trader.core.Matcher;
+import com.trader.core.def.OrderType;
 import com.trader.core.entity.Order;
 import com.trader.core.matcher.TradeResult;
 import com.trader.utils.TradeUtils;
@@ -42,31 +43,37 @@ public class LimitOrderMatcher implements Matcher {
             return false;
         }
 
-        BigDecimal price = order.getBoundPrice();
-        BigDecimal opponentPrice = opponentOrder.getBoundPrice();
-
-        //
-        // 区分买卖单:
-        // 买入单: 则卖盘的价格必须要 <= 买入价
-        // 卖出单: 则买盘的价格必须要 >= 卖出价
-        //
-        boolean arbitrage;
-        if (order.isBuy()) {
-            arbitrage = opponentPrice.compareTo(price) <= 0;
+        if (order.isFixedPoint() && opponentOrder.isFixedPoint()) {
+            if (!isSupportFixedPoint(order, opponentOrder)) {
+                return false;
+            }
         } else {
-            arbitrage = opponentPrice.compareTo(price) >= 0;
-        }
+            BigDecimal price = order.getBoundPrice();
+            BigDecimal opponentPrice = opponentOrder.getBoundPrice();
 
-        if (!arbitrage) {
-            return false;
-        }
+            //
+            // 区分买卖单:
+            // 买入单: 则卖盘的价格必须要 <= 买入价
+            // 卖出单: 则买盘的价格必须要 >= 卖出价
+            //
+            boolean arbitrage;
+            if (order.isBuy()) {
+                arbitrage = opponentPrice.compareTo(price) <= 0;
+            } else {
+                arbitrage = opponentPrice.compareTo(price) >= 0;
+            }
 
-        //
-        // 判断是否有足够的钱进行购买
-        //
-        if (!TradeUtils.isHasEnoughAmount(order, opponentPrice) ||
-                !TradeUtils.isHasEnoughAmount(opponentOrder, price)) {
-            return false;
+            if (!arbitrage) {
+                return false;
+            }
+
+            //
+            // 判断是否有足够的钱进行购买
+            //
+            if (!TradeUtils.isHasEnoughAmount(order, opponentPrice) ||
+                    !TradeUtils.isHasEnoughAmount(opponentOrder, price)) {
+                return false;
+            }
         }
         //
         // TODO 处理全量交易
@@ -90,6 +97,50 @@ public class LimitOrderMatcher implements Matcher {
         return true;
     }
 
+    /**
+     * 定点数: 判断价格以及金额是否满足撮合条件, 规则与 BigDecimal 一致
+     *
+     * @param order
+     *         当前订单
+     * @param opponentOrder
+     *         对手订单
+     *
+     * @return 是否满足
+     */
+    private boolean isSupportFixedPoint(Order order, Order opponentOrder) {
+        long price = order.getFixedBoundPrice();
+        long opponentPrice = opponentOrder.getFixedBoundPrice();
+
+        boolean arbitrage;
+        if (order.isBuy()) {
+            arbitrage = opponentPrice <= price;
+        } else {
+            arbitrage = opponentPrice >= price;
+        }
+
+        if (!arbitrage) {
+            return false;
+        }
+
+        return TradeUtils.isHasEnoughAmount(order, opponentPrice) &&
+                TradeUtils.isHasEnoughAmount(opponentOrder, price);
+    }
+
+    /**
+     * 只处理 LIMIT / STOP 之间的撮合
+     *
+     * @param type
+     *         当前订单类型
+     * @param opponentType
+     *         对手订单类型
+     *
+     * @return 是否支持
+     */
+    @Override
+    public boolean isSupport(OrderType type, OrderType opponentType) {
+        return !OrderType.MARKET.equals(type) && !OrderType.MARKET.equals(opponentType);
+    }
+
     /**
      * 进行撮合交易
      *
@@ -102,6 +153,9 @@ public class LimitOrderMatcher implements Matcher {
      */
     @Override
     public TradeResult doTrade(Order order, Order opponentOrder) {
+        if (order.isFixedPoint() && opponentOrder.isFixedPoint()) {
+            return TradeUtils.genericTrade(order, opponentOrder, 0L);
+        }
         return TradeUtils.genericTrade(order, opponentOrder, BigDecimal.ZERO);
     }
 }
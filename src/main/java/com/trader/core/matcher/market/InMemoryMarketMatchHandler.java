@@ -57,6 +57,32 @@ public class InMemoryMarketMatchHandler implements MatchHandler {
         }
     }
 
+    /**
+     * 扣除订单 (定点数)
+     *
+     * @param order
+     *         订单
+     * @param executeQuantity
+     *         成交量
+     * @param amount
+     *         成交金额
+     */
+    public static void updateOrder(Order order,
+                                   long executeQuantity,
+                                   long amount) {
+        if (order.isMarketOrder()) {
+            if (order.isBuy()) {
+                order.incFixedExecutedAmount(amount);
+                order.decFixedLeavesAmount(amount);
+                order.incFixedExecutedQuantity(executeQuantity);
+            } else {
+                order.incFixedExecutedQuantity(executeQuantity);
+                order.decFixedLeavesQuantity(executeQuantity);
+                order.incFixedExecutedAmount(amount);
+            }
+        }
+    }
+
     /**
      * 撮合订单事件
      *
@@ -73,6 +99,11 @@ public class InMemoryMarketMatchHandler implements MatchHandler {
     @Override
     public void onExecuteOrder(Order order,
                                Order opponentOrder, TradeResult ts) throws Exception {
+        if (ts.isFixedPoint()) {
+            InMemoryMarketMatchHandler.updateOrder(order, ts.getFixedQuantity(), ts.getFixedExecuteAmount());
+            InMemoryMarketMatchHandler.updateOrder(opponentOrder, ts.getFixedQuantity(), ts.getFixedOpponentExecuteAmount());
+            return;
+        }
         BigDecimal quantity = ts.getQuantity();
 
         //
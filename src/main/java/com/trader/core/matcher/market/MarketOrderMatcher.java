@@ -6,6 +6,7 @@ import com.trader.core.def.OrderType;
 import com.trader.core.entity.Order;
 import com.trader.core.matcher.TradeResult;
 import com.trader.market.MarketManager;
+import com.trader.utils.FixedPointUtils;
 import com.trader.utils.TradeUtils;
 
 import java.math.BigDecimal;
@@ -30,20 +31,35 @@ public class MarketOrderMatcher implements Matcher {
      */
     @Override
     public boolean isSupport(Order order, Order opponentOrder) {
+        return isSupport(this.ctx(), order, opponentOrder);
+    }
+
+    /**
+     * 判断是否支持目标订单的匹配, 并且将当前市场价写入上下文供 {@link #doTrade(MatchingContext, Order, Order)} 使用
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param order
+     *         当前订单
+     * @param opponentOrder
+     *         对手订单
+     *
+     * @return 是否支持匹配
+     */
+    @Override
+    public boolean isSupport(MatchingContext ctx, Order order, Order opponentOrder) {
         if (!(order.getType().equals(OrderType.MARKET) ||
                 opponentOrder.getType().equals(OrderType.MARKET))) {
             return false;
         }
 
-        MatchingContext ctx = this.ctx();
-
         if (order.getUid().equals(opponentOrder.getUid())) {
             return false;
         }
 
-        MarketManager marketMgr = this.ctx().getMarketMgr();
+        MarketManager marketMgr = ctx.getMarketMgr();
         BigDecimal marketPrice = marketMgr.getMarketPrice(order);
-        ctx.setAttribute(order.getId(), marketPrice);
+        ctx.setMarketPrice(marketPrice);
 
         //
         // 支持以下类型的订单进行撮合
@@ -59,6 +75,10 @@ public class MarketOrderMatcher implements Matcher {
         //
         /** 撮合条件判定只需要判定双方买卖价格即可, 参考限价交易 {@link com.trader.core.matcher.limit.LimitOrderMatcher}*/
 
+        if (isFixedPoint(order, opponentOrder, marketPrice)) {
+            return isSupportFixedPoint(order, opponentOrder, FixedPointUtils.toFixed(marketPrice));
+        }
+
         BigDecimal price = order.isMarketOrder() ? marketPrice : order.getBoundPrice();
         BigDecimal opponentPrice = opponentOrder.isMarketOrder() ? marketPrice : opponentOrder.getBoundPrice();
 
@@ -86,6 +106,65 @@ public class MarketOrderMatcher implements Matcher {
         return arbitrage;
     }
 
+    /**
+     * 至少有一方为市价单
+     *
+     * @param type
+     *         当前订单类型
+     * @param opponentType
+     *         对手订单类型
+     *
+     * @return 是否支持
+     */
+    @Override
+    public boolean isSupport(OrderType type, OrderType opponentType) {
+        return OrderType.MARKET.equals(type) || OrderType.MARKET.equals(opponentType);
+    }
+
+    /**
+     * 定点数: 判断价格以及金额是否满足撮合条件, 规则与 BigDecimal 一致
+     *
+     * @param order
+     *         当前订单
+     * @param opponentOrder
+     *         对手订单
+     * @param marketPrice
+     *         市场价 (定点数)
+     *
+     * @return 是否满足
+     */
+    private boolean isSupportFixedPoint(Order order, Order opponentOrder, long marketPrice) {
+        long price = order.isMarketOrder() ? marketPrice : order.getFixedBoundPrice();
+        long opponentPrice = opponentOrder.isMarketOrder() ? marketPrice : opponentOrder.getFixedBoundPrice();
+
+        if (!TradeUtils.isHasEnoughAmount(order, opponentPrice) ||
+                !TradeUtils.isHasEnoughAmount(opponentOrder, price)) {
+            return false;
+        }
+
+        if (order.isBuy()) {
+            return opponentPrice <= price;
+        }
+        return opponentPrice >= price;
+    }
+
+    /**
+     * 是否可以使用定点数进行撮合
+     * 市场价来自外部, 如果精度超过定点数精度则使用 BigDecimal 撮合, 保证结果一致
+     *
+     * @param order
+     *         当前订单
+     * @param opponentOrder
+     *         对手订单
+     * @param marketPrice
+     *         市场价
+     *
+     * @return 是否可以使用定点数
+     */
+    private static boolean isFixedPoint(Order order, Order opponentOrder, BigDecimal marketPrice) {
+        return order.isFixedPoint() && opponentOrder.isFixedPoint() && FixedPointUtils.isExact(marketPrice);
+    }
+
 
     /**
      * 进行撮合交易
@@ -99,10 +178,30 @@ public class MarketOrderMatcher implements Matcher {
      */
     @Override
     public TradeResult doTrade(Order order, Order opponentOrder) {
-        BigDecimal marketPrice = this.ctx().getAttribute(order.getId());
+        return doTrade(this.ctx(), order, opponentOrder);
+    }
+
+    /**
+     * 进行撮合交易, 使用 {@link #isSupport(MatchingContext, Order, Order)} 写入上下文的市场价
+     *
+     * @param ctx
+     *         撮合上下文
+     * @param order
+     *         当前订单
+     * @param opponentOrder
+     *         对手订单
+     *
+     * @return 交易结果
+     */
+    @Override
+    public TradeResult doTrade(MatchingContext ctx, Order order, Order opponentOrder) {
+        BigDecimal marketPrice = ctx.getMarketPrice();
         if (marketPrice == null) {
             throw new IllegalStateException("请勿多线程撮合");
         }
+        if (isFixedPoint(order, opponentOrder, marketPrice)) {
+            return TradeUtils.genericTrade(order, opponentOrder, FixedPointUtils.toFixed(marketPrice));
+        }
         return TradeUtils.genericTrade(order, opponentOrder, marketPrice);
     }
 }
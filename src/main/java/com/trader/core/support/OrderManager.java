@@ -1,23 +1,105 @@
 package com.trader.core.support;
 
+import com.trader.core.MatchHandler;
 import com.trader.core.entity.Order;
+import com.trader.utils.collection.LongObjectHashMap;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 订单管理器, 用于根据订单ID查找订单 (撤单)
+ * <p>
+ * 订单到达终态 (完全成交或者撤销) 后会被回收, 为了让稍后到达的撤单请求依旧能够查询到订单 (从而知道订单已经结束),
+ * 回收会延迟一个宽限期 {@link #setEvictionGraceMillis(long)}, 宽限期为 0 时立即回收. 所以内存占用只与未结束的订单数量相关.
+ * <p>
+ * 订单ID为数字时使用 long 为 key 的哈希表存储, 避免字符串哈希和装箱, 其余订单ID使用普通的哈希表.
+ * 下单和撤单可能来自任意线程, 回收来自撮合线程, 所以存储按照订单ID分段加锁
+ *
  * @author yjt
  * @since 2020/9/19 下午4:30
  */
 public class OrderManager {
 
     /**
-     * 订单映射MAP
+     * 分段个数
      */
-    private Map<String, Order> orderMap = new ConcurrentHashMap<>(4096);
+    private static final int NUM_OF_SEGMENTS = 16;
+
+    /**
+     * 每添加多少个订单检查一次宽限期到期的订单
+     */
+    private static final int SWEEP_INTERVAL = 256;
+
+    /**
+     * 估算内存时每个对象引用占用的字节数
+     */
+    private static final int REFERENCE_BYTES = 8;
+
+    /**
+     * 估算内存时字符串订单ID每个条目占用的字节数 (HashMap.Node + 表槽位)
+     */
+    private static final int STRING_ENTRY_BYTES = 48;
+
+    /**
+     * 估算内存时等待回收的每个条目占用的字节数 (队列节点 + 回收记录)
+     */
+    private static final int RETIRED_ENTRY_BYTES = 56;
+
+    /**
+     * 分段存储
+     */
+    private final Segment[] segments = new Segment[NUM_OF_SEGMENTS];
+
+    /**
+     * 等待回收的订单, 按照到期时间先后顺序
+     */
+    private final Queue<Retired> retired = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 等待回收的订单数量
+     */
+    private final AtomicLong numOfRetired = new AtomicLong();
+
+    /**
+     * 已经回收的订单数量
+     */
+    private final AtomicLong numOfEvicted = new AtomicLong();
+
+    /**
+     * 添加订单的次数, 用于控制检查频率
+     */
+    private final AtomicLong numOfAdded = new AtomicLong();
+
+    /**
+     * 是否正在回收
+     */
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * 回收宽限期 (纳秒)
+     */
+    private volatile long evictionGraceNanos = 0;
+
+    /**
+     * 订单到达终态时的回收处理器
+     */
+    private final MatchHandler evictionHandler = new EvictionHandler();
+
+    public OrderManager() {
+        for (int i = 0; i < NUM_OF_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
 
     /**
      * 添加一个订单
@@ -27,7 +109,64 @@ public class OrderManager {
      */
     public void addOrder(Order order) {
 //        this.orderCheck(Objects.requireNonNull(order));
-        this.orderMap.put(order.getId(), order);
+        String id = order.getId();
+        long key = parseId(id);
+        Segment segment = segmentOf(key, id);
+        synchronized (segment) {
+            if (key >= 0) {
+                segment.longIds.put(key, order);
+            } else {
+                segment.otherIds.put(id, order);
+            }
+        }
+        if (evictionGraceNanos > 0 && (numOfAdded.incrementAndGet() & (SWEEP_INTERVAL - 1)) == 0) {
+            evictExpired();
+        }
+    }
+
+    /**
+     * 批量添加订单, 每个分段只加锁一次, 非添加订单的指令会被忽略
+     *
+     * @param orders
+     *         订单列表
+     */
+    public void addOrders(List<Order> orders) {
+        int n = orders.size();
+        long[] keys = new long[n];
+        int[] segmentIndexes = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            Order order = orders.get(i);
+            if (!order.isAddCmd()) {
+                segmentIndexes[i] = -1;
+                continue;
+            }
+            keys[i] = parseId(order.getId());
+            segmentIndexes[i] = segmentIndexOf(keys[i], order.getId());
+            count++;
+        }
+        for (int s = 0; s < NUM_OF_SEGMENTS && count > 0; s++) {
+            Segment segment = segments[s];
+            synchronized (segment) {
+                for (int i = 0; i < n; i++) {
+                    if (segmentIndexes[i] != s) {
+                        continue;
+                    }
+                    Order order = orders.get(i);
+                    if (keys[i] >= 0) {
+                        segment.longIds.put(keys[i], order);
+                    } else {
+                        segment.otherIds.put(order.getId(), order);
+                    }
+                }
+            }
+        }
+        if (evictionGraceNanos > 0) {
+            long before = numOfAdded.getAndAdd(count);
+            if ((before & -SWEEP_INTERVAL) != ((before + count) & -SWEEP_INTERVAL)) {
+                evictExpired();
+            }
+        }
     }
 
     /**
@@ -38,7 +177,7 @@ public class OrderManager {
      */
     public void removeOrder(Order order) {
         Objects.requireNonNull(order);
-        this.orderMap.remove(order.getId());
+        remove(order);
     }
 
     /**
@@ -50,7 +189,183 @@ public class OrderManager {
      * @return 订单对象
      */
     public Order getOrder(String orderId) {
-        return this.orderMap.get(orderId);
+        long key = parseId(orderId);
+        Segment segment = segmentOf(key, orderId);
+        synchronized (segment) {
+            return key >= 0 ? segment.longIds.get(key) : segment.otherIds.get(orderId);
+        }
+    }
+
+    /**
+     * 订单到达终态, 宽限期过后回收
+     *
+     * @param order
+     *         订单
+     */
+    public void retire(Order order) {
+        long grace = evictionGraceNanos;
+        if (grace <= 0) {
+            if (remove(order)) {
+                numOfEvicted.incrementAndGet();
+            }
+            return;
+        }
+        retired.offer(new Retired(order, System.nanoTime() + grace));
+        numOfRetired.incrementAndGet();
+    }
+
+    /**
+     * 回收宽限期已经到期的订单, 添加订单时会定期调用, 也可以由外部定时调用
+     *
+     * @return 本次回收的订单数量
+     */
+    public int evictExpired() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            long now = System.nanoTime();
+            Retired head;
+            while ((head = retired.peek()) != null && now - head.deadline >= 0) {
+                retired.poll();
+                numOfRetired.decrementAndGet();
+                if (remove(head.order)) {
+                    count++;
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+        numOfEvicted.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * 设置回收宽限期, 订单到达终态后在宽限期内依旧可以被查询到
+     *
+     * @param evictionGraceMillis
+     *         宽限期, 单位为毫秒, 为 0 则立即回收
+     */
+    public void setEvictionGraceMillis(long evictionGraceMillis) {
+        this.evictionGraceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, evictionGraceMillis));
+    }
+
+    /**
+     * 获取订单回收处理器, 需要注册到撮合事件处理器中 (优先级最低, 在内存撮合处理器之后执行)
+     *
+     * @return 回收处理器
+     */
+    public MatchHandler getEvictionHandler() {
+        return evictionHandler;
+    }
+
+    /**
+     * 当前管理的订单数量 (包括宽限期内已经结束的订单)
+     *
+     * @return 订单数量
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.longIds.size() + segment.otherIds.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 宽限期内等待回收的订单数量
+     *
+     * @return 订单数量
+     */
+    public long numOfRetired() {
+        return numOfRetired.get();
+    }
+
+    /**
+     * 累计回收的订单数量
+     *
+     * @return 订单数量
+     */
+    public long numOfEvicted() {
+        return numOfEvicted.get();
+    }
+
+    /**
+     * 估算索引占用的内存 (字节), 不包括订单对象本身 (订单对象同时被账本引用)
+     *
+     * @return 字节数
+     */
+    public long estimatedMemoryBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                // long[] + Object[]
+                bytes += (long) segment.longIds.capacity() * (Long.BYTES + REFERENCE_BYTES);
+                bytes += (long) segment.otherIds.size() * STRING_ENTRY_BYTES;
+            }
+        }
+        return bytes + numOfRetired.get() * RETIRED_ENTRY_BYTES;
+    }
+
+    private boolean remove(Order order) {
+        String id = order.getId();
+        long key = parseId(id);
+        Segment segment = segmentOf(key, id);
+        synchronized (segment) {
+            // 只移除同一个订单对象, 避免误删相同ID的新订单
+            if (key >= 0) {
+                if (segment.longIds.get(key) != order) {
+                    return false;
+                }
+                segment.longIds.remove(key);
+            } else {
+                if (segment.otherIds.get(id) != order) {
+                    return false;
+                }
+                segment.otherIds.remove(id);
+            }
+        }
+        return true;
+    }
+
+    private Segment segmentOf(long key, String id) {
+        return segments[segmentIndexOf(key, id)];
+    }
+
+    private static int segmentIndexOf(long key, String id) {
+        int h = key >= 0 ? Long.hashCode(key * 0x9E3779B97F4A7C15L) : id.hashCode() * 0x9E3779B9;
+        // 使用高位选择分段, 低位留给段内的哈希表
+        return h >>> 28;
+    }
+
+    /**
+     * 解析数字订单ID
+     *
+     * @param id
+     *         订单ID
+     *
+     * @return 非负数, 如果订单ID不是 18 位以内的数字 (或者以 0 开头) 则返回 -1
+     */
+    static long parseId(String id) {
+        if (id == null) {
+            return -1;
+        }
+        int len = id.length();
+        if (len == 0 || len > 18 || (len > 1 && id.charAt(0) == '0')) {
+            return -1;
+        }
+        long v = 0;
+        for (int i = 0; i < len; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
     }
 
     /**
@@ -170,4 +485,50 @@ public class OrderManager {
             throw new IllegalArgumentException("交易对不能为空");
         }
     }
+
+    /**
+     * 分段
+     */
+    private static final class Segment {
+
+        /**
+         * 数字订单ID
+         */
+        private final LongObjectHashMap<Order> longIds = new LongObjectHashMap<>(256);
+
+        /**
+         * 其它订单ID
+         */
+        private final Map<String, Order> otherIds = new HashMap<>(16);
+    }
+
+    /**
+     * 等待回收的订单
+     */
+    private static final class Retired {
+
+        private final Order order;
+
+        /**
+         * 到期时间 (纳秒)
+         */
+        private final long deadline;
+
+        private Retired(Order order, long deadline) {
+            this.order = order;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * 订单到达终态时通知回收: 撤销的订单以及完全成交的订单 (挂单方与吃单方) 在撮合事务提交之后从账本移除,
+     * 处理器对每个移除的订单推送一次订单移除事件, 所以只在这里回收, 成交事件中不回收 (后续 handler 可能抛出异常回滚)
+     */
+    private final class EvictionHandler implements MatchHandler {
+
+        @Override
+        public void onOrderCancel(Order removed) {
+            retire(removed);
+        }
+    }
 }
@@ -0,0 +1,233 @@
+package com.trader.core.support.journal;
+
+import com.trader.core.Command;
+import com.trader.core.def.*;
+import com.trader.core.entity.Order;
+import com.trader.core.support.processor.PriceChangeCommand;
+import com.trader.market.publish.msg.PriceChangeMessage;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * 指令日志的二进制编码
+ * <p>
+ * 添加订单指令记录订单的全部初始数据, 其余订单指令 (取消 / 激活) 只记录订单ID以及交易对, 回放时根据订单ID找到已经回放的订单.
+ * 市价变动指令记录交易对以及价格
+ *
+ * @author yjt
+ * @since 2020/11/6 上午10:40
+ */
+final class CommandCodec {
+
+    /**
+     * 数值使用 long 存储
+     */
+    private static final byte DECIMAL_LONG = 0;
+
+    /**
+     * 数值使用字节数组存储
+     */
+    private static final byte DECIMAL_BYTES = 1;
+
+    private static final Cmd[] CMDS = Cmd.values();
+    private static final Category[] CATEGORIES = Category.values();
+    private static final OrderType[] TYPES = OrderType.values();
+    private static final OrderSide[] SIDES = OrderSide.values();
+    private static final DifferencePriceStrategy[] STRATEGIES = DifferencePriceStrategy.values();
+    private static final OrderTimeInForce[] TIME_IN_FORCES = OrderTimeInForce.values();
+    private static final ActivateStatus[] ACTIVATE_STATUSES = ActivateStatus.values();
+
+    private CommandCodec() {
+    }
+
+    /**
+     * 编码指令
+     *
+     * @param cmd
+     *         指令类型
+     * @param order
+     *         订单
+     * @param buf
+     *         目标缓冲区
+     */
+    static void encode(Cmd cmd, Order order, ByteBuffer buf) {
+        if (cmd == Cmd.ADD_ORDER) {
+            encodeOrder(order, buf);
+            return;
+        }
+        putEnum(buf, cmd);
+        putString(buf, order.getId());
+        putString(buf, order.getCoinId());
+        putString(buf, order.getCurrencyId());
+    }
+
+    /**
+     * 编码市价变动指令
+     *
+     * @param cmd
+     *         市价变动指令
+     * @param buf
+     *         目标缓冲区
+     */
+    static void encode(PriceChangeCommand cmd, ByteBuffer buf) {
+        putEnum(buf, Cmd.PRICE_CHANGE);
+        putString(buf, cmd.getMsg().getSymbol());
+        putDecimal(buf, cmd.getMsg().getPrice());
+        buf.put((byte) (cmd.isThird() ? 1 : 0));
+    }
+
+    /**
+     * 按照添加订单指令的格式编码订单的全部数据, 账本快照也使用该格式
+     *
+     * @param order
+     *         订单
+     * @param buf
+     *         目标缓冲区
+     */
+    static void encodeOrder(Order order, ByteBuffer buf) {
+        putEnum(buf, Cmd.ADD_ORDER);
+        putString(buf, order.getId());
+        putString(buf, order.getCoinId());
+        putString(buf, order.getCurrencyId());
+        putString(buf, order.getUid());
+        putEnum(buf, order.getCategory());
+        putEnum(buf, order.getType());
+        putEnum(buf, order.getSide());
+        putEnum(buf, order.getDifferencePriceStrategy());
+        putEnum(buf, order.getTimeInForce());
+        putEnum(buf, order.getActivated());
+        putDecimal(buf, order.getPrice());
+        putDecimal(buf, order.getPriceUpperBound());
+        putDecimal(buf, order.getPriceLowerBound());
+        putDecimal(buf, order.getTriggerPrice());
+        putDecimal(buf, order.getQuantity());
+        putDecimal(buf, order.getExecutedQuantity());
+        putDecimal(buf, order.getLeavesQuantity());
+        putDecimal(buf, order.getTotalAmount());
+        putDecimal(buf, order.getExecutedAmount());
+        putDecimal(buf, order.getLeavesAmount());
+        buf.putLong(order.getCreateDateTime() == null ? Long.MIN_VALUE : order.getCreateDateTime().getTime());
+        buf.putLong(order.getVersion());
+    }
+
+    /**
+     * 解码指令日志中的一条记录
+     *
+     * @param buf
+     *         数据
+     *
+     * @return 市价变动指令 {@link PriceChangeCommand} 或者订单指令 (参考 {@link #decode(ByteBuffer)})
+     */
+    static Command decodeCommand(ByteBuffer buf) {
+        if (buf.get(buf.position()) != Cmd.PRICE_CHANGE.ordinal()) {
+            return decode(buf);
+        }
+        buf.get();
+        PriceChangeMessage msg = new PriceChangeMessage();
+        msg.setSymbol(getString(buf));
+        msg.setPrice(getDecimal(buf));
+        return new PriceChangeCommand(msg, buf.get() == 1);
+    }
+
+    /**
+     * 解码订单指令
+     *
+     * @param buf
+     *         数据
+     *
+     * @return 订单指令, 非添加订单的指令只包含订单ID以及交易对
+     */
+    static Order decode(ByteBuffer buf) {
+        Order order = new Order();
+        order.setCmd(getEnum(buf, CMDS));
+        order.setId(getString(buf));
+        order.setCoinId(getString(buf));
+        order.setCurrencyId(getString(buf));
+        if (order.getCmd() != Cmd.ADD_ORDER) {
+            return order;
+        }
+        order.setUid(getString(buf));
+        order.setCategory(getEnum(buf, CATEGORIES));
+        order.setType(getEnum(buf, TYPES));
+        order.setSide(getEnum(buf, SIDES));
+        order.setDifferencePriceStrategy(getEnum(buf, STRATEGIES));
+        order.setTimeInForce(getEnum(buf, TIME_IN_FORCES));
+        order.setActivated(getEnum(buf, ACTIVATE_STATUSES));
+        order.setPrice(getDecimal(buf));
+        order.setPriceUpperBound(getDecimal(buf));
+        order.setPriceLowerBound(getDecimal(buf));
+        order.setTriggerPrice(getDecimal(buf));
+        order.setQuantity(getDecimal(buf));
+        order.setExecutedQuantity(getDecimal(buf));
+        order.setLeavesQuantity(getDecimal(buf));
+        order.setTotalAmount(getDecimal(buf));
+        order.setExecutedAmount(getDecimal(buf));
+        order.setLeavesAmount(getDecimal(buf));
+        long createDateTime = buf.getLong();
+        order.setCreateDateTime(createDateTime == Long.MIN_VALUE ? null : new Date(createDateTime));
+        order.setVersion(buf.getLong());
+        return order;
+    }
+
+    private static void putEnum(ByteBuffer buf, Enum<?> e) {
+        buf.put(e == null ? -1 : (byte) e.ordinal());
+    }
+
+    private static <E extends Enum<E>> E getEnum(ByteBuffer buf, E[] values) {
+        byte ordinal = buf.get();
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    static void putString(ByteBuffer buf, String s) {
+        if (s == null) {
+            buf.putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    static String getString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void putDecimal(ByteBuffer buf, BigDecimal v) {
+        if (v == null) {
+            v = BigDecimal.ZERO;
+        }
+        BigInteger unscaled = v.unscaledValue();
+        if (unscaled.bitLength() < 64) {
+            buf.put(DECIMAL_LONG);
+            buf.putInt(v.scale());
+            buf.putLong(unscaled.longValue());
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            buf.put(DECIMAL_BYTES);
+            buf.putInt(v.scale());
+            buf.putInt(bytes.length);
+            buf.put(bytes);
+        }
+    }
+
+    static BigDecimal getDecimal(ByteBuffer buf) {
+        byte type = buf.get();
+        int scale = buf.getInt();
+        if (type == DECIMAL_LONG) {
+            return BigDecimal.valueOf(buf.getLong(), scale);
+        }
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+}
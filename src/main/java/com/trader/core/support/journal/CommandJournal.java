@@ -0,0 +1,318 @@
+package com.trader.core.support.journal;
+
+import com.trader.core.Command;
+import com.trader.core.def.Cmd;
+import com.trader.core.entity.Order;
+import com.trader.core.support.processor.PriceChangeCommand;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * 指令日志
+ * <p>
+ * 只追加写入的内存映射文件, 按顺序记录撮合引擎入口队列中的每一条指令 (添加 / 取消 / 市价变动),
+ * 重启之后按顺序将日志回放给处理器即可重建所有的账本 (包括已经被触发的止盈止损订单), 不需要在撮合线程中同步调用数据库.
+ * <p>
+ * 日志由多个固定大小的段文件组成, 文件名为该段中第一条指令的序号. 每条记录的格式为:
+ * [长度 int][序号 long][指令数据], 长度最后写入, 所以进程崩溃时未写完的记录会被当作日志结尾.
+ * 写入只依赖操作系统回写映射的内存页, 进程崩溃不会丢失数据, 如果需要应对掉电请调用 {@link #force()}.
+ * <p>
+ * 注意: 写入不是线程安全的, 只能由撮合引擎的入口线程写入
+ *
+ * @author yjt
+ * @since 2020/11/6 上午10:20
+ */
+public class CommandJournal implements Closeable {
+
+    /**
+     * 段文件后缀
+     */
+    private static final String SUFFIX = ".journal";
+
+    /**
+     * 记录头: 长度 + 序号
+     */
+    private static final int HEADER_SIZE = 4 + 8;
+
+    /**
+     * 默认的段文件大小
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * 日志目录
+     */
+    private final File dir;
+
+    /**
+     * 段文件大小
+     */
+    private final int segmentSize;
+
+    /**
+     * 当前写入的段
+     */
+    private MappedByteBuffer segment;
+
+    /**
+     * 最后一条指令的序号
+     */
+    private long sequence;
+
+    /**
+     * 编码缓冲区
+     */
+    private ByteBuffer scratch = ByteBuffer.allocate(512);
+
+    private CommandJournal(File dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 打开指令日志, 如果目录中已经存在日志则在最后一条记录之后继续追加
+     *
+     * @param dir
+     *         日志目录
+     * @param segmentSize
+     *         段文件大小
+     *
+     * @return 指令日志
+     *
+     * @throws IOException
+     *         如果打开文件失败
+     */
+    public static CommandJournal open(String dir, int segmentSize) throws IOException {
+        File directory = new File(Objects.requireNonNull(dir, "journal dir is null"));
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建指令日志目录: " + dir);
+        }
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("非法段文件大小: " + segmentSize);
+        }
+        CommandJournal journal = new CommandJournal(directory, segmentSize);
+        File[] segments = journal.segments();
+        if (segments.length == 0) {
+            journal.segment = journal.map(journal.newSegment(1));
+        } else {
+            // 找到最后一个段中最后一条记录的位置
+            File last = segments[segments.length - 1];
+            MappedByteBuffer buf = journal.map(last);
+            long seq = firstSequence(last) - 1;
+            while (buf.remaining() >= HEADER_SIZE) {
+                int len = buf.getInt(buf.position());
+                if (len <= 0) {
+                    break;
+                }
+                seq = buf.getLong(buf.position() + 4);
+                buf.position(buf.position() + HEADER_SIZE + len);
+            }
+            journal.segment = buf;
+            journal.sequence = seq;
+        }
+        return journal;
+    }
+
+    /**
+     * 追加一条指令
+     *
+     * @param cmd
+     *         订单指令
+     *
+     * @return 指令序号
+     */
+    public long append(Order cmd) {
+        return append(cmd.getCmd(), cmd);
+    }
+
+    /**
+     * 追加一条指令, 撤单等非添加订单的指令只记录订单ID以及交易对
+     *
+     * @param cmd
+     *         指令类型
+     * @param order
+     *         订单
+     *
+     * @return 指令序号
+     */
+    public long append(Cmd cmd, Order order) {
+        return write(encode(cmd, order));
+    }
+
+    /**
+     * 追加一条市价变动指令
+     *
+     * @param cmd
+     *         市价变动指令
+     *
+     * @return 指令序号
+     */
+    public long append(PriceChangeCommand cmd) {
+        return write(encode(cmd));
+    }
+
+    private long write(ByteBuffer body) {
+        int len = body.remaining();
+        if (HEADER_SIZE + len > segmentSize) {
+            throw new IllegalArgumentException("指令过大: " + len);
+        }
+        long seq = sequence + 1;
+        if (segment.remaining() < HEADER_SIZE + len) {
+            roll(seq);
+        }
+        int pos = segment.position();
+        segment.position(pos + 4);
+        segment.putLong(seq);
+        segment.put(body);
+        // 最后写入长度, 标记该记录完整
+        segment.putInt(pos, len);
+        sequence = seq;
+        return seq;
+    }
+
+    /**
+     * 获取最后一条指令的序号
+     *
+     * @return 序号, 0 表示没有任何指令
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * 将当前段的数据强制刷入磁盘
+     */
+    public void force() {
+        segment.force();
+    }
+
+    /**
+     * 按顺序回放指令
+     *
+     * @param fromSequence
+     *         起始序号 (不包含)
+     * @param consumer
+     *         指令消费者, 指令为订单 (非添加订单的指令只包含订单ID以及交易对) 或者市价变动指令
+     *
+     * @return 最后一条回放的指令序号
+     *
+     * @throws IOException
+     *         如果读取文件失败
+     */
+    public long replay(long fromSequence, Consumer<Command> consumer) throws IOException {
+        File[] segments = segments();
+        long last = fromSequence;
+        for (int i = 0; i < segments.length; i++) {
+            // 下一个段的起始序号不大于 fromSequence, 说明该段已经全部回放过了
+            if (i + 1 < segments.length && firstSequence(segments[i + 1]) <= fromSequence + 1) {
+                continue;
+            }
+            ByteBuffer buf = mapReadOnly(segments[i]);
+            while (buf.remaining() >= HEADER_SIZE) {
+                int len = buf.getInt();
+                if (len <= 0) {
+                    break;
+                }
+                long seq = buf.getLong();
+                if (seq <= fromSequence) {
+                    buf.position(buf.position() + len);
+                    continue;
+                }
+                ByteBuffer body = buf.slice();
+                body.limit(len);
+                consumer.accept(CommandCodec.decodeCommand(body));
+                buf.position(buf.position() + len);
+                last = seq;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 关闭日志, 关闭前会将数据刷入磁盘
+     */
+    @Override
+    public void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    private ByteBuffer encode(Cmd cmd, Order order) {
+        while (true) {
+            scratch.clear();
+            try {
+                CommandCodec.encode(cmd, order, scratch);
+                scratch.flip();
+                return scratch;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() << 1);
+            }
+        }
+    }
+
+    private ByteBuffer encode(PriceChangeCommand cmd) {
+        while (true) {
+            scratch.clear();
+            try {
+                CommandCodec.encode(cmd, scratch);
+                scratch.flip();
+                return scratch;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() << 1);
+            }
+        }
+    }
+
+    private void roll(long firstSequence) {
+        segment.force();
+        try {
+            segment = map(newSegment(firstSequence));
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建指令日志段文件", e);
+        }
+    }
+
+    private File newSegment(long firstSequence) {
+        return new File(dir, String.format("%020d%s", firstSequence, SUFFIX));
+    }
+
+    private File[] segments() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long firstSequence(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private static ByteBuffer mapReadOnly(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.trader.core.support.journal;
+
+import com.trader.core.Command;
+import com.trader.core.def.Cmd;
+import lombok.Getter;
+
+import java.util.Collection;
+
+/**
+ * 账本快照指令
+ * 由撮合引擎入口线程发送给每一个处理器, 处理器处理到该指令时, 该处理器中所有序号不大于快照序号的指令都已经处理完毕
+ *
+ * @author yjt
+ * @since 2020/11/9 上午11:20
+ */
+@Getter
+public class SnapshotCommand implements Command {
+
+    /**
+     * 快照会话
+     */
+    private final SnapshotStore.Session session;
+
+    /**
+     * 处理器序号
+     */
+    private final int part;
+
+    /**
+     * 该处理器负责的交易对
+     */
+    private final Collection<String> symbols;
+
+    public SnapshotCommand(SnapshotStore.Session session, int part, Collection<String> symbols) {
+        this.session = session;
+        this.part = part;
+        this.symbols = symbols;
+    }
+
+    @Override
+    public Cmd getCmd() {
+        return Cmd.SNAPSHOT;
+    }
+}
@@ -0,0 +1,367 @@
+package com.trader.core.support.journal;
+
+import com.trader.core.def.ActivateStatus;
+import com.trader.core.def.Cmd;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 账本快照存储
+ * <p>
+ * 快照由撮合引擎入口线程按照指令日志的位置发起, 每一个处理器在自己的线程中将账本编码为二进制数据,
+ * 然后交给后台线程异步写入文件, 所以撮合线程只需要承担编码的开销.
+ * <p>
+ * 每一次快照为一个以日志序号命名的目录, 目录中每个处理器一个文件,
+ * 所有处理器的文件都写入完成后才会写入完成标记, 加载时只会选择最新的一个完整快照.
+ *
+ * @author yjt
+ * @since 2020/11/9 上午10:30
+ */
+public class SnapshotStore {
+
+    /**
+     * 文件头
+     */
+    private static final int MAGIC = 0x534E4150;
+
+    /**
+     * 文件格式版本
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * 完成标记文件
+     */
+    private static final String COMPLETE = "COMPLETE";
+
+    /**
+     * 快照文件后缀
+     */
+    private static final String SUFFIX = ".snapshot";
+
+    /**
+     * 保留的快照个数
+     */
+    private static final int NUM_OF_RETAINED = 2;
+
+    /**
+     * 快照目录
+     */
+    private final File dir;
+
+    /**
+     * 写入线程
+     */
+    private final ExecutorService writer;
+
+    public SnapshotStore(String dir) throws IOException {
+        this.dir = new File(dir);
+        if (!this.dir.exists() && !this.dir.mkdirs()) {
+            throw new IOException("无法创建快照目录: " + dir);
+        }
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("MatchEngine:SnapshotWriter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 开始一次快照
+     *
+     * @param sequence
+     *         快照对应的指令日志序号, 也就是快照包含了该序号 (包含) 之前的所有指令
+     * @param numOfParts
+     *         参与快照的处理器个数
+     *
+     * @return 快照会话
+     */
+    public Session begin(long sequence, int numOfParts) {
+        Session session = new Session(sequence, numOfParts);
+        if (numOfParts == 0) {
+            writer.execute(session::complete);
+        }
+        return session;
+    }
+
+    /**
+     * 加载最新的完整快照
+     *
+     * @return 快照, 如果不存在则返回 {@code null}
+     *
+     * @throws IOException
+     *         如果读取文件失败
+     */
+    public Snapshot loadLatest() throws IOException {
+        File[] snapshots = snapshots();
+        for (int i = snapshots.length - 1; i >= 0; i--) {
+            if (!new File(snapshots[i], COMPLETE).exists()) {
+                continue;
+            }
+            Snapshot snapshot = new Snapshot(Long.parseLong(snapshots[i].getName()));
+            File[] parts = snapshots[i].listFiles((d, name) -> name.endsWith(SUFFIX));
+            if (parts != null) {
+                for (File part : parts) {
+                    decode(ByteBuffer.wrap(Files.readAllBytes(part.toPath())), snapshot.books);
+                }
+            }
+            return snapshot;
+        }
+        return null;
+    }
+
+    /**
+     * 停止写入线程, 等待已经提交的快照写入完成
+     */
+    public void shutdownAndWait() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 将账本编码为二进制数据, 必须在账本所属的处理器线程中调用
+     * 只记录未结束的订单, 已经激活的止盈止损订单记录在买卖盘中
+     *
+     * @param books
+     *         账本
+     *
+     * @return 二进制数据
+     */
+    public static byte[] encode(Collection<OrderBook> books) {
+        int capacity = 1024;
+        for (OrderBook book : books) {
+            capacity += (book.getBidOrders().size() + book.getAskOrders().size() +
+                    book.getBuyStopOrders().size() + book.getSellStopOrders().size()) * 256;
+        }
+        while (true) {
+            ByteBuffer buf = ByteBuffer.allocate(capacity);
+            try {
+                buf.putInt(MAGIC);
+                buf.put(VERSION);
+                buf.putInt(books.size());
+                for (OrderBook book : books) {
+                    CommandCodec.putString(buf, book.getSymbolId());
+                    CommandCodec.putDecimal(buf, book.getLastTradePrice());
+                    encodeOrders(buf, book.getBidOrders(), false);
+                    encodeOrders(buf, book.getAskOrders(), false);
+                    encodeOrders(buf, book.getBuyStopOrders(), true);
+                    encodeOrders(buf, book.getSellStopOrders(), true);
+                }
+                return Arrays.copyOf(buf.array(), buf.position());
+            } catch (BufferOverflowException e) {
+                capacity <<= 1;
+            }
+        }
+    }
+
+    private static void encodeOrders(ByteBuffer buf, Collection<Order> orders, boolean stop) {
+        int countPos = buf.position();
+        buf.putInt(0);
+        int count = 0;
+        for (Order order : orders) {
+            if (order.isFinished() || order.isCanceled()) {
+                continue;
+            }
+            // 待激活队列中已经激活的订单会在买卖盘中记录
+            if (stop && order.isActivated()) {
+                continue;
+            }
+            CommandCodec.encodeOrder(order, buf);
+            count++;
+        }
+        buf.putInt(countPos, count);
+    }
+
+    private static void decode(ByteBuffer buf, List<BookState> books) throws IOException {
+        if (buf.getInt() != MAGIC || buf.get() != VERSION) {
+            throw new IOException("非法快照文件");
+        }
+        int numOfBooks = buf.getInt();
+        for (int i = 0; i < numOfBooks; i++) {
+            BookState book = new BookState(CommandCodec.getString(buf), CommandCodec.getDecimal(buf));
+            decodeOrders(buf, book.orders);
+            decodeOrders(buf, book.orders);
+            decodeOrders(buf, book.stopOrders);
+            decodeOrders(buf, book.stopOrders);
+            for (Order stop : book.stopOrders) {
+                stop.setActivated(ActivateStatus.NO_ACTIVATED);
+            }
+            books.add(book);
+        }
+    }
+
+    private static void decodeOrders(ByteBuffer buf, List<Order> orders) {
+        int count = buf.getInt();
+        for (int i = 0; i < count; i++) {
+            Order order = CommandCodec.decode(buf);
+            order.setCmd(Cmd.ADD_ORDER);
+            orders.add(order);
+        }
+    }
+
+    private File[] snapshots() {
+        File[] files = dir.listFiles(f -> f.isDirectory() && f.getName().matches("\\d+"));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private void cleanup() {
+        File[] snapshots = snapshots();
+        int complete = 0;
+        for (int i = snapshots.length - 1; i >= 0; i--) {
+            if (complete >= NUM_OF_RETAINED) {
+                delete(snapshots[i]);
+            } else if (new File(snapshots[i], COMPLETE).exists()) {
+                complete++;
+            }
+        }
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * 一次快照
+     */
+    public class Session {
+
+        /**
+         * 快照目录
+         */
+        private final File target;
+
+        /**
+         * 剩余未写入的处理器个数
+         */
+        private final AtomicInteger remaining;
+
+        private Session(long sequence, int numOfParts) {
+            this.target = new File(dir, String.format("%020d", sequence));
+            this.remaining = new AtomicInteger(numOfParts);
+        }
+
+        /**
+         * 异步写入一个处理器的快照数据
+         *
+         * @param part
+         *         处理器序号
+         * @param data
+         *         {@link #encode(Collection)} 编码后的数据
+         */
+        public void write(int part, byte[] data) {
+            writer.execute(() -> {
+                try {
+                    if (!target.exists() && !target.mkdirs()) {
+                        throw new IOException("无法创建快照目录: " + target);
+                    }
+                    File tmp = new File(target, part + SUFFIX + ".tmp");
+                    Files.write(tmp.toPath(), data);
+                    Files.move(tmp.toPath(), new File(target, part + SUFFIX).toPath(),
+                            StandardCopyOption.ATOMIC_MOVE);
+                    if (remaining.decrementAndGet() == 0) {
+                        complete();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+
+        private void complete() {
+            try {
+                if (!target.exists() && !target.mkdirs()) {
+                    throw new IOException("无法创建快照目录: " + target);
+                }
+                Files.write(new File(target, COMPLETE).toPath(), new byte[0]);
+                cleanup();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 快照数据
+     */
+    @Getter
+    public static class Snapshot {
+
+        /**
+         * 快照对应的指令日志序号
+         */
+        private final long sequence;
+
+        /**
+         * 账本
+         */
+        private final List<BookState> books = new ArrayList<>();
+
+        private Snapshot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * 账本快照数据
+     */
+    @Getter
+    public static class BookState {
+
+        /**
+         * 交易对
+         */
+        private final String symbolId;
+
+        /**
+         * 最后一条成交价
+         */
+        private final BigDecimal lastTradePrice;
+
+        /**
+         * 买卖盘中的订单 (按照撮合优先级排序)
+         */
+        private final List<Order> orders = new ArrayList<>();
+
+        /**
+         * 待激活的止盈止损订单
+         */
+        private final List<Order> stopOrders = new ArrayList<>();
+
+        private BookState(String symbolId, BigDecimal lastTradePrice) {
+            this.symbolId = symbolId;
+            this.lastTradePrice = lastTradePrice;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.trader.core.support.processor;
+
+import com.trader.core.Command;
+import com.trader.core.def.CancelResult;
+import com.trader.core.def.Cmd;
+import com.trader.core.entity.Order;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 撤单指令
+ * <p>
+ * 与下单指令一样经过撮合引擎的入口队列排序, 然后由订单所属的处理器判断订单状态并撤销,
+ * 调用方线程不会修改订单, 也不需要加锁. 结果通过 {@link #getResult()} 返回,
+ * 注意非异步的回调会在处理器线程中执行, 耗时的回调应该使用 {@code *Async} 方法
+ *
+ * @author yjt
+ * @since 2020/11/12 下午4:25
+ */
+@Getter
+public class CancelCommand implements Command {
+
+    /**
+     * 需要撤销的订单, 调用方只读取订单ID以及交易对
+     */
+    private final Order order;
+
+    /**
+     * 撤单结果
+     */
+    private final CompletableFuture<CancelResult> result = new CompletableFuture<>();
+
+    public CancelCommand(Order order) {
+        this.order = order;
+    }
+
+    /**
+     * 完成撤单
+     *
+     * @param cancelResult
+     *         撤单结果
+     */
+    public void complete(CancelResult cancelResult) {
+        result.complete(cancelResult);
+    }
+
+    @Override
+    public Cmd getCmd() {
+        return Cmd.CANCEL_ORDER;
+    }
+}
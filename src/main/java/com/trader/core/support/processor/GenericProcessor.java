@@ -1,28 +1,44 @@
 package com.trader.core.support.processor;
 
+import com.trader.core.Command;
+import com.trader.core.MatchHandler;
 import com.trader.core.Matcher;
 import com.trader.core.OrderRouter;
 import com.trader.core.Processor;
-import com.trader.core.context.MatchingContext;
+import com.trader.core.context.ProcessorMatchingContext;
 import com.trader.core.context.ThreadLocalMatchingContext;
 import com.trader.core.def.ActivateStatus;
+import com.trader.core.def.CancelResult;
 import com.trader.core.def.Cmd;
 import com.trader.core.entity.Order;
 import com.trader.core.entity.OrderBook;
+import com.trader.core.entity.OrderUndoLog;
 import com.trader.core.handler.MatchEventHandlerRegistry;
 import com.trader.core.exception.MatchExceptionHandler;
 import com.trader.core.matcher.MatcherManager;
 import com.trader.core.matcher.TradeResult;
+import com.trader.core.support.journal.SnapshotCommand;
+import com.trader.core.support.journal.SnapshotStore;
+import com.trader.core.support.scheduler.MigrationCommand;
 import com.trader.market.MarketManager;
 import com.trader.market.publish.msg.PriceChangeMessage;
 import com.trader.utils.ThreadLocalUtils;
 import com.trader.utils.disruptor.AbstractDisruptorConsumer;
 import com.trader.utils.disruptor.DisruptorQueue;
 import com.trader.utils.disruptor.DisruptorQueueFactory;
+import com.trader.utils.disruptor.QueueWaitStrategy;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * 通用处理器,负责处理订单
@@ -40,7 +56,7 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
     /**
      * 输入队列
      */
-    private DisruptorQueue<Order> inputQueue;
+    private DisruptorQueue<Command> inputQueue;
 
     /**
      * 订单簿管理器
@@ -57,16 +73,6 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
      */
     private MarketManager marketMgr;
 
-    /**
-     * 当前选中的订单簿
-     */
-    private OrderBook currentOrderBook;
-
-    /**
-     * 当前选中的匹配器
-     */
-    private Matcher currentMatcher;
-
     /**
      * 处理器名称
      */
@@ -82,6 +88,21 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
      */
     private MatchExceptionHandler matchExceptionHandler;
 
+    /**
+     * 处理订单指令累计花费的时间 (纳秒), 只由处理器线程写入, 调度器用于计算处理器负载
+     */
+    private volatile long busyNanos;
+
+    /**
+     * 是否在每一笔成交后同步检查并激活止盈止损订单
+     */
+    private boolean synchronousStopActivation;
+
+    /**
+     * 还没有送达目标处理器的转发指令个数, 只由处理器线程写入
+     */
+    private volatile int numOfForwarding;
+
     /**
      * hide default constructor
      */
@@ -94,6 +115,16 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
                             MarketManager marketMgr,
                             MatchExceptionHandler matchExceptionHandler,
                             int queueSize) {
+        this(name, router, matcherMgr, marketMgr, matchExceptionHandler, queueSize, QueueWaitStrategy.BLOCKING);
+    }
+
+    public GenericProcessor(String name,
+                            OrderRouter router,
+                            MatcherManager matcherMgr,
+                            MarketManager marketMgr,
+                            MatchExceptionHandler matchExceptionHandler,
+                            int queueSize,
+                            QueueWaitStrategy waitStrategy) {
         this.name = name;
         this.router = Objects.requireNonNull(router);
         this.matcherMgr = Objects.requireNonNull(matcherMgr);
@@ -102,10 +133,12 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
         this.ptf = new ProcessorThreadFactory(this.name());
 
         // 队列创建
-        inputQueue = DisruptorQueueFactory.createSingleQueue(queueSize,
+        // 入口线程以及交易对迁移时的转发都会写入该队列, 所以需要多生产者队列
+        inputQueue = DisruptorQueueFactory.createQueue(queueSize,
                 ptf,
                 new OrderProcessor(),
-                matchExceptionHandler.toDisruptorHandler());
+                matchExceptionHandler.toDisruptorHandler(),
+                waitStrategy);
     }
 
     public GenericProcessor(String name,
@@ -119,12 +152,38 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
         this.ptf = new ProcessorThreadFactory(this.name());
 
         // 队列创建
-        inputQueue = DisruptorQueueFactory.createSingleQueue(DEFAULT_INPUT_QUEUE_SIZE,
+        inputQueue = DisruptorQueueFactory.createQueue(DEFAULT_INPUT_QUEUE_SIZE,
                 ptf,
                 new OrderProcessor(),
                 matchExceptionHandler.toDisruptorHandler());
     }
 
+    @Override
+    public boolean isIdle() {
+        return inputQueue.isEmpty() && numOfForwarding == 0;
+    }
+
+    /**
+     * 处理订单指令累计花费的时间
+     *
+     * @return 纳秒
+     */
+    public long busyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * 设置是否同步激活止盈止损订单, 需要在处理器处理指令之前设置
+     * 开启后每一笔成交都会使用成交价检查该账本的止盈止损订单, 被触发的订单在同一个处理周期内激活并撮合,
+     * 不需要等待市价变动事件
+     *
+     * @param synchronousStopActivation
+     *         是否同步激活
+     */
+    public void setSynchronousStopActivation(boolean synchronousStopActivation) {
+        this.synchronousStopActivation = synchronousStopActivation;
+    }
+
     @Override
     public String name() {
         return this.name;
@@ -145,155 +204,309 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
     }
 
     /**
-     * 执行一个订单
+     * 执行一个指令
      *
-     * @param order 订单
+     * @param command 指令
      */
     @Override
-    public void exec(Order order) {
-        inputQueue.add(order);
+    public void exec(Command command) {
+        inputQueue.add(command);
     }
 
     /**
-     * 市价价格变动
+     * 非阻塞地放入一个指令, 队列已满时直接返回
+     *
+     * @param command
+     *         指令
+     *
+     * @return 是否放入成功
+     */
+    public boolean tryExec(Command command) {
+        return inputQueue.offer(command);
+    }
+
+    /**
+     * 批量放入指令, 一次占用输入队列中一段连续的位置
+     *
+     * @param commands
+     *         指令列表
+     */
+    public void execAll(List<? extends Command> commands) {
+        inputQueue.addAll(commands);
+    }
+
+    /**
+     * 市价价格变动, 转换为指令放入处理器队列, 由处理器线程触发止盈止损订单
+     * 注意: 直接放入的指令不会写入指令日志, 撮合引擎通过入口队列提交 {@link PriceChangeCommand}
      */
     @Override
     public void execPriceChange(PriceChangeMessage msg) {
-        Collection<OrderBook> books = router.routeToNeedToActiveBook(msg.getSymbol());
-        if (books.isEmpty()) {
-            return;
-        }
-        for (OrderBook book : books) {
-            if (!book.getBuyStopOrders().isEmpty()) {
-                Iterator<Order> bidIt = book.getBuyStopOrders().iterator();
-                while (bidIt.hasNext()) {
-                    Order bid = bidIt.next();
-                    if (bid.isNotActivated()) {
-                        if (bid.getTriggerPrice().compareTo(msg.getPrice()) >= 0) {
-                            System.out.println(String.format("[MatchProcessor]: active stop order," +
-                                            " orderId: [%s] side: [%s]" +
-                                            "triggerPrice: [%s] latestPrice: [%s]",
-                                    bid.getId(),
-                                    bid.getSide().name(),
-                                    bid.getTriggerPrice().toPlainString(),
-                                    msg.getPrice().toPlainString()));
-                            bid.setCmd(Cmd.ACTIVE_ORDER);
-                            bid.setActivated(ActivateStatus.ACTIVATING);
-                            exec(bid);
-                        } else {
-                            break;
-                        }
-                    } else if (bid.isActivated()) {
-                        bidIt.remove();
-                    }
-                }
-                continue;
-            }
-
-            if (!book.getSellStopOrders().isEmpty()) {
-                Iterator<Order> askIt = book.getSellStopOrders().iterator();
-                while (askIt.hasNext()) {
-                    Order ask = askIt.next();
-
-                    if (ask.isNotActivated()) {
-                        if (ask.getTriggerPrice().compareTo(msg.getPrice()) <= 0) {
-                            System.out.println(String.format("[MatchProcessor]: active stop order, " +
-                                            "orderId: [%s] side: [%s]" +
-                                            "triggerPrice: [%s] latestPrice: [%s]",
-                                    ask.getId(),
-                                    ask.getSide().name(),
-                                    ask.getTriggerPrice().toPlainString(),
-                                    msg.getPrice().toPlainString()));
-                            ask.setCmd(Cmd.ACTIVE_ORDER);
-                            ask.setActivated(ActivateStatus.ACTIVATING);
-                            exec(ask);
-                        }else {
-                            break;
-                        }
-                    } else if (ask.isActivated()) {
-                        askIt.remove();
-                    }
-                }
-            }
-        }
+        exec(PriceChangeCommand.ofThird(msg));
     }
 
     /**
      * 真正的逻辑实现
      */
-    class OrderProcessor extends AbstractDisruptorConsumer<Order> {
+    class OrderProcessor extends AbstractDisruptorConsumer<Command> {
 
 
         /**
          * 进行数据处理
          *
-         * @param order
-         *         订单
+         * @param command
+         *         指令
          */
         @Override
-        public void process(Order order) {
+        public void process(Command command) {
+            if (!forwarding.isEmpty()) {
+                flushForwarding();
+            }
+            if (command.getCmd() == Cmd.SNAPSHOT) {
+                snapshot((SnapshotCommand) command);
+                return;
+            }
+            if (command.getCmd() == Cmd.MIGRATE) {
+                migrate((MigrationCommand) command);
+                return;
+            }
+
+            boolean priceChange = command.getCmd() == Cmd.PRICE_CHANGE;
+            boolean cancel = command instanceof CancelCommand;
+
+            // 交易对已经迁移到其它处理器, 迁移之前放入的该交易对的指令转发给新的处理器
+            if (!migratedSymbols.isEmpty()) {
+                String symbol;
+                if (priceChange) {
+                    symbol = ((PriceChangeCommand) command).getMsg().getSymbol();
+                } else if (cancel) {
+                    symbol = ((CancelCommand) command).getOrder().getSymbol();
+                } else {
+                    symbol = ((Order) command).getSymbol();
+                }
+                GenericProcessor target = migratedSymbols.get(symbol);
+                if (target != null) {
+                    forward(target, command);
+                    return;
+                }
+            }
+
+            long start = System.nanoTime();
+            try {
+                if (priceChange) {
+                    triggerStopOrders(((PriceChangeCommand) command).getMsg());
+                } else if (cancel) {
+                    cancel((CancelCommand) command);
+                } else {
+                    Order order = (Order) command;
+                    OrderBook book = router.routeTo(order);
+                    ProcessorMatchingContext ctx = context();
+                    ctx.setOrderBook(book);
+                    try {
+                        process(ctx, book, order);
+                    } finally {
+                        // 被触发的订单已经从索引中移除, 即使撮合发生异常也需要激活
+                        activeTriggeredStopOrders(ctx);
+                        ctx.reset();
+                    }
+                }
+            } finally {
+                busyNanos += System.nanoTime() - start;
+            }
+        }
+
+        /**
+         * 撤单, 订单状态只由处理器线程修改, 所以这里的判断不会与撮合发生竞争
+         *
+         * @param command
+         *         撤单指令
+         */
+        private void cancel(CancelCommand command) {
+            Order order = command.getOrder();
+            if (order.isCanceled()) {
+                command.complete(CancelResult.CANCELED);
+                return;
+            }
+            if (order.isFinished()) {
+                command.complete(CancelResult.ALREADY_FILLED);
+                return;
+            }
             OrderBook book = router.routeTo(order);
+            ProcessorMatchingContext ctx = context();
+            ctx.setOrderBook(book);
+            try {
+                if (order.isStopOrder()) {
+                    // 未激活的止盈止损订单从触发价索引中移除
+                    book.removeWaitActiveStopOrder(order);
+                    order.setActivated(ActivateStatus.ACTIVATED);
+                }
+                order.markCanceled();
+                book.removeOrder(order);
+                executeOrderCancel(ctx, order);
+            } finally {
+                ctx.reset();
+            }
+            command.complete(CancelResult.CANCELED);
+        }
+
+        /**
+         * 市价变动, 从触发价索引中截取所有被穿越的止盈止损订单并直接激活
+         *
+         * @param msg
+         *         价格变动消息
+         */
+        private void triggerStopOrders(PriceChangeMessage msg) {
+            Collection<OrderBook> books = router.routeToNeedToActiveBook(msg.getSymbol());
+            for (OrderBook book : books) {
+                book.triggerStopOrders(msg.getPrice(), triggeredStopOrders);
+            }
+            ProcessorMatchingContext ctx = context();
+            try {
+                activeTriggeredStopOrders(ctx);
+            } finally {
+                ctx.reset();
+            }
+        }
+
+        /**
+         * 激活已经被触发的止盈止损订单
+         * 开启同步激活后, 激活的订单撮合产生的成交可能会继续触发其它止盈止损订单, 这些订单也会在这里依次激活
+         *
+         * @param ctx
+         *         撮合上下文
+         */
+        private void activeTriggeredStopOrders(ProcessorMatchingContext ctx) {
+            if (triggeredStopOrders.isEmpty()) {
+                return;
+            }
+            OrderBook current = ctx.getOrderBook();
+            try {
+                for (int i = 0; i < triggeredStopOrders.size(); i++) {
+                    Order stopOrder = triggeredStopOrders.get(i);
+                    // 已经撤销的订单 (撤单指令还在队列中) 不再激活
+                    if (!stopOrder.isNotActivated() || stopOrder.isCanceled()) {
+                        continue;
+                    }
+                    OrderBook book = router.routeTo(stopOrder);
+                    ctx.setOrderBook(book);
+                    stopOrder.setActivated(ActivateStatus.ACTIVATING);
+                    activeStopOrder(ctx, book, stopOrder);
+                }
+            } finally {
+                triggeredStopOrders.clear();
+                ctx.setOrderBook(current);
+            }
+        }
+
+        private void process(ProcessorMatchingContext ctx, OrderBook book, Order order) {
+            List<MatchHandler> handlers = handlers();
 
             // 如果为添加订单
             if (order.isAddCmd()) {
                 book.addOrder(order);
 
                 // 添加订单
-                executeHandler(h -> {
+                for (int i = 0; i < handlers.size(); i++) {
                     try {
-                        h.onAddOrder(order);
+                        handlers.get(i).onAddOrder(ctx, order);
                     } catch (Exception e) {
                         matchExceptionHandler.handler(Thread.currentThread().getName(),
                                 name(), e, String.format("AddOrder: curOrderId: %s", order.getId()));
                     }
-                });
-                matchOrder(book, order);
+                }
+                matchOrder(ctx, book, order);
                 return;
             }
 
             // 如果为取消订单
             if (order.isCancelCmd()) {
                 book.removeOrder(order);
-                executeOrderCancel(order);
+                // 未激活的止盈止损订单从触发价索引中移除
+                book.removeWaitActiveStopOrder(order);
+                executeOrderCancel(ctx, order);
                 return;
             }
 
-            // 如果为激活止盈止损命令
+            // 如果为激活止盈止损命令 (指令日志回放)
             if (order.isActiveCmd()) {
-                // 账本激活止盈止损订单
-                // 也就是将止盈利止损订单放入撮合买卖盘
-                book.activeStopOrder(order);
-
-                // 添加订单
-                executeHandler(h -> {
-                    try {
-                        h.onActiveStopOrder(order);
-                    } catch (Exception e) {
-                        order.setActivated(ActivateStatus.NO_ACTIVATED);
-                        // 如果激活订单失败则将该订单从买卖盘中移除
-                        book.removeOrder(order);
-                        matchExceptionHandler.handler(Thread.currentThread().getName(),
-                                name(), e, String.format("ActiveStopOrder: curOrderId: %s", order.getId()));
-                    }
-                });
+                book.removeWaitActiveStopOrder(order);
+                activeStopOrder(ctx, book, order);
+            }
+        }
 
-                // 标记订单为已经激活, 止盈止损的订单是另外一条线程（监听市价变动的处理线程）进行检测激活并放入订单事件队列的
-                // 所以在这里我们只是做一个标记处理, 依旧是由监听市价变动的线程进行处理
-                order.setActivated(ActivateStatus.ACTIVATED);
-                matchOrder(book, order);
+        /**
+         * 激活止盈止损订单
+         *
+         * @param ctx
+         *         撮合上下文
+         * @param book
+         *         账本
+         * @param order
+         *         止盈止损订单, 已经不在待激活索引中
+         */
+        private void activeStopOrder(ProcessorMatchingContext ctx, OrderBook book, Order order) {
+            List<MatchHandler> handlers = handlers();
+
+            // 账本激活止盈止损订单
+            // 也就是将止盈利止损订单放入撮合买卖盘
+            book.activeStopOrder(order);
+
+            for (int i = 0; i < handlers.size(); i++) {
+                try {
+                    handlers.get(i).onActiveStopOrder(ctx, order);
+                } catch (Exception e) {
+                    order.setActivated(ActivateStatus.NO_ACTIVATED);
+                    // 如果激活订单失败则将该订单从买卖盘中移除
+                    book.removeOrder(order);
+                    matchExceptionHandler.handler(Thread.currentThread().getName(),
+                            name(), e, String.format("ActiveStopOrder: curOrderId: %s", order.getId()));
+                }
             }
+
+            // 标记订单为已经激活
+            order.setActivated(ActivateStatus.ACTIVATED);
+            matchOrder(ctx, book, order);
+        }
+
+
+        /**
+         * 一批指令处理结束, 等待转发的指令送达, 然后执行延迟的副作用
+         */
+        @Override
+        protected void onEndOfBatch() {
+            awaitForwarding();
+            publishDeferred();
         }
 
+        /**
+         * 执行延迟的副作用 (盘口以及价格推送), 每个账本只推送一次
+         */
+        private void publishDeferred() {
+            if (ctx == null) {
+                return;
+            }
+            List<MatchHandler> handlers = handlers();
+            for (int i = 0; i < handlers.size(); i++) {
+                try {
+                    handlers.get(i).onEndOfBatch(ctx);
+                } catch (Exception e) {
+                    matchExceptionHandler.handler(Thread.currentThread().getName(),
+                            name(), e, "EndOfBatch");
+                }
+            }
+            ctx.clearDeferred();
+        }
 
         /**
          * 订单撮合
          *
+         * @param ctx
+         *         撮合上下文
          * @param book
          *         账本
          * @param order
          *         订单
          */
-        private void matchOrder(OrderBook book, Order order) {
+        private void matchOrder(ProcessorMatchingContext ctx, OrderBook book, Order order) {
             order.markMatching();
 
             // 根据订单类型确定对手盘
@@ -306,36 +519,32 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
                 opponentIt = book.getBidOrders().iterator();
             }
 
-            // 当前撮合的订单簿
-            currentOrderBook = book;
-
-            // 构建上下文
-            buildContext();
+            // 当前订单的匹配器分派表, 撮合过程中只需要根据对手订单类型查表
+            Matcher[][] dispatch = matcherMgr.dispatch(order);
 
             while (opponentIt.hasNext()) {
                 Order best = opponentIt.next();
                 best.markMatching();
 
                 // 查找订单匹配器
-                Matcher matcher = matcherMgr.lookupMatcher(order, best);
+                Matcher currentMatcher = matcherMgr.lookupMatcher(ctx, dispatch, order, best);
 
-                if (matcher == null) {
+                if (currentMatcher == null) {
                     // 这里有可能是因为买单没有足够的余额进行成交, 所以是 continue 而不是 return
                     best.unMarkMatching();
                     continue;
                 }
 
                 // 设置匹配器到上下文中
-                setMatcherOnContext();
-
-                // 当前的匹配器
-                currentMatcher = matcher;
+                ctx.setMatcher(currentMatcher);
 
                 // 订单结束状态补偿
                 if (currentMatcher.isFinished(order)) {
                     order.markFinished();
+                    order.refreshDepth();
                     order.unMarkMatching();
                     best.unMarkMatching();
+                    removeFinished(ctx, book, order);
                     return;
                 }
 
@@ -343,6 +552,8 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
                     best.markFinished();
                     // 移除被标记的订单
                     opponentIt.remove();
+                    // 推送事件
+                    executeOrderCancel(ctx, best);
                     if (order.isBuy()) {
                         opponentIt = book.getAskOrders().iterator();
                     } else {
@@ -353,30 +564,38 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
                 }
 
                 // 执行撮合
-                TradeResult ts = currentMatcher.doTrade(order, best);
+                TradeResult ts = currentMatcher.doTrade(ctx, order, best);
 
-                // 事务
-                Order snap_order = order.snap();
-                Order snap_best = best.snap();
+                // 事务: 记录两个订单成交前的状态
+                undoLog.begin(order, best);
 
                 // 处理订单撮合结果
-                executeHandler((handler) -> {
+                boolean committed = true;
+                List<MatchHandler> handlers = handlers();
+                for (int i = 0; i < handlers.size(); i++) {
                     try {
                         // 执行事件调用链:
                         // 调用链的顶部必然是一个内存操作的 handler, 也就是必须先写入内存
                         // 可能也存在一个持久化的 handler, 所以需要在执行做事务处理
                         // 当 handler 发生异常, 我们将需要将内存数据进行回滚
-                        handler.onExecuteOrder(order, best, ts);
+                        handlers.get(i).onExecuteOrder(ctx, order, best, ts);
                     } catch (Exception e) {
-                        order.rollback(snap_order);
-                        best.rollback(snap_best);
+                        undoLog.rollback();
+                        committed = false;
                         order.markCanceled();
                         best.markCanceled();
                         matchExceptionHandler.handler(Thread.currentThread().getName(),
                                 name(), e,
                                 String.format("TradeException:\n curOrder: %s\n opponentOrder: %s\n ts: %s\n", order, best, ts.toString()));
                     }
-                });
+                }
+                undoLog.end();
+
+                // 同步激活: 使用最新成交价检查止盈止损订单, 被触发的订单在当前订单撮合结束后激活
+                // 成交被回滚时不产生成交价, 不检查
+                if (synchronousStopActivation && committed) {
+                    book.triggerStopOrders(ts.getExecutePrice(), triggeredStopOrders);
+                }
 
                 // 移除已经结束的订单
                 if (currentMatcher.isFinished(best)) {
@@ -388,7 +607,7 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
                     opponentIt.remove();
 
                     // 推送事件
-                    executeOrderCancel(best);
+                    executeOrderCancel(ctx, best);
 
                     if (order.isBuy()) {
                         opponentIt = book.getAskOrders().iterator();
@@ -404,31 +623,160 @@ public class GenericProcessor extends MatchEventHandlerRegistry implements Proce
                     //
                     order.markFinished();
                 }
+
+                // 一次成交的字段修改全部完成后 (包括回滚), 刷新两个订单所在档位的聚合数据, 已经移出买卖盘的订单不需要刷新
+                best.refreshDepth();
+                order.refreshDepth();
                 best.unMarkMatching();
             }
             order.unMarkMatching();
+            removeFinished(ctx, book, order);
+        }
+
+        /**
+         * 撮合结束后移除已经完全成交的吃单方订单, 与完全成交的挂单方一样推送订单移除事件,
+         * 订单管理器据此回收订单, 所以每个结束的订单只会在事务提交之后回收一次
+         *
+         * @param ctx
+         *         撮合上下文
+         * @param book
+         *         账本
+         * @param order
+         *         吃单方订单
+         */
+        private void removeFinished(ProcessorMatchingContext ctx, OrderBook book, Order order) {
+            if (order.isFinished()) {
+                book.removeOrder(order);
+                executeOrderCancel(ctx, order);
+            }
         }
 
-        private MatchingContext cachedMatchingContext;
+        /**
+         * 账本快照, 在处理器线程中编码, 文件异步写入
+         *
+         * @param command
+         *         快照指令
+         */
+        private void snapshot(SnapshotCommand command) {
+            Set<OrderBook> books = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (String symbol : command.getSymbols()) {
+                books.addAll(router.routeToNeedToUpdatePriceBook(symbol));
+            }
+            command.getSession().write(command.getPart(), SnapshotStore.encode(books));
+        }
 
         /**
-         * 构建上下文
+         * 交易对迁移
+         *
+         * @param command
+         *         迁移指令
          */
-        private void buildContext() {
-            ThreadLocalUtils.set(ThreadLocalMatchingContext.NAME_OF_ORDER_BOOK, currentOrderBook);
-            ThreadLocalUtils.set(ThreadLocalMatchingContext.NAME_OF_MARKET_MANAGER, marketMgr);
+        private void migrate(MigrationCommand command) {
+            if (command.isSource()) {
+                // 交接之前推送延迟的盘口, 交接之后账本属于目标处理器
+                publishDeferred();
+                migratedSymbols.put(command.getSymbol(), command.getTarget());
+            } else {
+                migratedSymbols.remove(command.getSymbol());
+            }
+            command.handoff();
+        }
 
-            if (cachedMatchingContext == null) {
-                cachedMatchingContext = new ThreadLocalMatchingContext();
-                ThreadLocalUtils.set(ThreadLocalMatchingContext.NAME_OF_CONTEXT, cachedMatchingContext);
+        /**
+         * 将已经迁移出去的交易对的指令转发给目标处理器
+         * <p>
+         * 转发不能阻塞: 目标处理器可能正在等待本处理器交接另一个交易对 (同一次调整迁移多个交易对),
+         * 而交接的迁移指令排在转发的指令之后. 所以目标队列已满时指令暂存在本地, 按照顺序在之后重试
+         *
+         * @param target
+         *         目标处理器
+         * @param command
+         *         指令
+         */
+        private void forward(GenericProcessor target, Command command) {
+            if (forwarding.isEmpty() && target.tryExec(command)) {
+                return;
+            }
+            forwarding.add(new Forwarding(target, command));
+            numOfForwarding = forwarding.size();
+        }
+
+        /**
+         * 按照顺序重试暂存的转发指令, 直到某个目标队列已满
+         *
+         * @return 是否全部送达
+         */
+        private boolean flushForwarding() {
+            Forwarding head;
+            while ((head = forwarding.peek()) != null && head.target.tryExec(head.command)) {
+                forwarding.poll();
+            }
+            numOfForwarding = forwarding.size();
+            return head == null;
+        }
+
+        /**
+         * 一批指令结束时等待暂存的转发指令送达.
+         * 队列中出现新的指令时直接返回, 先处理新的指令 (其中可能包含目标处理器正在等待的迁移指令), 之后再重试
+         */
+        private void awaitForwarding() {
+            while (!forwarding.isEmpty() && !flushForwarding()) {
+                if (inputQueue.cursor() > sequence()) {
+                    return;
+                }
+                Thread.yield();
             }
         }
 
         /**
-         * 设置 matcher 到上下文
+         * 还没有送达目标处理器的转发指令, 按照转发的顺序排列
          */
-        private void setMatcherOnContext() {
-            ThreadLocalUtils.set(ThreadLocalMatchingContext.NAME_OF_MATCHER, currentMatcher);
+        private final ArrayDeque<Forwarding> forwarding = new ArrayDeque<>();
+
+        /**
+         * 已经被触发等待激活的止盈止损订单 (复用)
+         */
+        private final List<Order> triggeredStopOrders = new ArrayList<>();
+
+        /**
+         * 已经迁移出去的交易对 -> 目标处理器
+         */
+        private final Map<String, GenericProcessor> migratedSymbols = new HashMap<>();
+
+        /**
+         * 撮合事务的撤销日志
+         */
+        private final OrderUndoLog undoLog = new OrderUndoLog();
+
+        /**
+         * 当前处理器线程的上下文
+         */
+        private ProcessorMatchingContext ctx;
+
+        /**
+         * 获取当前处理器线程的上下文, 第一次获取时注册到本地线程缓存中, 用于兼容通过 ctx() 获取上下文的代码
+         *
+         * @return 上下文
+         */
+        private ProcessorMatchingContext context() {
+            if (ctx == null) {
+                ctx = new ProcessorMatchingContext(marketMgr);
+                ThreadLocalUtils.set(ThreadLocalMatchingContext.NAME_OF_CONTEXT, ctx);
+            }
+            return ctx;
+        }
+    }
+
+    /**
+     * 暂存的转发指令
+     */
+    private static final class Forwarding {
+        final GenericProcessor target;
+        final Command command;
+
+        Forwarding(GenericProcessor target, Command command) {
+            this.target = target;
+            this.command = command;
         }
     }
 }
@@ -0,0 +1,62 @@
+package com.trader.core.support.processor;
+
+import com.trader.core.Command;
+import com.trader.core.def.Cmd;
+import com.trader.market.publish.msg.PriceChangeMessage;
+import lombok.Getter;
+
+/**
+ * 市价变动指令
+ * 与下单指令一样经过撮合引擎的入口队列排序并写入指令日志, 然后放入交易对所属处理器的队列,
+ * 止盈止损订单的触发和激活都在处理器线程中完成. 回放指令日志时在相同的位置触发, 所以被触发的止盈止损订单可以被重建
+ *
+ * @author yjt
+ * @since 2020/11/11 上午11:05
+ */
+@Getter
+public class PriceChangeCommand implements Command {
+
+    /**
+     * 价格变动消息
+     */
+    private final PriceChangeMessage msg;
+
+    /**
+     * 是否为第三方行情, 否则为本地成交产生的价格变动 (回放指令日志时本地成交会重新产生, 不需要再次写入)
+     */
+    private final boolean third;
+
+    public PriceChangeCommand(PriceChangeMessage msg, boolean third) {
+        this.msg = msg;
+        this.third = third;
+    }
+
+    /**
+     * 本地成交产生的价格变动
+     *
+     * @param msg
+     *         价格变动消息
+     *
+     * @return 市价变动指令
+     */
+    public static PriceChangeCommand ofLocal(PriceChangeMessage msg) {
+        return new PriceChangeCommand(msg, false);
+    }
+
+    /**
+     * 第三方行情的价格变动
+     *
+     * @param msg
+     *         价格变动消息
+     *
+     * @return 市价变动指令
+     */
+    public static PriceChangeCommand ofThird(PriceChangeMessage msg) {
+        return new PriceChangeCommand(msg, true);
+    }
+
+    @Override
+    public Cmd getCmd() {
+        return Cmd.PRICE_CHANGE;
+    }
+}
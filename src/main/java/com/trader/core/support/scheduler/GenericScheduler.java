@@ -1,22 +1,45 @@
 package com.trader.core.support.scheduler;
 
+import com.trader.core.Command;
 import com.trader.core.MatchHandler;
 import com.trader.core.OrderRouter;
 import com.trader.core.Scheduler;
+import com.trader.core.def.CancelResult;
 import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
 import com.trader.core.exception.MatchExceptionHandler;
 import com.trader.core.matcher.MatcherManager;
+import com.trader.core.support.journal.SnapshotCommand;
+import com.trader.core.support.journal.SnapshotStore;
+import com.trader.core.support.processor.CancelCommand;
 import com.trader.core.support.processor.GenericProcessor;
-import com.trader.market.MarketEventHandler;
+import com.trader.core.support.processor.PriceChangeCommand;
 import com.trader.market.MarketManager;
-import com.trader.market.publish.msg.PriceChangeMessage;
+import com.trader.utils.disruptor.QueueWaitStrategy;
 
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 /**
  * 线程池调度器, 并且一个处理器控制一个交易对
+ * <p>
+ * 交易对按照 {@link SymbolPlacement} (一致性哈希) 分配给处理器, 处理器在第一次分配到交易对时创建,
+ * 处理器个数可以在运行时通过 {@link #resize(int)} 调整, 只有所属处理器发生变化的交易对会被迁移.
+ * <p>
+ * 调度器统计每个交易对的指令数以及每个处理器处理订单的耗时, 开启负载均衡后 {@link #setRebalanceIntervalMillis(long)} 会周期性地将最忙的处理器中的一个交易对迁移到最空闲的处理器,
+ * 迁移过程见 {@link MigrationCommand}.
+ * <p>
+ * 调度器的方法都只能由撮合引擎入口线程调用, 市价变动同样经过入口队列排序后提交
  *
  * @author yjt
  * @since 2020/10/23 上午10:03
@@ -24,9 +47,14 @@ import java.util.Objects;
 public class GenericScheduler implements Scheduler {
 
     /**
-     * symbol -> processor
+     * symbol -> 交易对负载, 只由入口线程访问
+     */
+    private final Map<String, SymbolLoad> symbolLoads = new HashMap<>();
+
+    /**
+     * 所有处理器的负载
      */
-    private final Map<String, GenericProcessor> processorCache;
+    private final List<ProcessorLoad> processorLoads = new ArrayList<>();
 
     /**
      * order router
@@ -49,24 +77,64 @@ public class GenericScheduler implements Scheduler {
     private final MatchHandler matchHandler;
 
     /**
-     * 最大处理器个数
+     * 交易对放置策略
+     */
+    private SymbolPlacement placement;
+
+    /**
+     * 固定放置的交易对: 交易对 -> 处理器序号
      */
-    private final int maxNumOfProcessors;
+    private Map<String, Integer> pinned = Collections.emptyMap();
 
     /**
      * 处理器命令缓冲区大小
      */
     private final int sizeOfProcessorCmdBuffer;
 
+    /**
+     * 处理器命令缓冲区的等待策略
+     */
+    private QueueWaitStrategy processorWaitStrategy = QueueWaitStrategy.BLOCKING;
+
+    /**
+     * 是否在每一笔成交后同步激活止盈止损订单
+     */
+    private boolean synchronousStopActivation = false;
+
     /**
      * 异常处理
      */
     private MatchExceptionHandler matchExceptionHandler;
 
     /**
-     * 实际的任务个数
+     * 负载均衡周期, 单位为毫秒, 小于等于0则不进行负载均衡
+     */
+    private long rebalanceIntervalMillis = 0;
+
+    /**
+     * 触发迁移的最小负载差, 最忙的处理器与最空闲的处理器繁忙比例 (0 ~ 1) 之差
+     */
+    private double rebalanceThreshold = 0.3;
+
+    /**
+     * 当前统计周期的开始时间 (纳秒)
+     */
+    private long windowStartNanos = System.nanoTime();
+
+    /**
+     * 提交的指令个数, 用于降低读取时钟的频率
+     */
+    private long numOfSubmits = 0;
+
+    /**
+     * 每个处理器最多缓冲的指令个数, 超过后立即发送
+     */
+    private static final int MAX_PENDING_COMMANDS = 256;
+
+    /**
+     * 处理器名称中最多包含的交易对个数
      */
-    private int actualNumOfTask = 0;
+    private static final int MAX_SYMBOLS_IN_NAME = 3;
 
     /**
      * 是否正在运行
@@ -78,29 +146,16 @@ public class GenericScheduler implements Scheduler {
                             MarketManager marketMgr,
                             MatchHandler matchHandler,
                             MatchExceptionHandler matchExceptionHandler,
-                            int maxNumOfProcessors,
+                            int numOfProcessors,
                             int sizeOfProcessorCmdBuffer) {
-        this.maxNumOfProcessors = maxNumOfProcessors;
+        this.placement = new SymbolPlacement(numOfProcessors);
         this.router = Objects.requireNonNull(router);
         this.matcherMgr = Objects.requireNonNull(matcherMgr);
         this.marketMgr = Objects.requireNonNull(marketMgr);
         this.matchHandler = Objects.requireNonNull(matchHandler);
         this.matchExceptionHandler = Objects.requireNonNull(matchExceptionHandler);
-        this.processorCache = new HashMap<>(maxNumOfProcessors);
         this.sizeOfProcessorCmdBuffer = sizeOfProcessorCmdBuffer;
 
-        marketMgr.addHandler(new MarketEventHandler() {
-            /**
-             * 市价价格变动事件
-             *
-             * @param msg
-             */
-            @Override
-            public void onMarketPriceChange(PriceChangeMessage msg) {
-                triggerMarketPriceChange(msg);
-            }
-        });
-
         this.isRunning = true;
     }
 
@@ -113,50 +168,479 @@ public class GenericScheduler implements Scheduler {
     @Override
     public void submit(Order order) {
         if (isRunning) {
-            GenericProcessor processor;
-            if (processorCache.containsKey(order.getSymbol())) {
-                processor = processorCache.get(order.getSymbol());
+            String symbol = order.getSymbol();
+            SymbolLoad load = symbolLoads.get(symbol);
+            if (load == null) {
+                load = assign(symbol);
+            }
+            load.numOfCommands++;
+            load.processor.enqueue(order);
+            checkRebalance();
+        }
+    }
+
+    @Override
+    public void submit(CancelCommand cmd) {
+        SymbolLoad load = isRunning ? symbolLoads.get(cmd.getOrder().getSymbol()) : null;
+        if (load == null) {
+            // 交易对从未下单, 订单不可能存在
+            cmd.complete(CancelResult.UNKNOWN);
+            return;
+        }
+        load.numOfCommands++;
+        load.processor.enqueue(cmd);
+        checkRebalance();
+    }
+
+    @Override
+    public void submit(PriceChangeCommand cmd) {
+        SymbolLoad load = isRunning ? symbolLoads.get(cmd.getMsg().getSymbol()) : null;
+        if (load == null) {
+            // 交易对从未下单, 不存在需要触发的止盈止损订单
+            return;
+        }
+        load.numOfCommands++;
+        load.processor.enqueue(cmd);
+        checkRebalance();
+    }
+
+    /**
+     * 将缓冲的指令按照处理器分组批量发送, 入口线程在每批指令结束后调用
+     */
+    @Override
+    public void flush() {
+        for (int i = 0; i < processorLoads.size(); i++) {
+            processorLoads.get(i).flush();
+        }
+    }
+
+    private void checkRebalance() {
+        if (rebalanceIntervalMillis > 0 && (++numOfSubmits & 1023) == 0) {
+            long now = System.nanoTime();
+            if (now - windowStartNanos >= rebalanceIntervalMillis * 1_000_000L) {
+                rebalance(now);
+            }
+        }
+    }
+
+    @Override
+    public void snapshot(SnapshotStore store, long sequence) {
+        flush();
+        // 按照处理器分组交易对
+        Map<GenericProcessor, List<String>> symbols = new LinkedHashMap<>();
+        for (ProcessorLoad load : processorLoads) {
+            if (!load.symbols.isEmpty()) {
+                symbols.put(load.processor, new ArrayList<>(load.symbols.keySet()));
+            }
+        }
+        SnapshotStore.Session session = store.begin(sequence, symbols.size());
+        int part = 0;
+        for (Map.Entry<GenericProcessor, List<String>> entry : symbols.entrySet()) {
+            entry.getKey().exec(new SnapshotCommand(session, part++, entry.getValue()));
+        }
+    }
+
+    @Override
+    public void restore(SnapshotStore.BookState book) {
+        // 分配处理器, 之后的快照才会包含该账本
+        if (!symbolLoads.containsKey(book.getSymbolId())) {
+            assign(book.getSymbolId());
+        }
+        for (Order order : book.getOrders()) {
+            OrderBook target = router.routeTo(order);
+            if (order.isStopOrder()) {
+                target.activeStopOrder(order);
             } else {
-                actualNumOfTask++;
-                String theProcessorName = order.getSymbol();
-                // 当前处理器已经满了，则将其映射到任意一个处理器
-                if (processorCache.size() >= maxNumOfProcessors) {
-                    processor = (GenericProcessor) processorCache.values()
-                            .toArray()[actualNumOfTask % maxNumOfProcessors];
-                    processor.renaming(processor.name() + " | " + theProcessorName);
-                } else {
-                    // 创建一个处理器
-                    processor = new GenericProcessor(theProcessorName,
-                            router,
-                            matcherMgr,
-                            marketMgr,
-                            matchExceptionHandler,
-                            sizeOfProcessorCmdBuffer);
-
-                    processor.regHandler(matchHandler);
-                }
-                processorCache.put(order.getSymbol(),
-                        processor);
+                target.addOrder(order);
+            }
+        }
+        for (Order stopOrder : book.getStopOrders()) {
+            router.routeTo(stopOrder).addOrder(stopOrder);
+        }
+        if (book.getLastTradePrice().compareTo(BigDecimal.ZERO) > 0) {
+            for (OrderBook target : router.routeToNeedToUpdatePriceBook(book.getSymbolId())) {
+                target.updateLastTradePrice(book.getLastTradePrice());
+            }
+        }
+    }
+
+    /**
+     * 为新的交易对分配处理器, 处理器由放置策略决定
+     *
+     * @param symbol
+     *         交易对
+     *
+     * @return 交易对负载
+     */
+    private SymbolLoad assign(String symbol) {
+        ProcessorLoad target = processorAt(placement.processorOf(symbol), symbol);
+        SymbolLoad load = new SymbolLoad(symbol, target);
+        target.symbols.put(symbol, load);
+        symbolLoads.put(symbol, load);
+        target.rename();
+        return load;
+    }
+
+    /**
+     * 获取指定序号的处理器, 不存在则创建
+     *
+     * @param index
+     *         处理器序号
+     * @param name
+     *         新处理器的名称
+     *
+     * @return 处理器负载
+     */
+    private ProcessorLoad processorAt(int index, String name) {
+        for (int i = 0; i < processorLoads.size(); i++) {
+            if (processorLoads.get(i).index == index) {
+                return processorLoads.get(i);
+            }
+        }
+        GenericProcessor processor = new GenericProcessor(name,
+                router,
+                matcherMgr,
+                marketMgr,
+                matchExceptionHandler,
+                sizeOfProcessorCmdBuffer,
+                processorWaitStrategy);
+
+        processor.regHandler(matchHandler);
+        processor.setSynchronousStopActivation(synchronousStopActivation);
+        ProcessorLoad load = new ProcessorLoad(index, processor);
+        processorLoads.add(load);
+        return load;
+    }
+
+    @Override
+    public boolean supportsResize() {
+        return true;
+    }
+
+    /**
+     * 调整处理器个数, 只能由入口线程调用
+     * <p>
+     * 所属处理器发生变化的交易对 (一致性哈希下只涉及新增或者被移除的处理器) 以及位于被移除的处理器上的交易对会被迁移,
+     * 其它交易对保持不动 (包括负载均衡迁移过的交易对). 被移除的处理器在处理完 (转发) 队列中的指令后停止
+     *
+     * @param numOfProcessors
+     *         处理器个数
+     */
+    @Override
+    public void resize(int numOfProcessors) {
+        if (numOfProcessors == placement.getNumOfProcessors()) {
+            return;
+        }
+        SymbolPlacement before = this.placement;
+        SymbolPlacement after = new SymbolPlacement(numOfProcessors, pinned);
+        for (SymbolLoad symbol : new ArrayList<>(symbolLoads.values())) {
+            int index = after.processorOf(symbol.symbol);
+            if (symbol.processor.index >= numOfProcessors || before.processorOf(symbol.symbol) != index) {
+                migrate(symbol, processorAt(index, symbol.symbol));
+            }
+        }
+        this.placement = after;
+
+        // 停止被移除的处理器
+        for (int i = processorLoads.size() - 1; i >= 0; i--) {
+            ProcessorLoad load = processorLoads.get(i);
+            if (load.index >= numOfProcessors) {
+                processorLoads.remove(i);
+                load.processor.shutdownAndWait();
+            }
+        }
+    }
+
+    /**
+     * 负载均衡
+     * <p>
+     * 结束当前统计周期, 计算每个处理器的繁忙比例以及每个交易对的指令速率,
+     * 如果最忙的处理器与最空闲的处理器负载差超过阈值, 则从最忙的处理器中挑选一个交易对进行迁移,
+     * 交易对的负载按照其指令数在处理器中的占比估算, 选择迁移后两个处理器负载最接近的交易对. 每个周期最多迁移一个交易对
+     *
+     * @param now
+     *         当前时间 (纳秒)
+     */
+    private void rebalance(long now) {
+        long elapsed = Math.max(1, now - windowStartNanos);
+        windowStartNanos = now;
+
+        ProcessorLoad busiest = null, idlest = null;
+        for (ProcessorLoad load : processorLoads) {
+            long numOfCommands = 0;
+            for (SymbolLoad symbol : load.symbols.values()) {
+                symbol.commandRate = symbol.numOfCommands * 1e9 / elapsed;
+                symbol.share = symbol.numOfCommands;
+                numOfCommands += symbol.numOfCommands;
+                symbol.numOfCommands = 0;
+            }
+            for (SymbolLoad symbol : load.symbols.values()) {
+                symbol.share = numOfCommands == 0 ? 0 : symbol.share / numOfCommands;
+            }
+            long busyNanos = load.processor.busyNanos();
+            load.busyRatio = Math.min(1.0, (double) (busyNanos - load.lastBusyNanos) / elapsed);
+            load.lastBusyNanos = busyNanos;
+
+            if (busiest == null || load.busyRatio > busiest.busyRatio) {
+                busiest = load;
+            }
+            if (idlest == null || load.busyRatio < idlest.busyRatio) {
+                idlest = load;
+            }
+        }
+
+        if (busiest == null || busiest == idlest || busiest.symbols.size() < 2) {
+            return;
+        }
+        double gap = busiest.busyRatio - idlest.busyRatio;
+        if (gap < rebalanceThreshold) {
+            return;
+        }
+
+        // 迁移后两个处理器的负载差为 |gap - 2 * load|, 只有 load < gap 时迁移才有意义
+        SymbolLoad candidate = null;
+        double best = gap;
+        for (SymbolLoad symbol : busiest.symbols.values()) {
+            double diff = Math.abs(gap - 2 * symbol.share * busiest.busyRatio);
+            if (diff < best) {
+                best = diff;
+                candidate = symbol;
             }
-            processor.exec(order);
         }
+        if (candidate != null) {
+            migrate(candidate, idlest);
+        }
+    }
+
+    /**
+     * 将交易对迁移到指定的处理器
+     * <p>
+     * 迁移指令先放入原处理器的队列, 再放入目标处理器的队列, 然后切换映射, 之后该交易对的指令都放入目标处理器的队列.
+     * 目标处理器会在原处理器处理完该交易对所有的旧指令后才开始处理新的指令, 账本本身由订单路由持有, 不需要复制
+     *
+     * @param symbol
+     *         交易对
+     * @param target
+     *         目标处理器
+     */
+    private void migrate(SymbolLoad symbol, ProcessorLoad target) {
+        ProcessorLoad source = symbol.processor;
+        if (source == target) {
+            return;
+        }
+        // 迁移指令必须排在该交易对已经提交的指令之后
+        flush();
+        MigrationCommand[] cmds = MigrationCommand.of(symbol.symbol, target.processor);
+        source.processor.exec(cmds[0]);
+        target.processor.exec(cmds[1]);
+
+        source.symbols.remove(symbol.symbol);
+        target.symbols.put(symbol.symbol, symbol);
+        symbol.processor = target;
+
+        source.rename();
+        target.rename();
+    }
+
+    /**
+     * 设置负载均衡周期
+     *
+     * @param rebalanceIntervalMillis
+     *         周期, 单位为毫秒, 小于等于0则关闭负载均衡
+     */
+    public void setRebalanceIntervalMillis(long rebalanceIntervalMillis) {
+        this.rebalanceIntervalMillis = rebalanceIntervalMillis;
+    }
+
+    /**
+     * 设置触发迁移的最小负载差
+     *
+     * @param rebalanceThreshold
+     *         最忙的处理器与最空闲的处理器繁忙比例 (0 ~ 1) 之差
+     */
+    public void setRebalanceThreshold(double rebalanceThreshold) {
+        this.rebalanceThreshold = rebalanceThreshold;
+    }
+
+    /**
+     * 设置固定放置的交易对, 未指定的交易对按照一致性哈希放置, 只对之后分配的交易对生效
+     *
+     * @param pinned
+     *         交易对 -> 处理器序号
+     */
+    public void setSymbolPlacement(Map<String, Integer> pinned) {
+        this.pinned = pinned == null ? Collections.emptyMap() : new HashMap<>(pinned);
+        this.placement = new SymbolPlacement(placement.getNumOfProcessors(), this.pinned);
+    }
+
+    /**
+     * 设置处理器命令缓冲区的等待策略, 只对之后创建的处理器生效
+     *
+     * @param processorWaitStrategy
+     *         等待策略
+     */
+    public void setProcessorWaitStrategy(QueueWaitStrategy processorWaitStrategy) {
+        this.processorWaitStrategy = Objects.requireNonNull(processorWaitStrategy);
+    }
+
+    /**
+     * 设置是否在每一笔成交后同步激活止盈止损订单, 只对之后创建的处理器生效
+     *
+     * @param synchronousStopActivation
+     *         是否同步激活
+     */
+    public void setSynchronousStopActivation(boolean synchronousStopActivation) {
+        this.synchronousStopActivation = synchronousStopActivation;
+    }
+
+    /**
+     * 获取上一个统计周期的处理器负载, 只能由入口线程调用
+     *
+     * @return 处理器负载
+     */
+    public List<ProcessorLoad> loads() {
+        return Collections.unmodifiableList(processorLoads);
     }
 
     /**
      * 调度器销毁
      */
+    @Override
+    public void awaitIdle() {
+        flush();
+        for (ProcessorLoad load : processorLoads) {
+            while (!load.processor.isIdle()) {
+                Thread.yield();
+            }
+        }
+    }
+
     @Override
     public void shutdownAndWait() {
+        flush();
         // 停止所有处理器
-        processorCache.values().forEach(GenericProcessor::shutdownAndWait);
+        processorLoads.forEach(load -> load.processor.shutdownAndWait());
     }
 
-    private void triggerMarketPriceChange(PriceChangeMessage msg) {
-        if (isRunning) {
-            GenericProcessor processor = processorCache.get(msg.getSymbol());
-            if (processor != null) {
-                processor.execPriceChange(msg);
+    /**
+     * 处理器负载
+     */
+    @Getter
+    public static class ProcessorLoad {
+
+        /**
+         * 处理器序号, 即放置策略中的位置
+         */
+        private final int index;
+
+        /**
+         * 处理器
+         */
+        private final GenericProcessor processor;
+
+        /**
+         * 处理器负责的交易对
+         */
+        private final Map<String, SymbolLoad> symbols = new LinkedHashMap<>();
+
+        /**
+         * 上一个统计周期的繁忙比例 (0 ~ 1), 也就是处理订单指令的耗时占统计周期的比例
+         */
+        private double busyRatio;
+
+        /**
+         * 上一个统计周期结束时处理器的累计耗时
+         */
+        private long lastBusyNanos;
+
+        /**
+         * 等待批量发送的指令
+         */
+        @Getter(AccessLevel.NONE)
+        private final List<Command> pending = new ArrayList<>();
+
+        private ProcessorLoad(int index, GenericProcessor processor) {
+            this.index = index;
+            this.processor = processor;
+        }
+
+        private void enqueue(Command command) {
+            pending.add(command);
+            if (pending.size() >= MAX_PENDING_COMMANDS) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (pending.size() == 1) {
+                processor.exec(pending.get(0));
+            } else {
+                processor.execAll(pending);
+            }
+            pending.clear();
+        }
+
+        /**
+         * 按照负责的交易对重命名处理器, 最多显示 {@link #MAX_SYMBOLS_IN_NAME} 个交易对
+         */
+        private void rename() {
+            String name;
+            if (symbols.size() <= MAX_SYMBOLS_IN_NAME) {
+                name = String.join(" | ", symbols.keySet());
+            } else {
+                StringBuilder sb = new StringBuilder();
+                Iterator<String> it = symbols.keySet().iterator();
+                for (int i = 0; i < MAX_SYMBOLS_IN_NAME; i++) {
+                    if (i > 0) {
+                        sb.append(" | ");
+                    }
+                    sb.append(it.next());
+                }
+                name = sb.append(" (+").append(symbols.size() - MAX_SYMBOLS_IN_NAME).append(')').toString();
+            }
+            if (!name.isEmpty() && !name.equals(processor.name())) {
+                processor.renaming(name);
             }
         }
     }
+
+    /**
+     * 交易对负载
+     */
+    @Getter
+    public static class SymbolLoad {
+
+        /**
+         * 交易对
+         */
+        private final String symbol;
+
+        /**
+         * 所在的处理器
+         */
+        private ProcessorLoad processor;
+
+        /**
+         * 当前统计周期的指令数
+         */
+        private long numOfCommands;
+
+        /**
+         * 上一个统计周期的指令速率 (每秒)
+         */
+        private double commandRate;
+
+        /**
+         * 上一个统计周期指令数在处理器中的占比
+         */
+        private double share;
+
+        private SymbolLoad(String symbol, ProcessorLoad processor) {
+            this.symbol = symbol;
+            this.processor = processor;
+        }
+    }
 }
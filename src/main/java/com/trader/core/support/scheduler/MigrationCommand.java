@@ -0,0 +1,94 @@
+package com.trader.core.support.scheduler;
+
+import com.trader.core.Command;
+import com.trader.core.def.Cmd;
+import com.trader.core.support.processor.GenericProcessor;
+import lombok.Getter;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 交易对迁移指令
+ * <p>
+ * 由调度器 (撮合引擎入口线程) 同时发送给原处理器和目标处理器:
+ * 原处理器处理到该指令时, 该交易对之前的指令都已经处理完毕 (排空), 此时释放目标处理器 (交接),
+ * 目标处理器处理到该指令时等待原处理器交接完成, 之后才会处理该交易对新的指令 (恢复), 所以同一个交易对的指令顺序不变.
+ *
+ * @author yjt
+ * @since 2020/11/10 上午10:20
+ */
+@Getter
+public class MigrationCommand implements Command {
+
+    /**
+     * 交易对
+     */
+    private final String symbol;
+
+    /**
+     * 是否为发送给原处理器的指令
+     */
+    private final boolean source;
+
+    /**
+     * 迁移的目标处理器
+     */
+    private final GenericProcessor target;
+
+    /**
+     * 原处理器排空标记
+     */
+    private final CountDownLatch drained;
+
+    private MigrationCommand(String symbol, boolean source, GenericProcessor target, CountDownLatch drained) {
+        this.symbol = symbol;
+        this.source = source;
+        this.target = target;
+        this.drained = drained;
+    }
+
+    /**
+     * 创建一对迁移指令
+     *
+     * @param symbol
+     *         交易对
+     * @param target
+     *         目标处理器
+     *
+     * @return [0] 发送给原处理器, [1] 发送给目标处理器
+     */
+    static MigrationCommand[] of(String symbol, GenericProcessor target) {
+        CountDownLatch drained = new CountDownLatch(1);
+        return new MigrationCommand[]{
+                new MigrationCommand(symbol, true, target, drained),
+                new MigrationCommand(symbol, false, target, drained)
+        };
+    }
+
+    /**
+     * 原处理器: 交接, 目标处理器: 等待交接完成
+     */
+    public void handoff() {
+        if (source) {
+            drained.countDown();
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                drained.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public Cmd getCmd() {
+        return Cmd.MIGRATE;
+    }
+}
@@ -0,0 +1,30 @@
+package com.trader.core.support.scheduler;
+
+import com.trader.core.Command;
+import com.trader.core.def.Cmd;
+import lombok.Getter;
+
+/**
+ * 调整处理器个数指令
+ * 放入撮合引擎的入口队列, 由入口线程调用 {@link com.trader.core.Scheduler#resize(int)}, 不会写入指令日志
+ *
+ * @author yjt
+ * @since 2020/11/13 上午11:20
+ */
+@Getter
+public class ResizeCommand implements Command {
+
+    /**
+     * 处理器个数
+     */
+    private final int numOfProcessors;
+
+    public ResizeCommand(int numOfProcessors) {
+        this.numOfProcessors = numOfProcessors;
+    }
+
+    @Override
+    public Cmd getCmd() {
+        return Cmd.RESIZE;
+    }
+}
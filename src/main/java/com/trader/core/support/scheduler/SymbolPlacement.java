@@ -0,0 +1,112 @@
+package com.trader.core.support.scheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 交易对放置策略, 决定交易对由哪一个处理器负责
+ * <p>
+ * 使用一致性哈希: 每个处理器在哈希环上有 {@link #VIRTUAL_NODES} 个虚拟节点, 交易对由顺时针方向第一个虚拟节点所属的处理器负责.
+ * 哈希环只与处理器个数有关, 所以重启或者回放时相同的交易对总是落在相同的处理器上,
+ * 增加处理器时只有落到新处理器上的交易对需要迁移, 减少处理器时只有被移除的处理器上的交易对需要迁移.
+ * 也可以通过固定放置 (交易对 -> 处理器序号) 为重要的交易对指定处理器
+ *
+ * @author yjt
+ * @since 2020/11/13 上午10:10
+ */
+public class SymbolPlacement {
+
+    /**
+     * 每个处理器的虚拟节点个数
+     */
+    private static final int VIRTUAL_NODES = 160;
+
+    /**
+     * 哈希环: 虚拟节点哈希 -> 处理器序号
+     */
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+
+    /**
+     * 固定放置: 交易对 -> 处理器序号
+     */
+    private final Map<String, Integer> pinned;
+
+    /**
+     * 处理器个数
+     */
+    private int numOfProcessors;
+
+    public SymbolPlacement(int numOfProcessors) {
+        this(numOfProcessors, Collections.emptyMap());
+    }
+
+    public SymbolPlacement(int numOfProcessors, Map<String, Integer> pinned) {
+        this.pinned = pinned == null ? Collections.emptyMap() : new HashMap<>(pinned);
+        resize(numOfProcessors);
+    }
+
+    /**
+     * 计算交易对所属的处理器
+     *
+     * @param symbol
+     *         交易对
+     *
+     * @return 处理器序号 [0, numOfProcessors)
+     */
+    public int processorOf(String symbol) {
+        Integer index = pinned.get(symbol);
+        // 固定的处理器已经被移除时按照哈希放置
+        if (index != null && index >= 0 && index < numOfProcessors) {
+            return index;
+        }
+        Map.Entry<Integer, Integer> node = ring.ceilingEntry(hash(symbol));
+        if (node == null) {
+            node = ring.firstEntry();
+        }
+        return node.getValue();
+    }
+
+    /**
+     * 调整处理器个数, 哈希环只与处理器个数有关, 所以直接重建
+     *
+     * @param numOfProcessors
+     *         处理器个数
+     */
+    public void resize(int numOfProcessors) {
+        if (numOfProcessors < 1) {
+            throw new IllegalArgumentException("处理器个数必须大于0: " + numOfProcessors);
+        }
+        ring.clear();
+        for (int i = 0; i < numOfProcessors; i++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                // 哈希冲突时保留序号小的处理器, 保证结果与构建顺序无关
+                ring.putIfAbsent(hash("processor-" + i + "#" + v), i);
+            }
+        }
+        this.numOfProcessors = numOfProcessors;
+    }
+
+    public int getNumOfProcessors() {
+        return numOfProcessors;
+    }
+
+    /**
+     * 与 JVM 无关的稳定哈希 (FNV-1a + 混合)
+     */
+    static int hash(String s) {
+        int h = 0x811c9dc5;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -1,5 +1,6 @@
 package com.trader.market;
 
+import com.trader.core.support.processor.PriceChangeCommand;
 import com.trader.market.entity.MarketDepthChartSeries;
 import com.trader.market.publish.msg.PriceChangeMessage;
 import com.trader.market.publish.msg.TradeMessage;
@@ -30,9 +31,28 @@ public interface MarketEventHandler {
     default void onMarketPriceChange(PriceChangeMessage msg) {
     }
 
+    /**
+     * 市价价格变动事件, 指令中带有价格变动的来源 (本地成交或者第三方行情)
+     *
+     * @param cmd
+     *         市价变动指令
+     */
+    default void onMarketPriceChange(PriceChangeCommand cmd) {
+        onMarketPriceChange(cmd.getMsg());
+    }
+
     /**
      * 交易成功事件
      */
     default void onTrade(TradeMessage tm) {
     }
+
+    /**
+     * 下游请求全量盘口, 由网络线程调用
+     *
+     * @param symbol
+     *         交易对, 为空表示所有交易对
+     */
+    default void onDepthSnapshotRequest(String symbol) {
+    }
 }
@@ -3,20 +3,22 @@ package com.trader.market;
 import com.trader.config.MatchEngineConfig;
 import com.trader.core.MatchHandler;
 import com.trader.core.OrderRouter;
+import com.trader.core.context.MatchingContext;
 import com.trader.core.entity.Order;
 import com.trader.core.entity.OrderBook;
 import com.trader.core.matcher.TradeResult;
+import com.trader.core.support.processor.PriceChangeCommand;
 import com.trader.market.entity.MarketDepthChartSeries;
+import com.trader.market.publish.ConflatingPublisher;
 import com.trader.market.publish.MarketPublishClient;
 import com.trader.market.publish.MarketPublishHandler;
 import com.trader.market.publish.TcpMarketPublishClient;
 import com.trader.market.publish.config.MarketConfigHttpClient;
 import com.trader.market.publish.msg.Message;
+import com.trader.market.publish.msg.MessageView;
 import com.trader.market.publish.msg.PriceChangeMessage;
 import com.trader.market.publish.msg.TradeMessage;
 import com.trader.utils.SymbolUtils;
-import com.trader.utils.ThreadPoolUtils;
-import com.trader.utils.buffer.CoalescingRingBuffer;
 import com.trader.utils.disruptor.AbstractDisruptorConsumer;
 import com.trader.utils.disruptor.DisruptorQueue;
 import com.trader.utils.disruptor.DisruptorQueueFactory;
@@ -25,7 +27,6 @@ import lombok.Getter;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -50,25 +51,19 @@ public class MarketManager implements MatchHandler {
     private OrderRouter router;
 
     /**
-     * 合并型 ring buffer, 用于优化深度图推送
-     * https://github.com/LMAX-Exchange/LMAXCollections
+     * 行情合并推送, 没有数据时挂起, 每个交易对在合并窗口内最多推送一次
      */
-    private CoalescingRingBuffer<String, MarketDepthChartSeries> depthChartRingBuffer;
+    private ConflatingPublisher publisher;
 
     /**
-     * 价格变动事件缓冲区
+     * 深度图推送通道 (合并缓冲区, 用于优化深度图推送)
      */
-    private CoalescingRingBuffer<String, PriceChangeMessage> priceChangeRingBuffer;
+    private ConflatingPublisher.Channel<MarketDepthChartSeries> depthChartRingBuffer;
 
     /**
-     * 深度推送队列 （仅用于多核的情况） 用于解决多线程写入
+     * 价格变动推送通道
      */
-    private DisruptorQueue<MarketDepthChartSeries> depthChartQueue;
-
-    /**
-     * 价格推送队列 （仅用于多核的情况） 用于解决多线程写入
-     */
-    private DisruptorQueue<PriceChangeMessage> priceChangeQueue;
+    private ConflatingPublisher.Channel<PriceChangeCommand> priceChangeRingBuffer;
 
     /**
      * 撮合结果数据推送队列
@@ -116,91 +111,28 @@ public class MarketManager implements MatchHandler {
 
         //
         // 创建数据合并缓冲区
-        // 该缓冲区只支持一个生产者对应一个消费者, 也就是只支持一个线程生产, 一个线程消费
+        // 盘口以及价格变动由多个撮合线程 (以及行情连接线程) 产生, 合并缓冲区支持多个生产者直接写入,
+        // 不需要额外的队列串行化写入
         // 相关文档参阅: https://nickzeeb.wordpress.com/2013/03/07/the-coalescing-ring-buffer/
-        // 这就会暴露一个问题, 当存在多和核心进行撮合的时候, 产生的事件肯定是多线程去访问的, 也就是说
-        // 盘口改变事件将会被多个线程调用, 因为数据合并缓冲区只支持单线程写入, 所以在多核环境下我们需要再起两个队列
-        // 以解决多线程写入
         //
-
-        if (config.getNumberOfCores() > 1) {
-            priceChangeQueue = DisruptorQueueFactory.createQueue(config.getSizeOfPublishDataRingBuffer(),
-                                                                 new ThreadFactory() {
-                                                                     @Override
-                                                                     public Thread newThread(Runnable runnable) {
-                                                                         Thread tr = new Thread(runnable);
-                                                                         tr.setName("Market-Price-Change-Thread");
-                                                                         return tr;
-                                                                     }
-                                                                 },
-                    new AbstractDisruptorConsumer<PriceChangeMessage>() {
-                        @Override
-                        public void process(PriceChangeMessage event) {
-                            priceChangeRingBuffer.offer(event.getSymbol(), event);
-                        }
-                    }, config.getMatchExceptionHandler().toDisruptorHandler());
-
-            depthChartQueue = DisruptorQueueFactory.createQueue(config.getSizeOfPublishDataRingBuffer(),
-                                                                new ThreadFactory() {
-                                                                    @Override
-                                                                    public Thread newThread(Runnable runnable) {
-                                                                        Thread tr = new Thread(runnable);
-                                                                        tr.setName("Market-Depth-Change-Thread");
-                                                                        return tr;
-                                                                    }
-                                                                },
-                    new AbstractDisruptorConsumer<MarketDepthChartSeries>() {
-                        @Override
-                        public void process(MarketDepthChartSeries event) {
-                            depthChartRingBuffer.offer(event.getSymbol(), event);
-                        }
-                    }, config.getMatchExceptionHandler().toDisruptorHandler());
-        }
-
-        priceChangeRingBuffer = new CoalescingRingBuffer<>(config.getSizeOfPublishDataRingBuffer());
-        depthChartRingBuffer = new CoalescingRingBuffer<>(config.getSizeOfPublishDataRingBuffer());
         this.isRunning = true;
-        // 启动数据合并线程
-        ThreadPoolUtils.submit(() -> {
-            List<PriceChangeMessage> pMessages = new ArrayList<>(16);
-            List<MarketDepthChartSeries> dMessages = new ArrayList<>(16);
-            while (isRunning || !priceChangeRingBuffer.isEmpty() || !depthChartRingBuffer.isEmpty()) {
-
-                // 合并价格数据
-                priceChangeRingBuffer.poll(pMessages);
-
-                for (PriceChangeMessage msg : pMessages) {
-                    this.syncExecuteHandler(h -> {
-                        h.onMarketPriceChange(msg);
-                    });
-                }
-
-                if (pMessages.size() > 0) {
-                    pMessages.clear();
-                }
-
-                // 合并深度数据
-                depthChartRingBuffer.poll(dMessages);
-                for (MarketDepthChartSeries msg : dMessages) {
-                    latestChartCacheObjective.put(msg.getSymbol(), msg);
-                    // 触发事件
-                    this.syncExecuteHandler(h -> {
-                        h.onDepthChartChange(msg);
-                    });
-                }
-
-                if (dMessages.size() > 0) {
-                    dMessages.clear();
-                }
-
-                // 线程休眠
-                try {
-                    Thread.sleep(config.getPublishDataCompressCycle());
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
+        // 启动数据合并推送线程
+        publisher = new ConflatingPublisher(config.getPublishDataCompressCycle(), "Market-Publish-Thread");
+        priceChangeRingBuffer = publisher.channel(config.getSizeOfPublishDataRingBuffer(),
+                                                  cmd -> cmd.getMsg().getSymbol(),
+                                                  cmd -> this.syncExecuteHandler(h -> {
+                                                      h.onMarketPriceChange(cmd);
+                                                  }));
+        depthChartRingBuffer = publisher.channel(config.getSizeOfPublishDataRingBuffer(),
+                                                 MarketDepthChartSeries::getSymbol,
+                                                 msg -> {
+                                                     latestChartCacheObjective.put(msg.getSymbol(), msg);
+                                                     // 触发事件
+                                                     this.syncExecuteHandler(h -> {
+                                                         h.onDepthChartChange(msg);
+                                                     });
+                                                 });
+        publisher.start();
 
         // 创建撮合数据队列
         tradeMessageQueue = DisruptorQueueFactory.createQueue(config.getSizeOfTradeResultQueue(),
@@ -211,16 +143,16 @@ public class MarketManager implements MatchHandler {
                             h.onTrade(event);
                         });
                     }
-                }, config.getMatchExceptionHandler().toDisruptorHandler());
+                }, config.getMatchExceptionHandler().toDisruptorHandler(), config.getTradeWaitStrategy());
         // 配置市场推送服务
         if (config.getMarketPublishClient() == null) {
             marketPublishClient = new TcpMarketPublishClient(config.getMarketPublishClientHost(),
                                                              config.getMarketPublishClientPort());
             config.setMarketPublishClient(marketPublishClient);
-            marketPublishClient.setConsumer(this::onThirdMarketData);
-            this.addHandler(new MarketPublishHandler(marketPublishClient));
+            marketPublishClient.setFrameHandler(this::onThirdMarketFrame);
+            this.addHandler(new MarketPublishHandler(marketPublishClient, config.isPublishDepthDelta(), config.getMarketWireVersion()));
         } else {
-            this.addHandler(new MarketPublishHandler(config.getMarketPublishClient()));
+            this.addHandler(new MarketPublishHandler(config.getMarketPublishClient(), config.isPublishDepthDelta(), config.getMarketWireVersion()));
         }
 
         // 创建市场配置客户端
@@ -339,6 +271,24 @@ public class MarketManager implements MatchHandler {
         return latestChartCacheObjective.get(symbol);
     }
 
+    /**
+     * 第三方市场数据帧, 只有需要处理的消息才会被解析
+     *
+     * @param view 消息视图
+     */
+    private void onThirdMarketFrame(MessageView view) {
+        switch (view.type()) {
+            case MARKET_PRICE:
+            case DEPTH_SNAPSHOT_REQUEST: {
+                this.onThirdMarketData(view.toMessage());
+                break;
+            }
+            default: {
+                // 其余消息 (例如同一个连接上的成交以及深度图) 直接跳过, 不需要解析
+            }
+        }
+    }
+
     /**
      * 第三方市场数据
      *
@@ -365,15 +315,19 @@ public class MarketManager implements MatchHandler {
                             .forEach(book -> book.updateLastTradePrice(data.getPrice()));
 
 
-                    if (priceChangeQueue != null) {
-                        priceChangeQueue.add(data);
-                    } else {
-                        // 进入合并队列
-                        priceChangeRingBuffer.offer(data.getSymbol(), data);
-                    }
+                    // 进入合并队列
+                    priceChangeRingBuffer.offer(PriceChangeCommand.ofThird(data));
                 }
                 break;
             }
+            //
+            // 下游请求全量盘口
+            //
+            case DEPTH_SNAPSHOT_REQUEST: {
+                String symbol = (String) msg.getData();
+                this.syncExecuteHandler(h -> h.onDepthSnapshotRequest(symbol));
+                break;
+            }
             default: {
                 // ignored
             }
@@ -416,17 +370,17 @@ public class MarketManager implements MatchHandler {
      */
     @Override
     public void onAddOrder(Order newOrder) throws Exception {
+        onAddOrder(null, newOrder);
+    }
+
+    @Override
+    public void onAddOrder(MatchingContext ctx, Order newOrder) throws Exception {
         if (newOrder.isStopOrder()) {
             return;
         }
 
         // 当有订单添加进来的时候, 会影响盘口的变动
-        OrderBook book = router.routeToBookForSendDepthChart(newOrder);
-
-        if (book == null) {
-            return;
-        }
-        publishDepth(book.snapSeries(20));
+        depthChanged(ctx, router.routeToBookForSendDepthChart(newOrder));
     }
 
     /**
@@ -445,27 +399,23 @@ public class MarketManager implements MatchHandler {
     public void onExecuteOrder(Order order,
                                Order opponentOrder,
                                TradeResult ts) throws Exception {
-        // 当有最新订单成交的时候, 需要更新最后一条成交价格
-        OrderBook book = router.routeToBookForSendDepthChart(order);
+        onExecuteOrder(null, order, opponentOrder, ts);
+    }
 
+    @Override
+    public void onExecuteOrder(MatchingContext ctx,
+                               Order order,
+                               Order opponentOrder,
+                               TradeResult ts) throws Exception {
         // 更新成交价
         for (OrderBook orderBook : router.routeToNeedToUpdatePriceBook(order)) {
             orderBook.updateLastTradePrice(ts.getExecutePrice());
         }
 
-        if (book != null) {
-            // 深度写入到队列
-            final MarketDepthChartSeries series = book.snapSeries(20);
-            if (depthChartQueue != null) {
-                depthChartQueue.add(series);
-            } else {
-                // 进入合并队列
-                depthChartRingBuffer.offer(series.getSymbol(), series);
-            }
-        }
+        depthChanged(ctx, router.routeToBookForSendDepthChart(order));
 
         if (router.isPublishKline(order, opponentOrder)) {
-            // 推送成交数据到队列
+            // 推送成交数据到队列, 每一笔成交都需要推送, 不能合并
             final TradeMessage tradeResult = new TradeMessage();
             tradeResult.setSymbol(order.getSymbol());
             tradeResult.setQuantity(ts.getQuantity());
@@ -474,16 +424,13 @@ public class MarketManager implements MatchHandler {
             tradeResult.setDirection(order.getSide().toDirection());
             tradeMessageQueue.add(tradeResult);
 
-            // 进入合并队列
+            // 价格变动
             PriceChangeMessage msg = new PriceChangeMessage();
             msg.setPrice(ts.getExecutePrice());
             msg.setSymbol(order.getSymbol());
             msg.setThird(false);
-            if (priceChangeQueue != null) {
-                priceChangeQueue.add(msg);
-            } else {
-                // 进入合并队列
-                priceChangeRingBuffer.offer(msg.getSymbol(), msg);
+            if (ctx == null || !ctx.deferPriceChange(msg)) {
+                publishPriceChange(msg);
             }
         }
     }
@@ -498,11 +445,12 @@ public class MarketManager implements MatchHandler {
      */
     @Override
     public void onOrderCancel(Order removed) {
-        OrderBook book = router.routeToBookForSendDepthChart(removed);
-        if (book == null) {
-            return;
-        }
-        publishDepth(book.snapSeries(20));
+        onOrderCancel(null, removed);
+    }
+
+    @Override
+    public void onOrderCancel(MatchingContext ctx, Order removed) {
+        depthChanged(ctx, router.routeToBookForSendDepthChart(removed));
     }
 
     /**
@@ -515,11 +463,45 @@ public class MarketManager implements MatchHandler {
      */
     @Override
     public void onActiveStopOrder(Order stopOrder) throws Exception {
-        OrderBook book = router.routeToBookForSendDepthChart(stopOrder);
+        onActiveStopOrder(null, stopOrder);
+    }
+
+    @Override
+    public void onActiveStopOrder(MatchingContext ctx, Order stopOrder) throws Exception {
+        depthChanged(ctx, router.routeToBookForSendDepthChart(stopOrder));
+    }
+
+    /**
+     * 一批指令处理结束, 推送这一批指令中变化的盘口以及每个交易对最后一次价格变动
+     *
+     * @param ctx
+     *         撮合上下文
+     */
+    @Override
+    public void onEndOfBatch(MatchingContext ctx) {
+        for (OrderBook book : ctx.getDeferredDepthBooks()) {
+            publishDepth(book.snapSeries(20));
+        }
+        for (PriceChangeMessage msg : ctx.getDeferredPriceChanges()) {
+            publishPriceChange(msg);
+        }
+    }
+
+    /**
+     * 盘口发生变化, 如果上下文支持延迟推送则在一批指令处理结束后推送
+     *
+     * @param ctx
+     *         撮合上下文, 可以为 null
+     * @param book
+     *         账本
+     */
+    private void depthChanged(MatchingContext ctx, OrderBook book) {
         if (book == null) {
             return;
         }
-        publishDepth(book.snapSeries(20));
+        if (ctx == null || !ctx.deferDepth(book)) {
+            publishDepth(book.snapSeries(20));
+        }
     }
 
     /**
@@ -529,13 +511,26 @@ public class MarketManager implements MatchHandler {
      *         盘口
      */
     private void publishDepth(MarketDepthChartSeries series) {
-        // 深度写入到队列
-        if (depthChartQueue != null) {
-            depthChartQueue.add(series);
-        } else {
-            // 进入合并队列
-            depthChartRingBuffer.offer(series.getSymbol(), series);
-        }
+        // 进入合并队列
+        depthChartRingBuffer.offer(series);
+    }
+
+    /**
+     * 推送本地成交产生的价格变动
+     *
+     * @param msg
+     *         价格变动消息
+     */
+    private void publishPriceChange(PriceChangeMessage msg) {
+        // 进入合并队列
+        priceChangeRingBuffer.offer(PriceChangeCommand.ofLocal(msg));
+    }
+
+    /**
+     * 立即推送合并窗口中的盘口以及价格变动, 等待推送完毕
+     */
+    public void flush() {
+        publisher.flush();
     }
 
     /**
@@ -543,23 +538,11 @@ public class MarketManager implements MatchHandler {
      */
     public void shutdownAndWait() {
         isRunning = false;
-        if (depthChartQueue != null) {
-            depthChartQueue.shutdown();
-        }
-        if (priceChangeQueue != null) {
-            priceChangeQueue.shutdown();
-        }
         if (tradeMessageQueue != null) {
             tradeMessageQueue.shutdown();
         }
-        // 等待推送完毕
-        while (!priceChangeRingBuffer.isEmpty() || !depthChartRingBuffer.isEmpty()) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        // 等待推送完毕 (合并窗口中的数据立即推送)
+        publisher.shutdownAndWait();
         // 关闭推送客户端
         marketPublishClient.close();
         // 关闭配置客户端
@@ -0,0 +1,324 @@
+package com.trader.market.publish;
+
+import com.trader.utils.buffer.CoalescingBuffer;
+import com.trader.utils.buffer.ConcurrentCoalescingBuffer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 行情合并推送
+ * <p>
+ * 推送线程在没有数据时挂起, 生产者写入数据后唤醒. 每个交易对有一个合并窗口:
+ * 距离该交易对上一次推送已经超过窗口时立即推送, 否则窗口内的后续数据合并为最新的一条, 在窗口结束时推送.
+ * 所以空闲时推送没有额外的延迟, 突发时每个交易对的推送频率不超过每个窗口一次.
+ * 窗口为 0 时不做时间上的合并, 推送线程忙碌期间积压的同一个交易对的数据依旧会在缓冲区中合并
+ * <p>
+ * 每个通道 ({@link Channel}) 的缓冲区为 {@link ConcurrentCoalescingBuffer}, 支持多个撮合线程直接写入
+ *
+ * @author yjt
+ * @since 2020/11/16 上午10:00
+ */
+public class ConflatingPublisher {
+
+    /**
+     * 合并窗口, 单位为纳秒
+     */
+    private final long windowNanos;
+
+    /**
+     * 推送线程
+     */
+    private final Thread thread;
+
+    /**
+     * 通道, 只在启动之前添加
+     */
+    private final List<Channel<?>> channels = new ArrayList<>(4);
+
+    /**
+     * 推送线程退出
+     */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * 等待推送完毕的 {@link #flush()} 调用
+     */
+    private final Queue<CountDownLatch> flushRequests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 推送线程是否正在挂起 (或者准备挂起), 生产者只在该标记为 true 时唤醒推送线程
+     */
+    private volatile boolean waiting;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param windowMillis
+     *         合并窗口, 单位为毫秒
+     * @param threadName
+     *         推送线程名称
+     */
+    public ConflatingPublisher(long windowMillis, String threadName) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("合并窗口不能小于0: " + windowMillis);
+        }
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 添加一个通道, 必须在 {@link #start()} 之前调用
+     *
+     * @param capacity
+     *         缓冲区大小
+     * @param keyFn
+     *         合并的键 (交易对)
+     * @param sink
+     *         推送, 在推送线程中执行
+     * @param <V>
+     *         数据类型
+     *
+     * @return 通道
+     */
+    public <V> Channel<V> channel(int capacity, Function<V, String> keyFn, Consumer<V> sink) {
+        if (thread.isAlive()) {
+            throw new IllegalStateException("publisher already started");
+        }
+        Channel<V> channel = new Channel<>(capacity, keyFn, sink);
+        channels.add(channel);
+        return channel;
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * 停止推送线程, 等待缓冲区中的数据以及合并中的数据全部推送完毕
+     */
+    public void shutdownAndWait() {
+        running = false;
+        if (thread.getState() == Thread.State.NEW) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            terminated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 立即推送缓冲区中的数据以及合并窗口中的数据, 等待推送完毕.
+     * 调用之前写入的数据在返回时已经全部交给推送方法, 不能在推送线程中调用
+     */
+    public void flush() {
+        if (thread.getState() == Thread.State.NEW || Thread.currentThread() == thread) {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        flushRequests.offer(done);
+        if (terminated.getCount() == 0) {
+            // 推送线程已经退出, 数据在退出之前已经全部推送
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            for (; ; ) {
+                // 先读取运行状态再读取缓冲区, 停止之前写入的数据一定会被推送
+                boolean running = this.running;
+                // 同理先取出 flush 请求再读取缓冲区
+                CountDownLatch flushing = flushRequests.poll();
+                long now = System.nanoTime();
+                int numOfPolled = 0;
+                for (Channel<?> channel : channels) {
+                    numOfPolled += channel.drain(now);
+                }
+                long deadline = Long.MAX_VALUE;
+                for (Channel<?> channel : channels) {
+                    deadline = Math.min(deadline, channel.flushDue(now, !running || flushing != null));
+                }
+                if (flushing != null) {
+                    flushing.countDown();
+                    continue;
+                }
+                if (numOfPolled > 0) {
+                    continue;
+                }
+                if (!running) {
+                    break;
+                }
+                waiting = true;
+                // 设置标记之后再次检查, 避免错过生产者的唤醒
+                if (isEmpty() && this.running && flushRequests.isEmpty()) {
+                    if (deadline == Long.MAX_VALUE) {
+                        LockSupport.park(this);
+                    } else {
+                        LockSupport.parkNanos(this, deadline - now);
+                    }
+                }
+                waiting = false;
+            }
+        } finally {
+            terminated.countDown();
+            // 退出之前的 flush 调用不再等待, 退出之后的调用见 flush()
+            CountDownLatch flushing;
+            while ((flushing = flushRequests.poll()) != null) {
+                flushing.countDown();
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        for (Channel<?> channel : channels) {
+            if (!channel.buffer.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void signal() {
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 一种数据的推送通道
+     *
+     * @param <V>
+     *         数据类型
+     */
+    public final class Channel<V> {
+
+        private final CoalescingBuffer<String, V> buffer;
+
+        private final Function<V, String> keyFn;
+
+        private final Consumer<V> sink;
+
+        /**
+         * 交易对 -> 合并状态, 只在推送线程中访问
+         */
+        private final Map<String, Slot<V>> slots = new HashMap<>(16);
+
+        /**
+         * 等待窗口结束的交易对, 只在推送线程中访问
+         */
+        private final List<Slot<V>> scheduled = new ArrayList<>(16);
+
+        private final List<V> polled = new ArrayList<>(16);
+
+        private Channel(int capacity, Function<V, String> keyFn, Consumer<V> sink) {
+            this.buffer = new ConcurrentCoalescingBuffer<>(capacity);
+            this.keyFn = keyFn;
+            this.sink = sink;
+        }
+
+        /**
+         * 写入数据, 缓冲区中同一个交易对未被读取的数据会被覆盖
+         *
+         * @param value
+         *         数据
+         *
+         * @return 缓冲区已满时返回 false
+         */
+        public boolean offer(V value) {
+            boolean added = buffer.offer(keyFn.apply(value), value);
+            signal();
+            return added;
+        }
+
+        private int drain(long now) {
+            int n = buffer.poll(polled);
+            for (int i = 0; i < n; i++) {
+                V value = polled.get(i);
+                Slot<V> slot = slots.computeIfAbsent(keyFn.apply(value), k -> new Slot<>(now - windowNanos));
+                if (slot.pending == null && now - slot.lastSent >= windowNanos) {
+                    publish(slot, value, now);
+                } else {
+                    if (slot.pending == null) {
+                        scheduled.add(slot);
+                    }
+                    slot.pending = value;
+                }
+            }
+            polled.clear();
+            return n;
+        }
+
+        /**
+         * 推送窗口已经结束的数据
+         *
+         * @return 最近的窗口结束时间, 没有等待中的数据时返回 {@link Long#MAX_VALUE}
+         */
+        private long flushDue(long now, boolean force) {
+            long next = Long.MAX_VALUE;
+            for (int i = scheduled.size() - 1; i >= 0; i--) {
+                Slot<V> slot = scheduled.get(i);
+                long deadline = slot.lastSent + windowNanos;
+                if (force || deadline - now <= 0) {
+                    V value = slot.pending;
+                    slot.pending = null;
+                    // 顺序无关, 用最后一个元素填补
+                    scheduled.set(i, scheduled.get(scheduled.size() - 1));
+                    scheduled.remove(scheduled.size() - 1);
+                    publish(slot, value, now);
+                } else {
+                    next = Math.min(next, deadline);
+                }
+            }
+            return next;
+        }
+
+        private void publish(Slot<V> slot, V value, long now) {
+            slot.lastSent = now;
+            try {
+                sink.accept(value);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 交易对的合并状态
+     */
+    private static final class Slot<V> {
+
+        /**
+         * 上一次推送的时间
+         */
+        long lastSent;
+
+        /**
+         * 等待窗口结束后推送的数据
+         */
+        V pending;
+
+        Slot(long lastSent) {
+            this.lastSent = lastSent;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.trader.market.publish;
 
 import com.trader.market.publish.msg.Message;
+import com.trader.utils.messages.FrameHandler;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
@@ -81,4 +82,13 @@ public interface MarketPublishClient {
      * @param consumer
      */
     void setConsumer(Consumer<Message<?>> consumer);
+
+    /**
+     * 设置消息帧处理器, 设置后收到的消息不再解析为 {@link Message} 交给消费者,
+     * 由处理器通过 {@link com.trader.market.publish.msg.MessageView} 按需读取
+     *
+     * @param handler
+     *         消息帧处理器
+     */
+    void setFrameHandler(FrameHandler handler);
 }
@@ -3,17 +3,25 @@ package com.trader.market.publish;
 import com.trader.market.MarketEventHandler;
 import com.trader.market.entity.MarketDepthChartSeries;
 import com.trader.market.publish.msg.DepthChartMessage;
+import com.trader.market.publish.msg.DepthDeltaMessage;
 import com.trader.market.publish.msg.TradeMessage;
-import io.vertx.core.buffer.Buffer;
+import com.trader.market.publish.msg.WireFormat;
+import com.trader.utils.SymbolUtils;
 import lombok.Getter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 
 /**
  * 消息推送
+ * <p>
+ * 开启增量盘口后, 盘口变动只推送与上一次推送相比发生变化的档位 ({@link DepthDeltaMessage}),
+ * 全量盘口只在连接建立或者下游请求时推送. 盘口变动由行情线程调用, 连接建立以及全量请求来自网络线程,
+ * 所以两者互斥, 保证同一个连接上全量盘口与增量的先后顺序与计算顺序一致
  *
  * @author yjt
  * @since 2020/10/10 下午5:45
@@ -21,9 +29,29 @@ import java.util.function.Consumer;
 public class MarketPublishHandler implements MarketEventHandler {
 
     /**
-     * 深度图缓存, 用于连接到服务后推送
+     * 深度图缓存 (上一次推送的盘口), 用于连接到服务后推送以及计算增量
      */
-    private Map<String, Buffer> latestChartCache = new HashMap<>(16);
+    private final Map<String, MarketDepthChartSeries> latestChartCache = new HashMap<>(16);
+
+    /**
+     * 每个交易对增量盘口的序号
+     */
+    private final Map<String, long[]> depthSequences = new HashMap<>(16);
+
+    /**
+     * 是否推送增量盘口
+     */
+    private final boolean depthDelta;
+
+    /**
+     * 推送的格式版本
+     */
+    private final int wireVersion;
+
+    /**
+     * 增量计算结果, 只在持有锁时使用
+     */
+    private final List<DepthDeltaMessage.Change> changes = new ArrayList<>(64);
 
     /**
      * 发布客户端
@@ -32,16 +60,24 @@ public class MarketPublishHandler implements MarketEventHandler {
     private MarketPublishClient client;
 
     public MarketPublishHandler(MarketPublishClient client) {
+        this(client, false, WireFormat.DEFAULT);
+    }
+
+    public MarketPublishHandler(MarketPublishClient client, boolean depthDelta, int wireVersion) {
         this.client = Objects.requireNonNull(client);
+        this.depthDelta = depthDelta;
+        this.wireVersion = wireVersion;
         this.client.conn(client.host(), client.port(), client.consumer(), ar -> {
             if (ar.succeeded()) {
-                latestChartCache.values().forEach(this.client::send);
+                sendDepthSnapshot(null);
             }
         });
     }
 
     public MarketPublishHandler(MarketPublishClient client, Consumer<MarketPublishHandler> onConnection) {
         this.client = Objects.requireNonNull(client);
+        this.depthDelta = false;
+        this.wireVersion = WireFormat.DEFAULT;
         this.client.conn(client.host(), client.port(), client.consumer(), ar -> {
             if (ar.succeeded()) {
                 onConnection.accept(this);
@@ -51,10 +87,53 @@ public class MarketPublishHandler implements MarketEventHandler {
 
     @Override
     public void onDepthChartChange(MarketDepthChartSeries series) {
-        Buffer buffer = DepthChartMessage.toBuf(series);
-        latestChartCache.put(series.getSymbol(), buffer);
-        if (client.isOpen()) {
-            client.send(buffer);
+        synchronized (latestChartCache) {
+            MarketDepthChartSeries prev = latestChartCache.put(series.getSymbol(), series);
+            if (!client.isOpen()) {
+                return;
+            }
+            if (!depthDelta) {
+                client.send(DepthChartMessage.toBuf(series, wireVersion));
+                return;
+            }
+            changes.clear();
+            DepthDeltaMessage.diff(prev, series, changes);
+            if (changes.isEmpty()) {
+                return;
+            }
+            long[] seq = depthSequences.computeIfAbsent(series.getSymbol(), k -> new long[1]);
+            client.send(DepthDeltaMessage.toBuf(series.getSymbol(), ++seq[0], changes));
+        }
+    }
+
+    /**
+     * 下游请求全量盘口
+     *
+     * @param symbol
+     *         交易对, 为空表示所有交易对
+     */
+    @Override
+    public void onDepthSnapshotRequest(String symbol) {
+        sendDepthSnapshot(symbol == null || symbol.isEmpty() ? null : symbol);
+    }
+
+    /**
+     * 推送全量盘口
+     *
+     * @param symbol
+     *         交易对, 为 null 表示所有交易对
+     */
+    private void sendDepthSnapshot(String symbol) {
+        synchronized (latestChartCache) {
+            if (!client.isOpen()) {
+                return;
+            }
+            for (MarketDepthChartSeries series : latestChartCache.values()) {
+                if (symbol == null || symbol.equals(SymbolUtils.toGenericSymbol(series.getSymbol())) ||
+                        symbol.equals(series.getSymbol())) {
+                    client.send(DepthChartMessage.toBuf(series, wireVersion));
+                }
+            }
         }
     }
 
@@ -64,7 +143,7 @@ public class MarketPublishHandler implements MarketEventHandler {
     @Override
     public void onTrade(TradeMessage tm) {
         if (client.isOpen()) {
-            client.send(TradeMessage.toBuf(tm));
+            client.send(TradeMessage.toBuf(tm, wireVersion));
         }
     }
 }
@@ -4,6 +4,7 @@ import com.trader.market.publish.config.MarketConfigHttpClient;
 import com.trader.market.publish.msg.Message;
 import com.trader.utils.ThreadPoolUtils;
 import com.trader.utils.VertxUtils;
+import com.trader.utils.messages.FrameHandler;
 import com.trader.utils.messages.FrameParser;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
@@ -37,6 +38,12 @@ public class TcpMarketPublishClient implements MarketPublishClient {
   @Setter
   private Consumer<Message<?>> consumer;
 
+  /**
+   * 消息帧处理器, 设置后优先于消费者
+   */
+  @Setter
+  private volatile FrameHandler frameHandler;
+
   /**
    * socket
    */
@@ -101,10 +108,14 @@ public class TcpMarketPublishClient implements MarketPublishClient {
                }
 
                System.out.println("[MarketPublish]: success connection to the server");
-               final FrameParser parser = new FrameParser(connAr -> {
-                 if (connAr.succeeded()) {
-                   if (this.consumer != null) {
-                     this.consumer.accept(connAr.result());
+               final FrameParser parser = FrameParser.of(view -> {
+                 FrameHandler frameHandler = this.frameHandler;
+                 if (frameHandler != null) {
+                   frameHandler.onFrame(view);
+                 } else if (this.consumer != null) {
+                   Message<?> msg = view.toMessage();
+                   if (msg != null) {
+                     this.consumer.accept(msg);
                    }
                  }
                });
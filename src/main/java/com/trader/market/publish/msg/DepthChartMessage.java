@@ -7,7 +7,6 @@ import com.trader.market.entity.MarketDepthInfo;
 import com.trader.utils.SymbolUtils;
 import io.vertx.core.buffer.Buffer;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -26,15 +25,30 @@ public class DepthChartMessage {
     }
 
     public static Buffer toBuf(MarketDepthChartSeries series) {
+        return toBuf(series, WireFormat.DEFAULT);
+    }
+
+    /**
+     * 编码深度图
+     *
+     * @param series
+     *         深度图
+     * @param version
+     *         格式版本 {@link WireFormat}
+     *
+     * @return 消息
+     */
+    public static Buffer toBuf(MarketDepthChartSeries series, int version) {
         // | msg size (4byte) | msg type (1byte) | ts (8byte) |
         // | symbol.size [4byte] data[bytes] | numOfStep (1byte)  |
-        // repeated | depth (1byte) | numOfBid (1byte) | repeated bids (32byte) |
-        // | numOfAsk (1Byte) | repeated asks (32byte)
+        // repeated | depth (1byte) | numOfBid (1byte) | repeated bids (4 decimals) |
+        // | numOfAsk (1Byte) | repeated asks (4 decimals)
         byte[] symbolBytes = SymbolUtils.toGenericSymbol(series.getSymbol()).getBytes();
+        int levelSize = 4 * WireFormat.decimalSize(version);
         int msgSize = symbolBytes.length;
         byte numOfStep = (byte) series.getSeries().size();
         for (MarketDepthChart chart : series.getSeries()) {
-            msgSize += 1 + chart.getAsks().size() * 32 + chart.getBids().size() * 32;
+            msgSize += 1 + chart.getAsks().size() * levelSize + chart.getBids().size() * levelSize;
         }
         // store msg type
         msgSize += 1;
@@ -50,7 +64,7 @@ public class DepthChartMessage {
         Buffer buf = Buffer.buffer(msgSize)
                 // msg header
                 .appendInt(msgSize)
-                .appendByte((byte) MessageType.DEPTH_CHART.ordinal())
+                .appendByte(WireFormat.typeByte(MessageType.DEPTH_CHART, version))
                 .appendLong(System.currentTimeMillis());
 
 
@@ -61,27 +75,28 @@ public class DepthChartMessage {
         for (MarketDepthChart chart : series.getSeries()) {
             // depth
             buf.appendByte((byte) chart.getDepth().ordinal());
-            depthToBuf(buf, chart.getBids());
-            depthToBuf(buf, chart.getAsks());
+            depthToBuf(buf, chart.getBids(), version);
+            depthToBuf(buf, chart.getAsks(), version);
         }
         return buf;
     }
 
-    public static void depthToBuf(Buffer buf, List<MarketDepthInfo> depthInfo) {
+    public static void depthToBuf(Buffer buf, List<MarketDepthInfo> depthInfo, int version) {
         buf.appendInt(depthInfo.size());
         for (MarketDepthInfo bid : depthInfo) {
-            buf.appendDouble(bid.getPrice().doubleValue());
-            buf.appendDouble(bid.getTotal().doubleValue());
-            buf.appendDouble(bid.getExecuted().doubleValue());
-            buf.appendDouble(bid.getLeaves().doubleValue());
+            WireFormat.appendDecimal(buf, bid.getPrice(), version);
+            WireFormat.appendDecimal(buf, bid.getTotal(), version);
+            WireFormat.appendDecimal(buf, bid.getExecuted(), version);
+            WireFormat.appendDecimal(buf, bid.getLeaves(), version);
         }
     }
 
-    public static MarketDepthChartSeries of(Buffer buf, int readOffset, int msgSize) {
+    public static MarketDepthChartSeries of(Buffer buf, int readOffset, int msgSize, int version) {
         // | msg size (4byte) | msg type (1byte) | ts (8byte) |
         // | symbol.size [4byte] data[bytes] | numOfStep (1byte)  |
-        // repeated | depth (1byte) | numOfBid (1byte) | repeated bids (32byte) |
-        // | numOfAsk (1Byte) | repeated asks (32byte)
+        // repeated | depth (1byte) | numOfBid (1byte) | repeated bids (4 decimals) |
+        // | numOfAsk (1Byte) | repeated asks (4 decimals)
+        int levelSize = 4 * WireFormat.decimalSize(version);
         int offset = readOffset;
         MarketDepthChartSeries cs = new MarketDepthChartSeries();
         int symbolLength = buf.getInt(offset);
@@ -115,8 +130,8 @@ public class DepthChartMessage {
             if (numOfBids > 0) {
                 bids = new ArrayList<>(numOfBids);
                 for (int i = 0; i < numOfBids; i++) {
-                    bids.add(buildDepth(buf, offset));
-                    offset += 32;
+                    bids.add(buildDepth(buf, offset, version));
+                    offset += levelSize;
                 }
             }
             chart.setBids(bids);
@@ -127,8 +142,8 @@ public class DepthChartMessage {
             if (numOfAsks > 0) {
                 asks = new ArrayList<>(numOfAsks);
                 for (int i = 0; i < numOfAsks; i++) {
-                    asks.add(buildDepth(buf, offset));
-                    offset += 32;
+                    asks.add(buildDepth(buf, offset, version));
+                    offset += levelSize;
                 }
             }
             chart.setAsks(asks);
@@ -137,16 +152,17 @@ public class DepthChartMessage {
         return cs;
     }
 
-    private static MarketDepthInfo buildDepth(Buffer buf, int readOffset) {
+    private static MarketDepthInfo buildDepth(Buffer buf, int readOffset, int version) {
+        int size = WireFormat.decimalSize(version);
         int offset = readOffset;
         MarketDepthInfo depth = new MarketDepthInfo();
-        depth.setPrice(BigDecimal.valueOf(buf.getDouble(offset)));
-        offset += 8;
-        depth.setTotal(BigDecimal.valueOf(buf.getDouble(offset)));
-        offset += 8;
-        depth.setExecuted(BigDecimal.valueOf(buf.getDouble(offset)));
-        offset += 8;
-        depth.setLeaves(BigDecimal.valueOf(buf.getDouble(offset)));
+        depth.setPrice(WireFormat.getDecimal(buf, offset, version));
+        offset += size;
+        depth.setTotal(WireFormat.getDecimal(buf, offset, version));
+        offset += size;
+        depth.setExecuted(WireFormat.getDecimal(buf, offset, version));
+        offset += size;
+        depth.setLeaves(WireFormat.getDecimal(buf, offset, version));
         return depth;
     }
 }
@@ -0,0 +1,330 @@
+package com.trader.market.publish.msg;
+
+import com.trader.core.def.OrderSide;
+import com.trader.market.def.DepthLevel;
+import com.trader.market.entity.MarketDepthChart;
+import com.trader.market.entity.MarketDepthChartSeries;
+import com.trader.market.entity.MarketDepthInfo;
+import com.trader.utils.SymbolUtils;
+import io.vertx.core.buffer.Buffer;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 增量盘口消息
+ * <p>
+ * 与上一次推送的盘口相比发生变化的价格档位, 每个档位的数据都是最新的全量值 (不是增加量), 所以重复应用是安全的.
+ * 剩余量以及总量都为 0 的档位表示该档位已经被移除 (或者移出了推送的档位范围).
+ * 每个交易对的序号连续递增, 下游发现序号不连续时应该请求全量盘口 ({@link MessageType#DEPTH_SNAPSHOT_REQUEST}),
+ * 全量盘口 ({@link MessageType#DEPTH_CHART}) 只在连接建立或者被请求时推送, 之后同一个连接上的增量直接应用到该全量盘口上
+ *
+ * @author yjt
+ * @since 2020/11/14 上午10:20
+ */
+@Data
+public class DepthDeltaMessage {
+
+    /**
+     * 每个档位变化占用的字节数: | depth (1byte) | side (1byte) | price total executed leaves (4 decimals) |
+     */
+    private static final int CHANGE_SIZE = 2 + 4 * WireFormat.decimalSize(WireFormat.DECIMAL);
+
+    /**
+     * 交易对
+     */
+    private String symbol;
+
+    /**
+     * 交易对内连续递增的序号
+     */
+    private long seq;
+
+    /**
+     * 发生变化的档位
+     */
+    private List<Change> changes;
+
+    /**
+     * 档位变化
+     */
+    @Data
+    public static class Change {
+
+        /**
+         * 深度
+         */
+        private DepthLevel depth;
+
+        /**
+         * 买盘或者卖盘
+         */
+        private OrderSide side;
+
+        /**
+         * 档位的最新数据
+         */
+        private MarketDepthInfo info;
+
+        /**
+         * 档位是否已经被移除
+         *
+         * @return 是否被移除
+         */
+        public boolean isRemoved() {
+            return info.getLeaves().signum() == 0 && info.getTotal().signum() == 0;
+        }
+    }
+
+    /**
+     * 计算两次盘口之间的档位变化
+     *
+     * @param prev
+     *         上一次推送的盘口, 可以为 null
+     * @param next
+     *         最新的盘口
+     * @param out
+     *         档位变化
+     */
+    public static void diff(MarketDepthChartSeries prev, MarketDepthChartSeries next, List<Change> out) {
+        for (MarketDepthChart chart : next.getSeries()) {
+            MarketDepthChart old = prev == null ? null : chartOf(prev, chart.getDepth());
+            diff(chart.getDepth(), OrderSide.BUY,
+                    old == null ? Collections.emptyList() : old.getBids(), chart.getBids(), out);
+            diff(chart.getDepth(), OrderSide.SELL,
+                    old == null ? Collections.emptyList() : old.getAsks(), chart.getAsks(), out);
+        }
+    }
+
+    /**
+     * 按照价格顺序 (买盘从高到低, 卖盘从低到高) 合并比较两个档位列表
+     */
+    private static void diff(DepthLevel depth,
+                             OrderSide side,
+                             List<MarketDepthInfo> prev,
+                             List<MarketDepthInfo> next,
+                             List<Change> out) {
+        int i = 0, j = 0;
+        while (i < prev.size() || j < next.size()) {
+            int cmp;
+            if (i == prev.size()) {
+                cmp = 1;
+            } else if (j == next.size()) {
+                cmp = -1;
+            } else {
+                cmp = comparePrice(side, prev.get(i).getPrice(), next.get(j).getPrice());
+            }
+            if (cmp < 0) {
+                // 档位已经移除
+                out.add(change(depth, side, removed(prev.get(i).getPrice())));
+                i++;
+            } else if (cmp > 0) {
+                // 新的档位
+                out.add(change(depth, side, next.get(j)));
+                j++;
+            } else {
+                if (!sameQuantity(prev.get(i), next.get(j))) {
+                    out.add(change(depth, side, next.get(j)));
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * 将档位变化应用到盘口上, 用于下游根据全量盘口以及增量维护最新的盘口
+     *
+     * @param series
+     *         盘口, 会被修改
+     * @param changes
+     *         档位变化
+     */
+    public static void apply(MarketDepthChartSeries series, List<Change> changes) {
+        for (Change change : changes) {
+            MarketDepthChart chart = chartOf(series, change.getDepth());
+            if (chart == null) {
+                chart = new MarketDepthChart();
+                chart.setDepth(change.getDepth());
+                chart.setBids(new ArrayList<>());
+                chart.setAsks(new ArrayList<>());
+                series.getSeries().add(chart);
+            }
+            boolean bid = OrderSide.BUY.equals(change.getSide());
+            List<MarketDepthInfo> levels = new ArrayList<>(bid ? chart.getBids() : chart.getAsks());
+            BigDecimal price = change.getInfo().getPrice();
+            int index = 0;
+            int cmp = 1;
+            for (; index < levels.size(); index++) {
+                cmp = comparePrice(change.getSide(), levels.get(index).getPrice(), price);
+                if (cmp >= 0) {
+                    break;
+                }
+            }
+            boolean exists = index < levels.size() && cmp == 0;
+            if (change.isRemoved()) {
+                if (exists) {
+                    levels.remove(index);
+                }
+            } else if (exists) {
+                levels.set(index, change.getInfo());
+            } else {
+                levels.add(index, change.getInfo());
+            }
+            if (bid) {
+                chart.setBids(levels);
+            } else {
+                chart.setAsks(levels);
+            }
+        }
+    }
+
+    public static Buffer toBuf(String symbol, long seq, List<Change> changes) {
+        // | msg size (4byte) | msg type (1byte) | ts (8byte) |
+        // | symbol.size [4byte] data[bytes] | seq (8byte) | numOfChanges (4byte) |
+        // repeated | depth (1byte) | side (1byte) | price total executed leaves (4 decimals) |
+        // 增量盘口没有旧版本的下游, 总是使用定点数格式, 价格的精度也是档位标识的一部分
+        byte[] symbolBytes = SymbolUtils.toGenericSymbol(symbol).getBytes();
+        int msgSize = 1 + 8 + 4 + symbolBytes.length + 8 + 4 + changes.size() * CHANGE_SIZE;
+        Buffer buf = Buffer.buffer(msgSize + 4)
+                .appendInt(msgSize)
+                .appendByte(WireFormat.typeByte(MessageType.DEPTH_DELTA, WireFormat.DECIMAL))
+                .appendLong(System.currentTimeMillis())
+                .appendInt(symbolBytes.length)
+                .appendBytes(symbolBytes)
+                .appendLong(seq)
+                .appendInt(changes.size());
+        for (Change change : changes) {
+            MarketDepthInfo info = change.getInfo();
+            buf.appendByte((byte) change.getDepth().ordinal())
+                    .appendByte((byte) (OrderSide.BUY.equals(change.getSide()) ? 0 : 1));
+            WireFormat.appendDecimal(buf, info.getPrice(), WireFormat.DECIMAL);
+            WireFormat.appendDecimal(buf, info.getTotal(), WireFormat.DECIMAL);
+            WireFormat.appendDecimal(buf, info.getExecuted(), WireFormat.DECIMAL);
+            WireFormat.appendDecimal(buf, info.getLeaves(), WireFormat.DECIMAL);
+        }
+        return buf;
+    }
+
+    public static DepthDeltaMessage of(Buffer buf, int readOffset, int msgSize, int version) {
+        // | msg size (4byte) | msg type (1byte) | ts (8byte) |
+        // | symbol.size [4byte] data[bytes] | seq (8byte) | numOfChanges (4byte) |
+        // repeated | depth (1byte) | side (1byte) | price total executed leaves (4 decimals) |
+        if (version != WireFormat.DECIMAL) {
+            return null;
+        }
+        int offset = readOffset;
+        int symbolLength = buf.getInt(offset);
+        if (symbolLength <= 0 || symbolLength > msgSize) {
+            return null;
+        }
+        offset += 4;
+        DepthDeltaMessage msg = new DepthDeltaMessage();
+        msg.setSymbol(new String(buf.getBytes(offset, offset + symbolLength)));
+        offset += symbolLength;
+        msg.setSeq(buf.getLong(offset));
+        offset += 8;
+        int numOfChanges = buf.getInt(offset);
+        offset += 4;
+        if (numOfChanges < 0 || 1 + 8 + 4 + symbolLength + 8 + 4 + numOfChanges * CHANGE_SIZE != msgSize) {
+            return null;
+        }
+        List<Change> changes = new ArrayList<>(numOfChanges);
+        for (int i = 0; i < numOfChanges; i++) {
+            DepthLevel depth = DepthLevel.of(buf.getByte(offset));
+            if (depth == null) {
+                return null;
+            }
+            Change change = new Change();
+            change.setDepth(depth);
+            change.setSide(buf.getByte(offset + 1) == 0 ? OrderSide.BUY : OrderSide.SELL);
+            offset += 2;
+            MarketDepthInfo info = new MarketDepthInfo();
+            info.setPrice(WireFormat.getDecimal(buf, offset, WireFormat.DECIMAL));
+            info.setTotal(WireFormat.getDecimal(buf, offset + 9, WireFormat.DECIMAL));
+            info.setExecuted(WireFormat.getDecimal(buf, offset + 18, WireFormat.DECIMAL));
+            info.setLeaves(WireFormat.getDecimal(buf, offset + 27, WireFormat.DECIMAL));
+            offset += 36;
+            change.setInfo(info);
+            changes.add(change);
+        }
+        msg.setChanges(changes);
+        return msg;
+    }
+
+    /**
+     * 请求全量盘口
+     *
+     * @param symbol
+     *         交易对, 为 null 表示请求所有交易对
+     *
+     * @return 消息
+     */
+    public static Buffer snapshotRequestToBuf(String symbol) {
+        // | msg size (4byte) | msg type (1byte) | ts (8byte) | symbol.size [4byte] data[bytes] |
+        byte[] symbolBytes = symbol == null ? new byte[0] : SymbolUtils.toGenericSymbol(symbol).getBytes();
+        int msgSize = 1 + 8 + 4 + symbolBytes.length;
+        return Buffer.buffer(msgSize + 4)
+                .appendInt(msgSize)
+                .appendByte(WireFormat.typeByte(MessageType.DEPTH_SNAPSHOT_REQUEST, WireFormat.DEFAULT))
+                .appendLong(System.currentTimeMillis())
+                .appendInt(symbolBytes.length)
+                .appendBytes(symbolBytes);
+    }
+
+    /**
+     * 解析全量盘口请求
+     *
+     * @return 交易对, 空字符串表示所有交易对, 消息非法时返回 null
+     */
+    public static String ofSnapshotRequest(Buffer buf, int readOffset, int msgSize) {
+        int symbolLength = buf.getInt(readOffset);
+        if (symbolLength < 0 || 1 + 8 + 4 + symbolLength != msgSize) {
+            return null;
+        }
+        return new String(buf.getBytes(readOffset + 4, readOffset + 4 + symbolLength));
+    }
+
+    private static MarketDepthChart chartOf(MarketDepthChartSeries series, DepthLevel depth) {
+        for (MarketDepthChart chart : series.getSeries()) {
+            if (chart.getDepth() == depth) {
+                return chart;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 档位的排列顺序, 与 {@link com.trader.core.entity.DepthLadder} 一致: 价格相同时按照精度区分 (例如 2 与 2.0 属于不同的档位)
+     */
+    private static int comparePrice(OrderSide side, BigDecimal a, BigDecimal b) {
+        int cmp = a.compareTo(b);
+        if (OrderSide.BUY.equals(side)) {
+            cmp = -cmp;
+        }
+        return cmp != 0 ? cmp : Integer.compare(a.scale(), b.scale());
+    }
+
+    private static boolean sameQuantity(MarketDepthInfo a, MarketDepthInfo b) {
+        return a.getLeaves().compareTo(b.getLeaves()) == 0 &&
+                a.getTotal().compareTo(b.getTotal()) == 0 &&
+                a.getExecuted().compareTo(b.getExecuted()) == 0;
+    }
+
+    private static MarketDepthInfo removed(BigDecimal price) {
+        MarketDepthInfo info = MarketDepthInfo.empty();
+        info.setPrice(price);
+        return info;
+    }
+
+    private static Change change(DepthLevel depth, OrderSide side, MarketDepthInfo info) {
+        Change change = new Change();
+        change.setDepth(depth);
+        change.setSide(side);
+        change.setInfo(info);
+        return change;
+    }
+}
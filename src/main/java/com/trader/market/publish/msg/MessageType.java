@@ -12,7 +12,15 @@ import lombok.Getter;
 public enum MessageType {
     MARKET_PRICE,
     DEPTH_CHART,
-    TRADE_RESULT;
+    TRADE_RESULT,
+    /**
+     * 增量盘口 {@link DepthDeltaMessage}
+     */
+    DEPTH_DELTA,
+    /**
+     * 请求全量盘口, 由下游发送
+     */
+    DEPTH_SNAPSHOT_REQUEST;
 
     public static MessageType ofName(String name) {
         for (MessageType t : values()) {
@@ -0,0 +1,245 @@
+package com.trader.market.publish.msg;
+
+import com.trader.core.def.OrderSide;
+import com.trader.utils.FixedPointUtils;
+import io.vertx.core.buffer.Buffer;
+
+import java.math.BigDecimal;
+
+/**
+ * 行情消息视图 (flyweight)
+ * <p>
+ * 直接读取缓冲区中的一条消息, 不复制字节也不创建对象, 只有调用 {@link #symbol()}, {@link #price()},
+ * {@link #toMessage()} 等方法时才会生成对应的对象. 视图会被复用, 只在 {@link com.trader.utils.messages.FrameHandler}
+ * 回调期间有效, 需要保留消息时调用 {@link #toMessage()}
+ * <p>
+ * 价格以及数量的读取只支持 {@link MessageType#TRADE_RESULT} 与 {@link MessageType#MARKET_PRICE}
+ *
+ * @author yjt
+ * @since 2020/11/15 下午4:00
+ */
+public final class MessageView {
+
+    /**
+     * 缓冲区
+     */
+    private Buffer buf;
+
+    /**
+     * 消息类型字节的位置 (跳过消息长度)
+     */
+    private int offset;
+
+    /**
+     * 消息长度 (不包含消息长度本身)
+     */
+    private int length;
+
+    /**
+     * 指向一条消息
+     *
+     * @param buf
+     *         缓冲区
+     * @param offset
+     *         消息类型字节的位置
+     * @param length
+     *         消息长度 (不包含消息长度本身)
+     *
+     * @return this
+     */
+    public MessageView wrap(Buffer buf, int offset, int length) {
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public MessageType type() {
+        return WireFormat.typeOf(buf.getByte(offset));
+    }
+
+    public int version() {
+        return WireFormat.versionOf(buf.getByte(offset));
+    }
+
+    public long ts() {
+        return buf.getLong(offset + 1);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 消息体的位置: | msg type (1byte) | ts (8byte) | 之后
+     */
+    private int body() {
+        return offset + 1 + 8;
+    }
+
+    public int symbolLength() {
+        return buf.getInt(body());
+    }
+
+    /**
+     * 比较交易对, 不创建字符串
+     *
+     * @param symbol
+     *         交易对的字节
+     *
+     * @return 是否相同
+     */
+    public boolean symbolEquals(byte[] symbol) {
+        int len = symbolLength();
+        if (len != symbol.length) {
+            return false;
+        }
+        int start = body() + 4;
+        for (int i = 0; i < len; i++) {
+            if (buf.getByte(start + i) != symbol[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取交易对, 会创建字符串
+     *
+     * @return 交易对
+     */
+    public String symbol() {
+        int start = body() + 4;
+        return new String(buf.getBytes(start, start + symbolLength()));
+    }
+
+    /**
+     * 价格 / 数量等字段的长度是否与消息长度一致, 不一致时不能读取价格以及数量
+     *
+     * @return 是否合法
+     */
+    public boolean isValid() {
+        MessageType type = type();
+        if (type == null || length < 1 + 8 + 4) {
+            return false;
+        }
+        switch (type) {
+            case TRADE_RESULT:
+                return symbolLength() == length - TradeMessage.headerSize(version());
+            case MARKET_PRICE:
+                return symbolLength() == length - PriceChangeMessage.headerSize(version());
+            default:
+                return symbolLength() >= 0 && symbolLength() <= length;
+        }
+    }
+
+    /**
+     * 价格 (定点数, 精度为 {@link FixedPointUtils#SCALE}), 不创建对象
+     *
+     * @return 价格
+     */
+    public long priceFixed() {
+        return fixedAt(priceOffset());
+    }
+
+    /**
+     * 数量 (定点数, 精度为 {@link FixedPointUtils#SCALE}), 不创建对象, 只有成交消息有数量
+     *
+     * @return 数量
+     */
+    public long quantityFixed() {
+        return fixedAt(quantityOffset());
+    }
+
+    public BigDecimal price() {
+        return WireFormat.getDecimal(buf, priceOffset(), version());
+    }
+
+    public BigDecimal quantity() {
+        return WireFormat.getDecimal(buf, quantityOffset(), version());
+    }
+
+    /**
+     * 成交主动方, 只有成交消息有成交方向
+     *
+     * @return 成交主动方
+     */
+    public OrderSide side() {
+        requireType(MessageType.TRADE_RESULT);
+        return OrderSide.toSide(buf.getByte(quantityOffset() + WireFormat.decimalSize(version())));
+    }
+
+    /**
+     * 解析为完整的消息对象
+     *
+     * @return 消息, 消息非法时返回 null
+     */
+    public Message<?> toMessage() {
+        MessageType type = type();
+        if (type == null) {
+            return null;
+        }
+        int version = version();
+        Object data;
+        switch (type) {
+            case TRADE_RESULT:
+                data = TradeMessage.of(buf, body(), length, version);
+                break;
+            case DEPTH_CHART:
+                data = DepthChartMessage.of(buf, body(), length, version);
+                break;
+            case MARKET_PRICE:
+                data = PriceChangeMessage.of(buf, body(), length, version);
+                break;
+            case DEPTH_DELTA:
+                data = DepthDeltaMessage.of(buf, body(), length, version);
+                break;
+            case DEPTH_SNAPSHOT_REQUEST:
+                data = DepthDeltaMessage.ofSnapshotRequest(buf, body(), length);
+                break;
+            default:
+                data = null;
+        }
+        if (data == null) {
+            return null;
+        }
+        Message<Object> msg = new Message<>();
+        msg.setType(type);
+        msg.setTs(ts());
+        msg.setData(data);
+        return msg;
+    }
+
+    private int priceOffset() {
+        MessageType type = type();
+        if (type != MessageType.TRADE_RESULT && type != MessageType.MARKET_PRICE) {
+            throw new IllegalStateException("no price in " + type);
+        }
+        return body() + 4 + symbolLength();
+    }
+
+    private int quantityOffset() {
+        requireType(MessageType.TRADE_RESULT);
+        return priceOffset() + WireFormat.decimalSize(version());
+    }
+
+    private void requireType(MessageType expected) {
+        MessageType type = type();
+        if (type != expected) {
+            throw new IllegalStateException("expect " + expected + " but was " + type);
+        }
+    }
+
+    private long fixedAt(int pos) {
+        if (version() == WireFormat.DECIMAL) {
+            return FixedPointUtils.fromUnscaled(buf.getLong(pos), buf.getByte(pos + 8));
+        }
+        // 旧版本的 double 本身就是近似值, 四舍五入到定点数
+        return Math.round(buf.getDouble(pos) * FixedPointUtils.ONE);
+    }
+
+    @Override
+    public String toString() {
+        return "MessageView{type=" + type() + ", version=" + version() + ", length=" + length + '}';
+    }
+}
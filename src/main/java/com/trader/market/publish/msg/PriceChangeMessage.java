@@ -53,37 +53,48 @@ public class PriceChangeMessage {
     }
 
     public static Buffer toBuf(PriceChangeMessage pc) {
+        return toBuf(pc, WireFormat.DEFAULT);
+    }
+
+    public static Buffer toBuf(PriceChangeMessage pc, int version) {
         // | msg size (4byte) | msg type (1byte) | ts (8byte) |
-        // | symbol.size [4byte] data[bytes] | price (8byte) | third (1byte)
+        // | symbol.size [4byte] data[bytes] | price (decimal) | third (1byte)
         byte[] symbolBytes = SymbolUtils.toGenericSymbol(pc.getSymbol()).getBytes();
-        int msgSize = 22 + symbolBytes.length;
-        return Buffer.buffer(msgSize)
+        int msgSize = headerSize(version) + symbolBytes.length;
+        Buffer buf = Buffer.buffer(msgSize + 4)
                 .appendInt(msgSize)
-                .appendByte((byte) MessageType.MARKET_PRICE.ordinal())
+                .appendByte(WireFormat.typeByte(MessageType.MARKET_PRICE, version))
                 .appendLong(System.currentTimeMillis())
                 .appendInt(symbolBytes.length)
-                .appendBytes(symbolBytes)
-                .appendDouble(pc.getPrice().doubleValue())
+                .appendBytes(symbolBytes);
+        return WireFormat.appendDecimal(buf, pc.getPrice(), version)
                 .appendByte((byte) (Boolean.TRUE.equals(pc.getThird()) ? 1 : 0));
     }
 
-    public static PriceChangeMessage of(Buffer buf, int readOffset, int msgSize) {
+    public static PriceChangeMessage of(Buffer buf, int readOffset, int msgSize, int version) {
         // | msg size (4byte) | msg type (1byte) | ts (8byte) |
-        // | symbol.size [4byte] data[bytes] | price (8byte) | third (1byte)
+        // | symbol.size [4byte] data[bytes] | price (decimal) | third (1byte)
         int offset = readOffset;
         PriceChangeMessage pc = new PriceChangeMessage();
         int symbolLength = buf.getInt(offset);
-        if (symbolLength != msgSize - 22) {
+        if (symbolLength != msgSize - headerSize(version)) {
             return null;
         }
         offset += 4;
         byte[] symbolBytes = buf.getBytes(offset, offset + symbolLength);
         offset += symbolLength;
         pc.setSymbol(new String(symbolBytes));
-        pc.setPrice(BigDecimal.valueOf(buf.getDouble(offset)));
-        offset += 8;
+        pc.setPrice(WireFormat.getDecimal(buf, offset, version));
+        offset += WireFormat.decimalSize(version);
         byte third = buf.getByte(offset);
         pc.setThird(third == 1);
         return pc;
     }
+
+    /**
+     * 除交易对之外的消息长度: type + ts + symbol.size + price + third
+     */
+    static int headerSize(int version) {
+        return 1 + 8 + 4 + WireFormat.decimalSize(version) + 1;
+    }
 }
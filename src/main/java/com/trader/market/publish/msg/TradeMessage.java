@@ -48,42 +48,53 @@ public class TradeMessage {
     }
 
     public static Buffer toBuf(TradeMessage ts) {
+        return toBuf(ts, WireFormat.DEFAULT);
+    }
+
+    public static Buffer toBuf(TradeMessage ts, int version) {
         // | msg size (4byte) | msg type (1byte) | ts (8byte) |
-        // | symbol.size [4byte] data[bytes] | price (8byte) | quantity (8byte) | direction (1byte) | ts (8byte)
+        // | symbol.size [4byte] data[bytes] | price (decimal) | quantity (decimal) | direction (1byte) | ts (8byte)
         byte[] symbolBytes = SymbolUtils.toGenericSymbol(ts.getSymbol()).getBytes();
-        int msgSize = 38 + symbolBytes.length;
-        return Buffer.buffer(msgSize)
+        int msgSize = headerSize(version) + symbolBytes.length;
+        Buffer buf = Buffer.buffer(msgSize + 4)
                 .appendInt(msgSize)
-                .appendByte((byte) MessageType.TRADE_RESULT.ordinal())
+                .appendByte(WireFormat.typeByte(MessageType.TRADE_RESULT, version))
                 .appendLong(System.currentTimeMillis())
                 .appendInt(symbolBytes.length)
-                .appendBytes(symbolBytes)
-                .appendDouble(ts.getPrice().doubleValue())
-                .appendDouble(ts.getQuantity().doubleValue())
-                .appendByte((byte) OrderSide.toSide(ts.getDirection()).ordinal())
+                .appendBytes(symbolBytes);
+        WireFormat.appendDecimal(buf, ts.getPrice(), version);
+        WireFormat.appendDecimal(buf, ts.getQuantity(), version);
+        return buf.appendByte((byte) OrderSide.toSide(ts.getDirection()).ordinal())
                 .appendLong(ts.getTs());
     }
 
-    public static TradeMessage of(Buffer buf, int readOffset,int msgSize) {
+    public static TradeMessage of(Buffer buf, int readOffset, int msgSize, int version) {
         // | msg size (4byte) | msg type (1byte) | ts (8byte) |
-        // | symbol.size [4byte] data[bytes] | price (8byte) | quantity (8byte) | direction (1byte) | ts (8byte)
+        // | symbol.size [4byte] data[bytes] | price (decimal) | quantity (decimal) | direction (1byte) | ts (8byte)
         int offset = readOffset;
         TradeMessage ts = new TradeMessage();
         int symbolLength = buf.getInt(offset);
-        if (symbolLength != msgSize - 38) {
+        if (symbolLength != msgSize - headerSize(version)) {
             return null;
         }
         offset += 4;
         byte[] symbolBytes = buf.getBytes(offset, offset + symbolLength);
         offset += symbolLength;
         ts.setSymbol(new String(symbolBytes));
-        ts.setPrice(BigDecimal.valueOf(buf.getDouble(offset)));
-        offset += 8;
-        ts.setQuantity(BigDecimal.valueOf(buf.getDouble(offset)));
-        offset += 8;
+        ts.setPrice(WireFormat.getDecimal(buf, offset, version));
+        offset += WireFormat.decimalSize(version);
+        ts.setQuantity(WireFormat.getDecimal(buf, offset, version));
+        offset += WireFormat.decimalSize(version);
         ts.setDirection(OrderSide.toSide(buf.getByte(offset)).toDirection());
         offset += 1;
         ts.setTs(buf.getLong(offset));
         return ts;
     }
+
+    /**
+     * 除交易对之外的消息长度: type + ts + symbol.size + price + quantity + direction + ts
+     */
+    static int headerSize(int version) {
+        return 1 + 8 + 4 + 2 * WireFormat.decimalSize(version) + 1 + 8;
+    }
 }
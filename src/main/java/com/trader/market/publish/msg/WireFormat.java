@@ -0,0 +1,149 @@
+package com.trader.market.publish.msg;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.math.BigDecimal;
+
+/**
+ * 行情消息的二进制格式版本
+ * <p>
+ * 版本号保存在消息类型字节的高 3 位 (低 5 位为 {@link MessageType} 的序号), 所以旧版本的消息类型字节不变,
+ * {@link com.trader.utils.messages.FrameParser} 根据类型字节识别每一条消息的版本, 同一个连接上两种版本可以混合出现.
+ * <ul>
+ *     <li>{@link #LEGACY}: 数值为 double (8byte), 8 位小数的价格以及数量会丢失精度</li>
+ *     <li>{@link #DECIMAL}: 数值为 | unscaled value (8byte) | scale (1byte) |, 与 BigDecimal 无损互转, 编解码过程中不会生成字符串</li>
+ * </ul>
+ *
+ * @author yjt
+ * @since 2020/11/15 上午10:00
+ */
+public final class WireFormat {
+
+    /**
+     * 数值为 double
+     */
+    public static final int LEGACY = 0;
+
+    /**
+     * 数值为定点数 (unscaled long + scale)
+     */
+    public static final int DECIMAL = 1;
+
+    /**
+     * 能够解析的最新版本
+     */
+    public static final int CURRENT = DECIMAL;
+
+    /**
+     * 默认推送的版本, 未升级的下游只能识别 {@link #LEGACY}, 所以 {@link #DECIMAL} 需要显式开启
+     */
+    public static final int DEFAULT = LEGACY;
+
+    private static final int TYPE_BITS = 5;
+
+    private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    private WireFormat() {
+    }
+
+    /**
+     * 编码消息类型字节
+     *
+     * @param type
+     *         消息类型
+     * @param version
+     *         版本
+     *
+     * @return 类型字节
+     */
+    public static byte typeByte(MessageType type, int version) {
+        if (version != LEGACY && version != DECIMAL) {
+            throw new IllegalArgumentException("unknown wire version: " + version);
+        }
+        return (byte) (version << TYPE_BITS | type.ordinal());
+    }
+
+    /**
+     * 从类型字节中读取消息类型
+     *
+     * @param b
+     *         类型字节
+     *
+     * @return 消息类型, 未知类型返回 null
+     */
+    public static MessageType typeOf(byte b) {
+        return MessageType.valueOf((byte) (b & TYPE_MASK));
+    }
+
+    /**
+     * 从类型字节中读取版本
+     *
+     * @param b
+     *         类型字节
+     *
+     * @return 版本
+     */
+    public static int versionOf(byte b) {
+        return (b & 0xff) >>> TYPE_BITS;
+    }
+
+    /**
+     * 数值占用的字节数
+     *
+     * @param version
+     *         版本
+     *
+     * @return 字节数
+     */
+    public static int decimalSize(int version) {
+        return version == DECIMAL ? 9 : 8;
+    }
+
+    /**
+     * 写入数值
+     *
+     * @param buf
+     *         缓冲区
+     * @param v
+     *         数值
+     * @param version
+     *         版本
+     *
+     * @return 缓冲区
+     *
+     * @throws ArithmeticException
+     *         去掉末尾的 0 之后依旧超出 long 的范围, 或者精度超出 byte 的范围
+     */
+    public static Buffer appendDecimal(Buffer buf, BigDecimal v, int version) {
+        if (version != DECIMAL) {
+            return buf.appendDouble(v.doubleValue());
+        }
+        if (v.unscaledValue().bitLength() >= 64 || v.scale() != (byte) v.scale()) {
+            v = v.stripTrailingZeros();
+            if (v.scale() != (byte) v.scale()) {
+                throw new ArithmeticException("scale out of range: " + v.scale());
+            }
+        }
+        return buf.appendLong(v.unscaledValue().longValueExact())
+                .appendByte((byte) v.scale());
+    }
+
+    /**
+     * 读取数值
+     *
+     * @param buf
+     *         缓冲区
+     * @param offset
+     *         偏移
+     * @param version
+     *         版本
+     *
+     * @return 数值
+     */
+    public static BigDecimal getDecimal(Buffer buf, int offset, int version) {
+        if (version != DECIMAL) {
+            return BigDecimal.valueOf(buf.getDouble(offset));
+        }
+        return BigDecimal.valueOf(buf.getLong(offset), buf.getByte(offset + 8));
+    }
+}
@@ -0,0 +1,198 @@
+package com.trader.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * 定点数运算工具
+ * <p>
+ * 定点数使用 long 表示, 单位为 10^-{@link #SCALE}, 与 {@link TradeUtils} 中的 setScale(8, DOWN) 保持一致,
+ * 所有的舍入方式均为 {@link RoundingMode#DOWN}, 保证与 BigDecimal 的计算结果一致
+ *
+ * @author yjt
+ * @since 2020/11/3 下午2:10
+ */
+public final class FixedPointUtils {
+
+    /**
+     * 定点数精度
+     */
+    public static final int SCALE = 8;
+
+    /**
+     * 10^SCALE
+     */
+    public static final long ONE = 100_000_000L;
+
+    /**
+     * 10 的 n 次方
+     */
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private static final BigInteger BIG_ONE = BigInteger.valueOf(ONE);
+
+    private FixedPointUtils() {
+    }
+
+    /**
+     * 判断一个数值是否可以无损转换为定点数
+     *
+     * @param v
+     *         数值
+     *
+     * @return 是否可以无损转换
+     */
+    public static boolean isExact(BigDecimal v) {
+        if (v == null) {
+            return false;
+        }
+        if (v.signum() == 0) {
+            return true;
+        }
+        BigDecimal stripped = v.stripTrailingZeros();
+        if (stripped.scale() > SCALE) {
+            return false;
+        }
+        return stripped.setScale(SCALE).unscaledValue().bitLength() < 64;
+    }
+
+    /**
+     * BigDecimal 转换为定点数
+     *
+     * @param v
+     *         数值
+     *
+     * @return 定点数
+     *
+     * @throws ArithmeticException
+     *         如果精度超过 {@link #SCALE} 或者超出 long 的范围
+     */
+    public static long toFixed(BigDecimal v) {
+        return v.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 定点数转换为 BigDecimal
+     *
+     * @param v
+     *         定点数
+     *
+     * @return BigDecimal (scale = {@link #SCALE})
+     */
+    public static BigDecimal toDecimal(long v) {
+        return BigDecimal.valueOf(v, SCALE);
+    }
+
+    /**
+     * unscaled value + scale 转换为定点数, 不需要创建 BigDecimal
+     * 等价于 BigDecimal.valueOf(unscaled, scale).setScale(8, DOWN)
+     *
+     * @param unscaled
+     *         unscaled value
+     * @param scale
+     *         精度
+     *
+     * @return 定点数
+     *
+     * @throws ArithmeticException
+     *         如果超出 long 的范围
+     */
+    public static long fromUnscaled(long unscaled, int scale) {
+        if (scale == SCALE || unscaled == 0) {
+            return unscaled;
+        }
+        if (scale < SCALE) {
+            int n = SCALE - scale;
+            if (n >= POW10.length) {
+                throw new ArithmeticException("Overflow");
+            }
+            return Math.multiplyExact(unscaled, POW10[n]);
+        }
+        int n = scale - SCALE;
+        return n >= POW10.length ? 0 : unscaled / POW10[n];
+    }
+
+    /**
+     * 获取一个 BigDecimal 除法时使用的精度
+     * BigDecimal#divide(BigDecimal, RoundingMode) 的结果精度为被除数的精度, 最终再 setScale(8, DOWN),
+     * 所以实际生效的精度为 min(scale, 8)
+     *
+     * @param dividend
+     *         被除数
+     *
+     * @return 除法精度
+     */
+    public static int divideScale(BigDecimal dividend) {
+        return Math.min(dividend.scale(), SCALE);
+    }
+
+    /**
+     * 乘法: a * b 并截断为 {@link #SCALE} 位小数
+     * 等价于 a.multiply(b).setScale(8, DOWN)
+     *
+     * @param a
+     *         定点数
+     * @param b
+     *         定点数
+     *
+     * @return 定点数
+     */
+    public static long mulDown(long a, long b) {
+        long hi = Math.abs(a) | Math.abs(b);
+        if (hi >>> 31 == 0) {
+            return a * b / ONE;
+        }
+        return BigInteger.valueOf(a)
+                         .multiply(BigInteger.valueOf(b))
+                         .divide(BIG_ONE)
+                         .longValueExact();
+    }
+
+    /**
+     * 除法: a / b 截断为 scale 位小数
+     * 等价于 a.divide(b, DOWN).setScale(8, DOWN), 其中 a 的精度为 scale
+     *
+     * @param a
+     *         被除数 (定点数)
+     * @param b
+     *         除数 (定点数)
+     * @param scale
+     *         截断精度, 参考 {@link #divideScale(BigDecimal)}
+     *
+     * @return 定点数
+     */
+    public static long divDown(long a, long b, int scale) {
+        if (scale > SCALE) {
+            scale = SCALE;
+        }
+        long q;
+        if (scale >= 0) {
+            long factor = POW10[scale];
+            if (Math.abs(a) < Long.MAX_VALUE / factor) {
+                q = a * factor / b;
+            } else {
+                q = BigInteger.valueOf(a)
+                              .multiply(BigInteger.valueOf(factor))
+                              .divide(BigInteger.valueOf(b))
+                              .longValueExact();
+            }
+            return Math.multiplyExact(q, POW10[SCALE - scale]);
+        }
+
+        // 负数精度: 截断到 10^-scale 位
+        BigInteger unit = BigInteger.TEN.pow(-scale);
+        return BigInteger.valueOf(a)
+                         .divide(BigInteger.valueOf(b).multiply(unit))
+                         .multiply(unit)
+                         .multiply(BIG_ONE)
+                         .longValueExact();
+    }
+}
@@ -35,14 +35,25 @@ public class MarketDepthUtils {
                 .flatMap((entry) -> Stream.of(combineTrx(entry.getKey(), entry.getValue())))
 
                 // 过滤剩余量 > 0
-                .filter(e -> e.getLeaves().setScale(6, RoundingMode.DOWN).compareTo(BigDecimal.ZERO) > 0 &&
-                        // 过滤价格 > 0
-                        e.getPrice().compareTo(BigDecimal.ZERO) > 0)
+                // 过滤价格 > 0
+                .filter(e -> isVisible(e.getLeaves(), e.getPrice()))
                 .sorted(comparator)
                 .limit(limit)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 过滤剩余量 > 0 并且价格 > 0
+     *
+     * @param leaves 剩余量
+     * @param price  价格
+     * @return 是否需要展示
+     */
+    public static boolean isVisible(BigDecimal leaves, BigDecimal price) {
+        return leaves.setScale(6, RoundingMode.DOWN).compareTo(BigDecimal.ZERO) > 0 &&
+                price.compareTo(BigDecimal.ZERO) > 0;
+    }
+
     private static MarketDepthInfo combineTrx(BigDecimal trx, List<MarketDepthInfo> ls) {
         MarketDepthInfo result = MarketDepthInfo.empty();
         ls.forEach(result::add);
@@ -50,7 +61,14 @@ public class MarketDepthUtils {
         return result;
     }
 
-    private static BigDecimal calcTrx(BigDecimal price, DepthLevel depth) {
+    /**
+     * 计算价格在指定深度下的合并价格: 在价格本身的小数位数上截断 depth 位
+     *
+     * @param price 价格
+     * @param depth 深度
+     * @return 合并价格
+     */
+    public static BigDecimal calcTrx(BigDecimal price, DepthLevel depth) {
         return price.setScale(getNumberOfDecimalPlaces(price) - depth.ordinal(), BigDecimal.ROUND_DOWN);
     }
 
@@ -61,8 +79,7 @@ public class MarketDepthUtils {
      * @return 小数位数
      */
      private static int getNumberOfDecimalPlaces(BigDecimal bigDecimal) {
-        String string = bigDecimal.stripTrailingZeros().toPlainString();
-        int index = string.indexOf(".");
-        return index < 0 ? 0 : string.length() - index - 1;
+        // 与 stripTrailingZeros().toPlainString() 中小数点之后的位数一致, 不需要格式化字符串
+        return Math.max(bigDecimal.stripTrailingZeros().scale(), 0);
     }
 }
@@ -221,6 +221,185 @@ public class TradeUtils {
         return ts;
     }
 
+    /**
+     * 计算成交价 (定点数), 规则与 {@link #calcExecutePrice(Order, Order, BigDecimal)} 一致
+     *
+     * @param order
+     *         订单
+     * @param opponentOrder
+     *         对手订单
+     * @param marketPrice
+     *         市场价格 (定点数)
+     *
+     * @return 成交价格
+     */
+    public static TradeResult calcExecutePrice(Order order,
+                                               Order opponentOrder,
+                                               long marketPrice) {
+        long price = order.isMarketOrder() ? marketPrice : order.getFixedBoundPrice();
+        long opponentPrice = opponentOrder.isMarketOrder() ? marketPrice : opponentOrder.getFixedBoundPrice();
+
+        TradeResult ts = TradeResult.newFixedPoint();
+
+        switch (order.getDifferencePriceStrategy()) {
+            case DRIVER: {
+                ts.setFixedExecutePrice(opponentPrice);
+                ts.setFixedOpponentExecutePrice(opponentPrice);
+                break;
+            }
+            case PLATFORM: {
+
+                // 平台通吃
+                ts.setFixedExecutePrice(price);
+                ts.setFixedOpponentExecutePrice(opponentPrice);
+
+                // 平台差价
+                ts.setFixedPlatformDiffPrice(Math.abs(price - opponentPrice));
+                break;
+            }
+
+            case TIME_FIRST: {
+
+                // 最早挂单者吃到差价
+                if (order.getCreateDateTime().before(opponentOrder.getCreateDateTime())) {
+                    ts.setFixedExecutePrice(opponentPrice);
+                    ts.setFixedOpponentExecutePrice(opponentPrice);
+                } else {
+                    ts.setFixedExecutePrice(price);
+                    ts.setFixedOpponentExecutePrice(price);
+                }
+                break;
+            }
+
+            case BUYER_FIRST: {
+
+                // 买家吃到差价
+                if (order.isBuy()) {
+                    ts.setFixedExecutePrice(opponentPrice);
+                    ts.setFixedOpponentExecutePrice(opponentPrice);
+                } else {
+                    ts.setFixedExecutePrice(price);
+                    ts.setFixedOpponentExecutePrice(price);
+                }
+                break;
+            }
+
+            case SELLER_FIRST: {
+
+                // 卖家吃到差价
+                if (order.isSell()) {
+                    ts.setFixedExecutePrice(opponentPrice);
+                    ts.setFixedOpponentExecutePrice(opponentPrice);
+                } else {
+                    ts.setFixedExecutePrice(price);
+                    ts.setFixedOpponentExecutePrice(price);
+                }
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("非法差价策略");
+            }
+        }
+
+        // 计算差价
+        ts.setFixedDiffPrice(price - ts.getFixedExecutePrice());
+        ts.setFixedOpponentDiffPrice(opponentPrice - ts.getFixedOpponentExecutePrice());
+        return ts;
+    }
+
+    /**
+     * 通用的撮合 (定点数), 规则以及舍入方式与 {@link #genericTrade(Order, Order, BigDecimal)} 完全一致,
+     * 两个订单都必须已经开启定点数撮合 {@link Order#enableFixedPoint()}
+     *
+     * @param order
+     *         订单
+     * @param opponentOrder
+     *         对手订单
+     * @param marketPrice
+     *         市场价格 (定点数)
+     *
+     * @return 撮合结果
+     */
+    public static TradeResult genericTrade(Order order,
+                                           Order opponentOrder,
+                                           long marketPrice) {
+        //
+        // 计算成交价
+        //
+        TradeResult ts = TradeUtils.calcExecutePrice(order,
+                opponentOrder,
+                marketPrice);
+        long executePrice = ts.getFixedExecutePrice();
+        long opponentExecutePrice = ts.getFixedOpponentExecutePrice();
+
+        //
+        // 计算最终成交量
+        //
+        long quantity = order.getFixedLeavesQuantity();
+        long opponentQuantity = opponentOrder.getFixedLeavesQuantity();
+
+        //
+        // 如果是买入单, 则需要用待执行金额 / 成交价 = 待执行数量
+        //
+        if (order.isBuy()) {
+            quantity = FixedPointUtils.divDown(order.getFixedLeavesAmount(), executePrice, order.getFixedAmountScale());
+
+            if (quantity <= opponentQuantity) {
+                ts.setFixedExecuteAmount(order.getFixedLeavesAmount());
+                if (FixedPointUtils.mulDown(executePrice, opponentQuantity) == order.getFixedLeavesAmount()) {
+                    // 买卖单全部买完
+                    ts.setFixedQuantity(opponentQuantity);
+                } else {
+                    // 买单全部买完
+                    ts.setFixedQuantity(quantity);
+                }
+                // 计算对手卖单收入的计价货币 = 对手订单成交单价 * 成交数量
+                ts.setFixedOpponentExecuteAmount(FixedPointUtils.mulDown(ts.getFixedQuantity(), opponentExecutePrice));
+            } else {
+                // 买单不能全部买完, 但卖单可以卖完
+                // 所以成交金额则是 卖单的数量 * 当前订单单价
+                ts.setFixedExecuteAmount(FixedPointUtils.mulDown(executePrice, opponentQuantity));
+                ts.setFixedQuantity(opponentQuantity);
+
+                // 计算对手卖单收入的计价货币 = 对手订单成交单价 * 成交数量
+                ts.setFixedOpponentExecuteAmount(FixedPointUtils.mulDown(opponentQuantity, opponentExecutePrice));
+            }
+        }
+
+        //
+        // 如果当前订单为卖单, 对手单为买单
+        //
+        if (opponentOrder.isBuy()) {
+            opponentQuantity = FixedPointUtils.divDown(opponentOrder.getFixedLeavesAmount(),
+                    opponentExecutePrice, opponentOrder.getFixedAmountScale());
+            if (opponentQuantity <= quantity) {
+                // 买单全部买完
+                ts.setFixedOpponentExecuteAmount(opponentOrder.getFixedLeavesAmount());
+
+                if (FixedPointUtils.mulDown(opponentExecutePrice, quantity) == opponentOrder.getFixedLeavesAmount()) {
+                    // 买卖单全部买完
+                    ts.setFixedQuantity(quantity);
+                } else {
+                    // 买单全部买完
+                    ts.setFixedQuantity(opponentQuantity);
+                }
+
+                // 计算当前卖单收入的计价货币 = 当前订单成交单价 * 成交数量
+                ts.setFixedExecuteAmount(FixedPointUtils.mulDown(ts.getFixedQuantity(), executePrice));
+            } else {
+                // 买单不能全部买完, 但卖单可以卖完
+                // 所以成交金额则是 卖单的数量 * 对手订单单价
+                ts.setFixedOpponentExecuteAmount(FixedPointUtils.mulDown(opponentExecutePrice, quantity));
+                ts.setFixedQuantity(quantity);
+
+                // 计算当前卖单收入的计价货币 = 当前订单成交单价 * 成交数量
+                ts.setFixedExecuteAmount(FixedPointUtils.mulDown(quantity, executePrice));
+            }
+        }
+        ts.setTimestamp(System.currentTimeMillis());
+        return ts;
+    }
+
     /**
      * 判断买家的钱是否能够买得起最少的数量
      * <p>
@@ -245,6 +424,23 @@ public class TradeUtils {
         return true;
     }
 
+    /**
+     * 判断买家的钱是否能够买得起最少的数量 (定点数)
+     *
+     * @param order
+     *         订单
+     * @param unitPrice
+     *         单价 (定点数)
+     *
+     * @return 是否能够买得起最少的数量
+     */
+    public static boolean isHasEnoughAmount(Order order, long unitPrice) {
+        if (order.isBuy()) {
+            return FixedPointUtils.divDown(order.getFixedLeavesAmount(), unitPrice, order.getFixedAmountScale()) != 0;
+        }
+        return true;
+    }
+
     /**
      * 判断一个订单是否已经结束
      * <p>
@@ -265,6 +461,9 @@ public class TradeUtils {
             case MARKET:
             case STOP:
             case LIMIT: {
+                if (order.isFixedPoint()) {
+                    return order.isBuy() ? order.getFixedLeavesAmount() == 0 : order.getFixedLeavesQuantity() == 0;
+                }
                 if (order.isBuy()) {
                     return order.getLeavesAmount().compareTo(BigDecimal.ZERO) == 0;
                 }
@@ -0,0 +1,125 @@
+package com.trader.utils.buffer;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 支持多个生产者的合并缓冲区 (一个消费者)
+ * <p>
+ * 每个键有一个保存最新数据的原子槽位, 以及一个脏键队列:
+ * 生产者将数据写入槽位, 只有槽位从空变为非空的那一次写入会把槽位加入脏键队列;
+ * 消费者从脏键队列中取出槽位并清空, 读取到的总是该键最新的数据.
+ * 槽位被清空之后的写入会重新入队, 所以数据不会丢失, 也不会重复读取
+ * <p>
+ * 与 {@link CoalescingRingBuffer} 不同, 写入不需要在生产者之间串行化, 撮合线程可以直接写入
+ *
+ * @author yjt
+ * @since 2020/11/16 下午4:00
+ */
+public final class ConcurrentCoalescingBuffer<K, V> implements CoalescingBuffer<K, V> {
+
+    /**
+     * 键 -> 最新数据的槽位
+     */
+    private final ConcurrentHashMap<K, AtomicReference<V>> slots = new ConcurrentHashMap<>(16);
+
+    /**
+     * 有数据的槽位
+     */
+    private final Queue<AtomicReference<V>> dirty = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 脏键队列中的槽位个数
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong rejectionCount = new AtomicLong();
+
+    private final int capacity;
+
+    public ConcurrentCoalescingBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    public long rejectionCount() {
+        return rejectionCount.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    @Override
+    public boolean isFull() {
+        return size.get() >= capacity;
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        AtomicReference<V> slot = slots.get(key);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(key, k -> new AtomicReference<>());
+        }
+        // 只有需要占用新位置时才会被拒绝, 已经在队列中的键总是可以合并
+        if (slot.get() == null && isFull()) {
+            rejectionCount.incrementAndGet();
+            return false;
+        }
+        if (slot.getAndSet(value) == null) {
+            enqueue(slot);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean offer(V value) {
+        if (isFull()) {
+            rejectionCount.incrementAndGet();
+            return false;
+        }
+        enqueue(new AtomicReference<>(value));
+        return true;
+    }
+
+    @Override
+    public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int poll(Collection<? super V> bucket, int maxItems) {
+        int n = 0;
+        AtomicReference<V> slot;
+        while (n < maxItems && (slot = dirty.poll()) != null) {
+            size.decrementAndGet();
+            // 出队之后再清空, 清空之后的写入会重新入队
+            V value = slot.getAndSet(null);
+            if (value != null) {
+                bucket.add(value);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void enqueue(AtomicReference<V> slot) {
+        size.incrementAndGet();
+        dirty.offer(slot);
+    }
+}
@@ -0,0 +1,233 @@
+package com.trader.utils.collection;
+
+import java.util.function.Consumer;
+
+/**
+ * long 为 key 的开放寻址哈希表 (线性探测)
+ * <p>
+ * key 直接存储在 long 数组中, 不需要装箱, 每个条目只占用两个数组槽位, 删除时向前移动后续条目, 不留下墓碑.
+ * 条目数量降低到容量的 1/8 时自动缩容, 所以大量删除后内存会被释放. 非线程安全
+ *
+ * @author yjt
+ * @since 2020/11/12 上午10:05
+ */
+public class LongObjectHashMap<V> {
+
+    /**
+     * 最小容量
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * key
+     */
+    private long[] keys;
+
+    /**
+     * value, 为 null 表示槽位为空
+     */
+    private Object[] values;
+
+    /**
+     * 条目数量
+     */
+    private int size;
+
+    /**
+     * 扩容阈值 (负载因子 0.5)
+     */
+    private int threshold;
+
+    /**
+     * 初始容量, 缩容不会低于该值
+     */
+    private final int initialCapacity;
+
+    public LongObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        this.initialCapacity = tableSizeFor(Math.max(MIN_CAPACITY, expectedSize * 2));
+        allocate(initialCapacity);
+    }
+
+    /**
+     * 查询
+     *
+     * @param key
+     *         key
+     *
+     * @return value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Object v = values[i];
+            if (v == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                return (V) v;
+            }
+        }
+    }
+
+    /**
+     * 写入
+     *
+     * @param key
+     *         key
+     * @param value
+     *         value, 不能为 null
+     *
+     * @return 原来的 value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * 删除
+     *
+     * @param key
+     *         key
+     *
+     * @return 被删除的 value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (; ; i = (i + 1) & mask) {
+            if (values[i] == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                break;
+            }
+        }
+        V old = (V) values[i];
+        values[i] = null;
+        size--;
+
+        // 向前移动后续条目, 保证探测链不会断开
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            // 当 home 不在 (i, j] 区间内时, 条目 j 可以移动到 i
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = null;
+                i = j;
+            }
+        }
+
+        if (size < (keys.length >>> 3) && keys.length > initialCapacity) {
+            rehash(keys.length >>> 1);
+        }
+        return old;
+    }
+
+    /**
+     * 遍历所有 value
+     *
+     * @param consumer
+     *         消费者
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<V> consumer) {
+        for (Object v : values) {
+            if (v != null) {
+                consumer.accept((V) v);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 当前槽位个数
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * 清空, 容量恢复为初始容量
+     */
+    public void clear() {
+        allocate(initialCapacity);
+        size = 0;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        threshold = capacity >>> 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = hash(oldKeys[i]) & mask;
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * 打散 key, 连续的订单ID也能均匀分布
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static int tableSizeFor(int n) {
+        int cap = Integer.highestOneBit(n - 1) << 1;
+        return Math.max(MIN_CAPACITY, cap);
+    }
+
+    @Override
+    public String toString() {
+        return "LongObjectHashMap{size=" + size + ", capacity=" + keys.length + "}";
+    }
+}
@@ -10,9 +10,22 @@ import com.lmax.disruptor.WorkHandler;
  * @since 2020/9/24 下午3:29
  */
 public abstract class AbstractDisruptorConsumer<T> implements EventHandler<ObjectEvent<T>>, WorkHandler<ObjectEvent<T>> {
+
+    /**
+     * 当前正在处理的数据的序号
+     */
+    private long sequence = -1;
+
     @Override
     public void onEvent(ObjectEvent<T> event, long sequence, boolean endOfBatch) throws Exception {
-        this.onEvent(event);
+        this.sequence = sequence;
+        try {
+            this.onEvent(event);
+        } finally {
+            if (endOfBatch) {
+                this.onEndOfBatch();
+            }
+        }
     }
 
     @Override
@@ -28,4 +41,20 @@ public abstract class AbstractDisruptorConsumer<T> implements EventHandler<Objec
      *         事件
      */
     public abstract void process(T event);
+
+    /**
+     * 当前正在处理 (或者最后处理) 的数据在队列中的序号, 只能在消费者线程中调用
+     *
+     * @return 序号
+     */
+    protected long sequence() {
+        return sequence;
+    }
+
+    /**
+     * 一批数据处理结束, 也就是队列中暂时没有更多的数据
+     * 队列空闲时每一条数据都是一批, 所以在这里执行的合并操作不会增加延迟
+     */
+    protected void onEndOfBatch() {
+    }
 }
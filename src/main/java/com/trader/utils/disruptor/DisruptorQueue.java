@@ -1,8 +1,11 @@
 package com.trader.utils.disruptor;
 
+import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.dsl.Disruptor;
 
+import java.util.List;
+
 
 /**
  * 基于 Disruptor 的队列
@@ -36,6 +39,50 @@ public class DisruptorQueue<T> {
         }
     }
 
+    /**
+     * 非阻塞入队, 队列已满时直接返回
+     *
+     * @param t
+     *         对象
+     *
+     * @return 是否入队成功
+     */
+    public boolean offer(T t) {
+        if (t == null) {
+            return true;
+        }
+        long sequence;
+        try {
+            sequence = this.ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            return false;
+        }
+        this.ringBuffer.get(sequence).setObj(t);
+        this.ringBuffer.publish(sequence);
+        return true;
+    }
+
+    /**
+     * 批量入队, 一次申请一段连续的序号并一次发布, 超过队列容量时分段发布
+     * 同一批对象在队列中是连续的, 不会与其它生产者的对象交错 (分段发布时除外)
+     *
+     * @param list
+     *         对象列表, 不能包含 null
+     */
+    public void addAll(List<? extends T> list) {
+        int size = list.size();
+        int bufferSize = this.ringBuffer.getBufferSize();
+        for (int from = 0; from < size; from += bufferSize) {
+            int n = Math.min(bufferSize, size - from);
+            long hi = this.ringBuffer.next(n);
+            long lo = hi - (n - 1);
+            for (int i = 0; i < n; i++) {
+                this.ringBuffer.get(lo + i).setObj(list.get(from + i));
+            }
+            this.ringBuffer.publish(lo, hi);
+        }
+    }
+
     /**
      * 是否为空
      *
@@ -46,9 +93,24 @@ public class DisruptorQueue<T> {
     }
 
     /**
-     * 销毁队列
+     * 生产者已经申请的最大序号, 消费者用于判断队列中是否还有未处理的对象
+     *
+     * @return 序号
+     */
+    public long cursor() {
+        return this.ringBuffer.getCursor();
+    }
+
+    /**
+     * 销毁队列, 等待队列中已有的对象处理完毕
+     * <p>
+     * Disruptor 只检查已经开始运行的消费者的积压, 刚创建的队列在消费者线程启动之前关闭会直接丢弃队列中的对象,
+     * 所以先等待队列排空
      */
     public void shutdown() {
+        while (!isEmpty()) {
+            Thread.yield();
+        }
         disruptor.shutdown();
     }
 }
@@ -1,6 +1,5 @@
 package com.trader.utils.disruptor;
 
-import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.ExceptionHandler;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
@@ -17,36 +16,57 @@ public class DisruptorQueueFactory {
     public static <T> DisruptorQueue<T> createQueue(int queueSize,
                                                     AbstractDisruptorConsumer<T> consumer,
                                                     ExceptionHandler<ObjectEvent<T>> exceptionHandler) {
-        Disruptor<ObjectEvent<T>> disruptor = new Disruptor<>(new ObjectEventFactory<T>(),
-                queueSize, Executors.defaultThreadFactory(),
-                ProducerType.MULTI,
-                new BlockingWaitStrategy());
-        disruptor.handleEventsWith(consumer);
-        disruptor.setDefaultExceptionHandler(exceptionHandler);
-        return new DisruptorQueue<T>(disruptor);
+        return createQueue(queueSize, consumer, exceptionHandler, QueueWaitStrategy.BLOCKING);
+    }
+
+    public static <T> DisruptorQueue<T> createQueue(int queueSize,
+                                                    AbstractDisruptorConsumer<T> consumer,
+                                                    ExceptionHandler<ObjectEvent<T>> exceptionHandler,
+                                                    QueueWaitStrategy waitStrategy) {
+        return create(queueSize, Executors.defaultThreadFactory(), ProducerType.MULTI,
+                consumer, exceptionHandler, waitStrategy);
     }
 
     public static <T> DisruptorQueue<T> createSingleQueue(int queueSize,
                                                           ThreadFactory threadFactory,
                                                           AbstractDisruptorConsumer<T> consumer,
                                                           ExceptionHandler<ObjectEvent<T>> exceptionHandler) {
-        Disruptor<ObjectEvent<T>> disruptor = new Disruptor<>(new ObjectEventFactory<T>(),
-                queueSize, threadFactory,
-                ProducerType.SINGLE,
-                new BlockingWaitStrategy());
-        disruptor.handleEventsWith(consumer);
-        disruptor.setDefaultExceptionHandler(exceptionHandler);
-        return new DisruptorQueue<T>(disruptor);
+        return createSingleQueue(queueSize, threadFactory, consumer, exceptionHandler, QueueWaitStrategy.BLOCKING);
+    }
+
+    public static <T> DisruptorQueue<T> createSingleQueue(int queueSize,
+                                                          ThreadFactory threadFactory,
+                                                          AbstractDisruptorConsumer<T> consumer,
+                                                          ExceptionHandler<ObjectEvent<T>> exceptionHandler,
+                                                          QueueWaitStrategy waitStrategy) {
+        return create(queueSize, threadFactory, ProducerType.SINGLE, consumer, exceptionHandler, waitStrategy);
     }
 
     public static <T> DisruptorQueue<T> createQueue(int queueSize,
                                                     ThreadFactory threadFactory,
                                                     AbstractDisruptorConsumer<T> consumer,
                                                     ExceptionHandler<ObjectEvent<T>> exceptionHandler) {
+        return createQueue(queueSize, threadFactory, consumer, exceptionHandler, QueueWaitStrategy.BLOCKING);
+    }
+
+    public static <T> DisruptorQueue<T> createQueue(int queueSize,
+                                                    ThreadFactory threadFactory,
+                                                    AbstractDisruptorConsumer<T> consumer,
+                                                    ExceptionHandler<ObjectEvent<T>> exceptionHandler,
+                                                    QueueWaitStrategy waitStrategy) {
+        return create(queueSize, threadFactory, ProducerType.MULTI, consumer, exceptionHandler, waitStrategy);
+    }
+
+    private static <T> DisruptorQueue<T> create(int queueSize,
+                                                ThreadFactory threadFactory,
+                                                ProducerType producerType,
+                                                AbstractDisruptorConsumer<T> consumer,
+                                                ExceptionHandler<ObjectEvent<T>> exceptionHandler,
+                                                QueueWaitStrategy waitStrategy) {
         Disruptor<ObjectEvent<T>> disruptor = new Disruptor<>(new ObjectEventFactory<T>(),
                 queueSize, threadFactory,
-                ProducerType.MULTI,
-                new BlockingWaitStrategy());
+                producerType,
+                (waitStrategy == null ? QueueWaitStrategy.BLOCKING : waitStrategy).create());
         disruptor.handleEventsWith(consumer);
         disruptor.setDefaultExceptionHandler(exceptionHandler);
         return new DisruptorQueue<T>(disruptor);
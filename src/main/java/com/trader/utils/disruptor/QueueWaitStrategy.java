@@ -0,0 +1,80 @@
+package com.trader.utils.disruptor;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.PhasedBackoffWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队列消费者的等待策略
+ * <p>
+ * 延迟从低到高: {@link #BUSY_SPIN} < {@link #YIELDING} < {@link #PHASED_BACKOFF} < {@link #SLEEPING} < {@link #BLOCKING},
+ * CPU 占用则相反, 忙等和让步策略会让消费者线程一直占用一个核心, 只应该用于延迟敏感的队列, 并且线程数不能超过物理核心数
+ *
+ * @author yjt
+ * @since 2020/11/10 下午4:10
+ */
+public enum QueueWaitStrategy {
+
+    /**
+     * 锁与条件变量, 空闲时不占用 CPU, 唤醒延迟最高
+     */
+    BLOCKING {
+        @Override
+        public WaitStrategy create() {
+            return new BlockingWaitStrategy();
+        }
+    },
+
+    /**
+     * 先自旋, 再让步, 最后 parkNanos 休眠, 生产者不需要唤醒消费者
+     */
+    SLEEPING {
+        @Override
+        public WaitStrategy create() {
+            return new SleepingWaitStrategy();
+        }
+    },
+
+    /**
+     * 自旋后 Thread.yield(), 延迟低, 空闲时占用 CPU
+     */
+    YIELDING {
+        @Override
+        public WaitStrategy create() {
+            return new YieldingWaitStrategy();
+        }
+    },
+
+    /**
+     * 忙等, 延迟最低, 消费者线程独占一个核心
+     */
+    BUSY_SPIN {
+        @Override
+        public WaitStrategy create() {
+            return new BusySpinWaitStrategy();
+        }
+    },
+
+    /**
+     * 分阶段退避: 自旋 1 微秒, 让步至 100 微秒, 之后退化为轻量锁阻塞
+     * 在突发流量下延迟接近 {@link #YIELDING}, 空闲时不占用 CPU
+     */
+    PHASED_BACKOFF {
+        @Override
+        public WaitStrategy create() {
+            return PhasedBackoffWaitStrategy.withLiteLock(1, 100, TimeUnit.MICROSECONDS);
+        }
+    };
+
+    /**
+     * 创建等待策略, 每一个队列都需要独立的实例
+     *
+     * @return 等待策略
+     */
+    public abstract WaitStrategy create();
+}
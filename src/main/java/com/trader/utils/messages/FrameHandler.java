@@ -0,0 +1,30 @@
+package com.trader.utils.messages;
+
+import com.trader.market.publish.msg.MessageView;
+
+/**
+ * 消息帧处理器
+ *
+ * @author yjt
+ * @since 2020/11/15 下午4:00
+ */
+@FunctionalInterface
+public interface FrameHandler {
+
+    /**
+     * 收到一条完整的消息
+     *
+     * @param view
+     *         消息视图, 会被复用, 只在回调期间有效
+     */
+    void onFrame(MessageView view);
+
+    /**
+     * 收到非法的消息帧 (未知的消息类型或者版本, 消息长度非法)
+     *
+     * @param reason
+     *         原因
+     */
+    default void onInvalidFrame(String reason) {
+    }
+}
@@ -1,135 +1,172 @@
 package com.trader.utils.messages;
 
-import com.trader.market.entity.MarketDepthChartSeries;
 import com.trader.market.publish.msg.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 
 /**
+ * 消息帧解析: | msg size (4byte) | msg type (1byte) | ts (8byte) | data |
+ * <p>
+ * 完整的消息直接在收到的缓冲区上解析, 不复制字节. 只有跨越两个数据包的那一条消息会被复制到一个复用的暂存区,
+ * 暂存区只保存这一条消息, 补齐后立即解析并清空. 每一条消息通过复用的 {@link MessageView} 交给 {@link FrameHandler},
+ * 由处理器决定是否需要解析为完整的消息对象
+ *
  * @author ex
  */
 public class FrameParser implements Handler<Buffer> {
 
-    private Buffer _buffer;
-    private int _offset;
-    private final Handler<AsyncResult<Message<?>>> client;
+    /**
+     * 单条消息的最大长度, 超过时认为数据流已经错乱
+     */
+    private static final int MAX_FRAME_SIZE = 16 << 20;
 
-    public FrameParser(Handler<AsyncResult<Message<?>>> client) {
-        this.client = client;
-    }
+    /**
+     * | msg type (1byte) | ts (8byte) |, 更短的消息为心跳包
+     */
+    private static final int HEADER_SIZE = 1 + 8;
 
-    @Override
-    public void handle(Buffer buffer) {
-        append(buffer);
+    private final FrameHandler handler;
 
-        int offset;
+    private final MessageView view = new MessageView();
 
-        while (true) {
-            // set a rewind point. if a failure occurs,
-            // wait for the next handle()/append() and try again
-            offset = _offset;
+    /**
+     * 跨越数据包的消息的暂存区, 总是从 0 开始保存一条不完整的消息
+     */
+    private final ByteBuf pending = Unpooled.buffer(256);
 
-            // how many bytes are in the buffer
-            int remainingBytes = bytesRemaining();
+    private final Buffer pendingBuffer = Buffer.buffer(pending);
 
-            // at least 4 bytes
-            if (remainingBytes < 4) {
-                break;
+    public FrameParser(Handler<AsyncResult<Message<?>>> client) {
+        this(new MessageAdapter(client));
+    }
+
+    private FrameParser(FrameHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * 创建直接处理消息视图的解析器, 不会为每一条消息创建对象
+     *
+     * @param handler
+     *         消息帧处理器
+     *
+     * @return 解析器
+     */
+    public static FrameParser of(FrameHandler handler) {
+        return new FrameParser(handler);
+    }
+
+    @Override
+    public void handle(Buffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        int end = buffer.length();
+        int offset = 0;
+
+        // 先补齐上一个数据包中不完整的消息
+        if (pending.isReadable()) {
+            offset = fill(buffer, end);
+            if (!pending.isReadable() || pending.readableBytes() < 4 ||
+                    pending.readableBytes() < 4 + pending.getInt(0)) {
+                return;
             }
+            dispatch(pendingBuffer, 4, pending.getInt(0));
+            pending.clear();
+        }
 
+        while (end - offset >= 4) {
             // what is the length of the message
-            int length = _buffer.getInt(_offset);
-            _offset += 4;
-
-            if (remainingBytes - 4 >= length) {
-                // we have a complete message
-                int readOffset = _offset;
-                Message<Object> rs = new Message<>();
-                MessageType msgType = MessageType.valueOf(_buffer.getByte(readOffset));
-                readOffset += 1;
-                if (msgType != null) {
-                    rs.setType(msgType);
-                    rs.setTs(_buffer.getLong(readOffset));
-                    readOffset += 8;
-                    // read message data
-                    switch (msgType) {
-                        case TRADE_RESULT: {
-                            TradeMessage msg = TradeMessage.of(_buffer, readOffset, length);
-                            if (msg == null) {
-                                client.handle(Future.failedFuture("invalid trade symbol length"));
-                            }
-                            rs.setData(msg);
-                            client.handle(Future.succeededFuture(rs));
-                            break;
-                        }
-                        case DEPTH_CHART: {
-                            MarketDepthChartSeries msg = DepthChartMessage.of(_buffer, readOffset, length);
-                            if (msg == null) {
-                                client.handle(Future.failedFuture("invalid depth msg"));
-                            }
-                            rs.setData(msg);
-                            client.handle(Future.succeededFuture(rs));
-                            break;
-                        }
-                        case MARKET_PRICE: {
-                            PriceChangeMessage msg = PriceChangeMessage.of(_buffer, readOffset, length);
-                            if (msg == null) {
-                                client.handle(Future.failedFuture("invalid price change msg"));
-                            }
-                            rs.setData(msg);
-                            client.handle(Future.succeededFuture(rs));
-                            break;
-                        }
-                        default: {
-                            // ignored
-                        }
-                    }
-                }else {
-                    client.handle(Future.failedFuture("invalid msg type"));
-                }
-                // next package
-                _offset += length;
-            } else {
-                // not enough data: rewind, and wait
-                // for the next packet to appear
-                _offset = offset;
+            int length = buffer.getInt(offset);
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                handler.onInvalidFrame("invalid frame length: " + length);
+                return;
+            }
+            if (end - offset - 4 < length) {
                 break;
             }
+            dispatch(buffer, offset + 4, length);
+            // next package
+            offset += 4 + length;
         }
-    }
 
-    private void append(Buffer newBuffer) {
-        if (newBuffer == null) {
-            return;
+        // not enough data: keep the rest and wait for the next packet to appear
+        if (offset < end) {
+            pending.writeBytes(buffer.getByteBuf(), offset, end - offset);
         }
+    }
 
-        // first run
-        if (_buffer == null) {
-            _buffer = newBuffer;
+    /**
+     * 从数据包中复制暂存的消息缺少的部分
+     *
+     * @return 数据包中下一条消息的位置
+     */
+    private int fill(Buffer buffer, int end) {
+        int offset = 0;
+        if (pending.readableBytes() < 4) {
+            int n = Math.min(4 - pending.readableBytes(), end);
+            pending.writeBytes(buffer.getByteBuf(), 0, n);
+            offset += n;
+            if (pending.readableBytes() < 4) {
+                return offset;
+            }
+        }
+        int length = pending.getInt(0);
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            handler.onInvalidFrame("invalid frame length: " + length);
+            pending.clear();
+            return end;
+        }
+        int n = Math.min(4 + length - pending.readableBytes(), end - offset);
+        pending.writeBytes(buffer.getByteBuf(), offset, n);
+        return offset + n;
+    }
 
+    private void dispatch(Buffer buffer, int offset, int length) {
+        if (length < HEADER_SIZE) {
+            // 心跳包
             return;
         }
+        // 类型字节的高位为格式版本, 每一条消息单独识别
+        byte typeByte = buffer.getByte(offset);
+        int version = WireFormat.versionOf(typeByte);
+        if (version > WireFormat.CURRENT) {
+            handler.onInvalidFrame("unsupported wire version: " + version);
+        } else if (WireFormat.typeOf(typeByte) == null) {
+            handler.onInvalidFrame("invalid msg type");
+        } else {
+            handler.onFrame(view.wrap(buffer, offset, length));
+        }
+    }
 
-        // out of data
-        if (_offset >= _buffer.length()) {
-            _buffer = newBuffer;
-            _offset = 0;
+    /**
+     * 将每一条消息解析为完整的消息对象
+     */
+    private static class MessageAdapter implements FrameHandler {
 
-            return;
-        }
+        private final Handler<AsyncResult<Message<?>>> client;
 
-        // very large packet
-        if (_offset > 0) {
-            _buffer = _buffer.getBuffer(_offset, _buffer.length());
+        MessageAdapter(Handler<AsyncResult<Message<?>>> client) {
+            this.client = client;
         }
-        _buffer.appendBuffer(newBuffer);
 
-        _offset = 0;
-    }
+        @Override
+        public void onFrame(MessageView view) {
+            Message<?> msg = view.toMessage();
+            if (msg == null) {
+                client.handle(Future.failedFuture("invalid " + view.type() + " msg"));
+            } else {
+                client.handle(Future.succeededFuture(msg));
+            }
+        }
 
-    private int bytesRemaining() {
-        return (_buffer.length() - _offset) < 0 ? 0 : (_buffer.length() - _offset);
+        @Override
+        public void onInvalidFrame(String reason) {
+            client.handle(Future.failedFuture(reason));
+        }
     }
 }
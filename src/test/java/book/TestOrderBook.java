@@ -4,12 +4,16 @@ import com.trader.core.def.OrderSide;
 import com.trader.core.def.OrderType;
 import com.trader.core.entity.Order;
 import com.trader.core.entity.OrderBook;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * @author yjt
@@ -58,4 +62,130 @@ public class TestOrderBook {
         book.getAskOrders().forEach(System.out::println);
         book.getBidOrders().forEach(System.out::println);
     }
+
+    @Test
+    public void testPriceLevelOrdering() {
+        OrderBook book = new OrderBook();
+        Date d1 = new Date(1000);
+        Date d2 = new Date(2000);
+        Date d3 = new Date(3000);
+
+        book.addOrder(sell("1", "10.5", "1", d1));
+        book.addOrder(sell("2", "10", "2", d2));
+        book.addOrder(sell("3", "10.0", "3", d1));
+        book.addOrder(sell("4", "11", "4", d3));
+
+        Order market = sell("5", "0", "5", d3);
+        market.setType(OrderType.MARKET);
+        book.addOrder(market);
+
+        // 市价单优先, 然后价格优先, 同价格时间优先
+        Assert.assertEquals("5,3,2,1,4", ids(book.getAskOrders().iterator()));
+        Assert.assertEquals(3, book.getAskOrders().numOfLevels());
+        Assert.assertEquals(0, book.bestAsk().getPrice().compareTo(BigDecimal.TEN));
+
+        // 档位聚合数据 (市价单不计入)
+        Assert.assertEquals(0, book.bestAsk().getLeaves().compareTo(BigDecimal.valueOf(5)));
+        Assert.assertEquals(2, book.bestAsk().size());
+
+        // 成交后档位数据同步更新
+        Order o3 = book.bestAsk().peek();
+        o3.decLeavesQuality(BigDecimal.ONE);
+        o3.incExecutedQuality(BigDecimal.ONE);
+        o3.refreshDepth();
+        Assert.assertEquals(0, book.bestAsk().getLeaves().compareTo(BigDecimal.valueOf(4)));
+        Assert.assertEquals(0, book.bestAsk().getExecuted().compareTo(BigDecimal.ONE));
+
+        // 移除最优档位后, 下一个档位成为最优档位
+        book.removeOrder(o3);
+        Assert.assertEquals(0, book.bestAsk().getLeaves().compareTo(BigDecimal.valueOf(2)));
+        book.removeOrder(sell("2", "10", "2", d2));
+        Assert.assertEquals(0, book.bestAsk().getPrice().compareTo(new BigDecimal("10.5")));
+        Assert.assertEquals("5,1,4", ids(book.getAskOrders().iterator()));
+    }
+
+    @Test
+    public void testRemoveWhileIterating() {
+        OrderBook book = new OrderBook();
+        for (int i = 0; i < 10; i++) {
+            Order o = sell(String.valueOf(i), String.valueOf(10 + i / 2), "1", new Date(i));
+            o.setSide(OrderSide.BUY);
+            o.setTotalAmount(BigDecimal.TEN);
+            o.setLeavesAmount(BigDecimal.TEN);
+            book.addOrder(o);
+        }
+        Assert.assertEquals(0, book.bestBid().getPrice().compareTo(BigDecimal.valueOf(14)));
+
+        // 移除偶数订单
+        Iterator<Order> it = book.getBidOrders().iterator();
+        while (it.hasNext()) {
+            if (Integer.parseInt(it.next().getId()) % 2 == 0) {
+                it.remove();
+            }
+        }
+        Assert.assertEquals("9,7,5,3,1", ids(book.getBidOrders().iterator()));
+        Assert.assertEquals(5, book.getBidOrders().size());
+        Assert.assertEquals(5, book.getBidOrders().numOfLevels());
+    }
+
+    @Test
+    public void testTriggerStopOrders() {
+        OrderBook book = new OrderBook();
+        Date time = new Date();
+        book.addOrder(stop("b1", OrderSide.BUY, "10", time));
+        book.addOrder(stop("b2", OrderSide.BUY, "12", time));
+        book.addOrder(stop("b3", OrderSide.BUY, "12", time));
+        book.addOrder(stop("b4", OrderSide.BUY, "9", time));
+        book.addOrder(stop("s1", OrderSide.SELL, "8", time));
+        book.addOrder(stop("s2", OrderSide.SELL, "11", time));
+        Order s3 = stop("s3", OrderSide.SELL, "10.00", time);
+        book.addOrder(s3);
+
+        // 撤销的订单从索引中移除
+        book.removeWaitActiveStopOrder(s3);
+        Assert.assertEquals(2, book.getSellStopOrders().size());
+
+        // 买入触发价 >= 10, 卖出触发价 <= 10, 按照激活优先级截取
+        List<Order> triggered = new ArrayList<>();
+        Assert.assertEquals(4, book.triggerStopOrders(new BigDecimal("10.0"), triggered));
+        Assert.assertEquals("b2,b3,b1,s1", ids(triggered.iterator()));
+        Assert.assertEquals("b4", ids(book.getBuyStopOrders().iterator()));
+        Assert.assertEquals("s2", ids(book.getSellStopOrders().iterator()));
+
+        // 已经被截取的订单不会再次触发
+        triggered.clear();
+        Assert.assertEquals(0, book.triggerStopOrders(new BigDecimal("10"), triggered));
+        Assert.assertEquals(1, book.triggerStopOrders(new BigDecimal("9"), triggered));
+        Assert.assertEquals("b4", ids(triggered.iterator()));
+        Assert.assertTrue(book.getBuyStopOrders().isEmpty());
+    }
+
+    private static Order stop(String id, OrderSide side, String triggerPrice, Date time) {
+        Order o = new Order();
+        o.setId(id);
+        o.setType(OrderType.STOP);
+        o.setSide(side);
+        o.setTriggerPrice(new BigDecimal(triggerPrice));
+        o.setCreateDateTime(time);
+        return o;
+    }
+
+    private static Order sell(String id, String price, String quantity, Date time) {
+        Order o = new Order();
+        o.setId(id);
+        o.setUid(id);
+        o.setType(OrderType.LIMIT);
+        o.setSide(OrderSide.SELL);
+        o.setPrice(new BigDecimal(price));
+        o.setQuantity(new BigDecimal(quantity));
+        o.setLeavesQuantity(new BigDecimal(quantity));
+        o.setCreateDateTime(time);
+        return o;
+    }
+
+    private static String ids(Iterator<Order> it) {
+        List<String> ids = new ArrayList<>();
+        it.forEachRemaining(o -> ids.add(o.getId()));
+        return String.join(",", ids);
+    }
 }
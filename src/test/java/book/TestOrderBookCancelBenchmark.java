@@ -0,0 +1,79 @@
+package book;
+
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 撤单耗时与盘口深度的关系
+ * 撤单通过订单ID索引定位档位节点, 所以平均撤单耗时不应随着盘口深度线性增长
+ *
+ * @author yjt
+ * @since 2020/11/3 上午10:12
+ */
+public class TestOrderBookCancelBenchmark {
+
+    private static final int[] DEPTHS = {1_000, 10_000, 100_000};
+
+    private static final int NUM_OF_LEVELS = 500;
+
+    @Test
+    public void benchmarkCancel() {
+        // 预热
+        cancelAll(10_000);
+
+        for (int depth : DEPTHS) {
+            long cost = cancelAll(depth);
+            System.out.println(String.format("[CancelBenchmark]: depth: [%d] total: [%d ms] avg: [%d ns/order]",
+                    depth, cost / 1_000_000, cost / depth));
+        }
+    }
+
+    /**
+     * 构建一个指定深度的卖盘, 随机顺序撤销所有订单
+     *
+     * @param depth
+     *         盘口订单数量
+     *
+     * @return 撤单总耗时 (纳秒)
+     */
+    private long cancelAll(int depth) {
+        Random random = new Random(depth);
+        OrderBook book = new OrderBook();
+        List<Order> orders = new ArrayList<>(depth);
+        for (int i = 0; i < depth; i++) {
+            Order o = new Order();
+            o.setId(String.valueOf(i));
+            o.setSide(OrderSide.SELL);
+            o.setType(OrderType.LIMIT);
+            o.setPrice(BigDecimal.valueOf(10_000 + random.nextInt(NUM_OF_LEVELS)));
+            o.setQuantity(BigDecimal.ONE);
+            o.setLeavesQuantity(BigDecimal.ONE);
+            o.setCreateDateTime(new Date(i));
+            book.addOrder(o);
+            orders.add(o);
+        }
+        Assert.assertEquals(depth, book.getAskOrders().size());
+        Collections.shuffle(orders, random);
+
+        long start = System.nanoTime();
+        for (Order o : orders) {
+            book.removeOrder(o);
+        }
+        long cost = System.nanoTime() - start;
+
+        Assert.assertTrue(book.getAskOrders().isEmpty());
+        Assert.assertNull(book.bestAsk());
+        return cost;
+    }
+}
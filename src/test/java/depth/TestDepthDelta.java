@@ -0,0 +1,119 @@
+package depth;
+
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import com.trader.market.entity.MarketDepthChart;
+import com.trader.market.entity.MarketDepthChartSeries;
+import com.trader.market.entity.MarketDepthInfo;
+import com.trader.market.publish.msg.DepthChartMessage;
+import com.trader.market.publish.msg.DepthDeltaMessage;
+import com.trader.market.publish.msg.WireFormat;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 增量盘口测试: 下游根据增量维护的盘口与全量盘口一致
+ *
+ * @author yjt
+ * @since 2020/11/14 下午2:30
+ */
+public class TestDepthDelta {
+
+    private static final int LIMIT = 20;
+
+    @Test
+    public void testApplyDeltas() {
+        Random random = new Random(7);
+        OrderBook book = new OrderBook();
+        book.setSymbolId("BTC-USDT");
+        List<Order> orders = new ArrayList<>();
+
+        MarketDepthChartSeries downstream = new MarketDepthChartSeries();
+        downstream.setSeries(new ArrayList<>());
+        MarketDepthChartSeries prev = null;
+        long fullBytes = 0, deltaBytes = 0;
+
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextInt(10) < 6 || orders.isEmpty()) {
+                Order o = randomOrder(random, i);
+                book.addOrder(o);
+                orders.add(o);
+            } else {
+                book.removeOrder(orders.remove(random.nextInt(orders.size())));
+            }
+            MarketDepthChartSeries next = book.snapSeries(LIMIT);
+
+            List<DepthDeltaMessage.Change> changes = new ArrayList<>();
+            DepthDeltaMessage.diff(prev, next, changes);
+            Buffer buf = DepthDeltaMessage.toBuf(next.getSymbol(), i + 1, changes);
+            DepthDeltaMessage decoded = DepthDeltaMessage.of(buf, 4 + 1 + 8, buf.getInt(0), WireFormat.DECIMAL);
+            Assert.assertNotNull(decoded);
+            Assert.assertEquals(i + 1, decoded.getSeq());
+            Assert.assertEquals(changes.size(), decoded.getChanges().size());
+
+            DepthDeltaMessage.apply(downstream, decoded.getChanges());
+            assertSeries(next, downstream);
+
+            fullBytes += DepthChartMessage.toBuf(next).length();
+            deltaBytes += buf.length();
+            prev = next;
+        }
+        // 大部分变动只涉及少量档位
+        Assert.assertTrue(deltaBytes * 3 < fullBytes);
+    }
+
+    private static void assertSeries(MarketDepthChartSeries expected, MarketDepthChartSeries actual) {
+        for (MarketDepthChart e : expected.getSeries()) {
+            MarketDepthChart a = null;
+            for (MarketDepthChart chart : actual.getSeries()) {
+                if (chart.getDepth() == e.getDepth()) {
+                    a = chart;
+                }
+            }
+            // 下游没有收到过该深度的变化, 说明该深度的盘口一直为空
+            assertInfos(e.getBids(), a == null ? Collections.emptyList() : a.getBids());
+            assertInfos(e.getAsks(), a == null ? Collections.emptyList() : a.getAsks());
+        }
+    }
+
+    private static void assertInfos(List<MarketDepthInfo> expected, List<MarketDepthInfo> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getPrice(), actual.get(i).getPrice());
+            Assert.assertEquals(0, expected.get(i).getLeaves().compareTo(actual.get(i).getLeaves()));
+            Assert.assertEquals(0, expected.get(i).getTotal().compareTo(actual.get(i).getTotal()));
+        }
+    }
+
+    private static Order randomOrder(Random random, int i) {
+        Order o = new Order();
+        o.setId(String.valueOf(i));
+        o.setType(OrderType.LIMIT);
+        boolean buy = random.nextBoolean();
+        o.setSide(buy ? OrderSide.BUY : OrderSide.SELL);
+        BigDecimal price = BigDecimal.valueOf(1_900 + random.nextInt(300), 3);
+        o.setPrice(price);
+        o.setCreateDateTime(new Date(i));
+        BigDecimal quantity = BigDecimal.valueOf(1 + random.nextInt(10_000), 2);
+        o.setQuantity(quantity);
+        if (buy) {
+            BigDecimal amount = quantity.multiply(price).setScale(8, RoundingMode.DOWN);
+            o.setTotalAmount(amount);
+            o.setLeavesAmount(amount);
+        } else {
+            o.setLeavesQuantity(quantity);
+        }
+        return o;
+    }
+}
@@ -0,0 +1,182 @@
+package depth;
+
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import com.trader.core.matcher.limit.InMemoryLimitMatchHandler;
+import com.trader.market.def.DepthLevel;
+import com.trader.market.entity.MarketDepthChart;
+import com.trader.market.entity.MarketDepthChartSeries;
+import com.trader.market.entity.MarketDepthInfo;
+import com.trader.utils.MarketDepthUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基于档位聚合数据的盘口快照与逐个订单渲染的结果一致性测试
+ *
+ * @author yjt
+ * @since 2020/11/4 上午10:05
+ */
+public class TestDepthSnapshot {
+
+    /**
+     * 渲染全部深度, 价格相同但精度不同的合并档位 (例如 1.9 与 1.90) 在逐个订单渲染中的先后顺序是不确定的,
+     * 截断后的结果无法逐条比较
+     */
+    private static final int LIMIT = 10_000;
+
+    @Test
+    public void testSnapSeriesMatchesOrderRender() {
+        Random random = new Random(11);
+        OrderBook book = new OrderBook();
+        List<Order> orders = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            int op = random.nextInt(10);
+            if (op < 6 || orders.isEmpty()) {
+                Order o = randomOrder(random, i);
+                book.addOrder(o);
+                orders.add(o);
+            } else if (op < 8) {
+                // 部分成交
+                Order o = orders.get(random.nextInt(orders.size()));
+                BigDecimal q = BigDecimal.valueOf(random.nextInt(100) + 1, 2);
+                if (o.isBuy()) {
+                    BigDecimal amount = q.multiply(o.getPrice()).setScale(8, RoundingMode.DOWN);
+                    if (amount.compareTo(o.getLeavesAmount()) <= 0) {
+                        InMemoryLimitMatchHandler.updateOrder(o, q, amount);
+                        o.refreshDepth();
+                    }
+                } else if (q.compareTo(o.getLeavesQuantity()) <= 0) {
+                    InMemoryLimitMatchHandler.updateOrder(o, q, q.multiply(o.getPrice()));
+                    o.refreshDepth();
+                }
+            } else if (op < 9) {
+                Order o = orders.remove(random.nextInt(orders.size()));
+                book.removeOrder(o);
+            } else {
+                Order o = orders.get(random.nextInt(orders.size()));
+                o.markFinished();
+                o.refreshDepth();
+            }
+
+            if (i % 100 == 0) {
+                assertSeries(render(book, orders), book.snapSeries(LIMIT));
+            }
+        }
+        assertSeries(render(book, orders), book.snapSeries(LIMIT));
+
+        // 档位全部移除后合并档位也需要被移除
+        for (Order o : orders) {
+            book.removeOrder(o);
+        }
+        for (DepthLevel depth : DepthLevel.values()) {
+            Assert.assertEquals(0, book.getBidOrders().ladder().numOfBuckets(depth));
+            Assert.assertEquals(0, book.getAskOrders().ladder().numOfBuckets(depth));
+        }
+    }
+
+    private static void assertSeries(MarketDepthChartSeries expected, MarketDepthChartSeries actual) {
+        Assert.assertEquals(expected.getSeries().size(), actual.getSeries().size());
+        for (int i = 0; i < expected.getSeries().size(); i++) {
+            MarketDepthChart e = expected.getSeries().get(i);
+            MarketDepthChart a = actual.getSeries().get(i);
+            Assert.assertEquals(e.getDepth(), a.getDepth());
+            assertInfos(e.getBids(), a.getBids());
+            assertInfos(e.getAsks(), a.getAsks());
+        }
+    }
+
+    private static void assertInfos(List<MarketDepthInfo> expected, List<MarketDepthInfo> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+
+        Comparator<MarketDepthInfo> byPriceAndScale = Comparator.comparing(MarketDepthInfo::getPrice)
+                                                                .thenComparingInt(d -> d.getPrice().scale());
+        expected = new ArrayList<>(expected);
+        actual = new ArrayList<>(actual);
+        expected.sort(byPriceAndScale);
+        actual.sort(byPriceAndScale);
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(0, expected.get(i).getPrice().compareTo(actual.get(i).getPrice()));
+            Assert.assertEquals(0, expected.get(i).getLeaves().compareTo(actual.get(i).getLeaves()));
+            Assert.assertEquals(0, expected.get(i).getExecuted().compareTo(actual.get(i).getExecuted()));
+            Assert.assertEquals(0, expected.get(i).getTotal().compareTo(actual.get(i).getTotal()));
+        }
+    }
+
+    /**
+     * 逐个订单渲染盘口
+     */
+    private static MarketDepthChartSeries render(OrderBook book, List<Order> orders) {
+        List<MarketDepthInfo> bids = new ArrayList<>();
+        List<MarketDepthInfo> asks = new ArrayList<>();
+        for (Order o : orders) {
+            if (o.isFinished() || o.isCanceled()) {
+                continue;
+            }
+            MarketDepthInfo dep = new MarketDepthInfo();
+            dep.setExecuted(o.getExecutedQuantity());
+            dep.setPrice(o.getPrice());
+            if (o.isBuy()) {
+                if (o.getLeavesAmount().compareTo(BigDecimal.ZERO) == 0) {
+                    continue;
+                }
+                dep.setTotal(o.getTotalAmount().divide(o.getPrice(), RoundingMode.DOWN));
+                dep.setLeaves(o.getLeavesAmount().divide(o.getPrice(), RoundingMode.DOWN));
+                bids.add(dep);
+            } else {
+                if (o.getLeavesQuantity().compareTo(BigDecimal.ZERO) == 0) {
+                    continue;
+                }
+                dep.setTotal(o.getQuantity());
+                dep.setLeaves(o.getLeavesQuantity());
+                asks.add(dep);
+            }
+        }
+        MarketDepthChartSeries series = new MarketDepthChartSeries();
+        series.setSymbol(book.getSymbolId());
+        series.setSeries(new ArrayList<>());
+        for (DepthLevel depth : DepthLevel.values()) {
+            MarketDepthChart chart = new MarketDepthChart();
+            chart.setDepth(depth);
+            chart.setAsks(MarketDepthUtils.fastRender(asks, depth, LIMIT, MarketDepthInfo::compareTo));
+            chart.setBids(MarketDepthUtils.fastRender(bids, depth, LIMIT, MarketDepthInfo::reverseCompare));
+            series.getSeries().add(chart);
+        }
+        return series;
+    }
+
+    private static Order randomOrder(Random random, int i) {
+        Order o = new Order();
+        o.setId(String.valueOf(i));
+        o.setUid(String.valueOf(random.nextInt(10)));
+        o.setType(OrderType.LIMIT);
+        boolean buy = random.nextBoolean();
+        o.setSide(buy ? OrderSide.BUY : OrderSide.SELL);
+        // 不同精度的价格, 例如 2.085 与 2.0850 属于同一个档位
+        BigDecimal price = BigDecimal.valueOf(1_900 + random.nextInt(300), 3)
+                                     .setScale(3 + random.nextInt(3), RoundingMode.DOWN);
+        o.setPrice(price);
+        o.setCreateDateTime(new Date(i));
+        BigDecimal quantity = BigDecimal.valueOf(1 + random.nextInt(10_000), 2);
+        o.setQuantity(quantity);
+        if (buy) {
+            BigDecimal amount = quantity.multiply(price).setScale(8, RoundingMode.DOWN);
+            o.setTotalAmount(amount);
+            o.setLeavesAmount(amount);
+        } else {
+            o.setLeavesQuantity(quantity);
+        }
+        return o;
+    }
+}
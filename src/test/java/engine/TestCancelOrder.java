@@ -0,0 +1,139 @@
+package engine;
+
+import com.trader.MatchEngine;
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.MatchHandler;
+import com.trader.core.def.CancelResult;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import com.trader.core.matcher.TradeResult;
+import helper.OrderFixture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static helper.OrderFixture.await;
+import static helper.OrderFixture.order;
+import static helper.OrderFixture.restingOrders;
+
+/**
+ * 撤单测试: 撤单指令经过入口队列排序, 由订单所属的处理器决定撤单结果
+ *
+ * @author yjt
+ * @since 2020/11/18 下午2:00
+ */
+public class TestCancelOrder {
+
+    private MatchEngineConfig config;
+
+    private MatchEngine engine;
+
+    private final List<String> fills = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<String> activated = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void before() {
+        config = new MatchEngineConfig();
+        config.setHandler(new MatchHandler() {
+            @Override
+            public void onExecuteOrder(Order order, Order opponentOrder, TradeResult ts) {
+                fills.add(order.getId() + "|" + opponentOrder.getId());
+            }
+
+            @Override
+            public void onActiveStopOrder(Order stopOrder) {
+                activated.add(stopOrder.getId());
+            }
+        });
+        // 引擎创建之后处于暂停状态, 由测试决定何时开启撮合
+        engine = MatchEngine.newEngine(config);
+    }
+
+    @After
+    public void after() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void testCancelResults() throws Exception {
+        engine.enableMatching();
+        engine.addOrder(order("1", OrderType.LIMIT, OrderSide.SELL, "12", null));
+        engine.addOrder(order("2", OrderType.LIMIT, OrderSide.SELL, "13", null));
+        engine.addOrder(order("3", OrderType.LIMIT, OrderSide.BUY, "12", null));
+        await(() -> fills.size() == 1);
+        Assert.assertEquals("3|1", fills.get(0));
+
+        // 挂单被撤销, 再次撤销仍然返回撤单成功
+        Assert.assertEquals(CancelResult.CANCELED, result(engine.cancelOrder("2")));
+        Assert.assertEquals(CancelResult.CANCELED, result(engine.cancelOrder("2")));
+        // 已经完全成交的订单 (挂单方与吃单方)
+        Assert.assertEquals(CancelResult.ALREADY_FILLED, result(engine.cancelOrder("1")));
+        Assert.assertEquals(CancelResult.ALREADY_FILLED, result(engine.cancelOrder("3")));
+        // 未知订单立即返回
+        Assert.assertEquals(CancelResult.UNKNOWN, result(engine.cancelOrder("4")));
+
+        List<CompletableFuture<CancelResult>> results = engine.cancelOrders(Arrays.asList("4", "1", "2"));
+        Assert.assertEquals(CancelResult.UNKNOWN, result(results.get(0)));
+        Assert.assertEquals(CancelResult.ALREADY_FILLED, result(results.get(1)));
+        Assert.assertEquals(CancelResult.CANCELED, result(results.get(2)));
+        Assert.assertTrue(restingOrders(book()).isEmpty());
+    }
+
+    @Test
+    public void testCancelPendingStopOrder() throws Exception {
+        engine.enableMatching();
+        // 成交价穿越触发价之前撤销止盈止损订单
+        engine.addOrder(order("1", OrderType.STOP, OrderSide.SELL, "11", "11.5"));
+        Assert.assertEquals(CancelResult.CANCELED, result(engine.cancelOrder("1")));
+        Assert.assertTrue(restingOrders(book()).isEmpty());
+        // 已经从触发价索引中移除
+        Assert.assertTrue(book().getSellStopOrders().isEmpty());
+
+        // 成交价 12 穿越触发价, 已经撤销的订单不会被激活, 之后的买单没有对手盘
+        engine.addOrder(order("2", OrderType.LIMIT, OrderSide.SELL, "12", null));
+        engine.addOrder(order("3", OrderType.LIMIT, OrderSide.BUY, "12", null));
+        engine.addOrder(order("4", OrderType.LIMIT, OrderSide.BUY, "11", null));
+        await(() -> fills.size() == 1);
+        Assert.assertEquals(CancelResult.CANCELED, result(engine.cancelOrder("4")));
+
+        Assert.assertEquals(Collections.singletonList("3|2"), fills);
+        Assert.assertTrue(activated.isEmpty());
+        Assert.assertTrue(restingOrders(book()).isEmpty());
+    }
+
+    @Test
+    public void testCancelInSameBatch() throws Exception {
+        // 暂停期间下单与撤单, 开启撮合之后在入口线程的同一批指令中处理
+        engine.addOrders(Arrays.asList(order("1", OrderType.LIMIT, OrderSide.SELL, "12", null),
+                                       order("2", OrderType.LIMIT, OrderSide.SELL, "12", null)));
+        CompletableFuture<CancelResult> canceled = engine.cancelOrder("1");
+        engine.addOrder(order("3", OrderType.LIMIT, OrderSide.BUY, "12", null));
+        engine.enableMatching();
+
+        // 撤单排在下单之后, 被撤销的订单不会成交
+        Assert.assertEquals(CancelResult.CANCELED, result(canceled));
+        await(() -> fills.size() == 1);
+        Assert.assertEquals("3|2", fills.get(0));
+        Assert.assertEquals(CancelResult.ALREADY_FILLED, result(engine.cancelOrder("2")));
+        Assert.assertTrue(restingOrders(book()).isEmpty());
+    }
+
+    private static CancelResult result(CompletableFuture<CancelResult> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private OrderBook book() {
+        return OrderFixture.book(config);
+    }
+}
@@ -0,0 +1,65 @@
+package engine;
+
+import com.trader.MatchEngine;
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderTimeInForce;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.exception.TradeException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * 撮合引擎关闭之后下单被拒绝, 并且不会在订单管理器中留下登记
+ *
+ * @author yjt
+ * @since 2020/11/18 上午10:00
+ */
+public class TestClosedEngine {
+
+    @Test
+    public void testAddOrderAfterShutdown() {
+        MatchEngine engine = MatchEngine.newEngine(new MatchEngineConfig());
+        engine.enableMatching();
+        engine.shutdown();
+
+        try {
+            engine.addOrder(order("1"));
+            Assert.fail();
+        } catch (TradeException expected) {
+            // 引擎已经关闭
+        }
+        Assert.assertNull(engine.getOrderMgr().getOrder("1"));
+
+        try {
+            engine.addOrders(Arrays.asList(order("2"), order("3")));
+            Assert.fail();
+        } catch (TradeException expected) {
+            // 引擎已经关闭
+        }
+        Assert.assertNull(engine.getOrderMgr().getOrder("2"));
+        Assert.assertNull(engine.getOrderMgr().getOrder("3"));
+        Assert.assertEquals(0, engine.getOrderMgr().size());
+    }
+
+    private static Order order(String id) {
+        Order o = new Order();
+        o.setId(id);
+        o.setUid(id);
+        o.setCoinId("BTC");
+        o.setCurrencyId("USDT");
+        o.setType(OrderType.LIMIT);
+        o.setSide(OrderSide.SELL);
+        o.setTimeInForce(OrderTimeInForce.GTC);
+        o.setCreateDateTime(new Date());
+        o.setPrice(BigDecimal.TEN);
+        o.setQuantity(BigDecimal.ONE);
+        o.setLeavesQuantity(BigDecimal.ONE);
+        return o;
+    }
+}
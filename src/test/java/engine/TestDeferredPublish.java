@@ -0,0 +1,75 @@
+package engine;
+
+import com.trader.MatchEngine;
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.MatchHandler;
+import com.trader.core.context.MatchingContext;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import com.trader.core.matcher.TradeResult;
+import com.trader.market.publish.msg.PriceChangeMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static helper.OrderFixture.order;
+
+/**
+ * 盘口以及价格推送延迟到一批指令处理结束: 一个订单连续成交多次, 账本只推送一次盘口, 交易对只推送最后一次价格变动
+ *
+ * @author yjt
+ * @since 2020/11/18 下午3:30
+ */
+public class TestDeferredPublish {
+
+    @Test
+    public void testPublishOncePerBatch() throws Exception {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        MatchEngineConfig config = new MatchEngineConfig();
+        config.setHandler(new MatchHandler() {
+            @Override
+            public void onExecuteOrder(Order order, Order opponentOrder, TradeResult ts) {
+                events.add("fill:" + ts.getExecutePrice().stripTrailingZeros().toPlainString());
+            }
+
+            @Override
+            public void onEndOfBatch(MatchingContext ctx) {
+                List<PriceChangeMessage> prices = new ArrayList<>(ctx.getDeferredPriceChanges());
+                if (prices.isEmpty()) {
+                    return;
+                }
+                // 延迟的盘口按照账本去重, 价格变动只保留每个交易对最后一次
+                List<OrderBook> books = new ArrayList<>(ctx.getDeferredDepthBooks());
+                events.add("end:" + books.size() + ":" + prices.size() + ":" +
+                           prices.get(0).getPrice().stripTrailingZeros().toPlainString());
+            }
+        });
+        MatchEngine engine = MatchEngine.newEngine(config);
+        engine.enableMatching();
+        engine.addOrder(order("1", OrderType.LIMIT, OrderSide.SELL, "11", null));
+        engine.addOrder(order("2", OrderType.LIMIT, OrderSide.SELL, "12", null));
+        engine.addOrder(order("3", OrderType.LIMIT, OrderSide.SELL, "13", null));
+
+        // 一个买单依次与三个卖单成交
+        Order taker = order("4", OrderType.LIMIT, OrderSide.BUY, "13", null);
+        taker.setQuantity(new BigDecimal("3"));
+        taker.setTotalAmount(new BigDecimal("36"));
+        taker.setLeavesAmount(new BigDecimal("36"));
+        engine.addOrder(taker);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (events.size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        engine.shutdown();
+        List<String> expected = new ArrayList<>();
+        Collections.addAll(expected, "fill:11", "fill:12", "fill:13", "end:1:1:13");
+        Assert.assertEquals(expected, events);
+    }
+}
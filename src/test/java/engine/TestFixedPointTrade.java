@@ -0,0 +1,139 @@
+package engine;
+
+import com.trader.core.def.DifferencePriceStrategy;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.matcher.TradeResult;
+import com.trader.core.matcher.limit.InMemoryLimitMatchHandler;
+import com.trader.core.matcher.market.InMemoryMarketMatchHandler;
+import com.trader.utils.FixedPointUtils;
+import com.trader.utils.TradeUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * 定点数撮合与 BigDecimal 撮合结果一致性测试
+ *
+ * @author yjt
+ * @since 2020/11/3 下午4:30
+ */
+public class TestFixedPointTrade {
+
+    @Test
+    public void testMulDiv() {
+        long a = FixedPointUtils.toFixed(new BigDecimal("123456.12345678"));
+        long b = FixedPointUtils.toFixed(new BigDecimal("0.00012345"));
+        Assert.assertEquals(new BigDecimal("123456.12345678").multiply(new BigDecimal("0.00012345"))
+                                                            .setScale(8, RoundingMode.DOWN),
+                FixedPointUtils.toDecimal(FixedPointUtils.mulDown(a, b)));
+
+        // 超出 long 范围的中间结果
+        BigDecimal dividend = new BigDecimal("900000.00000000");
+        long big = FixedPointUtils.toFixed(dividend);
+        Assert.assertEquals(dividend.divide(new BigDecimal("0.00012345"), RoundingMode.DOWN),
+                FixedPointUtils.toDecimal(FixedPointUtils.divDown(big, b, 8)));
+    }
+
+    @Test
+    public void testGenericTrade() {
+        Random random = new Random(7);
+        DifferencePriceStrategy[] strategies = DifferencePriceStrategy.values();
+        for (int i = 0; i < 20_000; i++) {
+            BigDecimal marketPrice = price(random);
+            Order order = randomOrder(random, "a", OrderSide.BUY, 1);
+            Order opponent = randomOrder(random, "b", OrderSide.SELL, 2);
+            if (random.nextBoolean()) {
+                Order tmp = order;
+                order = opponent;
+                opponent = tmp;
+            }
+            order.setDifferencePriceStrategy(strategies[random.nextInt(strategies.length)]);
+
+            Order fixedOrder = order.clone();
+            Order fixedOpponent = opponent.clone();
+            fixedOrder.enableFixedPoint();
+            fixedOpponent.enableFixedPoint();
+
+            // 同一对订单连续撮合直到任意一方结束
+            for (int n = 0; n < 4; n++) {
+                if (TradeUtils.isFinished(order) || TradeUtils.isFinished(opponent)) {
+                    break;
+                }
+                BigDecimal price = order.isMarketOrder() ? marketPrice : order.getBoundPrice();
+                BigDecimal opponentPrice = opponent.isMarketOrder() ? marketPrice : opponent.getBoundPrice();
+                boolean enough = TradeUtils.isHasEnoughAmount(order, opponentPrice) &&
+                        TradeUtils.isHasEnoughAmount(opponent, price);
+                Assert.assertEquals(enough,
+                        TradeUtils.isHasEnoughAmount(fixedOrder, FixedPointUtils.toFixed(opponentPrice)) &&
+                                TradeUtils.isHasEnoughAmount(fixedOpponent, FixedPointUtils.toFixed(price)));
+                if (!enough) {
+                    break;
+                }
+
+                TradeResult expected = TradeUtils.genericTrade(order, opponent, marketPrice);
+                TradeResult actual = TradeUtils.genericTrade(fixedOrder, fixedOpponent, FixedPointUtils.toFixed(marketPrice));
+                assertEquals(expected.getExecutePrice(), actual.getExecutePrice());
+                assertEquals(expected.getOpponentExecutePrice(), actual.getOpponentExecutePrice());
+                assertEquals(expected.getQuantity(), actual.getQuantity());
+                assertEquals(expected.getExecuteAmount(), actual.getExecuteAmount());
+                assertEquals(expected.getOpponentExecuteAmount(), actual.getOpponentExecuteAmount());
+                assertEquals(expected.getDiffPrice(), actual.getDiffPrice());
+                assertEquals(expected.getPlatformDiffPrice(), actual.getPlatformDiffPrice());
+
+                execute(order, opponent, expected);
+                execute(fixedOrder, fixedOpponent, actual);
+                assertEquals(order.getLeavesAmount(), fixedOrder.getLeavesAmount());
+                assertEquals(order.getLeavesQuantity(), fixedOrder.getLeavesQuantity());
+                assertEquals(opponent.getExecutedAmount(), fixedOpponent.getExecutedAmount());
+                assertEquals(opponent.getExecutedQuantity(), fixedOpponent.getExecutedQuantity());
+                Assert.assertEquals(TradeUtils.isFinished(order), TradeUtils.isFinished(fixedOrder));
+                Assert.assertEquals(TradeUtils.isFinished(opponent), TradeUtils.isFinished(fixedOpponent));
+            }
+        }
+    }
+
+    private static void execute(Order order, Order opponent, TradeResult ts) throws RuntimeException {
+        try {
+            new InMemoryLimitMatchHandler().onExecuteOrder(order, opponent, ts);
+            new InMemoryMarketMatchHandler().onExecuteOrder(order, opponent, ts);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void assertEquals(BigDecimal expected, BigDecimal actual) {
+        Assert.assertEquals(expected.toPlainString() + " != " + actual.toPlainString(), 0, expected.compareTo(actual));
+    }
+
+    private static BigDecimal price(Random random) {
+        return BigDecimal.valueOf(1_000 + random.nextInt(2_000_000), 2 + random.nextInt(5));
+    }
+
+    private static Order randomOrder(Random random, String uid, OrderSide side, long time) {
+        Order o = new Order();
+        o.setId(uid + random.nextInt());
+        o.setUid(uid);
+        o.setSide(side);
+        o.setCreateDateTime(new Date(time));
+        o.setType(random.nextInt(5) == 0 ? OrderType.MARKET : OrderType.LIMIT);
+        o.setPrice(price(random));
+        if (random.nextInt(3) == 0) {
+            o.setPriceUpperBound(new BigDecimal("0.05"));
+            o.setPriceLowerBound(new BigDecimal("0.03"));
+        }
+        // 不同精度的数量与金额, 用于验证 BigDecimal 除法精度
+        BigDecimal quantity = BigDecimal.valueOf(1 + random.nextInt(10_000_000), 2 + random.nextInt(7));
+        o.setQuantity(quantity);
+        o.setLeavesQuantity(quantity);
+        BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(10_000_000), random.nextInt(9));
+        o.setTotalAmount(amount);
+        o.setLeavesAmount(amount);
+        return o;
+    }
+}
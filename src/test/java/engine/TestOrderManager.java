@@ -0,0 +1,189 @@
+package engine;
+
+import com.trader.MatchEngine;
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.def.CancelResult;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import com.trader.core.support.OrderManager;
+import helper.OrderFixture;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单管理器回收测试
+ *
+ * @author yjt
+ * @since 2020/11/12 下午2:10
+ */
+public class TestOrderManager {
+
+    @Test
+    public void testLookup() {
+        OrderManager mgr = new OrderManager();
+        Order numeric = order("1234567890");
+        Order text = order("order-1");
+        Order leadingZero = order("0123");
+        mgr.addOrder(numeric);
+        mgr.addOrder(text);
+        mgr.addOrder(leadingZero);
+
+        Assert.assertSame(numeric, mgr.getOrder("1234567890"));
+        Assert.assertSame(text, mgr.getOrder("order-1"));
+        Assert.assertSame(leadingZero, mgr.getOrder("0123"));
+        Assert.assertNull(mgr.getOrder("123"));
+        Assert.assertEquals(3, mgr.size());
+
+        // 相同ID的新订单不会被旧订单的移除影响
+        Order replaced = order("1234567890");
+        mgr.addOrder(replaced);
+        mgr.removeOrder(numeric);
+        Assert.assertSame(replaced, mgr.getOrder("1234567890"));
+    }
+
+    @Test
+    public void testAddOrders() {
+        OrderManager mgr = new OrderManager();
+        List<Order> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.add(order(i % 2 == 0 ? String.valueOf(i + 1) : "batch-" + i));
+        }
+        mgr.addOrders(batch);
+        Assert.assertEquals(200, mgr.size());
+        for (Order order : batch) {
+            Assert.assertSame(order, mgr.getOrder(order.getId()));
+        }
+    }
+
+    @Test
+    public void testEvictImmediately() {
+        OrderManager mgr = new OrderManager();
+        int n = 100_000;
+        Order[] orders = new Order[n];
+        for (int i = 0; i < n; i++) {
+            orders[i] = order(String.valueOf(i + 1));
+            mgr.addOrder(orders[i]);
+        }
+        long peak = mgr.estimatedMemoryBytes();
+        Assert.assertEquals(n, mgr.size());
+
+        for (int i = 0; i < n; i++) {
+            if (i % 10 != 0) {
+                mgr.retire(orders[i]);
+            }
+        }
+        Assert.assertEquals(n / 10, mgr.size());
+        Assert.assertEquals(n - n / 10, mgr.numOfEvicted());
+        for (int i = 0; i < n; i++) {
+            Order found = mgr.getOrder(orders[i].getId());
+            if (i % 10 == 0) {
+                Assert.assertSame(orders[i], found);
+            } else {
+                Assert.assertNull(found);
+            }
+        }
+        // 大量回收后索引会缩容
+        Assert.assertTrue(mgr.estimatedMemoryBytes() < peak / 2);
+    }
+
+    @Test
+    public void testEvictAfterGracePeriod() throws InterruptedException {
+        OrderManager mgr = new OrderManager();
+        mgr.setEvictionGraceMillis(50);
+        Order order = order("42");
+        mgr.addOrder(order);
+        mgr.retire(order);
+
+        // 宽限期内依旧可以查询
+        Assert.assertEquals(0, mgr.evictExpired());
+        Assert.assertSame(order, mgr.getOrder("42"));
+        Assert.assertEquals(1, mgr.numOfRetired());
+
+        Thread.sleep(100);
+        Assert.assertEquals(1, mgr.evictExpired());
+        Assert.assertNull(mgr.getOrder("42"));
+        Assert.assertEquals(0, mgr.numOfRetired());
+        Assert.assertEquals(0, mgr.size());
+    }
+
+    @Test
+    public void testRetireFilledOrders() throws Exception {
+        MatchEngineConfig config = new MatchEngineConfig();
+        MatchEngine engine = MatchEngine.newEngine(config);
+        engine.enableMatching();
+        OrderManager mgr = engine.getOrderMgr();
+
+        // 买单 "3" 作为吃单方依次与卖单 "1" "2" 完全成交, 卖单 "4" 挂在卖盘
+        engine.addOrder(OrderFixture.order("1", OrderType.LIMIT, OrderSide.SELL, "12", null));
+        engine.addOrder(OrderFixture.order("2", OrderType.LIMIT, OrderSide.SELL, "13", null));
+        Order taker = OrderFixture.order("3", OrderType.LIMIT, OrderSide.BUY, "13", null);
+        taker.setQuantity(new BigDecimal("2"));
+        taker.setTotalAmount(new BigDecimal("25"));
+        taker.setLeavesAmount(new BigDecimal("25"));
+        engine.addOrder(taker);
+        engine.addOrder(OrderFixture.order("4", OrderType.LIMIT, OrderSide.SELL, "14", null));
+
+        // 撤单在处理器中排在之前的指令之后, 返回时之前的成交已经全部处理
+        Assert.assertEquals(CancelResult.ALREADY_FILLED, engine.cancelOrder("3").get(10, TimeUnit.SECONDS));
+
+        // 吃单方与两个挂单方各回收一次, 保留期内依旧可以查询
+        Assert.assertEquals(3, mgr.numOfRetired());
+        Assert.assertEquals(4, mgr.size());
+        Assert.assertSame(taker, mgr.getOrder("3"));
+        // 已经结束的订单全部从账本移除
+        OrderBook book = OrderFixture.book(config);
+        Assert.assertEquals(Arrays.asList("4"), ids(book));
+
+        Assert.assertEquals(CancelResult.CANCELED, engine.cancelOrder("4").get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(4, mgr.numOfRetired());
+        Assert.assertTrue(ids(book).isEmpty());
+        engine.shutdown();
+    }
+
+    @Test
+    public void testEvictFilledOrdersImmediately() throws Exception {
+        MatchEngineConfig config = new MatchEngineConfig();
+        config.setOrderRetentionMillis(0);
+        MatchEngine engine = MatchEngine.newEngine(config);
+        engine.enableMatching();
+        OrderManager mgr = engine.getOrderMgr();
+
+        engine.addOrder(OrderFixture.order("1", OrderType.LIMIT, OrderSide.SELL, "12", null));
+        engine.addOrder(OrderFixture.order("2", OrderType.LIMIT, OrderSide.BUY, "12", null));
+        engine.addOrder(OrderFixture.order("3", OrderType.LIMIT, OrderSide.SELL, "14", null));
+        // 撤单在处理器中排在之前的指令之后, 返回时成交的两个订单已经回收
+        Assert.assertEquals(CancelResult.CANCELED, engine.cancelOrder("3").get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, mgr.size());
+        Assert.assertEquals(3, mgr.numOfEvicted());
+        Assert.assertEquals(0, mgr.numOfRetired());
+        Assert.assertNull(mgr.getOrder("2"));
+        engine.shutdown();
+    }
+
+    /**
+     * 买卖盘中的全部订单, 包括已经结束的订单
+     */
+    private static List<String> ids(OrderBook book) {
+        List<String> ids = new ArrayList<>();
+        for (Iterable<Order> orders : Arrays.asList(book.getBidOrders(), book.getAskOrders())) {
+            for (Order o : orders) {
+                ids.add(o.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static Order order(String id) {
+        Order order = new Order();
+        order.setId(id);
+        return order;
+    }
+}
@@ -0,0 +1,99 @@
+package engine;
+
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import com.trader.core.entity.OrderUndoLog;
+import com.trader.core.matcher.limit.InMemoryLimitMatchHandler;
+import com.trader.market.def.DepthLevel;
+import com.trader.market.entity.MarketDepthInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 撤销日志回滚测试
+ *
+ * @author yjt
+ * @since 2020/11/5 下午3:40
+ */
+public class TestOrderUndoLog {
+
+    @Test
+    public void testRollback() {
+        testRollback(false);
+    }
+
+    @Test
+    public void testRollbackFixedPoint() {
+        testRollback(true);
+    }
+
+    private static void testRollback(boolean fixedPoint) {
+        OrderBook book = new OrderBook();
+        Order bid = order("1", OrderSide.BUY, fixedPoint);
+        Order ask = order("2", OrderSide.SELL, fixedPoint);
+        book.addOrder(bid);
+        book.addOrder(ask);
+        Order expectedBid = bid.clone();
+        Order expectedAsk = ask.clone();
+        List<MarketDepthInfo> expectedBids = book.getBidOrders().ladder().render(DepthLevel.step0, 10);
+
+        OrderUndoLog undoLog = new OrderUndoLog();
+        for (int i = 0; i < 3; i++) {
+            undoLog.begin(bid, ask);
+            BigDecimal quantity = new BigDecimal("0.5");
+            BigDecimal amount = quantity.multiply(ask.getPrice());
+            InMemoryLimitMatchHandler.updateOrder(bid, quantity, amount);
+            InMemoryLimitMatchHandler.updateOrder(ask, quantity, amount);
+            bid.markFinished();
+            undoLog.rollback();
+            undoLog.end();
+            // 与撮合线程一致, 一次成交结束后刷新档位
+            bid.refreshDepth();
+            ask.refreshDepth();
+
+            assertOrder(expectedBid, bid);
+            assertOrder(expectedAsk, ask);
+        }
+
+        // 档位聚合数据也需要恢复
+        List<MarketDepthInfo> bids = book.getBidOrders().ladder().render(DepthLevel.step0, 10);
+        Assert.assertEquals(expectedBids.size(), bids.size());
+        Assert.assertEquals(0, expectedBids.get(0).getLeaves().compareTo(bids.get(0).getLeaves()));
+        Assert.assertEquals(0, expectedBids.get(0).getExecuted().compareTo(bids.get(0).getExecuted()));
+    }
+
+    private static void assertOrder(Order expected, Order actual) {
+        Assert.assertEquals(0, expected.getLeavesQuantity().compareTo(actual.getLeavesQuantity()));
+        Assert.assertEquals(0, expected.getExecutedQuantity().compareTo(actual.getExecutedQuantity()));
+        Assert.assertEquals(0, expected.getLeavesAmount().compareTo(actual.getLeavesAmount()));
+        Assert.assertEquals(0, expected.getExecutedAmount().compareTo(actual.getExecutedAmount()));
+        Assert.assertEquals(expected.getFixedLeavesAmount(), actual.getFixedLeavesAmount());
+        Assert.assertEquals(expected.getFixedAmountScale(), actual.getFixedAmountScale());
+        Assert.assertEquals(expected.isFinished(), actual.isFinished());
+        Assert.assertEquals(expected.isCanceled(), actual.isCanceled());
+    }
+
+    private static Order order(String id, OrderSide side, boolean fixedPoint) {
+        Order o = new Order();
+        o.setId(id);
+        o.setUid(id);
+        o.setSide(side);
+        o.setType(OrderType.LIMIT);
+        o.setCreateDateTime(new Date());
+        o.setPrice(new BigDecimal("2.5"));
+        o.setQuantity(new BigDecimal("10"));
+        o.setLeavesQuantity(new BigDecimal("10"));
+        o.setTotalAmount(new BigDecimal("25.0"));
+        o.setLeavesAmount(new BigDecimal("25.0"));
+        if (fixedPoint) {
+            o.enableFixedPoint();
+        }
+        return o;
+    }
+}
@@ -0,0 +1,102 @@
+package engine;
+
+import com.trader.MatchEngine;
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.MatchHandler;
+import com.trader.core.def.CancelResult;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.matcher.TradeResult;
+import helper.OrderFixture;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static helper.OrderFixture.order;
+
+/**
+ * 止盈止损订单的激活时机:
+ * 同步激活在触发成交的指令处理结束后立即激活, 异步激活等待价格变动经过行情推送线程回到入口队列
+ *
+ * @author yjt
+ * @since 2020/11/18 下午3:00
+ */
+public class TestStopActivation {
+
+    @Test
+    public void testSynchronousActivation() throws Exception {
+        // 止盈止损订单在买单 "4" 之前已经激活挂在卖盘, 买单 "4" 作为吃单方成交
+        Assert.assertEquals(Arrays.asList("3|2", "4|1"), fills(true));
+    }
+
+    @Test
+    public void testAsynchronousActivation() throws Exception {
+        // 价格变动排在买单 "4" 之后, 止盈止损订单激活后作为吃单方与买单 "4" 成交
+        Assert.assertEquals(Arrays.asList("3|2", "1|4"), fills(false));
+    }
+
+    @Test
+    public void testRolledBackFillDoesNotTrigger() throws Exception {
+        List<String> fills = Collections.synchronizedList(new ArrayList<>());
+        MatchEngineConfig config = new MatchEngineConfig();
+        config.setSynchronousStopActivation(true);
+        config.setHandler(new MatchHandler() {
+            @Override
+            public void onExecuteOrder(Order order, Order opponentOrder, TradeResult ts) {
+                fills.add(order.getId() + "|" + opponentOrder.getId());
+                // 模拟持久化失败, 成交被回滚
+                throw new IllegalStateException("rollback");
+            }
+        });
+        MatchEngine engine = MatchEngine.newEngine(config);
+        engine.enableMatching();
+        engine.addOrder(order("1", OrderType.STOP, OrderSide.SELL, "11", "11.5"));
+
+        engine.disableMatching();
+        engine.addOrders(Arrays.asList(order("2", OrderType.LIMIT, OrderSide.SELL, "12", null),
+                                       order("3", OrderType.LIMIT, OrderSide.BUY, "12", null),
+                                       order("4", OrderType.LIMIT, OrderSide.BUY, "11", null)));
+        engine.enableMatching();
+
+        // 买单 "3" 的成交被回滚, 不会激活止盈止损订单, 买单 "4" 没有对手盘
+        Assert.assertEquals(CancelResult.CANCELED, engine.cancelOrder("4").get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.singletonList("3|2"), fills);
+        Assert.assertEquals(1, OrderFixture.book(config).getSellStopOrders().size());
+        engine.shutdown();
+    }
+
+    private static List<String> fills(boolean synchronous) throws Exception {
+        List<String> fills = Collections.synchronizedList(new ArrayList<>());
+        MatchEngineConfig config = new MatchEngineConfig();
+        config.setSynchronousStopActivation(synchronous);
+        config.setHandler(new MatchHandler() {
+            @Override
+            public void onExecuteOrder(Order order, Order opponentOrder, TradeResult ts) {
+                fills.add(order.getId() + "|" + opponentOrder.getId());
+            }
+        });
+        MatchEngine engine = MatchEngine.newEngine(config);
+        engine.enableMatching();
+        engine.addOrder(order("1", OrderType.STOP, OrderSide.SELL, "11", "11.5"));
+
+        // 暂停期间放入的指令在开启撮合之后一起处理: 买单 "3" 的成交价 12 穿越触发价, 买单 "4" 紧随其后
+        engine.disableMatching();
+        engine.addOrders(Arrays.asList(order("2", OrderType.LIMIT, OrderSide.SELL, "12", null),
+                                       order("3", OrderType.LIMIT, OrderSide.BUY, "12", null),
+                                       order("4", OrderType.LIMIT, OrderSide.BUY, "11", null)));
+        engine.enableMatching();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (fills.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        engine.shutdown();
+        return new ArrayList<>(fills);
+    }
+}
@@ -0,0 +1,152 @@
+package helper;
+
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderTimeInForce;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import org.junit.Assert;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 撮合引擎测试使用的订单与账本工具: BTC-USDT 交易对, 数量为 1 的 GTC 订单
+ *
+ * @author yjt
+ * @since 2020/11/19 上午10:00
+ */
+public final class OrderFixture {
+
+    public static final String SYMBOL = "BTC-USDT";
+
+    private OrderFixture() {
+    }
+
+    /**
+     * 创建订单, 订单ID必须是数字, 下单时间按照订单ID递增
+     *
+     * @param id
+     *         订单ID
+     * @param type
+     *         订单类型
+     * @param side
+     *         买卖方向
+     * @param price
+     *         价格
+     * @param triggerPrice
+     *         触发价, 非止盈止损订单为 null
+     *
+     * @return 订单
+     */
+    public static Order order(String id, OrderType type, OrderSide side, String price, String triggerPrice) {
+        return order(id, Long.parseLong(id), type, side, price, triggerPrice);
+    }
+
+    /**
+     * 创建订单
+     *
+     * @param id
+     *         订单ID
+     * @param seq
+     *         下单时间序号, 用于确定同价格订单的先后顺序
+     * @param type
+     *         订单类型
+     * @param side
+     *         买卖方向
+     * @param price
+     *         价格
+     * @param triggerPrice
+     *         触发价, 非止盈止损订单为 null
+     *
+     * @return 订单
+     */
+    public static Order order(String id, long seq, OrderType type, OrderSide side, String price, String triggerPrice) {
+        BigDecimal p = new BigDecimal(price);
+        Order o = new Order();
+        o.setId(id);
+        o.setUid(id);
+        o.setCoinId("BTC");
+        o.setCurrencyId("USDT");
+        o.setType(type);
+        o.setSide(side);
+        o.setTimeInForce(OrderTimeInForce.GTC);
+        o.setCreateDateTime(new Date(1_000_000L + seq));
+        o.setPrice(p);
+        o.setTriggerPrice(triggerPrice == null ? null : new BigDecimal(triggerPrice));
+        o.setQuantity(BigDecimal.ONE);
+        if (side == OrderSide.BUY) {
+            o.setTotalAmount(p);
+            o.setLeavesAmount(p);
+        } else {
+            o.setLeavesQuantity(BigDecimal.ONE);
+        }
+        return o;
+    }
+
+    /**
+     * 等待条件成立, 10 秒超时
+     *
+     * @param condition
+     *         条件
+     */
+    public static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("等待超时", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 交易对 {@link #SYMBOL} 的账本
+     *
+     * @param config
+     *         引擎配置
+     *
+     * @return 账本
+     */
+    public static OrderBook book(MatchEngineConfig config) {
+        return book(config, SYMBOL);
+    }
+
+    /**
+     * 交易对的账本
+     *
+     * @param config
+     *         引擎配置
+     * @param symbol
+     *         交易对
+     *
+     * @return 账本
+     */
+    public static OrderBook book(MatchEngineConfig config, String symbol) {
+        return config.getRouter().routeToNeedToUpdatePriceBook(symbol).iterator().next();
+    }
+
+    /**
+     * 买卖盘中未结束的订单以及等待触发的止盈止损订单
+     *
+     * @param book
+     *         账本
+     *
+     * @return 订单ID
+     */
+    public static List<String> restingOrders(OrderBook book) {
+        List<String> ids = new ArrayList<>();
+        for (Iterable<Order> orders : Arrays.asList(book.getBidOrders(), book.getAskOrders(),
+                                                    book.getBuyStopOrders(), book.getSellStopOrders())) {
+            for (Order o : orders) {
+                if (!o.isFinished() && !o.isCanceled()) {
+                    ids.add(o.getId());
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,135 @@
+package journal;
+
+import com.trader.core.Command;
+import com.trader.core.def.Cmd;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderTimeInForce;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.support.journal.CommandJournal;
+import com.trader.core.support.processor.PriceChangeCommand;
+import com.trader.market.publish.msg.PriceChangeMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 指令日志写入与回放测试
+ *
+ * @author yjt
+ * @since 2020/11/6 下午2:30
+ */
+public class TestCommandJournal {
+
+    @Test
+    public void testAppendAndReplay() throws IOException {
+        File dir = Files.createTempDirectory("journal").toFile();
+        // 使用很小的段文件, 验证段文件切换
+        CommandJournal journal = CommandJournal.open(dir.getPath(), 4096);
+        List<Command> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            if (i % 11 == 5) {
+                PriceChangeCommand cmd = new PriceChangeCommand(priceChange(i), i % 2 == 0);
+                Assert.assertEquals(i + 1, journal.append(cmd));
+                expected.add(cmd);
+                continue;
+            }
+            Order o = order(i);
+            if (i % 7 == 0) {
+                o.setCmd(Cmd.CANCEL_ORDER);
+            }
+            Assert.assertEquals(i + 1, journal.append(o));
+            expected.add(o);
+        }
+        journal.close();
+        Assert.assertTrue(dir.listFiles().length > 1);
+
+        // 重新打开后继续追加
+        journal = CommandJournal.open(dir.getPath(), 4096);
+        Assert.assertEquals(500, journal.sequence());
+        Order last = order(500);
+        Assert.assertEquals(501, journal.append(last));
+        expected.add(last);
+
+        List<Command> replayed = new ArrayList<>();
+        Assert.assertEquals(501, journal.replay(0, replayed::add));
+        Assert.assertEquals(expected.size(), replayed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertCommand(expected.get(i), replayed.get(i));
+        }
+
+        // 从指定位置开始回放
+        replayed.clear();
+        journal.replay(450, replayed::add);
+        Assert.assertEquals(51, replayed.size());
+        assertCommand(expected.get(450), replayed.get(0));
+        journal.close();
+    }
+
+    private static void assertCommand(Command expected, Command actual) {
+        Assert.assertEquals(expected.getCmd(), actual.getCmd());
+        if (expected.getCmd() != Cmd.PRICE_CHANGE) {
+            assertOrder((Order) expected, (Order) actual);
+            return;
+        }
+        PriceChangeMessage e = ((PriceChangeCommand) expected).getMsg();
+        PriceChangeMessage a = ((PriceChangeCommand) actual).getMsg();
+        Assert.assertEquals(e.getSymbol(), a.getSymbol());
+        Assert.assertEquals(e.getPrice(), a.getPrice());
+        Assert.assertEquals(((PriceChangeCommand) expected).isThird(), ((PriceChangeCommand) actual).isThird());
+    }
+
+    private static void assertOrder(Order expected, Order actual) {
+        Assert.assertEquals(expected.getCmd(), actual.getCmd());
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getSymbol(), actual.getSymbol());
+        if (!expected.isAddCmd()) {
+            return;
+        }
+        Assert.assertEquals(expected.getUid(), actual.getUid());
+        Assert.assertEquals(expected.getType(), actual.getType());
+        Assert.assertEquals(expected.getSide(), actual.getSide());
+        Assert.assertEquals(expected.getTimeInForce(), actual.getTimeInForce());
+        Assert.assertEquals(expected.getPrice(), actual.getPrice());
+        Assert.assertEquals(expected.getTriggerPrice(), actual.getTriggerPrice());
+        Assert.assertEquals(expected.getQuantity(), actual.getQuantity());
+        Assert.assertEquals(expected.getLeavesQuantity(), actual.getLeavesQuantity());
+        Assert.assertEquals(expected.getTotalAmount(), actual.getTotalAmount());
+        Assert.assertEquals(expected.getLeavesAmount(), actual.getLeavesAmount());
+        Assert.assertEquals(expected.getCreateDateTime(), actual.getCreateDateTime());
+    }
+
+    private static PriceChangeMessage priceChange(int i) {
+        PriceChangeMessage msg = new PriceChangeMessage();
+        msg.setSymbol("BTC-USDT");
+        msg.setPrice(new BigDecimal("1.23").add(BigDecimal.valueOf(i, 3)));
+        return msg;
+    }
+
+    private static Order order(int i) {
+        Order o = new Order();
+        o.setId(String.valueOf(i));
+        o.setUid(String.valueOf(i % 10));
+        o.setCoinId("BTC");
+        o.setCurrencyId("USDT");
+        o.setType(i % 3 == 0 ? OrderType.STOP : OrderType.LIMIT);
+        o.setSide(i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL);
+        o.setTimeInForce(OrderTimeInForce.GTC);
+        o.setCreateDateTime(new Date(1_000_000L + i));
+        o.setPrice(new BigDecimal("1.2345").add(BigDecimal.valueOf(i, 2)));
+        o.setTriggerPrice(new BigDecimal("1.20"));
+        // 超出 long 范围的数值
+        o.setQuantity(new BigDecimal("123456789012345678901234567890.123"));
+        o.setLeavesQuantity(BigDecimal.valueOf(i));
+        o.setTotalAmount(new BigDecimal("99.00000001"));
+        o.setLeavesAmount(new BigDecimal("99.00000001"));
+        return o;
+    }
+}
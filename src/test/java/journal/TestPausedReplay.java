@@ -0,0 +1,84 @@
+package journal;
+
+import com.trader.MatchEngine;
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.MatchHandler;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.matcher.TradeResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static helper.OrderFixture.order;
+
+/**
+ * 暂停期间的指令超过暂存缓冲区, 入口线程阻塞等待恢复时回放指令日志:
+ * 回放在入口线程中执行, 恢复之后暂存的指令按照原来的顺序在回放之后处理
+ *
+ * @author yjt
+ * @since 2020/11/18 上午11:00
+ */
+public class TestPausedReplay {
+
+    private static final int NUM_OF_ORDERS = 8;
+
+    private static final int MAX_PAUSED_COMMANDS = 2;
+
+    @Test
+    public void testReplayWhilePausedBufferIsFull() throws Exception {
+        String dir = Files.createTempDirectory("journal").toFile().getPath();
+
+        // 指令日志中只有卖单
+        MatchEngine engine = MatchEngine.newEngine(config(dir, new ArrayList<>()));
+        engine.enableMatching();
+        for (int i = 0; i < NUM_OF_ORDERS; i++) {
+            engine.addOrder(order("s" + i, i, OrderType.LIMIT, OrderSide.SELL, "11", null));
+        }
+        engine.shutdown();
+
+        // 新的引擎在暂停状态下收到买单, 暂存缓冲区被填满后入口线程阻塞
+        List<String> fills = Collections.synchronizedList(new ArrayList<>());
+        MatchEngineConfig config = config(dir, fills);
+        config.setMaxPausedCommands(MAX_PAUSED_COMMANDS);
+        MatchEngine replayEngine = MatchEngine.newEngine(config);
+        for (int i = 0; i < NUM_OF_ORDERS; i++) {
+            replayEngine.addOrder(order("b" + i, NUM_OF_ORDERS + i, OrderType.LIMIT, OrderSide.BUY, "11", null));
+        }
+        Thread.sleep(200);
+
+        // 回放之后卖单已经挂在卖盘, 买单还没有被处理
+        Assert.assertEquals(engine.getJournal().sequence(), replayEngine.replay());
+        Assert.assertTrue(fills.isEmpty());
+
+        // 恢复之后买单按照下单顺序作为吃单方依次与卖单成交
+        replayEngine.enableMatching();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (fills.size() < NUM_OF_ORDERS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < NUM_OF_ORDERS; i++) {
+            expected.add("b" + i + "|s" + i);
+        }
+        Assert.assertEquals(expected, fills);
+        replayEngine.shutdown();
+    }
+
+    private static MatchEngineConfig config(String journalDir, List<String> fills) {
+        MatchEngineConfig config = new MatchEngineConfig();
+        config.setJournalDir(journalDir);
+        config.setHandler(new MatchHandler() {
+            @Override
+            public void onExecuteOrder(Order order, Order opponentOrder, TradeResult ts) {
+                fills.add(order.getId() + "|" + opponentOrder.getId());
+            }
+        });
+        return config;
+    }
+}
@@ -0,0 +1,97 @@
+package journal;
+
+import com.trader.core.def.ActivateStatus;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.entity.OrderBook;
+import com.trader.core.support.journal.SnapshotStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 账本快照写入与加载测试
+ *
+ * @author yjt
+ * @since 2020/11/9 下午3:10
+ */
+public class TestSnapshotStore {
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        File dir = Files.createTempDirectory("snapshot").toFile();
+        OrderBook book = new OrderBook();
+        book.setSymbolId("BTC-USDT");
+        book.updateLastTradePrice(new BigDecimal("10.5"));
+        for (int i = 0; i < 100; i++) {
+            book.addOrder(order(i, i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL, OrderType.LIMIT));
+        }
+        // 已经结束的订单不会写入快照
+        Order finished = order(100, OrderSide.BUY, OrderType.LIMIT);
+        book.addOrder(finished);
+        finished.markFinished();
+        // 止盈止损订单
+        book.addOrder(order(101, OrderSide.BUY, OrderType.STOP));
+        Order activated = order(102, OrderSide.SELL, OrderType.STOP);
+        activated.setActivated(ActivateStatus.ACTIVATED);
+        book.activeStopOrder(activated);
+
+        List<Order> expected = new ArrayList<>();
+        book.getBidOrders().forEach(o -> {
+            if (!o.isFinished()) {
+                expected.add(o);
+            }
+        });
+        book.getAskOrders().forEach(expected::add);
+
+        SnapshotStore store = new SnapshotStore(dir.getPath());
+        store.begin(100, 1).write(0, SnapshotStore.encode(Collections.singletonList(book)));
+        // 没有全部写入完成的快照不会被加载
+        store.begin(200, 2).write(0, SnapshotStore.encode(Collections.singletonList(book)));
+        store.shutdownAndWait();
+
+        SnapshotStore.Snapshot snapshot = new SnapshotStore(dir.getPath()).loadLatest();
+        Assert.assertNotNull(snapshot);
+        Assert.assertEquals(100, snapshot.getSequence());
+        Assert.assertEquals(1, snapshot.getBooks().size());
+
+        SnapshotStore.BookState state = snapshot.getBooks().get(0);
+        Assert.assertEquals("BTC-USDT", state.getSymbolId());
+        Assert.assertEquals(0, new BigDecimal("10.5").compareTo(state.getLastTradePrice()));
+        Assert.assertEquals(expected.size(), state.getOrders().size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getId(), state.getOrders().get(i).getId());
+            Assert.assertEquals(expected.get(i).getLeavesQuantity(), state.getOrders().get(i).getLeavesQuantity());
+            Assert.assertEquals(expected.get(i).getActivated(), state.getOrders().get(i).getActivated());
+        }
+        Assert.assertEquals(1, state.getStopOrders().size());
+        Assert.assertEquals("101", state.getStopOrders().get(0).getId());
+    }
+
+    private static Order order(int i, OrderSide side, OrderType type) {
+        Order o = new Order();
+        o.setId(String.valueOf(i));
+        o.setUid(String.valueOf(i % 10));
+        o.setCoinId("BTC");
+        o.setCurrencyId("USDT");
+        o.setType(type);
+        o.setSide(side);
+        o.setCreateDateTime(new Date(1_000_000L + i));
+        o.setPrice(BigDecimal.valueOf(1_000 + i % 17, 2));
+        o.setTriggerPrice(type == OrderType.STOP ? new BigDecimal("9.5") : BigDecimal.ZERO);
+        o.setQuantity(BigDecimal.valueOf(i + 1));
+        o.setLeavesQuantity(BigDecimal.valueOf(i + 1));
+        o.setTotalAmount(BigDecimal.valueOf(i + 1, 1));
+        o.setLeavesAmount(BigDecimal.valueOf(i + 1, 1));
+        return o;
+    }
+}
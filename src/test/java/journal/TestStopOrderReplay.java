@@ -0,0 +1,76 @@
+package journal;
+
+import com.trader.MatchEngine;
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.MatchHandler;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.matcher.TradeResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static helper.OrderFixture.await;
+import static helper.OrderFixture.book;
+import static helper.OrderFixture.order;
+import static helper.OrderFixture.restingOrders;
+
+/**
+ * 回放指令日志重建已经被市价变动触发的止盈止损订单
+ *
+ * @author yjt
+ * @since 2020/11/17 下午3:00
+ */
+public class TestStopOrderReplay {
+
+    @Test
+    public void testReplayTriggeredStopOrder() throws Exception {
+        String dir = Files.createTempDirectory("journal").toFile().getPath();
+
+        List<String> fills = Collections.synchronizedList(new ArrayList<>());
+        MatchEngineConfig config = config(dir, fills);
+        MatchEngine engine = MatchEngine.newEngine(config);
+        engine.enableMatching();
+
+        // 成交价 11 穿越卖出止损单的触发价 10.5, 止损单被激活后挂在卖盘
+        Order stop = order("1", OrderType.STOP, OrderSide.SELL, "11", "10.5");
+        engine.addOrder(stop);
+        engine.addOrder(order("2", OrderType.LIMIT, OrderSide.BUY, "11", null));
+        engine.addOrder(order("3", OrderType.LIMIT, OrderSide.SELL, "11", null));
+        await(stop::isActivated);
+
+        // 新的买单与被激活的止损单成交
+        engine.addOrder(order("4", OrderType.LIMIT, OrderSide.BUY, "11", null));
+        await(() -> fills.size() == 2);
+        Assert.assertEquals("3|2", fills.get(0));
+        Assert.assertEquals("4|1", fills.get(1));
+        Assert.assertTrue(restingOrders(book(config)).isEmpty());
+        engine.shutdown();
+
+        // 回放: 止损单在日志中市价变动的位置被触发, 成交与重建的账本都与回放之前一致
+        List<String> replayed = Collections.synchronizedList(new ArrayList<>());
+        MatchEngineConfig replayConfig = config(dir, replayed);
+        MatchEngine replayEngine = MatchEngine.newEngine(replayConfig);
+        Assert.assertEquals(engine.getJournal().sequence(), replayEngine.replay());
+        Assert.assertEquals(fills, replayed);
+        Assert.assertTrue(restingOrders(book(replayConfig)).isEmpty());
+        replayEngine.shutdown();
+    }
+
+    private static MatchEngineConfig config(String journalDir, List<String> fills) {
+        MatchEngineConfig config = new MatchEngineConfig();
+        config.setJournalDir(journalDir);
+        config.setHandler(new MatchHandler() {
+            @Override
+            public void onExecuteOrder(Order order, Order opponentOrder, TradeResult ts) {
+                fills.add(order.getId() + "|" + opponentOrder.getId());
+            }
+        });
+        return config;
+    }
+}
@@ -0,0 +1,152 @@
+package netty;
+
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.def.OrderSide;
+import com.trader.market.def.DepthLevel;
+import com.trader.market.entity.MarketDepthChart;
+import com.trader.market.entity.MarketDepthChartSeries;
+import com.trader.market.entity.MarketDepthInfo;
+import com.trader.market.publish.msg.DepthChartMessage;
+import com.trader.market.publish.msg.Message;
+import com.trader.market.publish.msg.MessageType;
+import com.trader.market.publish.msg.PriceChangeMessage;
+import com.trader.market.publish.msg.TradeMessage;
+import com.trader.market.publish.msg.WireFormat;
+import com.trader.utils.FixedPointUtils;
+import com.trader.utils.messages.FrameParser;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 行情消息编解码测试: 定点数格式无损, 同一个连接上两种版本可以混合出现
+ *
+ * @author yjt
+ * @since 2020/11/15 下午2:00
+ */
+public class TestWireFormat {
+
+    private static final BigDecimal PRICE = new BigDecimal("0.12345679");
+
+    private static final BigDecimal QUANTITY = new BigDecimal("987654321.12345678");
+
+    @Test
+    public void testExactRoundTrip() {
+        List<Message<?>> received = new ArrayList<>();
+        FrameParser parser = new FrameParser(ar -> {
+            Assert.assertTrue(ar.succeeded());
+            received.add(ar.result());
+        });
+
+        Buffer stream = Buffer.buffer()
+                .appendBuffer(TradeMessage.toBuf(trade(), WireFormat.DECIMAL))
+                .appendBuffer(TradeMessage.toBuf(trade(), WireFormat.LEGACY))
+                .appendBuffer(PriceChangeMessage.toBuf(PriceChangeMessage.ofLocal("BTC-USDT", PRICE).getData(), WireFormat.DECIMAL))
+                .appendBuffer(DepthChartMessage.toBuf(series(), WireFormat.DECIMAL))
+                .appendBuffer(DepthChartMessage.toBuf(series(), WireFormat.LEGACY));
+        // 分两次到达
+        parser.handle(stream.getBuffer(0, 7));
+        parser.handle(stream.getBuffer(7, stream.length()));
+        Assert.assertEquals(5, received.size());
+
+        TradeMessage exact = (TradeMessage) received.get(0).getData();
+        Assert.assertEquals(PRICE, exact.getPrice());
+        Assert.assertEquals(QUANTITY, exact.getQuantity());
+        Assert.assertEquals(OrderSide.BUY.toDirection(), exact.getDirection());
+
+        // double 只有 15~17 位有效数字, 无法精确表示 8 位小数的大额数量
+        TradeMessage legacy = (TradeMessage) received.get(1).getData();
+        Assert.assertEquals(MessageType.TRADE_RESULT, received.get(1).getType());
+        Assert.assertNotEquals(0, QUANTITY.compareTo(legacy.getQuantity()));
+
+        Assert.assertEquals(PRICE, ((PriceChangeMessage) received.get(2).getData()).getPrice());
+
+        MarketDepthInfo info = ((MarketDepthChartSeries) received.get(3).getData()).getSeries().get(0).getAsks().get(0);
+        Assert.assertEquals(PRICE, info.getPrice());
+        Assert.assertEquals(QUANTITY, info.getLeaves());
+        Assert.assertEquals(new BigDecimal("2.0"), info.getExecuted());
+        Assert.assertEquals(1, ((MarketDepthChartSeries) received.get(4).getData()).getSeries().size());
+    }
+
+    @Test
+    public void testFlyweightView() {
+        Buffer stream = Buffer.buffer();
+        for (int i = 0; i < 100; i++) {
+            stream.appendBuffer(TradeMessage.toBuf(trade(), i % 2 == 0 ? WireFormat.DECIMAL : WireFormat.LEGACY));
+            stream.appendBuffer(DepthChartMessage.toBuf(series()));
+        }
+        byte[] symbol = "btcusdt".getBytes();
+        long[] trades = new long[1];
+        FrameParser parser = FrameParser.of(view -> {
+            Assert.assertTrue(view.isValid());
+            if (view.type() == MessageType.TRADE_RESULT) {
+                Assert.assertTrue(view.symbolEquals(symbol));
+                Assert.assertEquals(FixedPointUtils.toFixed(PRICE), view.priceFixed());
+                Assert.assertEquals(OrderSide.BUY, view.side());
+                if (view.version() == WireFormat.DECIMAL) {
+                    Assert.assertEquals(FixedPointUtils.toFixed(QUANTITY), view.quantityFixed());
+                }
+                trades[0]++;
+            }
+        });
+        // 任意切分的数据包
+        Random random = new Random(1);
+        for (int offset = 0; offset < stream.length(); ) {
+            int end = Math.min(stream.length(), offset + 1 + random.nextInt(64));
+            parser.handle(stream.getBuffer(offset, end));
+            offset = end;
+        }
+        Assert.assertEquals(100, trades[0]);
+    }
+
+    @Test
+    public void testLegacyByDefault() {
+        // 默认的格式与未升级的下游兼容: 类型字节只有消息类型的序号
+        Assert.assertEquals(WireFormat.LEGACY, new MatchEngineConfig().getMarketWireVersion());
+        Assert.assertEquals(MessageType.TRADE_RESULT.ordinal(), TradeMessage.toBuf(trade()).getByte(4));
+        Assert.assertEquals(MessageType.DEPTH_CHART.ordinal(), DepthChartMessage.toBuf(series()).getByte(4));
+        Buffer pc = PriceChangeMessage.toBuf(PriceChangeMessage.ofLocal("BTC-USDT", PRICE).getData());
+        Assert.assertEquals(MessageType.MARKET_PRICE.ordinal(), pc.getByte(4));
+    }
+
+    @Test
+    public void testUnknownVersion() {
+        Buffer buf = TradeMessage.toBuf(trade());
+        buf.setByte(4, (byte) (buf.getByte(4) | 0xe0));
+        boolean[] failed = new boolean[1];
+        new FrameParser(ar -> failed[0] = ar.failed()).handle(buf);
+        Assert.assertTrue(failed[0]);
+    }
+
+    private static TradeMessage trade() {
+        TradeMessage tm = new TradeMessage();
+        tm.setSymbol("BTC-USDT");
+        tm.setPrice(PRICE);
+        tm.setQuantity(QUANTITY);
+        tm.setDirection(OrderSide.BUY.toDirection());
+        tm.setTs(1L);
+        return tm;
+    }
+
+    private static MarketDepthChartSeries series() {
+        MarketDepthInfo info = new MarketDepthInfo();
+        info.setPrice(PRICE);
+        info.setTotal(QUANTITY);
+        info.setExecuted(new BigDecimal("2.0"));
+        info.setLeaves(QUANTITY);
+        MarketDepthChart chart = new MarketDepthChart();
+        chart.setDepth(DepthLevel.step0);
+        chart.setBids(Arrays.asList(info, info));
+        chart.setAsks(Arrays.asList(info));
+        MarketDepthChartSeries series = new MarketDepthChartSeries();
+        series.setSymbol("BTC-USDT");
+        series.setSeries(Arrays.asList(chart));
+        return series;
+    }
+}
@@ -0,0 +1,66 @@
+package queue;
+
+import com.trader.utils.buffer.ConcurrentCoalescingBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 多生产者合并缓冲区测试: 每个键的数据不会丢失最新值, 也不会倒退
+ *
+ * @author yjt
+ * @since 2020/11/16 下午5:00
+ */
+public class TestConcurrentCoalescingBuffer {
+
+    private static final int NUM_OF_PRODUCERS = 4;
+
+    private static final int KEYS_PER_PRODUCER = 8;
+
+    private static final int NUM_OF_UPDATES = 200_000;
+
+    @Test
+    public void testMultiProducer() throws InterruptedException {
+        ConcurrentCoalescingBuffer<String, long[]> buffer = new ConcurrentCoalescingBuffer<>(1024);
+        CountDownLatch done = new CountDownLatch(NUM_OF_PRODUCERS);
+        for (int p = 0; p < NUM_OF_PRODUCERS; p++) {
+            int producer = p;
+            new Thread(() -> {
+                // 每个生产者负责一组键, 与撮合线程负责一组交易对一致
+                for (int i = 1; i <= NUM_OF_UPDATES; i++) {
+                    int key = producer * KEYS_PER_PRODUCER + i % KEYS_PER_PRODUCER;
+                    Assert.assertTrue(buffer.offer("k" + key, new long[]{key, i}));
+                }
+                done.countDown();
+            }).start();
+        }
+
+        long[] latest = new long[NUM_OF_PRODUCERS * KEYS_PER_PRODUCER];
+        List<long[]> bucket = new ArrayList<>(64);
+        long polled = 0;
+        while (done.getCount() > 0 || !buffer.isEmpty()) {
+            buffer.poll(bucket);
+            for (long[] v : bucket) {
+                int key = (int) v[0];
+                Assert.assertTrue(v[1] > latest[key]);
+                latest[key] = v[1];
+            }
+            polled += bucket.size();
+            bucket.clear();
+        }
+        buffer.poll(bucket);
+        Assert.assertTrue(bucket.isEmpty());
+
+        // 每个键最终都读取到了最后一次写入
+        for (int key = 0; key < latest.length; key++) {
+            int last = NUM_OF_UPDATES - (NUM_OF_UPDATES - key % KEYS_PER_PRODUCER) % KEYS_PER_PRODUCER;
+            Assert.assertEquals(last, latest[key]);
+        }
+        Assert.assertTrue(polled <= (long) NUM_OF_PRODUCERS * NUM_OF_UPDATES);
+        System.out.println(String.format("[ConcurrentCoalescingBuffer]: offered: [%d], polled: [%d]",
+                (long) NUM_OF_PRODUCERS * NUM_OF_UPDATES, polled));
+    }
+}
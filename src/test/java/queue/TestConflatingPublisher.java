@@ -0,0 +1,100 @@
+package queue;
+
+import com.trader.market.publish.ConflatingPublisher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行情合并推送测试
+ *
+ * @author yjt
+ * @since 2020/11/16 下午2:00
+ */
+public class TestConflatingPublisher {
+
+    private static final long WINDOW_MILLIS = 200;
+
+    @Test
+    public void testImmediateWhenQuiet() throws InterruptedException {
+        CountDownLatch published = new CountDownLatch(2);
+        ConflatingPublisher publisher = new ConflatingPublisher(WINDOW_MILLIS, "Test-Publish-Thread");
+        ConflatingPublisher.Channel<String[]> channel = publisher.channel(1024, v -> v[0], v -> published.countDown());
+        publisher.start();
+        // 预热
+        channel.offer(new String[]{"ETH-USDT", "1"});
+        // 推送线程已经挂起, 写入后被唤醒并立即推送, 不需要等待窗口
+        Thread.sleep(50);
+        long start = System.nanoTime();
+        channel.offer(new String[]{"BTC-USDT", "1"});
+        Assert.assertTrue(published.await(WINDOW_MILLIS / 2, TimeUnit.MILLISECONDS));
+        System.out.println(String.format("[ConflatingPublisher]: wakeup latency: [%d]us",
+                (System.nanoTime() - start) / 1000));
+        publisher.shutdownAndWait();
+    }
+
+    @Test
+    public void testConflateWithinWindow() throws InterruptedException {
+        List<String[]> published = new CopyOnWriteArrayList<>();
+        ConflatingPublisher publisher = new ConflatingPublisher(WINDOW_MILLIS, "Test-Publish-Thread");
+        ConflatingPublisher.Channel<String[]> channel = publisher.channel(1024, v -> v[0], published::add);
+        publisher.start();
+
+        // 窗口内的突发数据: 第一条立即推送, 其余合并为最后一条在窗口结束时推送
+        for (int i = 0; i < 1000; i++) {
+            channel.offer(new String[]{"BTC-USDT", String.valueOf(i)});
+            channel.offer(new String[]{"ETH-USDT", String.valueOf(i)});
+        }
+        Thread.sleep(WINDOW_MILLIS / 4);
+        Assert.assertTrue(published.size() <= 2 * 2);
+        Thread.sleep(WINDOW_MILLIS * 2);
+        Assert.assertTrue(published.size() <= 2 * 3);
+        Assert.assertEquals("999", last(published, "BTC-USDT"));
+        Assert.assertEquals("999", last(published, "ETH-USDT"));
+
+        // 停止时窗口内的数据立即推送
+        channel.offer(new String[]{"BTC-USDT", "a"});
+        channel.offer(new String[]{"BTC-USDT", "b"});
+        Thread.sleep(10);
+        channel.offer(new String[]{"BTC-USDT", "c"});
+        publisher.shutdownAndWait();
+        Assert.assertEquals("c", last(published, "BTC-USDT"));
+    }
+
+    @Test
+    public void testFlush() {
+        List<String[]> published = new CopyOnWriteArrayList<>();
+        // 窗口足够长, 只有 flush 才会推送合并中的数据
+        ConflatingPublisher publisher = new ConflatingPublisher(60_000, "Test-Publish-Thread");
+        ConflatingPublisher.Channel<String[]> channel = publisher.channel(1024, v -> v[0], published::add);
+        publisher.start();
+
+        channel.offer(new String[]{"BTC-USDT", "a"});
+        channel.offer(new String[]{"BTC-USDT", "b"});
+        publisher.flush();
+        Assert.assertEquals("b", last(published, "BTC-USDT"));
+
+        // 窗口内的数据
+        channel.offer(new String[]{"BTC-USDT", "c"});
+        publisher.flush();
+        Assert.assertEquals("c", last(published, "BTC-USDT"));
+
+        publisher.shutdownAndWait();
+        // 停止之后立即返回
+        publisher.flush();
+    }
+
+    private static String last(List<String[]> published, String symbol) {
+        String last = null;
+        for (String[] v : published) {
+            if (v[0].equals(symbol)) {
+                last = v[1];
+            }
+        }
+        return last;
+    }
+}
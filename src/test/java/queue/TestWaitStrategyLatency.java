@@ -0,0 +1,98 @@
+package queue;
+
+import com.trader.core.exception.MatchExceptionHandler;
+import com.trader.utils.disruptor.AbstractDisruptorConsumer;
+import com.trader.utils.disruptor.DisruptorQueue;
+import com.trader.utils.disruptor.DisruptorQueueFactory;
+import com.trader.utils.disruptor.QueueWaitStrategy;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+
+/**
+ * 不同等待策略下队列的投递延迟 (生产者写入到消费者开始处理)
+ * 生产者每隔固定时间写入一条数据, 模拟非满载情况下消费者从空闲状态被唤醒的延迟
+ * <p>
+ * 忙等策略会占满核心并且运行数秒, 不随单元测试执行, 需要时手动运行
+ *
+ * @author yjt
+ * @since 2020/11/10 下午5:20
+ */
+public class TestWaitStrategyLatency {
+
+    private static final int NUM_OF_EVENTS = 20_000;
+
+    private static final int NUM_OF_WARMUP = 5_000;
+
+    /**
+     * 两条数据之间的间隔 (纳秒)
+     */
+    private static final long INTERVAL_NANOS = 20_000;
+
+    @Test
+    @Ignore("手动运行的基准测试")
+    public void benchmarkLatency() {
+        // 忙等 / 让步策略需要生产者和消费者各占一个核心, 核心数不足时结果没有参考意义
+        System.out.println(String.format("[WaitStrategyLatency]: available processors: [%d]",
+                Runtime.getRuntime().availableProcessors()));
+        for (QueueWaitStrategy strategy : QueueWaitStrategy.values()) {
+            long[] latencies = measure(strategy);
+            Arrays.sort(latencies);
+            long sum = 0;
+            for (long l : latencies) {
+                sum += l;
+            }
+            System.out.println(String.format("[WaitStrategyLatency]: strategy: [%s] avg: [%d ns] p50: [%d ns] " +
+                            "p99: [%d ns] p99.9: [%d ns] max: [%d ns]",
+                    strategy.name(),
+                    sum / latencies.length,
+                    percentile(latencies, 0.5),
+                    percentile(latencies, 0.99),
+                    percentile(latencies, 0.999),
+                    latencies[latencies.length - 1]));
+        }
+    }
+
+    /**
+     * 测量一个等待策略下每一条数据的延迟
+     *
+     * @param strategy
+     *         等待策略
+     *
+     * @return 预热之后每一条数据的延迟 (纳秒)
+     */
+    private long[] measure(QueueWaitStrategy strategy) {
+        long[] latencies = new long[NUM_OF_EVENTS];
+        int[] count = new int[1];
+        DisruptorQueue<long[]> queue = DisruptorQueueFactory.createSingleQueue(1024,
+                Executors.defaultThreadFactory(),
+                new AbstractDisruptorConsumer<long[]>() {
+                    @Override
+                    public void process(long[] event) {
+                        long latency = System.nanoTime() - event[0];
+                        if (event[1] >= NUM_OF_WARMUP) {
+                            latencies[(int) event[1] - NUM_OF_WARMUP] = latency;
+                            count[0]++;
+                        }
+                    }
+                }, MatchExceptionHandler.defaultHandler().toDisruptorHandler(), strategy);
+
+        for (int i = 0; i < NUM_OF_WARMUP + NUM_OF_EVENTS; i++) {
+            long deadline = System.nanoTime() + INTERVAL_NANOS;
+            while (System.nanoTime() < deadline) {
+                // 控制发送速率
+            }
+            queue.add(new long[]{System.nanoTime(), i});
+        }
+        queue.shutdown();
+        Assert.assertEquals(NUM_OF_EVENTS, count[0]);
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}
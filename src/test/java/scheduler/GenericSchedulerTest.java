@@ -1,7 +1,34 @@
 package scheduler;
 
+import com.trader.MatchEngine;
+import com.trader.config.MatchEngineConfig;
+import com.trader.core.MatchHandler;
+import com.trader.core.def.CancelResult;
+import com.trader.core.def.OrderSide;
+import com.trader.core.def.OrderType;
+import com.trader.core.entity.Order;
+import com.trader.core.matcher.TradeResult;
+import com.trader.core.support.processor.GenericProcessor;
+import com.trader.core.support.scheduler.GenericScheduler;
+import helper.OrderFixture;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static helper.OrderFixture.await;
+
 /**
  * @author yjt
  * @since 2020/10/25 16:55
@@ -9,6 +36,109 @@ import org.junit.Test;
 
 public class GenericSchedulerTest {
 
+    private static final String[] COINS = {"BTC", "ETH", "LTC", "DOT", "EOS", "XRP", "BCH", "TRX"};
+
+    private static final int NUM_OF_ORDERS = 6000;
+
+    /**
+     * 调整处理器个数 1 -> 4 -> 2 -> 1: 扩容时多个交易对同时迁出, 缩容时再迁回.
+     * 每个交易对的指令顺序不变, 成交以及剩余的账本与不调整处理器个数时完全一致
+     */
+    @Test
+    public void testResizeKeepsOrderingAndFills() throws Exception {
+        Run expected = run(0, 0, 0);
+        Run resized = run(4, 2, 1);
+
+        // 扩容后至少两个交易对迁出, 缩容后全部迁回
+        Assert.assertTrue(count(resized.placements.get(0), 1) >= 2);
+        Assert.assertTrue(count(resized.placements.get(0), 2) >= 2);
+        Assert.assertEquals(0, count(resized.placements.get(1), 2));
+        Assert.assertEquals(0, count(resized.placements.get(2), 1));
+
+        for (String coin : COINS) {
+            String symbol = symbol(coin);
+            // 处理器按照提交的顺序处理每个交易对的订单
+            Assert.assertEquals(resized.submitted.get(symbol), resized.added.get(symbol));
+            Assert.assertEquals(expected.fills.get(symbol), resized.fills.get(symbol));
+            Assert.assertEquals(expected.books.get(symbol), resized.books.get(symbol));
+            Assert.assertFalse(resized.books.get(symbol).isEmpty());
+        }
+        Assert.assertEquals(expected.cancels, resized.cancels);
+    }
+
+    /**
+     * 目标处理器的队列已满时, 原处理器暂存转发的指令并继续处理其它交易对, 转发的指令按照顺序送达
+     */
+    @Test
+    public void testForwardWhenTargetQueueIsFull() throws Exception {
+        String btc = symbol("BTC");
+        String eth = symbol("ETH");
+        Map<String, List<String>> added = new ConcurrentHashMap<>();
+        List<String> fills = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        MatchEngineConfig config = new MatchEngineConfig();
+        // 只有一个处理器时 ETH 的固定放置无效, 扩容之后 ETH 迁移到处理器 1
+        Map<String, Integer> placement = new HashMap<>();
+        placement.put(btc, 0);
+        placement.put(eth, 1);
+        config.setSymbolPlacement(placement);
+        config.setHandler(new MatchHandler() {
+            @Override
+            public void onAddOrder(Order newOrder) throws Exception {
+                added.computeIfAbsent(newOrder.getSymbol(), k -> Collections.synchronizedList(new ArrayList<>()))
+                     .add(newOrder.getId());
+                if ("3".equals(newOrder.getId())) {
+                    blocked.countDown();
+                    release.await();
+                }
+            }
+
+            @Override
+            public void onExecuteOrder(Order order, Order opponentOrder, TradeResult ts) {
+                fills.add(order.getId() + "|" + opponentOrder.getId());
+            }
+        });
+        MatchEngine engine = MatchEngine.newEngine(config);
+        engine.enableMatching();
+        engine.addOrder(order("1", 1, "BTC", OrderSide.SELL, 12, 1));
+        engine.addOrder(order("2", 2, "ETH", OrderSide.SELL, 20, 1));
+        engine.resizeProcessors(2);
+        // 处理器 1 处理订单 "3" 时阻塞
+        engine.addOrder(order("3", 3, "ETH", OrderSide.SELL, 21, 1));
+        Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+        GenericScheduler scheduler = (GenericScheduler) engine.getScheduler();
+        GenericProcessor source = scheduler.loads().get(0).getProcessor();
+        GenericProcessor target = scheduler.loads().get(1).getProcessor();
+        Assert.assertTrue(scheduler.loads().get(1).getSymbols().containsKey(eth));
+
+        // 填满目标处理器的队列
+        List<String> expected = new ArrayList<>();
+        Collections.addAll(expected, "2", "3");
+        for (int i = 100; target.tryExec(order(String.valueOf(i), i, "ETH", OrderSide.SELL, 22, 1)); i++) {
+            expected.add(String.valueOf(i));
+        }
+        Assert.assertTrue(expected.size() > 2);
+
+        // 迁移之前由其它线程直接放入原处理器的指令需要转发
+        for (int i = 200; i < 205; i++) {
+            source.exec(order(String.valueOf(i), i, "ETH", OrderSide.SELL, 23, 1));
+            expected.add(String.valueOf(i));
+        }
+        // 转发的指令暂存在原处理器, 原处理器没有阻塞
+        source.exec(order("5", 5, "BTC", OrderSide.BUY, 12, 1));
+        await(() -> fills.contains("5|1"));
+        Assert.assertFalse(source.isIdle());
+
+        release.countDown();
+        await(() -> added.get(eth).size() == expected.size());
+        Assert.assertEquals(expected, new ArrayList<>(added.get(eth)));
+        await(source::isIdle);
+        engine.shutdown();
+    }
+
     @Test
     public void testProcessorMapping () {
 //        GenericOrderRouter router = new GenericOrderRouter();
@@ -77,4 +207,118 @@ public class GenericSchedulerTest {
 //
 //        System.out.println();
     }
+
+    /**
+     * 分阶段提交同一组随机订单, 每个阶段结束时调整处理器个数, 然后撤销每个交易对最后一个订单作为屏障
+     *
+     * @param sizes
+     *         每个阶段结束时的处理器个数, 0 表示不调整
+     *
+     * @return 运行结果
+     */
+    private static Run run(int... sizes) throws Exception {
+        Run run = new Run();
+        MatchEngineConfig config = new MatchEngineConfig();
+        config.setHandler(new MatchHandler() {
+            @Override
+            public void onAddOrder(Order newOrder) {
+                run.added.computeIfAbsent(newOrder.getSymbol(), k -> Collections.synchronizedList(new ArrayList<>()))
+                         .add(newOrder.getId());
+            }
+
+            @Override
+            public void onExecuteOrder(Order order, Order opponentOrder, TradeResult ts) {
+                run.fills.computeIfAbsent(order.getSymbol(), k -> Collections.synchronizedList(new ArrayList<>()))
+                         .add(order.getId() + "|" + opponentOrder.getId() + "|" +
+                              ts.getExecutePrice().stripTrailingZeros().toPlainString() + "|" +
+                              ts.getQuantity().stripTrailingZeros().toPlainString());
+            }
+        });
+        MatchEngine engine = MatchEngine.newEngine(config);
+        engine.enableMatching();
+
+        Random random = new Random(42);
+        int phase = NUM_OF_ORDERS / (sizes.length + 1);
+        int seq = 0;
+        for (int p = 0; p <= sizes.length; p++) {
+            Map<String, String> last = new TreeMap<>();
+            int end = p == sizes.length ? NUM_OF_ORDERS : seq + phase;
+            for (; seq < end; seq++) {
+                String coin = COINS[random.nextInt(COINS.length)];
+                OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+                Order order = order(String.valueOf(seq + 1), seq, coin, side, 10 + random.nextInt(5), 1 + random.nextInt(3));
+                run.submitted.computeIfAbsent(order.getSymbol(), k -> new ArrayList<>()).add(order.getId());
+                last.put(order.getSymbol(), order.getId());
+                engine.addOrder(order);
+            }
+            if (p < sizes.length && sizes[p] > 0) {
+                engine.resizeProcessors(sizes[p]);
+            }
+            for (CompletableFuture<CancelResult> result : engine.cancelOrders(new ArrayList<>(last.values()))) {
+                run.cancels.add(result.get(10, TimeUnit.SECONDS));
+            }
+            if (p < sizes.length) {
+                run.placements.add(placement((GenericScheduler) engine.getScheduler()));
+            }
+        }
+        for (String coin : COINS) {
+            String symbol = symbol(coin);
+            run.books.put(symbol, OrderFixture.restingOrders(OrderFixture.book(config, symbol)));
+        }
+        engine.shutdown();
+        return run;
+    }
+
+    /**
+     * 交易对 -> 处理器序号, 在屏障之后读取
+     */
+    private static Map<String, Integer> placement(GenericScheduler scheduler) {
+        Map<String, Integer> placement = new HashMap<>();
+        for (GenericScheduler.ProcessorLoad load : scheduler.loads()) {
+            for (String symbol : load.getSymbols().keySet()) {
+                placement.put(symbol, load.getIndex());
+            }
+        }
+        return placement;
+    }
+
+    /**
+     * 处理器序号不小于 index 的交易对个数
+     */
+    private static int count(Map<String, Integer> placement, int index) {
+        int n = 0;
+        for (int i : placement.values()) {
+            if (i >= index) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static String symbol(String coin) {
+        return coin + "-USDT";
+    }
+
+    private static Order order(String id, long seq, String coin, OrderSide side, int price, int quantity) {
+        Order o = OrderFixture.order(id, seq, OrderType.LIMIT, side, String.valueOf(price), null);
+        BigDecimal qty = BigDecimal.valueOf(quantity);
+        o.setCoinId(coin);
+        o.setQuantity(qty);
+        if (side == OrderSide.BUY) {
+            o.setTotalAmount(o.getPrice().multiply(qty));
+            o.setLeavesAmount(o.getPrice().multiply(qty));
+        } else {
+            o.setLeavesQuantity(qty);
+        }
+        return o;
+    }
+
+    private static final class Run {
+        final Map<String, List<String>> submitted = new HashMap<>();
+        final Map<String, List<String>> added = new ConcurrentHashMap<>();
+        final Map<String, List<String>> fills = new ConcurrentHashMap<>();
+        final Map<String, List<String>> books = new HashMap<>();
+        final List<CancelResult> cancels = new ArrayList<>();
+        final List<Map<String, Integer>> placements = new ArrayList<>();
+    }
 }
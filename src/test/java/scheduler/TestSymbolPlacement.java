@@ -0,0 +1,77 @@
+package scheduler;
+
+import com.trader.core.support.scheduler.SymbolPlacement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * 交易对一致性哈希放置测试
+ *
+ * @author yjt
+ * @since 2020/11/13 下午2:00
+ */
+public class TestSymbolPlacement {
+
+    private static final int NUM_OF_SYMBOLS = 2000;
+
+    @Test
+    public void testDeterministic() {
+        SymbolPlacement a = new SymbolPlacement(4);
+        SymbolPlacement b = new SymbolPlacement(8);
+        b.resize(4);
+        int[] counts = new int[4];
+        for (int i = 0; i < NUM_OF_SYMBOLS; i++) {
+            String symbol = symbol(i);
+            Assert.assertEquals(a.processorOf(symbol), b.processorOf(symbol));
+            counts[a.processorOf(symbol)]++;
+        }
+        // 分布大致均匀
+        for (int count : counts) {
+            Assert.assertTrue(count > NUM_OF_SYMBOLS / 4 / 2);
+        }
+    }
+
+    @Test
+    public void testResizeMovesOnlyAffectedSymbols() {
+        SymbolPlacement placement = new SymbolPlacement(4);
+        int[] before = new int[NUM_OF_SYMBOLS];
+        for (int i = 0; i < NUM_OF_SYMBOLS; i++) {
+            before[i] = placement.processorOf(symbol(i));
+        }
+
+        // 扩容: 只会迁移到新的处理器
+        placement.resize(5);
+        int moved = 0;
+        for (int i = 0; i < NUM_OF_SYMBOLS; i++) {
+            int after = placement.processorOf(symbol(i));
+            if (after != before[i]) {
+                Assert.assertEquals(4, after);
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > 0 && moved < NUM_OF_SYMBOLS / 3);
+
+        // 缩容: 只有被移除的处理器上的交易对会迁移
+        placement.resize(3);
+        for (int i = 0; i < NUM_OF_SYMBOLS; i++) {
+            if (before[i] < 3) {
+                Assert.assertEquals(before[i], placement.processorOf(symbol(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testPinned() {
+        SymbolPlacement placement = new SymbolPlacement(4, Collections.singletonMap("BTC-USDT", 3));
+        Assert.assertEquals(3, placement.processorOf("BTC-USDT"));
+        // 固定的处理器被移除后按照哈希放置
+        placement.resize(2);
+        Assert.assertTrue(placement.processorOf("BTC-USDT") < 2);
+    }
+
+    private static String symbol(int i) {
+        return "COIN" + i + "-USDT";
+    }
+}